@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.benchmarks;
+
+import java.util.function.Supplier;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.internal.SessionImpl;
+
+/**
+ * An embedded H2 database populated by the application's migrations which is
+ * shared by the benchmarks touching the database.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    /**
+     * Hibernate session factory.
+     */
+    private final SessionFactory sessionFactory;
+
+    /**
+     * Constructor which creates the schema and test data from scratch.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    public BenchmarkDatabase() throws LiquibaseException {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .configure("hibernate.cfg.xml")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .buildMetadata()
+                .buildSessionFactory();
+
+        Session session = sessionFactory.openSession();
+        try {
+            Database database = DatabaseFactory
+                    .getInstance()
+                    .findCorrectDatabaseImplementation(
+                            new JdbcConnection(
+                                    ((SessionImpl) session).connection()));
+            Liquibase liquibase = new Liquibase("migrations.xml",
+                    new ClassLoaderResourceAccessor(),
+                    database);
+            liquibase.dropAll();
+            liquibase.update("TEST");
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Getter for the session factory.
+     *
+     * @return Hibernate session factory.
+     */
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * Method runs a piece of work in a new session and transaction the same
+     * way as resource methods annotated with UnitOfWork do.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    public <T> T inTransaction(Supplier<T> work) {
+        Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            Transaction tx = session.beginTransaction();
+            try {
+                T result = work.get();
+                tx.commit();
+                return result;
+            } catch (RuntimeException ex) {
+                tx.rollback();
+                throw ex;
+            }
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    /**
+     * Method releases the session factory.
+     */
+    @Override
+    public void close() {
+        sessionFactory.close();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.benchmarks;
+
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.User;
+import com.javaeeeee.dropbookmarks.db.BookmarkDAO;
+import com.javaeeeee.dropbookmarks.db.UserDAO;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import liquibase.exception.LiquibaseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of listing all the bookmarks of a user stored in the embedded
+ * database. Each call uses a new session and transaction as a request would.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookmarkDAOBenchmark {
+
+    /**
+     * The id of the user created by migrations whose bookmarks are listed.
+     */
+    private static final int USER_ID = 2;
+    /**
+     * Number of bookmarks inserted in one batch.
+     */
+    private static final int BATCH_SIZE = 1000;
+    /**
+     * Number of bookmarks the user has.
+     */
+    @Param({"10", "1000", "100000"})
+    private int rows;
+    /**
+     * The embedded database.
+     */
+    private BenchmarkDatabase database;
+    /**
+     * DAO under test.
+     */
+    private BookmarkDAO bookmarkDAO;
+
+    /**
+     * Initialization of the database and bookmarks of the user.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Setup
+    public void setUp() throws LiquibaseException {
+        database = new BenchmarkDatabase();
+        bookmarkDAO = new BookmarkDAO(database.getSessionFactory());
+        UserDAO userDAO = new UserDAO(database.getSessionFactory());
+
+        int existing = database.inTransaction(
+                () -> bookmarkDAO.findByUserId(USER_ID).size());
+        for (int i = existing; i < rows; i += BATCH_SIZE) {
+            final int from = i;
+            final int to = Math.min(i + BATCH_SIZE, rows);
+            database.inTransaction(() -> {
+                User user = userDAO.findById(USER_ID).get();
+                List<Bookmark> batch = new ArrayList<>(to - from);
+                for (int j = from; j < to; j++) {
+                    Bookmark bookmark = new Bookmark(
+                            "https://example.com/bookmarks/" + j,
+                            "Bookmark " + j);
+                    bookmark.setUser(user);
+                    batch.add(bookmark);
+                }
+                bookmarkDAO.saveAll(batch);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Cleanup after the benchmark.
+     */
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Listing of all the bookmarks of the user.
+     *
+     * @return bookmarks of the user.
+     */
+    @Benchmark
+    public List<Bookmark> findByUserId() {
+        return database.inTransaction(
+                () -> bookmarkDAO.findByUserId(USER_ID));
+    }
+}
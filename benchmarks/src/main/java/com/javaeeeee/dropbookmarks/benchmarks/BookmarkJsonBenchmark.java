@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import io.dropwizard.jackson.Jackson;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of Bookmark JSON serialization and deserialization with an object
+ * mapper configured the same way as the one used by Jersey.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BookmarkJsonBenchmark {
+
+    /**
+     * Writer of bookmarks.
+     */
+    private ObjectWriter writer;
+    /**
+     * Reader of bookmarks.
+     */
+    private ObjectReader reader;
+    /**
+     * The bookmark to serialize.
+     */
+    private Bookmark bookmark;
+    /**
+     * The bookmark in JSON format.
+     */
+    private byte[] json;
+
+    /**
+     * Initialization of the mapper and data.
+     *
+     * @throws JsonProcessingException if the bookmark can not be serialized.
+     */
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper mapper = Jackson.newObjectMapper();
+        writer = mapper.writerFor(Bookmark.class);
+        reader = mapper.readerFor(Bookmark.class);
+        bookmark = new Bookmark(
+                "https://github.com/javaeeeee/DropBookmarks",
+                "The repository of this project");
+        bookmark.setId(1);
+        json = writer.writeValueAsBytes(bookmark);
+    }
+
+    /**
+     * Serialization of a bookmark.
+     *
+     * @return the bookmark in JSON format.
+     * @throws JsonProcessingException if the bookmark can not be serialized.
+     */
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(bookmark);
+    }
+
+    /**
+     * Deserialization of a bookmark.
+     *
+     * @return the bookmark.
+     * @throws IOException if the bookmark can not be parsed.
+     */
+    @Benchmark
+    public Bookmark deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+}
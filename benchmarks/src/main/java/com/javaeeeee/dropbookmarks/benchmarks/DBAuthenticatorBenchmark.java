@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import com.javaeeeee.dropbookmarks.auth.CachingBasicAuthenticator;
+import com.javaeeeee.dropbookmarks.auth.DBAuthenticator;
+import com.javaeeeee.dropbookmarks.core.User;
+import com.javaeeeee.dropbookmarks.db.UserDAO;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.basic.BasicCredentials;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import liquibase.exception.LiquibaseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of Basic authentication against the embedded database. The cold
+ * path looks the user up and checks the password on each call, the warm path
+ * is served by the authentication cache.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DBAuthenticatorBenchmark {
+
+    /**
+     * Credentials of a user created by migrations.
+     */
+    private static final BasicCredentials CREDENTIALS
+            = new BasicCredentials("javaeeeee", "p@ssw0rd");
+    /**
+     * The embedded database.
+     */
+    private BenchmarkDatabase database;
+    /**
+     * Authenticator which goes to the database on each call.
+     */
+    private DBAuthenticator authenticator;
+    /**
+     * Authenticator which caches authentication results.
+     */
+    private CachingBasicAuthenticator cachingAuthenticator;
+
+    /**
+     * Initialization of the database and authenticators.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     * @throws AuthenticationException if the cache can not be warmed up.
+     */
+    @Setup
+    public void setUp() throws LiquibaseException, AuthenticationException {
+        database = new BenchmarkDatabase();
+        authenticator = new DBAuthenticator(
+                new UserDAO(database.getSessionFactory()),
+                database.getSessionFactory());
+        cachingAuthenticator = new CachingBasicAuthenticator(
+                new MetricRegistry(),
+                authenticator,
+                CacheBuilderSpec.parse("maximumSize=10000"));
+        if (!cachingAuthenticator.authenticate(CREDENTIALS).isPresent()) {
+            throw new IllegalStateException("Unknown benchmark user.");
+        }
+    }
+
+    /**
+     * Cleanup after the benchmark.
+     */
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Authentication which goes to the database and checks the password.
+     *
+     * @return the authenticated user.
+     * @throws AuthenticationException if authentication fails.
+     */
+    @Benchmark
+    public Optional<User> cold() throws AuthenticationException {
+        return authenticator.authenticate(CREDENTIALS);
+    }
+
+    /**
+     * Authentication served by the cache.
+     *
+     * @return the authenticated user.
+     * @throws AuthenticationException if authentication fails.
+     */
+    @Benchmark
+    public Optional<User> warm() throws AuthenticationException {
+        return cachingAuthenticator.authenticate(CREDENTIALS);
+    }
+}
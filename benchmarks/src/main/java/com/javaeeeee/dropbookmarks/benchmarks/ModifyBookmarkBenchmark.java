@@ -0,0 +1,270 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.User;
+import com.javaeeeee.dropbookmarks.db.BookmarkDAO;
+import com.javaeeeee.dropbookmarks.db.UnitOfWorkExecutor;
+import com.javaeeeee.dropbookmarks.resources.BookmarksResource;
+import io.dropwizard.jersey.params.IntParam;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Request;
+import org.apache.commons.beanutils.BeanUtils;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the bookmark modification path. The reflective BeanUtils
+ * implementation the resource used before is compared with the merge patch
+ * implementation with a shared reader and cached setters. Run with
+ * {@code -prof gc} to see allocation rates.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModifyBookmarkBenchmark {
+
+    /**
+     * Modifications sent by a client.
+     */
+    private static final byte[] BODY = ("{\"id\":1,"
+            + "\"url\":\"https://github.com/javaeeeee/DropBookmarks\","
+            + "\"description\":\"The repository of this project\"}")
+            .getBytes(StandardCharsets.UTF_8);
+    /**
+     * The id of the modified bookmark.
+     */
+    private final IntParam id = new IntParam("1");
+    /**
+     * The owner of the bookmark.
+     */
+    private User user;
+    /**
+     * The bookmark which is modified.
+     */
+    private Bookmark bookmark;
+    /**
+     * DAO which does not touch a database.
+     */
+    private BookmarkDAO bookmarkDAO;
+    /**
+     * The resource under test.
+     */
+    private BookmarksResource resource;
+    /**
+     * A request without conditional headers.
+     */
+    private Request request;
+    /**
+     * The response the resource resumes with the result.
+     */
+    private AsyncResponse response;
+    /**
+     * The result the response was last resumed with.
+     */
+    private Object result;
+
+    /**
+     * Initialization of the resource and its data.
+     */
+    @Setup
+    public void setUp() {
+        user = new User("javaeeeee", "p@ssw0rd");
+        user.setId(1);
+        bookmark = new Bookmark("https://github.com", "GitHub");
+        bookmark.setId(1);
+        bookmark.setUser(user);
+        bookmarkDAO = new InMemoryBookmarkDAO(bookmark);
+        // Modifications run on the calling thread in sessions which do
+        // nothing, so that only the resource method is measured.
+        resource = new BookmarksResource(bookmarkDAO,
+                new UnitOfWorkExecutor(noOpSessionFactory(),
+                        MoreExecutors.newDirectExecutorService(),
+                        1, TimeUnit.SECONDS, new MetricRegistry()));
+        request = (Request) Proxy.newProxyInstance(
+                Request.class.getClassLoader(),
+                new Class<?>[]{Request.class},
+                (proxy, method, args) -> null);
+        response = (AsyncResponse) Proxy.newProxyInstance(
+                AsyncResponse.class.getClassLoader(),
+                new Class<?>[]{AsyncResponse.class},
+                (proxy, method, args) -> {
+                    result = args[0];
+                    return true;
+                });
+    }
+
+    /**
+     * The current implementation of the resource method.
+     *
+     * @return the response with the modified bookmark.
+     */
+    @Benchmark
+    public Object mergePatch() {
+        resource.modifyBookmark(id,
+                new ByteArrayInputStream(BODY),
+                user,
+                request,
+                response);
+        return result;
+    }
+
+    /**
+     * The former implementation of the resource method, which created an
+     * object mapper on each call and populated the bookmark using reflection.
+     *
+     * @return the modified bookmark.
+     * @throws IOException if the body can not be parsed.
+     * @throws IllegalAccessException if a setter is not accessible.
+     * @throws InvocationTargetException if a setter throws an exception.
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Bookmark beanUtilsPopulate() throws IOException,
+            IllegalAccessException,
+            InvocationTargetException {
+        String jsonData = new String(BODY, StandardCharsets.UTF_8);
+        Bookmark found = bookmarkDAO
+                .findByIdAndUserId(id.get(), user.getId())
+                .get();
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, String> changeMap
+                = objectMapper.readValue(jsonData, HashMap.class);
+        changeMap.remove("id");
+        changeMap.entrySet().removeIf(
+                entry -> Strings.isNullOrEmpty(entry.getValue())
+        );
+        BeanUtils.populate(found, changeMap);
+        return bookmarkDAO.save(found);
+    }
+
+    /**
+     * Method creates a session factory whose sessions and transactions do
+     * nothing.
+     *
+     * @return the session factory.
+     */
+    private static SessionFactory noOpSessionFactory() {
+        final Transaction transaction = (Transaction) Proxy.newProxyInstance(
+                Transaction.class.getClassLoader(),
+                new Class<?>[]{Transaction.class},
+                (proxy, method, args) -> null);
+        final SessionFactory[] sessionFactory = new SessionFactory[1];
+        final Session session = (Session) Proxy.newProxyInstance(
+                Session.class.getClassLoader(),
+                new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getSessionFactory":
+                            return sessionFactory[0];
+                        case "beginTransaction":
+                            return transaction;
+                        default:
+                            return null;
+                    }
+                });
+        sessionFactory[0] = (SessionFactory) Proxy.newProxyInstance(
+                SessionFactory.class.getClassLoader(),
+                new Class<?>[]{SessionFactory.class},
+                (proxy, method, args) -> {
+                    // Sessions are bound in a map keyed by their factory.
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return session;
+                    }
+                });
+        return sessionFactory[0];
+    }
+
+    /**
+     * DAO which always returns the same bookmark and does not touch a
+     * database.
+     */
+    static class InMemoryBookmarkDAO extends BookmarkDAO {
+
+        /**
+         * The stored bookmark.
+         */
+        private final Bookmark bookmark;
+
+        /**
+         * Constructor.
+         *
+         * @param bookmark the stored bookmark.
+         */
+        InMemoryBookmarkDAO(Bookmark bookmark) {
+            super((SessionFactory) Proxy.newProxyInstance(
+                    SessionFactory.class.getClassLoader(),
+                    new Class<?>[]{SessionFactory.class},
+                    (proxy, method, args) -> {
+                        throw new UnsupportedOperationException();
+                    }));
+            this.bookmark = bookmark;
+        }
+
+        @Override
+        public Optional<Bookmark> findByIdAndUserId(int id, int userId) {
+            return Optional.of(bookmark);
+        }
+
+        @Override
+        public Bookmark save(Bookmark bookmark) {
+            return bookmark;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import io.dropwizard.jackson.Jackson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of representations of a page of bookmarks: JSON, CBOR and Smile,
+ * with and without gzip compression applied by the server. Encoding is the
+ * cost paid by the server and decoding is the cost paid by a client; the
+ * size of each representation is printed when the trial starts.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseFormatBenchmark {
+
+    /**
+     * Number of bookmarks on a page, the default maximum page size.
+     */
+    private static final int PAGE_SIZE = 100;
+    /**
+     * The representation.
+     */
+    @Param({"json", "cbor", "smile"})
+    private String format;
+    /**
+     * Whether the representation is compressed.
+     */
+    @Param({"false", "true"})
+    private boolean gzip;
+    /**
+     * Writer of pages of bookmarks.
+     */
+    private ObjectWriter writer;
+    /**
+     * Reader of pages of bookmarks.
+     */
+    private ObjectReader reader;
+    /**
+     * The page to encode.
+     */
+    private List<Bookmark> page;
+    /**
+     * The encoded page.
+     */
+    private byte[] encoded;
+
+    /**
+     * Initialization of the mapper and data.
+     *
+     * @throws IOException if the page can not be encoded.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = Jackson.newObjectMapper(factory(format));
+        writer = mapper.writerFor(new TypeReference<List<Bookmark>>() {
+        });
+        reader = mapper.readerFor(new TypeReference<List<Bookmark>>() {
+        });
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 1; i <= PAGE_SIZE; i++) {
+            Bookmark bookmark = new Bookmark(
+                    "https://github.com/javaeeeee/DropBookmarks/issues/" + i,
+                    "Issue " + i + " of the repository of this project");
+            bookmark.setId(i);
+            bookmark.setTags(Arrays.asList("java", "dropwizard"));
+            page.add(bookmark);
+        }
+        encoded = encode();
+        System.out.printf("%n%s%s: %d bytes per %d bookmarks%n",
+                format, gzip ? "+gzip" : "", encoded.length, PAGE_SIZE);
+    }
+
+    /**
+     * Encoding of a page of bookmarks.
+     *
+     * @return the encoded page.
+     * @throws IOException if the page can not be encoded.
+     */
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : bytes) {
+            writer.writeValue(out, page);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decoding of a page of bookmarks.
+     *
+     * @return the page.
+     * @throws IOException if the page can not be decoded.
+     */
+    @Benchmark
+    public List<Bookmark> decode() throws IOException {
+        InputStream bytes = new ByteArrayInputStream(encoded);
+        try (InputStream in = gzip ? new GZIPInputStream(bytes) : bytes) {
+            return reader.readValue(in);
+        }
+    }
+
+    /**
+     * Method returns the factory of parsers and generators of a format.
+     *
+     * @param format the name of the format.
+     * @return the factory.
+     */
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
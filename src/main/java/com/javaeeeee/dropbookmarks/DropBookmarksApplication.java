@@ -23,25 +23,73 @@
  */
 package com.javaeeeee.dropbookmarks;
 
+import com.javaeeeee.dropbookmarks.auth.CachingBasicAuthenticator;
+import com.javaeeeee.dropbookmarks.auth.ClientAddressFilter;
 import com.javaeeeee.dropbookmarks.auth.DBAuthenticator;
+import com.javaeeeee.dropbookmarks.auth.HashingExecutor;
+import com.javaeeeee.dropbookmarks.auth.PasswordHasher;
+import com.javaeeeee.dropbookmarks.auth.TokenAuthenticator;
+import com.javaeeeee.dropbookmarks.cli.RebalanceShardsCommand;
+import com.javaeeeee.dropbookmarks.core.AccessToken;
 import com.javaeeeee.dropbookmarks.core.Bookmark;
 import com.javaeeeee.dropbookmarks.core.User;
 import com.javaeeeee.dropbookmarks.db.BookmarkDAO;
+import com.javaeeeee.dropbookmarks.db.BookmarkIndex;
+import com.javaeeeee.dropbookmarks.db.CacheMetrics;
+import com.javaeeeee.dropbookmarks.db.ConnectionPoolHealthCheck;
+import com.javaeeeee.dropbookmarks.db.DatabaseProfile;
+import com.javaeeeee.dropbookmarks.db.InstrumentedDataSource;
+import com.javaeeeee.dropbookmarks.db.InstrumentedDataSourceFactory;
+import com.javaeeeee.dropbookmarks.db.ReplicatedDataSourceFactory;
+import com.javaeeeee.dropbookmarks.db.ShardedDataSourceFactory;
+import com.javaeeeee.dropbookmarks.db.TagDAO;
+import com.javaeeeee.dropbookmarks.db.TagIndex;
+import com.javaeeeee.dropbookmarks.db.UnitOfWorkExecutor;
 import com.javaeeeee.dropbookmarks.db.UserDAO;
+import com.javaeeeee.dropbookmarks.db.VirtualThreads;
+import com.javaeeeee.dropbookmarks.metrics.HdrHistogramMetricRegistry;
 import com.javaeeeee.dropbookmarks.resources.BookmarksResource;
+import com.javaeeeee.dropbookmarks.resources.JacksonBinaryProvider;
+import com.javaeeeee.dropbookmarks.resources.RateLimitFeature;
+import com.javaeeeee.dropbookmarks.resources.ShardBindingListener;
+import com.javaeeeee.dropbookmarks.resources.TokenResource;
+import com.javaeeeee.dropbookmarks.tasks.ReindexBookmarksTask;
 import io.dropwizard.Application;
 import io.dropwizard.auth.AuthDynamicFeature;
+import io.dropwizard.auth.AuthFilter;
 import io.dropwizard.auth.AuthValueFactoryProvider;
 import io.dropwizard.auth.Authorizer;
 import io.dropwizard.auth.basic.BasicCredentialAuthFilter;
+import io.dropwizard.auth.chained.ChainedAuthFilter;
+import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.PooledDataSourceFactory;
 import io.dropwizard.hibernate.HibernateBundle;
-import io.dropwizard.hibernate.UnitOfWorkAwareProxyFactory;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
 import io.dropwizard.migrations.MigrationsBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.dropwizard.DropwizardExports;
+import io.prometheus.client.exporter.MetricsServlet;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.DispatcherType;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Dropwizard Application class.
@@ -51,6 +99,29 @@ import org.hibernate.SessionFactory;
 public class DropBookmarksApplication
         extends Application<DropBookmarksConfiguration> {
 
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(DropBookmarksApplication.class);
+    /**
+     * Authentication realm.
+     */
+    private static final String REALM = "SECURITY REALM";
+    /**
+     * Length of a randomly generated token key in bytes.
+     */
+    private static final int TOKEN_SECRET_LENGTH = 32;
+    /**
+     * Hibernate property to enable the second-level cache.
+     */
+    private static final String USE_SECOND_LEVEL_CACHE
+            = "hibernate.cache.use_second_level_cache";
+    /**
+     * The path of metrics in Prometheus format on the admin port.
+     */
+    public static final String PROMETHEUS_PATH = "/prometheus";
+
     /**
      * Create Hibernate bundle.
      */
@@ -59,9 +130,39 @@ public class DropBookmarksApplication
                     User.class,
                     Bookmark.class) {
         @Override
-        public DataSourceFactory getDataSourceFactory(
+        public PooledDataSourceFactory getDataSourceFactory(
                 DropBookmarksConfiguration configuration) {
-            return configuration.getDataSourceFactory();
+            // Tune connections of every database for its driver.
+            final DatabaseProfile profile = configuration.getDatabaseProfile();
+            profile.applyTo(configuration.getDataSourceFactory());
+            configuration.getReplicas().forEach(profile::applyTo);
+            configuration.getShards().forEach(profile::applyTo);
+            // Read-only work goes to replicas, if there are any.
+            PooledDataSourceFactory factory
+                    = configuration.getDataSourceFactory();
+            if (!configuration.getReplicas().isEmpty()) {
+                factory = new ReplicatedDataSourceFactory(factory,
+                        configuration.getReplicas(),
+                        configuration.getMaxReplicaLag(),
+                        configuration.getReplicaLagCheckInterval());
+            }
+            // Work of a user goes to the shard of the user.
+            if (!configuration.getShards().isEmpty()) {
+                factory = new ShardedDataSourceFactory(factory,
+                        configuration.getShards(),
+                        configuration.getShardDirectoryCachePolicy());
+            }
+            // Measure how long units of work wait for connections.
+            return new InstrumentedDataSourceFactory(factory);
+        }
+
+        @Override
+        protected void configure(Configuration configuration) {
+            // The second-level cache is used only if it is enabled
+            // explicitly in the configuration file.
+            if (configuration.getProperty(USE_SECOND_LEVEL_CACHE) == null) {
+                configuration.setProperty(USE_SECOND_LEVEL_CACHE, "false");
+            }
         }
     };
 
@@ -93,10 +194,18 @@ public class DropBookmarksApplication
     @Override
     public void initialize(
             final Bootstrap<DropBookmarksConfiguration> bootstrap) {
+        /**
+         * Record all values of timers to report precise tail latencies.
+         */
+        bootstrap.setMetricRegistry(new HdrHistogramMetricRegistry());
         /**
          * Adding Hibernate bundle.
          */
         bootstrap.addBundle(hibernateBundle);
+        /**
+         * Adding the command to move users between shards.
+         */
+        bootstrap.addCommand(new RebalanceShardsCommand());
         /**
          * Adding migrations bundle.
          */
@@ -114,40 +223,214 @@ public class DropBookmarksApplication
     public void run(final DropBookmarksConfiguration configuration,
             final Environment environment) {
         // Create DAOs.
-        final UserDAO userDAO
-                = new UserDAO(hibernateBundle.getSessionFactory());
-        final BookmarkDAO bookmarkDAO
-                = new BookmarkDAO(hibernateBundle.getSessionFactory());
+        final UserDAO userDAO = new UserDAO(
+                hibernateBundle.getSessionFactory(), environment.metrics());
+        final BookmarkIndex bookmarkIndex = new BookmarkIndex(
+                configuration.getIndexCachePolicy());
+        final TagIndex tagIndex = new TagIndex(
+                configuration.getIndexCachePolicy());
+        final TagDAO tagDAO = new TagDAO(
+                hibernateBundle.getSessionFactory(), environment.metrics(),
+                tagIndex);
+        final BookmarkDAO bookmarkDAO = new BookmarkDAO(
+                hibernateBundle.getSessionFactory(), environment.metrics(),
+                bookmarkIndex, tagDAO);
+        // Full-text and tag indexes are filled from the database on demand;
+        // the task allows to drop them if tables are changed behind their
+        // back.
+        environment.admin().addTask(
+                new ReindexBookmarksTask(bookmarkIndex, tagIndex));
+        // Report the pool unhealthy while connections are hard to get;
+        // Hibernate hands out the data source built by the bundle.
+        environment.healthChecks().register("database-pool",
+                new ConnectionPoolHealthCheck(
+                        getDataSource(hibernateBundle.getSessionFactory()),
+                        configuration.getMaxConnectionWait()
+                        .toMilliseconds()));
+        // Report second-level cache statistics; Dropwizard enables them.
+        if (hibernateBundle.getSessionFactory()
+                .getStatistics().isStatisticsEnabled()) {
+            CacheMetrics.register(environment.metrics(),
+                    hibernateBundle.getSessionFactory());
+        }
+
+        // Expose all metrics in Prometheus format on the admin port.
+        final CollectorRegistry collectorRegistry = new CollectorRegistry();
+        collectorRegistry.register(
+                new DropwizardExports(environment.metrics()));
+        environment.admin()
+                .addServlet("prometheus", new MetricsServlet(collectorRegistry))
+                .addMapping(PROMETHEUS_PATH);
+
+        // Check passwords on a bounded pool, so that a burst of logins
+        // doesn't occupy all the threads of the server with hashing; limits
+        // per client need the address of the client.
+        final int passwordHashThreads
+                = configuration.getPasswordHashThreads() == null
+                ? Runtime.getRuntime().availableProcessors()
+                : configuration.getPasswordHashThreads();
+        final HashingExecutor hashingExecutor = new HashingExecutor(
+                environment.lifecycle()
+                .executorService("password-hash-%d")
+                .minThreads(passwordHashThreads)
+                .maxThreads(passwordHashThreads)
+                .workQueue(new ArrayBlockingQueue<>(
+                        configuration.getPasswordHashQueueSize()))
+                .build(),
+                configuration.getMaxPasswordChecksPerUser(),
+                configuration.getMaxPasswordChecksPerAddress(),
+                configuration.getPasswordHashTimeout().toMilliseconds(),
+                TimeUnit.MILLISECONDS,
+                environment.metrics());
+        environment.servlets()
+                .addFilter("client-address", new ClientAddressFilter())
+                .addMappingForUrlPatterns(
+                        EnumSet.of(DispatcherType.REQUEST), true, "/*");
 
         // Create an authenticator which is using the backing database
         // to check credentials.
-        final DBAuthenticator authenticator
-                = new UnitOfWorkAwareProxyFactory(hibernateBundle)
-                .create(DBAuthenticator.class,
-                        new Class<?>[]{UserDAO.class, SessionFactory.class},
-                        new Object[]{userDAO,
-                            hibernateBundle.getSessionFactory()});
-
-        // Register authenticator.
-        environment.jersey().register(new AuthDynamicFeature(
+        final DBAuthenticator authenticator = new DBAuthenticator(userDAO,
+                hibernateBundle.getSessionFactory(),
+                new PasswordHasher(configuration.getPasswordHashIterations()),
+                hashingExecutor, environment.metrics());
+        // Cache successful authentications to avoid a database query and
+        // a password digest on every request.
+        final CachingBasicAuthenticator cachingAuthenticator
+                = new CachingBasicAuthenticator(environment.metrics(),
+                        authenticator,
+                        configuration.getAuthenticationCachePolicy());
+
+        // Create an authenticator for bearer tokens which doesn't need
+        // the database.
+        final TokenAuthenticator tokenAuthenticator = new TokenAuthenticator(
+                getTokenSecret(configuration),
+                Duration.ofMillis(configuration.getTokenTtl()
+                        .toMilliseconds()));
+        final Authorizer<User> authorizer = (principal, role) -> true;
+
+        // Register authenticators; either Basic credentials or a bearer
+        // token are accepted.
+        final List<AuthFilter> filters = Arrays.asList(
                 new BasicCredentialAuthFilter.Builder<User>()
-                .setAuthenticator(authenticator)
-                .setAuthorizer(new Authorizer<User>() {
-                    @Override
-                    public boolean authorize(User principal, String role) {
-                        return true;
-                    }
-                })
-                .setRealm("SECURITY REALM")
-                .buildAuthFilter()));
+                .setAuthenticator(cachingAuthenticator)
+                .setAuthorizer(authorizer)
+                .setRealm(REALM)
+                .buildAuthFilter(),
+                new OAuthCredentialAuthFilter.Builder<User>()
+                .setAuthenticator(tokenAuthenticator)
+                .setAuthorizer(authorizer)
+                .setPrefix(AccessToken.BEARER)
+                .setRealm(REALM)
+                .buildAuthFilter());
+        environment.jersey().register(new AuthDynamicFeature(
+                new ChainedAuthFilter<>(filters)));
         environment.jersey().register(RolesAllowedDynamicFeature.class);
+        // Limit the rate of requests of every user after authentication.
+        environment.jersey().register(new RateLimitFeature(
+                configuration.getRateLimits(), environment.metrics()));
         //Necessary if @Auth is used to inject a custom Principal
         // type into your resource
         environment.jersey().register(
                 new AuthValueFactoryProvider.Binder<>(User.class));
 
+        // Register the resource to obtain tokens.
+        environment.jersey().register(
+                new TokenResource(tokenAuthenticator, REALM));
+        // Binary representations of resources for clients which ask for
+        // them; JSON is produced by Dropwizard's own provider.
+        environment.jersey().register(JacksonBinaryProvider.cbor());
+        environment.jersey().register(JacksonBinaryProvider.smile());
+        // Read and write bookmarks off the threads of the server, so that a
+        // slow database doesn't occupy all of them.
+        final int databaseThreads = configuration.getDatabaseThreads() == null
+                ? configuration.getDataSourceFactory().getMaxSize()
+                : configuration.getDatabaseThreads();
+        final UnitOfWorkExecutor unitOfWorkExecutor = new UnitOfWorkExecutor(
+                hibernateBundle.getSessionFactory(),
+                createDatabaseExecutor(configuration, environment,
+                        databaseThreads),
+                databaseThreads,
+                configuration.getDatabaseTimeout().toMilliseconds(),
+                TimeUnit.MILLISECONDS,
+                environment.metrics());
+        // Use the shard of the authenticated user in units of work.
+        if (!configuration.getShards().isEmpty()) {
+            environment.jersey().register(new ShardBindingListener());
+        }
         // Register the Bookmark Resource.
-        environment.jersey().register(new BookmarksResource(bookmarkDAO));
+        environment.jersey().register(new BookmarksResource(bookmarkDAO,
+                unitOfWorkExecutor,
+                configuration.getMaxPageSize(),
+                configuration.getImportBatchSize(),
+                configuration.getMaxBookmarksPerUser()));
+    }
+
+    /**
+     * Method creates the threads which read and write bookmarks: a virtual
+     * thread per request if configured and the JVM has them, otherwise a
+     * bounded pool.
+     *
+     * @param configuration application configuration.
+     * @param environment application environment.
+     * @param databaseThreads the number of threads of the pool.
+     * @return the managed executor.
+     */
+    private static ExecutorService createDatabaseExecutor(
+            final DropBookmarksConfiguration configuration,
+            final Environment environment,
+            final int databaseThreads) {
+        if (configuration.isVirtualThreads()) {
+            final Optional<ExecutorService> virtual
+                    = VirtualThreads.newThreadPerTaskExecutor();
+            if (virtual.isPresent()) {
+                environment.lifecycle().manage(new ExecutorServiceManager(
+                        virtual.get(), configuration.getDatabaseTimeout(),
+                        "database"));
+                return virtual.get();
+            }
+            LOGGER.warn("Virtual threads aren't available in Java {}, "
+                    + "reading bookmarks on a pool of {} threads.",
+                    System.getProperty("java.version"), databaseThreads);
+        }
+        return environment.lifecycle()
+                .executorService("database-%d")
+                .minThreads(databaseThreads)
+                .maxThreads(databaseThreads)
+                .workQueue(new ArrayBlockingQueue<>(
+                        configuration.getDatabaseQueueSize()))
+                .build();
+    }
+
+    /**
+     * Method finds the measuring data source of a session factory.
+     *
+     * @param sessionFactory the session factory.
+     * @return the data source.
+     */
+    private static InstrumentedDataSource getDataSource(
+            final SessionFactory sessionFactory) {
+        return ((SessionFactoryImplementor) sessionFactory)
+                .getServiceRegistry()
+                .getService(ConnectionProvider.class)
+                .unwrap(InstrumentedDataSource.class);
+    }
+
+    /**
+     * Method obtains the key to sign bearer tokens from the configuration or
+     * generates a random one.
+     *
+     * @param configuration application configuration.
+     * @return the key.
+     */
+    private static byte[] getTokenSecret(
+            final DropBookmarksConfiguration configuration) {
+        if (configuration.getTokenSecret() != null) {
+            return configuration.getTokenSecret()
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        final byte[] secret = new byte[TOKEN_SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        return secret;
     }
 
 }
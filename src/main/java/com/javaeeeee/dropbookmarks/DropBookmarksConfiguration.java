@@ -24,9 +24,21 @@
  */
 package com.javaeeeee.dropbookmarks;
 
+import com.javaeeeee.dropbookmarks.auth.PasswordHasher;
+import com.javaeeeee.dropbookmarks.db.BookmarkIndex;
+import com.javaeeeee.dropbookmarks.db.DatabaseProfile;
+import com.javaeeeee.dropbookmarks.resources.BookmarksResource;
+import com.javaeeeee.dropbookmarks.resources.RateLimit;
+import com.javaeeeee.dropbookmarks.resources.RateLimited;
 import io.dropwizard.Configuration;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.CacheBuilderSpec;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.util.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import javax.validation.Valid;
 import org.hibernate.validator.constraints.*;
 import javax.validation.constraints.*;
@@ -44,6 +56,149 @@ public class DropBookmarksConfiguration extends Configuration {
     @Valid
     @NotNull
     private DataSourceFactory dataSourceFactory = new DataSourceFactory();
+    /**
+     * Tuning of connections for the driver of the database, its replicas
+     * and shards.
+     */
+    @NotNull
+    private DatabaseProfile databaseProfile = DatabaseProfile.NONE;
+    /**
+     * The greatest healthy 99th percentile of waits for a connection.
+     */
+    @NotNull
+    private Duration maxConnectionWait = Duration.milliseconds(100);
+    /**
+     * Maximum number of bookmarks returned on one page.
+     */
+    @Min(1)
+    private int maxPageSize = BookmarksResource.DEFAULT_MAX_PAGE_SIZE;
+    /**
+     * Number of bookmarks inserted at once during import.
+     */
+    @Min(1)
+    private int importBatchSize = BookmarksResource.DEFAULT_BATCH_SIZE;
+    /**
+     * Maximum number of bookmarks of a user; no quota if not set.
+     */
+    @Min(1)
+    private Integer maxBookmarksPerUser;
+    /**
+     * Limits of requests of a user per class of requests; classes without a
+     * limit are not limited.
+     */
+    @Valid
+    @NotNull
+    private Map<RateLimited.Kind, RateLimit> rateLimits
+            = new EnumMap<>(RateLimited.Kind.class);
+    /**
+     * Size and expiration policy of the authentication cache.
+     */
+    @NotNull
+    private CacheBuilderSpec authenticationCachePolicy = CacheBuilderSpec
+            .parse("maximumSize=10000, expireAfterWrite=10m");
+    /**
+     * Number of users whose full-text and tag indexes are kept in memory and
+     * for how long.
+     */
+    @NotNull
+    private CacheBuilderSpec indexCachePolicy = CacheBuilderSpec
+            .parse(BookmarkIndex.DEFAULT_CACHE_POLICY);
+    /**
+     * The key used to sign bearer tokens; a random one is generated on start
+     * if not set, so tokens don't survive restarts.
+     */
+    private String tokenSecret;
+    /**
+     * For how long bearer tokens are valid.
+     */
+    @NotNull
+    private Duration tokenTtl = Duration.hours(1);
+    /**
+     * Number of threads reading and writing bookmarks asynchronously; the
+     * maximum size of the connection pool if not set.
+     */
+    @Min(1)
+    private Integer databaseThreads;
+    /**
+     * Number of requests which may wait for a database thread before
+     * further requests are rejected.
+     */
+    @Min(1)
+    private int databaseQueueSize = 1000;
+    /**
+     * For how long a request may wait for a database thread.
+     */
+    @NotNull
+    private Duration databaseTimeout = Duration.seconds(5);
+    /**
+     * Whether reads and writes of bookmarks run on virtual threads, if the
+     * JVM has them, with as many at once as there are database threads.
+     */
+    private boolean virtualThreads = false;
+    /**
+     * Read replicas of the database.
+     */
+    @Valid
+    @NotNull
+    private List<DataSourceFactory> replicas = new ArrayList<>();
+    /**
+     * The greatest lag of a replica which may be read from.
+     */
+    @NotNull
+    private Duration maxReplicaLag = Duration.seconds(5);
+    /**
+     * How often the lag of replicas is measured.
+     */
+    @NotNull
+    private Duration replicaLagCheckInterval = Duration.seconds(1);
+    /**
+     * Databases which keep bookmarks of some users in addition to the main
+     * one.
+     */
+    @Valid
+    @NotNull
+    private List<DataSourceFactory> shards = new ArrayList<>();
+    /**
+     * Size of the cache of the directory of shards.
+     */
+    @NotNull
+    private CacheBuilderSpec shardDirectoryCachePolicy = CacheBuilderSpec
+            .parse("maximumSize=100000");
+    /**
+     * Number of threads hashing passwords; the number of processors if not
+     * set.
+     */
+    @Min(1)
+    private Integer passwordHashThreads;
+    /**
+     * Number of password checks which may wait for a thread before logins
+     * are rejected.
+     */
+    @Min(1)
+    private int passwordHashQueueSize = 100;
+    /**
+     * For how long a login may wait for its password to be checked.
+     */
+    @NotNull
+    private Duration passwordHashTimeout = Duration.seconds(5);
+    /**
+     * The number of PBKDF2 iterations of new password hashes; weaker hashes
+     * are replaced on login.
+     */
+    @Min(1)
+    private int passwordHashIterations = PasswordHasher.DEFAULT_ITERATIONS;
+    /**
+     * Number of password checks of the same username which may be in
+     * progress at once.
+     */
+    @Min(1)
+    private int maxPasswordChecksPerUser = 4;
+    /**
+     * Number of password checks from the same client address which may be
+     * in progress at once.
+     */
+    @Min(1)
+    private int maxPasswordChecksPerAddress = 16;
 
     /**
      * Obtain database connection parameters from the configuration file.
@@ -55,4 +210,516 @@ public class DropBookmarksConfiguration extends Configuration {
         return dataSourceFactory;
     }
 
+    /**
+     * Obtain the tuning of connections for the database driver.
+     *
+     * @return the profile.
+     */
+    @JsonProperty
+    public DatabaseProfile getDatabaseProfile() {
+        return databaseProfile;
+    }
+
+    /**
+     * Set the tuning of connections for the database driver.
+     *
+     * @param databaseProfile the profile.
+     */
+    @JsonProperty
+    public void setDatabaseProfile(DatabaseProfile databaseProfile) {
+        this.databaseProfile = databaseProfile;
+    }
+
+    /**
+     * Obtain the greatest healthy 99th percentile of waits for a connection.
+     *
+     * @return the threshold of the health check of the pool.
+     */
+    @JsonProperty
+    public Duration getMaxConnectionWait() {
+        return maxConnectionWait;
+    }
+
+    /**
+     * Set the greatest healthy 99th percentile of waits for a connection.
+     *
+     * @param maxConnectionWait the threshold of the health check of the
+     * pool.
+     */
+    @JsonProperty
+    public void setMaxConnectionWait(Duration maxConnectionWait) {
+        this.maxConnectionWait = maxConnectionWait;
+    }
+
+    /**
+     * Obtain maximum page size for bookmark lists.
+     *
+     * @return maximum number of bookmarks returned on one page.
+     */
+    @JsonProperty
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Set maximum page size for bookmark lists.
+     *
+     * @param maxPageSize maximum number of bookmarks returned on one page.
+     */
+    @JsonProperty
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Obtain the number of bookmarks inserted at once during import.
+     *
+     * @return import batch size.
+     */
+    @JsonProperty
+    public int getImportBatchSize() {
+        return importBatchSize;
+    }
+
+    /**
+     * Set the number of bookmarks inserted at once during import.
+     *
+     * @param importBatchSize import batch size.
+     */
+    @JsonProperty
+    public void setImportBatchSize(int importBatchSize) {
+        this.importBatchSize = importBatchSize;
+    }
+
+    /**
+     * Obtain the maximum number of bookmarks of a user.
+     *
+     * @return the quota or null if there is no quota.
+     */
+    @JsonProperty
+    public Integer getMaxBookmarksPerUser() {
+        return maxBookmarksPerUser;
+    }
+
+    /**
+     * Set the maximum number of bookmarks of a user.
+     *
+     * @param maxBookmarksPerUser the quota or null for no quota.
+     */
+    @JsonProperty
+    public void setMaxBookmarksPerUser(Integer maxBookmarksPerUser) {
+        this.maxBookmarksPerUser = maxBookmarksPerUser;
+    }
+
+    /**
+     * Obtain limits of requests of a user per class of requests.
+     *
+     * @return the limits.
+     */
+    @JsonProperty
+    public Map<RateLimited.Kind, RateLimit> getRateLimits() {
+        return rateLimits;
+    }
+
+    /**
+     * Set limits of requests of a user per class of requests.
+     *
+     * @param rateLimits the limits.
+     */
+    @JsonProperty
+    public void setRateLimits(Map<RateLimited.Kind, RateLimit> rateLimits) {
+        this.rateLimits = rateLimits;
+    }
+
+    /**
+     * Obtain the policy of the authentication cache.
+     *
+     * @return the size and expiration policy of the cache.
+     */
+    @JsonProperty
+    public CacheBuilderSpec getAuthenticationCachePolicy() {
+        return authenticationCachePolicy;
+    }
+
+    /**
+     * Set the policy of the authentication cache.
+     *
+     * @param authenticationCachePolicy the size and expiration policy of the
+     * cache.
+     */
+    @JsonProperty
+    public void setAuthenticationCachePolicy(
+            CacheBuilderSpec authenticationCachePolicy) {
+        this.authenticationCachePolicy = authenticationCachePolicy;
+    }
+
+    /**
+     * Obtain the policy of the in-memory search indexes.
+     *
+     * @return the size and expiration policy of the indexes.
+     */
+    @JsonProperty
+    public CacheBuilderSpec getIndexCachePolicy() {
+        return indexCachePolicy;
+    }
+
+    /**
+     * Set the policy of the in-memory search indexes.
+     *
+     * @param indexCachePolicy the size and expiration policy of the indexes.
+     */
+    @JsonProperty
+    public void setIndexCachePolicy(CacheBuilderSpec indexCachePolicy) {
+        this.indexCachePolicy = indexCachePolicy;
+    }
+
+    /**
+     * Obtain the key used to sign bearer tokens.
+     *
+     * @return the key or null if it is not configured.
+     */
+    @JsonProperty
+    public String getTokenSecret() {
+        return tokenSecret;
+    }
+
+    /**
+     * Set the key used to sign bearer tokens.
+     *
+     * @param tokenSecret the key.
+     */
+    @JsonProperty
+    public void setTokenSecret(String tokenSecret) {
+        this.tokenSecret = tokenSecret;
+    }
+
+    /**
+     * Obtain the lifetime of bearer tokens.
+     *
+     * @return for how long tokens are valid.
+     */
+    @JsonProperty
+    public Duration getTokenTtl() {
+        return tokenTtl;
+    }
+
+    /**
+     * Set the lifetime of bearer tokens.
+     *
+     * @param tokenTtl for how long tokens are valid.
+     */
+    @JsonProperty
+    public void setTokenTtl(Duration tokenTtl) {
+        this.tokenTtl = tokenTtl;
+    }
+
+    /**
+     * Obtain the number of threads reading and writing bookmarks.
+     *
+     * @return the number of threads or null if it is not configured.
+     */
+    @JsonProperty
+    public Integer getDatabaseThreads() {
+        return databaseThreads;
+    }
+
+    /**
+     * Set the number of threads reading and writing bookmarks.
+     *
+     * @param databaseThreads the number of threads.
+     */
+    @JsonProperty
+    public void setDatabaseThreads(Integer databaseThreads) {
+        this.databaseThreads = databaseThreads;
+    }
+
+    /**
+     * Obtain the number of requests which may wait for a thread.
+     *
+     * @return the capacity of the queue of requests.
+     */
+    @JsonProperty
+    public int getDatabaseQueueSize() {
+        return databaseQueueSize;
+    }
+
+    /**
+     * Set the number of requests which may wait for a thread.
+     *
+     * @param databaseQueueSize the capacity of the queue of requests.
+     */
+    @JsonProperty
+    public void setDatabaseQueueSize(int databaseQueueSize) {
+        this.databaseQueueSize = databaseQueueSize;
+    }
+
+    /**
+     * Obtain for how long a request may wait for a thread.
+     *
+     * @return the timeout of requests.
+     */
+    @JsonProperty
+    public Duration getDatabaseTimeout() {
+        return databaseTimeout;
+    }
+
+    /**
+     * Set for how long a request may wait for a thread.
+     *
+     * @param databaseTimeout the timeout of requests.
+     */
+    @JsonProperty
+    public void setDatabaseTimeout(Duration databaseTimeout) {
+        this.databaseTimeout = databaseTimeout;
+    }
+
+    /**
+     * Obtain whether bookmarks are read and written on virtual threads.
+     *
+     * @return true if virtual threads are used when the JVM has them.
+     */
+    @JsonProperty
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Set whether bookmarks are read and written on virtual threads.
+     *
+     * @param virtualThreads true to use virtual threads when the JVM has
+     * them.
+     */
+    @JsonProperty
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Obtain connection parameters of read replicas of the database.
+     *
+     * @return the replicas, empty if all reads go to the database.
+     */
+    @JsonProperty
+    public List<DataSourceFactory> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Set connection parameters of read replicas of the database.
+     *
+     * @param replicas the replicas.
+     */
+    @JsonProperty
+    public void setReplicas(List<DataSourceFactory> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Obtain the greatest lag of a replica which may be read from.
+     *
+     * @return the lag.
+     */
+    @JsonProperty
+    public Duration getMaxReplicaLag() {
+        return maxReplicaLag;
+    }
+
+    /**
+     * Set the greatest lag of a replica which may be read from.
+     *
+     * @param maxReplicaLag the lag.
+     */
+    @JsonProperty
+    public void setMaxReplicaLag(Duration maxReplicaLag) {
+        this.maxReplicaLag = maxReplicaLag;
+    }
+
+    /**
+     * Obtain how often the lag of replicas is measured.
+     *
+     * @return the interval between measurements.
+     */
+    @JsonProperty
+    public Duration getReplicaLagCheckInterval() {
+        return replicaLagCheckInterval;
+    }
+
+    /**
+     * Set how often the lag of replicas is measured.
+     *
+     * @param replicaLagCheckInterval the interval between measurements.
+     */
+    @JsonProperty
+    public void setReplicaLagCheckInterval(Duration replicaLagCheckInterval) {
+        this.replicaLagCheckInterval = replicaLagCheckInterval;
+    }
+
+    /**
+     * Obtain connection parameters of shards other than the main database.
+     *
+     * @return the shards, empty if all bookmarks are in the main database.
+     */
+    @JsonProperty
+    public List<DataSourceFactory> getShards() {
+        return shards;
+    }
+
+    /**
+     * Set connection parameters of shards other than the main database.
+     *
+     * @param shards the shards.
+     */
+    @JsonProperty
+    public void setShards(List<DataSourceFactory> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Obtain the size of the cache of the directory of shards.
+     *
+     * @return the cache policy.
+     */
+    @JsonProperty
+    public CacheBuilderSpec getShardDirectoryCachePolicy() {
+        return shardDirectoryCachePolicy;
+    }
+
+    /**
+     * Set the size of the cache of the directory of shards.
+     *
+     * @param shardDirectoryCachePolicy the cache policy.
+     */
+    @JsonProperty
+    public void setShardDirectoryCachePolicy(
+            CacheBuilderSpec shardDirectoryCachePolicy) {
+        this.shardDirectoryCachePolicy = shardDirectoryCachePolicy;
+    }
+
+    /**
+     * Obtain the number of threads hashing passwords.
+     *
+     * @return the number of threads or null if it is not configured.
+     */
+    @JsonProperty
+    public Integer getPasswordHashThreads() {
+        return passwordHashThreads;
+    }
+
+    /**
+     * Set the number of threads hashing passwords.
+     *
+     * @param passwordHashThreads the number of threads.
+     */
+    @JsonProperty
+    public void setPasswordHashThreads(Integer passwordHashThreads) {
+        this.passwordHashThreads = passwordHashThreads;
+    }
+
+    /**
+     * Obtain the number of password checks which may wait for a thread.
+     *
+     * @return the capacity of the queue of password checks.
+     */
+    @JsonProperty
+    public int getPasswordHashQueueSize() {
+        return passwordHashQueueSize;
+    }
+
+    /**
+     * Set the number of password checks which may wait for a thread.
+     *
+     * @param passwordHashQueueSize the capacity of the queue of
+     * password checks.
+     */
+    @JsonProperty
+    public void setPasswordHashQueueSize(int passwordHashQueueSize) {
+        this.passwordHashQueueSize = passwordHashQueueSize;
+    }
+
+    /**
+     * Obtain for how long a login may wait for its password to be
+     * checked.
+     *
+     * @return the timeout of password checks.
+     */
+    @JsonProperty
+    public Duration getPasswordHashTimeout() {
+        return passwordHashTimeout;
+    }
+
+    /**
+     * Set for how long a login may wait for its password to be checked.
+     *
+     * @param passwordHashTimeout the timeout of password checks.
+     */
+    @JsonProperty
+    public void setPasswordHashTimeout(Duration passwordHashTimeout) {
+        this.passwordHashTimeout = passwordHashTimeout;
+    }
+
+    /**
+     * Obtain the number of PBKDF2 iterations of new password hashes.
+     *
+     * @return the number of iterations.
+     */
+    @JsonProperty
+    public int getPasswordHashIterations() {
+        return passwordHashIterations;
+    }
+
+    /**
+     * Set the number of PBKDF2 iterations of new password hashes.
+     *
+     * @param passwordHashIterations the number of iterations.
+     */
+    @JsonProperty
+    public void setPasswordHashIterations(int passwordHashIterations) {
+        this.passwordHashIterations = passwordHashIterations;
+    }
+
+    /**
+     * Obtain the number of password checks of the same username which
+     * may be in progress at once.
+     *
+     * @return the limit per username.
+     */
+    @JsonProperty
+    public int getMaxPasswordChecksPerUser() {
+        return maxPasswordChecksPerUser;
+    }
+
+    /**
+     * Set the number of password checks of the same username which may
+     * be in progress at once.
+     *
+     * @param maxPasswordChecksPerUser the limit per username.
+     */
+    @JsonProperty
+    public void setMaxPasswordChecksPerUser(int maxPasswordChecksPerUser) {
+        this.maxPasswordChecksPerUser = maxPasswordChecksPerUser;
+    }
+
+    /**
+     * Obtain the number of password checks from the same client address
+     * which may be in progress at once.
+     *
+     * @return the limit per client address.
+     */
+    @JsonProperty
+    public int getMaxPasswordChecksPerAddress() {
+        return maxPasswordChecksPerAddress;
+    }
+
+    /**
+     * Set the number of password checks from the same client address
+     * which may be in progress at once.
+     *
+     * @param maxPasswordChecksPerAddress the limit per client address.
+     */
+    @JsonProperty
+    public void setMaxPasswordChecksPerAddress(
+            int maxPasswordChecksPerAddress) {
+        this.maxPasswordChecksPerAddress = maxPasswordChecksPerAddress;
+    }
+
 }
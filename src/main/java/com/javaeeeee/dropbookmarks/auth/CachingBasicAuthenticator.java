@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.google.common.cache.CacheBuilderSpec;
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.CachingAuthenticator;
+import io.dropwizard.auth.basic.BasicCredentials;
+import java.security.SecureRandom;
+import java.util.Optional;
+
+/**
+ * Authenticator which caches successful authentication results so that
+ * repeated requests with the same credentials neither query the database nor
+ * compute the password digest. Cache keys are salted hashes of credentials.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class CachingBasicAuthenticator
+        implements Authenticator<BasicCredentials, User> {
+
+    /**
+     * Length of the random salt in bytes.
+     */
+    private static final int SALT_LENGTH = 16;
+    /**
+     * A random salt generated once per application start.
+     */
+    private final byte[] salt = new byte[SALT_LENGTH];
+    /**
+     * Dropwizard authenticator which does the caching.
+     */
+    private final CachingAuthenticator<HashedCredentials, User> cache;
+
+    /**
+     * A constructor to wrap an authenticator.
+     *
+     * @param metrics registry to report cache metrics to.
+     * @param underlying the authenticator which checks credentials.
+     * @param cacheSpec the size and expiration policy of the cache.
+     */
+    public CachingBasicAuthenticator(final MetricRegistry metrics,
+            final Authenticator<BasicCredentials, User> underlying,
+            final CacheBuilderSpec cacheSpec) {
+        new SecureRandom().nextBytes(salt);
+        this.cache = new CachingAuthenticator<>(metrics,
+                new Unhashing(underlying),
+                cacheSpec);
+        metrics.register(MetricRegistry.name(getClass(), "cache-hits"),
+                (Gauge<Long>) () -> cache.stats().hitCount());
+        metrics.register(MetricRegistry.name(getClass(), "cache-misses"),
+                (Gauge<Long>) () -> cache.stats().missCount());
+        metrics.register(MetricRegistry.name(getClass(), "cache-size"),
+                (Gauge<Long>) cache::size);
+        metrics.register(MetricRegistry.name(getClass(), "cache-hit-ratio"),
+                new RatioGauge() {
+            @Override
+            protected RatioGauge.Ratio getRatio() {
+                return RatioGauge.Ratio.of(cache.stats().hitCount(),
+                        cache.stats().requestCount());
+            }
+        });
+    }
+
+    /**
+     * Method returns a cached user or checks credentials if there is none.
+     *
+     * @param credentials username and password.
+     * @return An Optional containing the user characterized by credentials or
+     * an empty optional otherwise.
+     * @throws AuthenticationException in the case of authentication problems.
+     */
+    @Override
+    public Optional<User> authenticate(BasicCredentials credentials)
+            throws AuthenticationException {
+        final HashedCredentials key = new HashedCredentials(credentials, salt);
+        try {
+            return cache.authenticate(key);
+        } finally {
+            key.clearPassword();
+        }
+    }
+
+    /**
+     * Method removes all cached results for a user, e.g. if the password was
+     * changed.
+     *
+     * @param username the name of the user.
+     */
+    public void invalidate(final String username) {
+        cache.invalidateAll(key -> key.getUsername().equals(username));
+    }
+
+    /**
+     * Method removes all cached results.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Adapter which passes original credentials to the underlying
+     * authenticator on cache misses.
+     */
+    private static class Unhashing
+            implements Authenticator<HashedCredentials, User> {
+
+        /**
+         * The authenticator which checks credentials.
+         */
+        private final Authenticator<BasicCredentials, User> underlying;
+
+        /**
+         * A constructor to wrap an authenticator.
+         *
+         * @param underlying the authenticator which checks credentials.
+         */
+        Unhashing(Authenticator<BasicCredentials, User> underlying) {
+            this.underlying = underlying;
+        }
+
+        @Override
+        public Optional<User> authenticate(HashedCredentials credentials)
+                throws AuthenticationException {
+            return underlying.authenticate(credentials.toBasicCredentials());
+        }
+    }
+
+}
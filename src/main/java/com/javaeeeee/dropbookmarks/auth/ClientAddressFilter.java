@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import java.io.IOException;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Servlet filter which makes the address of the client available to the
+ * code handling the request on the same thread, such as authenticators,
+ * which are given nothing but credentials.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ClientAddressFilter implements Filter {
+
+    /**
+     * The address of the client whose request the current thread handles.
+     */
+    private static final ThreadLocal<String> ADDRESS = new ThreadLocal<>();
+
+    /**
+     * Method returns the address of the client whose request the current
+     * thread handles.
+     *
+     * @return the address or null outside of a request.
+     */
+    public static String current() {
+        return ADDRESS.get();
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    /**
+     * Method binds the address of the client to the current thread for the
+     * time the request is handled.
+     *
+     * @param request the request.
+     * @param response the response.
+     * @param chain the rest of the chain.
+     * @throws IOException if the rest of the chain fails to do I/O.
+     * @throws ServletException if the rest of the chain fails.
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+            FilterChain chain) throws IOException, ServletException {
+        final String previous = ADDRESS.get();
+        ADDRESS.set(request.getRemoteAddr());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (previous == null) {
+                ADDRESS.remove();
+            } else {
+                ADDRESS.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
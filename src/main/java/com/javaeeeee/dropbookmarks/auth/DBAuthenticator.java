@@ -23,26 +23,49 @@
  */
 package com.javaeeeee.dropbookmarks.auth;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.javaeeeee.dropbookmarks.core.User;
+import com.javaeeeee.dropbookmarks.db.RoutingDataSource;
 import com.javaeeeee.dropbookmarks.db.UserDAO;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.auth.basic.BasicCredentials;
-import io.dropwizard.hibernate.UnitOfWork;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.hibernate.CacheMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import org.hibernate.context.internal.ManagedSessionContext;
-import org.jasypt.util.password.BasicPasswordEncryptor;
-import org.jasypt.util.password.PasswordEncryptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Class for authenticating users using backing database.
+ * Class for authenticating users using backing database. Passwords are
+ * checked on a bounded hashing executor rather than by the request thread
+ * itself, and hashes weaker than configured are replaced on login.
  *
  * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
  */
 public class DBAuthenticator implements Authenticator<BasicCredentials, User> {
 
+    /**
+     * Error message returned if passwords can't be checked because too many
+     * of them are being checked.
+     */
+    public static final String AUTHENTICATION_OVERLOADED
+            = "Too many logins, try again later";
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(DBAuthenticator.class);
     /**
      * Reference to User DAO to check whether the user with credentials
      * specified exists in the application's backing database.
@@ -54,10 +77,17 @@ public class DBAuthenticator implements Authenticator<BasicCredentials, User> {
      */
     private final SessionFactory sessionFactory;
     /**
-     * A helper class for password encryption; Thread-safe.
+     * A helper class for password hashing; Thread-safe.
      */
-    private final PasswordEncryptor passwordEncryptor
-            = new BasicPasswordEncryptor();
+    private final PasswordHasher passwordHasher;
+    /**
+     * Threads which check and rehash passwords.
+     */
+    private final HashingExecutor hashingExecutor;
+    /**
+     * Timer of password checks.
+     */
+    private final Timer checkPasswordTimer;
 
     /**
      * A constructor to initialize DAO.
@@ -69,12 +99,58 @@ public class DBAuthenticator implements Authenticator<BasicCredentials, User> {
      */
     public DBAuthenticator(final UserDAO userDAO,
             final SessionFactory sessionFactory) {
+        this(userDAO, sessionFactory, new MetricRegistry());
+    }
+
+    /**
+     * A constructor to initialize DAO and report the duration of password
+     * checks. Passwords are checked by the calling thread without limits.
+     *
+     * @param userDAO The DAO for the User object necessary to look for users by
+     * their credentials.
+     * @param sessionFactory Hibernate session factory; temporary solution as
+     * database authentication doesn't work as described in documentation.
+     * @param metrics the registry to create the password check timer in.
+     */
+    public DBAuthenticator(final UserDAO userDAO,
+            final SessionFactory sessionFactory,
+            final MetricRegistry metrics) {
+        this(userDAO, sessionFactory, new PasswordHasher(),
+                new HashingExecutor(MoreExecutors.newDirectExecutorService(),
+                        Integer.MAX_VALUE, Integer.MAX_VALUE,
+                        Long.MAX_VALUE, TimeUnit.NANOSECONDS, metrics),
+                metrics);
+    }
+
+    /**
+     * A constructor to initialize DAO and check passwords on a hashing
+     * executor.
+     *
+     * @param userDAO The DAO for the User object necessary to look for users by
+     * their credentials.
+     * @param sessionFactory Hibernate session factory; temporary solution as
+     * database authentication doesn't work as described in documentation.
+     * @param passwordHasher the hasher of passwords.
+     * @param hashingExecutor threads which check and rehash passwords.
+     * @param metrics the registry to create the password check timer in.
+     */
+    public DBAuthenticator(final UserDAO userDAO,
+            final SessionFactory sessionFactory,
+            final PasswordHasher passwordHasher,
+            final HashingExecutor hashingExecutor,
+            final MetricRegistry metrics) {
         this.userDAO = userDAO;
         this.sessionFactory = sessionFactory;
+        this.passwordHasher = passwordHasher;
+        this.hashingExecutor = hashingExecutor;
+        this.checkPasswordTimer = metrics.timer(
+                MetricRegistry.name(DBAuthenticator.class, "checkPassword"));
     }
 
     /**
-     * Implementation of the authenticate method.
+     * Implementation of the authenticate method. The session is closed
+     * before the password is checked, so no connection is held while the
+     * password is hashed.
      *
      * @param credentials An instance of the BasicCredentials class containing
      * username and password.
@@ -82,8 +158,9 @@ public class DBAuthenticator implements Authenticator<BasicCredentials, User> {
      * an empty optional otherwise.
      * @throws AuthenticationException throws an exception in the case of
      * authentication problems.
+     * @throws WebApplicationException with status 503 if there are too many
+     * password checks in progress.
      */
-    @UnitOfWork
     @Override
     public final Optional<User> authenticate(BasicCredentials credentials)
             throws AuthenticationException {
@@ -92,20 +169,22 @@ public class DBAuthenticator implements Authenticator<BasicCredentials, User> {
         try {
             ManagedSessionContext.bind(session);
 
-            result = userDAO.findByUsername(credentials.getUsername());
-
-            if (!result.isPresent()) {
-                return result;
-            } else               {
-                if (passwordEncryptor.checkPassword(
-                        credentials.getPassword(),
-                        result.get().getPassword())) {
-                    return result;
-                } else {
-                    return Optional.empty();
+            result = RoutingDataSource.readOnly(() -> {
+                // Beginning the transaction takes the connection; a user
+                // read from a lagging replica isn't put into the caches.
+                final Transaction tx = session.beginTransaction();
+                try {
+                    session.setCacheMode(RoutingDataSource.isReadingReplica()
+                            ? CacheMode.GET : CacheMode.NORMAL);
+                    final Optional<User> user = userDAO
+                            .findByUsername(credentials.getUsername());
+                    tx.commit();
+                    return user;
+                } catch (RuntimeException e) {
+                    tx.rollback();
+                    throw e;
                 }
-            }
-
+            });
         } catch (Exception e) {
             throw new AuthenticationException(e);
         } finally {
@@ -113,6 +192,107 @@ public class DBAuthenticator implements Authenticator<BasicCredentials, User> {
             session.close();
         }
 
+        if (!result.isPresent()) {
+            return result;
+        }
+        final User user = result.get();
+        final String digest = user.getPassword();
+        try {
+            if (!checkPassword(credentials.getUsername(),
+                    credentials.getPassword(), digest)) {
+                return Optional.empty();
+            }
+        } catch (RejectedExecutionException e) {
+            throw overloaded();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationException(e);
+        }
+        if (passwordHasher.needsRehash(digest)) {
+            rehash(user.getId(), credentials.getPassword(), digest);
+        }
+        return result;
+    }
+
+    /**
+     * Method checks a password against the stored digest on the hashing
+     * executor.
+     *
+     * @param username the user whose password is checked.
+     * @param password the password provided by a client.
+     * @param digest the digest stored in the database.
+     * @return true if the password matches.
+     * @throws RejectedExecutionException if there are too many checks in
+     * progress.
+     * @throws InterruptedException if the thread was interrupted while
+     * waiting for the check.
+     */
+    private boolean checkPassword(String username, String password,
+            String digest) throws InterruptedException {
+        try (Timer.Context context = checkPasswordTimer.time()) {
+            return hashingExecutor.call(username,
+                    () -> passwordHasher.check(password, digest));
+        }
+    }
+
+    /**
+     * Method replaces a weak digest with a new hash of the password in the
+     * background. The digest is kept if the executor is busy; it is replaced
+     * on one of the following logins then.
+     *
+     * @param userId the id of the user.
+     * @param password the password which matches the digest.
+     * @param digest the digest stored in the database.
+     */
+    private void rehash(int userId, String password, String digest) {
+        hashingExecutor.execute(() -> {
+            try {
+                final String hash = passwordHasher.hash(password);
+                inTransaction(() -> userDAO.updatePassword(
+                        userId, digest, hash));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to rehash the password of user {}",
+                        userId, e);
+            }
+        });
+    }
+
+    /**
+     * Method runs database work in a new session and transaction.
+     *
+     * @param work the work to do.
+     */
+    private void inTransaction(Runnable work) {
+        final Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            final Transaction tx = session.beginTransaction();
+            try {
+                work.run();
+                tx.commit();
+            } catch (RuntimeException e) {
+                tx.rollback();
+                throw e;
+            }
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    /**
+     * Method creates the exception to tell a client to retry later when
+     * passwords can't be checked fast enough.
+     *
+     * @return the exception.
+     */
+    private WebApplicationException overloaded() {
+        final long retryAfter = Math.max(1,
+                hashingExecutor.getTimeout(TimeUnit.SECONDS));
+        return new WebApplicationException(AUTHENTICATION_OVERLOADED,
+                Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                .build());
     }
 
 }
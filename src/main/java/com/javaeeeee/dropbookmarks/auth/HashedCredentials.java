@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.dropwizard.auth.basic.BasicCredentials;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Basic credentials identified by a salted hash instead of the password. Used
+ * as a key of the authentication cache, so that cached entries do not keep
+ * plain text passwords. The password itself is kept only until it is cleared
+ * after the authentication attempt.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public final class HashedCredentials {
+
+    /**
+     * Username.
+     */
+    private final String username;
+    /**
+     * Salted hash of the username and password.
+     */
+    private final HashCode hash;
+    /**
+     * The password; null after it has been cleared.
+     */
+    private volatile String password;
+
+    /**
+     * A constructor to hash credentials.
+     *
+     * @param credentials username and password.
+     * @param salt a random salt.
+     */
+    public HashedCredentials(final BasicCredentials credentials,
+            final byte[] salt) {
+        this.username = credentials.getUsername();
+        this.password = credentials.getPassword();
+        this.hash = Hashing.sha256()
+                .newHasher()
+                .putBytes(salt)
+                .putString(username, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(password, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Method restores original credentials to check them.
+     *
+     * @return username and password.
+     * @throws IllegalStateException if the password has been cleared.
+     */
+    public BasicCredentials toBasicCredentials() {
+        final String current = password;
+        if (current == null) {
+            throw new IllegalStateException("Password has been cleared.");
+        }
+        return new BasicCredentials(username, current);
+    }
+
+    /**
+     * Method forgets the password, only the hash is retained.
+     */
+    public void clearPassword() {
+        password = null;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final HashedCredentials other = (HashedCredentials) obj;
+        return Objects.equals(this.username, other.username)
+                && Objects.equals(this.hash, other.hash);
+    }
+
+    @Override
+    public String toString() {
+        return "HashedCredentials{" + "username=" + username + '}';
+    }
+
+}
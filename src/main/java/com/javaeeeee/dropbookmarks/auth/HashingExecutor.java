@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Executor which hashes passwords off request threads. The executor should
+ * have about as many threads as there are processors and a bounded queue,
+ * so a burst of logins makes requests wait for a bounded time or be
+ * rejected rather than occupy all the threads of the server with digest
+ * work. The number of checks waiting or running at once is also limited per
+ * username and per client address, so that a single attacker can't take the
+ * whole queue.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class HashingExecutor {
+
+    /**
+     * Threads which hash passwords.
+     */
+    private final ExecutorService executor;
+    /**
+     * How many checks of the same username may be done at once.
+     */
+    private final int maxPerUsername;
+    /**
+     * How many checks from the same client address may be done at once.
+     */
+    private final int maxPerAddress;
+    /**
+     * For how long a check may wait for the result.
+     */
+    private final long timeoutNanos;
+    /**
+     * The number of checks in progress per username.
+     */
+    private final ConcurrentMap<String, Integer> usernames
+            = new ConcurrentHashMap<>();
+    /**
+     * The number of checks in progress per client address.
+     */
+    private final ConcurrentMap<String, Integer> addresses
+            = new ConcurrentHashMap<>();
+    /**
+     * Timer of hashing.
+     */
+    private final Timer hashTimer;
+    /**
+     * Timer of the time work spends in the queue.
+     */
+    private final Timer waitTimer;
+    /**
+     * Meter of work rejected because the queue was full.
+     */
+    private final Meter rejectedMeter;
+    /**
+     * Meter of checks rejected because of the limits per username or
+     * address.
+     */
+    private final Meter limitedMeter;
+    /**
+     * Meter of checks not done within the timeout.
+     */
+    private final Meter expiredMeter;
+
+    /**
+     * Constructor to create the executor.
+     *
+     * @param executor threads which hash passwords; queue depth and the
+     * number of active threads are reported for a ThreadPoolExecutor.
+     * @param maxPerUsername how many checks of the same username may be done
+     * at once.
+     * @param maxPerAddress how many checks from the same client address may
+     * be done at once.
+     * @param timeout for how long a check may wait for the result.
+     * @param unit the unit of the timeout.
+     * @param metrics the registry to report metrics to.
+     */
+    public HashingExecutor(ExecutorService executor, int maxPerUsername,
+            int maxPerAddress, long timeout, TimeUnit unit,
+            MetricRegistry metrics) {
+        this.executor = executor;
+        this.maxPerUsername = maxPerUsername;
+        this.maxPerAddress = maxPerAddress;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.hashTimer = metrics.timer(
+                MetricRegistry.name(HashingExecutor.class, "hash"));
+        this.waitTimer = metrics.timer(
+                MetricRegistry.name(HashingExecutor.class, "wait"));
+        this.rejectedMeter = metrics.meter(
+                MetricRegistry.name(HashingExecutor.class, "rejected"));
+        this.limitedMeter = metrics.meter(
+                MetricRegistry.name(HashingExecutor.class, "limited"));
+        this.expiredMeter = metrics.meter(
+                MetricRegistry.name(HashingExecutor.class, "expired"));
+        if (executor instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.register(
+                    MetricRegistry.name(HashingExecutor.class, "queued"),
+                    (Gauge<Integer>) () -> pool.getQueue().size());
+            metrics.register(
+                    MetricRegistry.name(HashingExecutor.class, "active"),
+                    (Gauge<Integer>) pool::getActiveCount);
+        }
+    }
+
+    /**
+     * Getter for the timeout.
+     *
+     * @param unit the unit to express the timeout in.
+     * @return for how long a check may wait for the result.
+     */
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method hashes on the executor on behalf of a user and the client of
+     * the current request and waits for the result.
+     *
+     * @param <T> the type of the result.
+     * @param username the user whose password is hashed.
+     * @param work the hashing to do.
+     * @return the result of the work.
+     * @throws RejectedExecutionException if the user or the client has too
+     * many checks in progress, the queue is full or the work isn't done
+     * within the timeout.
+     * @throws InterruptedException if the thread was interrupted while
+     * waiting.
+     */
+    public <T> T call(String username, Supplier<T> work)
+            throws InterruptedException {
+        final String address = ClientAddressFilter.current();
+        if (!acquire(usernames, username, maxPerUsername)) {
+            limitedMeter.mark();
+            throw new RejectedExecutionException(
+                    "Too many password checks of " + username);
+        }
+        try {
+            if (address != null
+                    && !acquire(addresses, address, maxPerAddress)) {
+                limitedMeter.mark();
+                throw new RejectedExecutionException(
+                        "Too many password checks from " + address);
+            }
+            try {
+                return await(submit(work));
+            } finally {
+                if (address != null) {
+                    release(addresses, address);
+                }
+            }
+        } finally {
+            release(usernames, username);
+        }
+    }
+
+    /**
+     * Method hashes on the executor without waiting for the result; the
+     * work is dropped if the queue is full.
+     *
+     * @param work the hashing to do.
+     * @return true if the work was queued.
+     */
+    public boolean execute(Runnable work) {
+        try {
+            submit(() -> {
+                work.run();
+                return null;
+            });
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Method queues work reporting the time it waits and runs.
+     *
+     * @param <T> the type of the result.
+     * @param work the hashing to do.
+     * @return the future result of the work.
+     * @throws RejectedExecutionException if the queue is full.
+     */
+    private <T> Future<T> submit(Supplier<T> work) {
+        final long submitted = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                waitTimer.update(System.nanoTime() - submitted,
+                        TimeUnit.NANOSECONDS);
+                try (Timer.Context context = hashTimer.time()) {
+                    return work.get();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectedMeter.mark();
+            throw ex;
+        }
+    }
+
+    /**
+     * Method waits for the result of work for the timeout and cancels the
+     * work if it isn't done by then.
+     *
+     * @param <T> the type of the result.
+     * @param future the future result of the work.
+     * @return the result of the work.
+     * @throws RejectedExecutionException if the work isn't done within the
+     * timeout.
+     * @throws InterruptedException if the thread was interrupted.
+     */
+    private <T> T await(Future<T> future) throws InterruptedException {
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            future.cancel(true);
+            expiredMeter.mark();
+            throw new RejectedExecutionException(
+                    "Password check timed out", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Method takes one of the slots of a key unless all are taken.
+     *
+     * @param counts the number of slots taken per key.
+     * @param key the key.
+     * @param max the number of slots per key.
+     * @return true if a slot was taken.
+     */
+    private static boolean acquire(ConcurrentMap<String, Integer> counts,
+            String key, int max) {
+        final boolean[] acquired = new boolean[1];
+        counts.compute(key, (k, count) -> {
+            final int taken = count == null ? 0 : count;
+            if (taken >= max) {
+                return count;
+            }
+            acquired[0] = true;
+            return taken + 1;
+        });
+        return acquired[0];
+    }
+
+    /**
+     * Method returns a slot of a key; keys without taken slots are removed.
+     *
+     * @param counts the number of slots taken per key.
+     * @param key the key.
+     */
+    private static void release(ConcurrentMap<String, Integer> counts,
+            String key) {
+        counts.computeIfPresent(key,
+                (k, count) -> count == 1 ? null : count - 1);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.jasypt.util.password.BasicPasswordEncryptor;
+import org.jasypt.util.password.PasswordEncryptor;
+
+/**
+ * Class which hashes passwords with PBKDF2 and a configured number of
+ * iterations. Hashes are stored as
+ * {@code $pbkdf2-sha256$iterations$salt$hash} with Base64 salt and hash, so
+ * the cost of each hash is known when it is checked. Digests produced by
+ * Jasypt's BasicPasswordEncryptor before are still accepted; they and hashes
+ * with fewer iterations than configured should be replaced on login.
+ * Thread-safe.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class PasswordHasher {
+
+    /**
+     * Default number of iterations.
+     */
+    public static final int DEFAULT_ITERATIONS = 100000;
+    /**
+     * The key derivation algorithm.
+     */
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    /**
+     * Prefix of PBKDF2 hashes.
+     */
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    /**
+     * Length of the salt in bytes.
+     */
+    private static final int SALT_LENGTH = 16;
+    /**
+     * Length of the hash in bits.
+     */
+    private static final int HASH_LENGTH = 256;
+    /**
+     * The number of iterations of new hashes.
+     */
+    private final int iterations;
+    /**
+     * Source of salts.
+     */
+    private final SecureRandom random = new SecureRandom();
+    /**
+     * Checker of digests stored before PBKDF2 was used; Thread-safe.
+     */
+    private final PasswordEncryptor legacyEncryptor
+            = new BasicPasswordEncryptor();
+
+    /**
+     * A constructor to create the hasher with the default cost.
+     */
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * A constructor to create the hasher.
+     *
+     * @param iterations the number of iterations of new hashes.
+     * @throws IllegalArgumentException if iterations are not positive.
+     */
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException(
+                    "Iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Method hashes a password with a random salt.
+     *
+     * @param password the password.
+     * @return the hash to store.
+     */
+    public String hash(String password) {
+        final byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        final Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + iterations
+                + '$' + encoder.encodeToString(salt)
+                + '$' + encoder.encodeToString(
+                        derive(password, salt, iterations));
+    }
+
+    /**
+     * Method checks a password against a stored hash or legacy digest.
+     *
+     * @param password the password provided by a client.
+     * @param stored the hash stored in the database.
+     * @return true if the password matches, false otherwise or if the stored
+     * hash is malformed.
+     */
+    public boolean check(String password, String stored) {
+        if (!stored.startsWith(PREFIX)) {
+            return legacyEncryptor.checkPassword(password, stored);
+        }
+        final String[] parts = stored.substring(PREFIX.length())
+                .split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            final Base64.Decoder decoder = Base64.getDecoder();
+            final byte[] expected = decoder.decode(parts[2]);
+            return MessageDigest.isEqual(expected, derive(password,
+                    decoder.decode(parts[1]), Integer.parseInt(parts[0])));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Method tells whether a stored hash is weaker than new hashes, so it
+     * should be replaced once the password is known.
+     *
+     * @param stored the hash stored in the database.
+     * @return true if the hash is a legacy digest or has fewer iterations
+     * than configured.
+     */
+    public boolean needsRehash(String stored) {
+        if (!stored.startsWith(PREFIX)) {
+            return true;
+        }
+        final int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(
+                    stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Method derives the hash of a password.
+     *
+     * @param password the password.
+     * @param salt the salt.
+     * @param cost the number of iterations.
+     * @return the hash.
+     * @throws IllegalArgumentException if the cost is not positive.
+     */
+    private static byte[] derive(String password, byte[] salt, int cost) {
+        final PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt,
+                cost, HASH_LENGTH);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM)
+                    .generateSecret(spec)
+                    .getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Class for issuing and checking self-contained bearer tokens. A token
+ * contains the id and the name of a user together with expiration time and is
+ * signed with HMAC, so it can be checked without accessing the database.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TokenAuthenticator implements Authenticator<String, User> {
+
+    /**
+     * The algorithm used to sign tokens.
+     */
+    private static final String ALGORITHM = "HmacSHA256";
+    /**
+     * Separates payload from signature in the token.
+     */
+    private static final char SIGNATURE_SEPARATOR = '.';
+    /**
+     * Separates fields of the payload.
+     */
+    private static final String FIELD_SEPARATOR = ":";
+    /**
+     * Encoder for token parts.
+     */
+    private static final Base64.Encoder ENCODER
+            = Base64.getUrlEncoder().withoutPadding();
+    /**
+     * Decoder for token parts.
+     */
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * The key used to sign tokens.
+     */
+    private final SecretKeySpec key;
+    /**
+     * For how long tokens are valid.
+     */
+    private final Duration ttl;
+    /**
+     * Source of the current time.
+     */
+    private final Clock clock;
+
+    /**
+     * A constructor to initialize the key and the lifetime of tokens.
+     *
+     * @param secret the key used to sign tokens.
+     * @param ttl for how long tokens are valid.
+     */
+    public TokenAuthenticator(final byte[] secret, final Duration ttl) {
+        this(secret, ttl, Clock.systemUTC());
+    }
+
+    /**
+     * A constructor to initialize the key, the lifetime of tokens and the
+     * clock.
+     *
+     * @param secret the key used to sign tokens.
+     * @param ttl for how long tokens are valid.
+     * @param clock source of the current time.
+     */
+    public TokenAuthenticator(final byte[] secret, final Duration ttl,
+            final Clock clock) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Getter for the lifetime of tokens.
+     *
+     * @return for how long tokens are valid.
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Method issues a token for an authenticated user.
+     *
+     * @param user the user.
+     * @return signed token.
+     */
+    public String issue(final User user) {
+        final long expires = clock.instant().plus(ttl).getEpochSecond();
+        final String payload = ENCODER.encodeToString(
+                (user.getId() + FIELD_SEPARATOR + expires + FIELD_SEPARATOR
+                + user.getUsername()).getBytes(StandardCharsets.UTF_8));
+        return payload + SIGNATURE_SEPARATOR
+                + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * Method checks the signature and expiration time of a token.
+     *
+     * @param token the token.
+     * @return An Optional containing the user the token was issued to or an
+     * empty optional if the token is invalid or expired.
+     * @throws AuthenticationException never; declared by the interface.
+     */
+    @Override
+    public Optional<User> authenticate(final String token)
+            throws AuthenticationException {
+        final int separator = token.lastIndexOf(SIGNATURE_SEPARATOR);
+        if (separator < 0) {
+            return Optional.empty();
+        }
+        final String payload = token.substring(0, separator);
+        try {
+            final byte[] signature
+                    = DECODER.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+            final String[] fields = new String(DECODER.decode(payload),
+                    StandardCharsets.UTF_8).split(FIELD_SEPARATOR, 3);
+            if (fields.length != 3
+                    || Long.parseLong(fields[1])
+                    <= clock.instant().getEpochSecond()) {
+                return Optional.empty();
+            }
+            final User user = new User(fields[2], null);
+            user.setId(Integer.valueOf(fields[0]));
+            return Optional.of(user);
+        } catch (IllegalArgumentException ex) {
+            // Malformed Base64 or numbers.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Method calculates the signature of the payload.
+     *
+     * @param payload the encoded payload.
+     * @return the signature.
+     */
+    private byte[] sign(final String payload) {
+        try {
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
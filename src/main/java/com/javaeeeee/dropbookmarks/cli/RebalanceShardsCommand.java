@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.cli;
+
+import com.codahale.metrics.MetricRegistry;
+import com.javaeeeee.dropbookmarks.DropBookmarksConfiguration;
+import com.javaeeeee.dropbookmarks.db.ConsistentHashRing;
+import com.javaeeeee.dropbookmarks.db.ShardMover;
+import io.dropwizard.cli.ConfiguredCommand;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.setup.Bootstrap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+/**
+ * Command which moves bookmarks of users to the shards given by consistent
+ * hashing of their ids, e.g. after a shard is added. It should be run while
+ * the application is stopped, as running instances cache the directory of
+ * shards.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class RebalanceShardsCommand
+        extends ConfiguredCommand<DropBookmarksConfiguration> {
+
+    /**
+     * The argument to print moves without doing them.
+     */
+    private static final String DRY_RUN = "dryRun";
+    /**
+     * The argument to move a single user.
+     */
+    private static final String USER = "user";
+
+    /**
+     * Constructor.
+     */
+    public RebalanceShardsCommand() {
+        super("rebalance-shards",
+                "Moves bookmarks of users to their shards.");
+    }
+
+    /**
+     * Method adds arguments of the command.
+     *
+     * @param subparser the parser of the arguments.
+     */
+    @Override
+    public void configure(Subparser subparser) {
+        super.configure(subparser);
+        subparser.addArgument("--dry-run")
+                .dest(DRY_RUN)
+                .action(Arguments.storeTrue())
+                .help("print the moves without doing them");
+        subparser.addArgument("--user")
+                .dest(USER)
+                .type(Integer.class)
+                .help("move only the user with this id");
+    }
+
+    /**
+     * Method moves every user whose shard in the directory differs from the
+     * one given by consistent hashing. Bookmarks of users left on shards
+     * the directory doesn't point to, e.g. by an interrupted move, are
+     * removed.
+     *
+     * @param bootstrap the bootstrap of the application.
+     * @param namespace the arguments.
+     * @param configuration the configuration of the application.
+     * @throws Exception if a shard can't be read or written.
+     */
+    @Override
+    protected void run(Bootstrap<DropBookmarksConfiguration> bootstrap,
+            Namespace namespace, DropBookmarksConfiguration configuration)
+            throws Exception {
+        final List<DataSourceFactory> factories = new ArrayList<>();
+        factories.add(configuration.getDataSourceFactory());
+        factories.addAll(configuration.getShards());
+        final MetricRegistry metrics = new MetricRegistry();
+        final List<ManagedDataSource> shards = new ArrayList<>();
+        for (int i = 0; i < factories.size(); i++) {
+            final ManagedDataSource shard
+                    = factories.get(i).build(metrics, "shard-" + i);
+            shard.start();
+            shards.add(shard);
+        }
+        try {
+            final ShardMover mover = new ShardMover(shards);
+            final ConsistentHashRing ring
+                    = new ConsistentHashRing(shards.size());
+            final boolean dryRun = namespace.getBoolean(DRY_RUN);
+            final Integer user = namespace.getInt(USER);
+            final List<Integer> userIds = user == null
+                    ? mover.findUserIds() : Collections.singletonList(user);
+            int movedUsers = 0;
+            for (int userId : userIds) {
+                final int from = mover.findShard(userId);
+                final int to = ring.shardOf(userId);
+                if (dryRun) {
+                    final int leftovers = mover.countLeftovers(userId, from);
+                    if (leftovers > 0) {
+                        System.out.printf("User %d would have %d bookmarks "
+                                + "removed from shards other than %d.%n",
+                                userId, leftovers, from);
+                    }
+                } else {
+                    final int leftovers = mover.removeLeftovers(userId, from);
+                    if (leftovers > 0) {
+                        System.out.printf("User %d had %d bookmarks removed "
+                                + "from shards other than %d.%n",
+                                userId, leftovers, from);
+                    }
+                }
+                if (from == to) {
+                    continue;
+                }
+                if (dryRun) {
+                    System.out.printf("User %d would move from shard %d "
+                            + "to %d.%n", userId, from, to);
+                } else {
+                    final int bookmarks = mover.move(userId, from, to);
+                    System.out.printf("User %d moved from shard %d to %d "
+                            + "with %d bookmarks.%n",
+                            userId, from, to, bookmarks);
+                }
+                movedUsers++;
+            }
+            System.out.printf("%d of %d users %s.%n", movedUsers,
+                    userIds.size(), dryRun ? "would be moved" : "moved");
+        } finally {
+            for (ManagedDataSource shard : shards) {
+                shard.stop();
+            }
+        }
+    }
+}
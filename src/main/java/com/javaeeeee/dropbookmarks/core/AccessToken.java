@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Objects;
+
+/**
+ * A bearer token issued to an authenticated user.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class AccessToken {
+
+    /**
+     * The type of tokens issued by the application.
+     */
+    public static final String BEARER = "Bearer";
+
+    /**
+     * The token itself.
+     */
+    private final String token;
+    /**
+     * The type of the token.
+     */
+    private final String tokenType;
+    /**
+     * The number of seconds the token is valid for.
+     */
+    private final long expiresIn;
+
+    /**
+     * A constructor to create tokens.
+     *
+     * @param token the token itself.
+     * @param tokenType the type of the token.
+     * @param expiresIn the number of seconds the token is valid for.
+     */
+    @JsonCreator
+    public AccessToken(@JsonProperty("token") String token,
+            @JsonProperty("tokenType") String tokenType,
+            @JsonProperty("expiresIn") long expiresIn) {
+        this.token = token;
+        this.tokenType = tokenType;
+        this.expiresIn = expiresIn;
+    }
+
+    @JsonProperty
+    public String getToken() {
+        return token;
+    }
+
+    @JsonProperty
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    @JsonProperty
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.token,
+                this.tokenType,
+                this.expiresIn);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final AccessToken other = (AccessToken) obj;
+        return this.expiresIn == other.expiresIn
+                && Objects.equals(this.token, other.token)
+                && Objects.equals(this.tokenType, other.tokenType);
+    }
+
+    @Override
+    public String toString() {
+        return "AccessToken{" + "tokenType=" + tokenType
+                + ", expiresIn=" + expiresIn + '}';
+    }
+
+}
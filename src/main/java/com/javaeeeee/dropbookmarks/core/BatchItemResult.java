@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The outcome of processing one item of a bulk request.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class BatchItemResult {
+
+    /**
+     * Possible outcomes.
+     */
+    public enum Status {
+        /**
+         * The bookmark was saved.
+         */
+        CREATED,
+        /**
+         * The bookmark was rejected because it is not valid.
+         */
+        INVALID,
+        /**
+         * The bookmark was modified.
+         */
+        UPDATED,
+        /**
+         * The bookmark was deleted.
+         */
+        DELETED,
+        /**
+         * The user has no bookmark with the id.
+         */
+        NOT_FOUND
+    }
+
+    /**
+     * Zero-based position of the item in the request.
+     */
+    private final int index;
+    /**
+     * The outcome.
+     */
+    private final Status status;
+    /**
+     * The id of the bookmark, if it was saved.
+     */
+    private final Integer id;
+    /**
+     * Reasons why the item was rejected.
+     */
+    private final List<String> errors;
+
+    /**
+     * A constructor to create results.
+     *
+     * @param index zero-based position of the item in the request.
+     * @param status the outcome.
+     * @param id the id of the bookmark or null.
+     * @param errors reasons why the item was rejected.
+     */
+    @JsonCreator
+    public BatchItemResult(@JsonProperty("index") int index,
+            @JsonProperty("status") Status status,
+            @JsonProperty("id") Integer id,
+            @JsonProperty("errors") List<String> errors) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.errors = errors == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Method creates the result for a saved bookmark.
+     *
+     * @param index zero-based position of the item in the request.
+     * @param id the id of the saved bookmark.
+     * @return the result.
+     */
+    public static BatchItemResult created(int index, Integer id) {
+        return new BatchItemResult(index, Status.CREATED, id, null);
+    }
+
+    /**
+     * Method creates the result for a rejected bookmark.
+     *
+     * @param index zero-based position of the item in the request.
+     * @param errors reasons why the item was rejected.
+     * @return the result.
+     */
+    public static BatchItemResult invalid(int index, List<String> errors) {
+        return new BatchItemResult(index, Status.INVALID, null, errors);
+    }
+
+    /**
+     * Method creates the result for a modified bookmark.
+     *
+     * @param index zero-based position of the id in the request.
+     * @param id the id of the bookmark.
+     * @return the result.
+     */
+    public static BatchItemResult updated(int index, Integer id) {
+        return new BatchItemResult(index, Status.UPDATED, id, null);
+    }
+
+    /**
+     * Method creates the result for a deleted bookmark.
+     *
+     * @param index zero-based position of the id in the request.
+     * @param id the id of the bookmark.
+     * @return the result.
+     */
+    public static BatchItemResult deleted(int index, Integer id) {
+        return new BatchItemResult(index, Status.DELETED, id, null);
+    }
+
+    /**
+     * Method creates the result for an id of a bookmark which the user
+     * doesn't have.
+     *
+     * @param index zero-based position of the id in the request.
+     * @param id the id.
+     * @return the result.
+     */
+    public static BatchItemResult notFound(int index, Integer id) {
+        return new BatchItemResult(index, Status.NOT_FOUND, id, null);
+    }
+
+    @JsonProperty
+    public int getIndex() {
+        return index;
+    }
+
+    @JsonProperty
+    public Status getStatus() {
+        return status;
+    }
+
+    @JsonProperty
+    public Integer getId() {
+        return id;
+    }
+
+    @JsonProperty
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.index,
+                this.status,
+                this.id,
+                this.errors);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final BatchItemResult other = (BatchItemResult) obj;
+        return this.index == other.index
+                && Objects.equals(this.status, other.status)
+                && Objects.equals(this.id, other.id)
+                && Objects.equals(this.errors, other.errors);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchItemResult{" + "index=" + index + ", status=" + status
+                + ", id=" + id + ", errors=" + errors + '}';
+    }
+
+}
@@ -24,21 +24,49 @@
 package com.javaeeeee.dropbookmarks.core;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import java.io.Serializable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Version;
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
 
 /**
  *
@@ -47,6 +75,8 @@ import javax.xml.bind.annotation.XmlRootElement;
 @Entity
 @Table(name = "bookmarks")
 @XmlRootElement
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NamedQueries({
     @NamedQuery(name = "Bookmark.findAll",
             query = "SELECT b FROM Bookmark b"),
@@ -59,14 +89,80 @@ import javax.xml.bind.annotation.XmlRootElement;
             + "WHERE b.description = :description"),
     @NamedQuery(name = "Bookmark.findByUserId",
             query = "SELECT b FROM Bookmark b WHERE b.user.id = :id"),
+    @NamedQuery(name = "Bookmark.findByUserIdAfterId",
+            query = "SELECT b FROM Bookmark b WHERE b.user.id = :userId "
+            + "AND b.id > :afterId ORDER BY b.id",
+            hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = "Bookmark.findTextByUserId",
+            query = "SELECT b.id, b.url, b.description FROM Bookmark b "
+            + "WHERE b.user.id = :id"),
+    @NamedQuery(name = "Bookmark.findByIdsAndUserId",
+            query = "SELECT DISTINCT b FROM Bookmark b "
+            + "LEFT JOIN FETCH b.tags WHERE b.id IN (:ids) "
+            + "AND b.user.id = :userId ORDER BY b.id"),
+    @NamedQuery(name = "Bookmark.findRowsByUserId",
+            query = "SELECT b.id, b.url, b.description, t "
+            + "FROM Bookmark b LEFT JOIN b.tags t "
+            + "WHERE b.user.id = :id ORDER BY b.id"),
+    @NamedQuery(name = "Bookmark.findTagsByUserId",
+            query = "SELECT b.id, t FROM Bookmark b JOIN b.tags t "
+            + "WHERE b.user.id = :id"),
+    @NamedQuery(name = "Bookmark.findVersionByUserId",
+            query = "SELECT COUNT(b.id), MAX(b.id), SUM(b.version), "
+            + "MAX(b.updatedAt) FROM Bookmark b WHERE b.user.id = :id",
+            hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
     @NamedQuery(name = "Bookmark.remove", query = "DELETE FROM Bookmark b "
             + "where b.id = :id"),
+    @NamedQuery(name = "Bookmark.findIdsByIdsAndUserId",
+            query = "SELECT b.id FROM Bookmark b WHERE b.id IN (:ids) "
+            + "AND b.user.id = :userId ORDER BY b.id"),
+    @NamedQuery(name = "Bookmark.removeAll", query = "DELETE FROM Bookmark b "
+            + "WHERE b.id IN (:ids) AND b.user.id = :userId"),
+    @NamedQuery(name = "Bookmark.touchAll",
+            query = "UPDATE Bookmark b SET b.version = b.version + 1, "
+            + "b.updatedAt = :updatedAt "
+            + "WHERE b.id IN (:ids) AND b.user.id = :userId"),
+    @NamedQuery(name = "Bookmark.describeAll",
+            query = "UPDATE Bookmark b SET b.version = b.version + 1, "
+            + "b.updatedAt = :updatedAt, b.description = :description "
+            + "WHERE b.id IN (:ids) AND b.user.id = :userId"),
+    @NamedQuery(name = "Bookmark.findByUserIdAndUrlHash",
+            query = "SELECT DISTINCT b FROM Bookmark b LEFT JOIN FETCH b.tags "
+            + "WHERE b.user.id = :userId AND b.urlHash = :urlHash "
+            + "ORDER BY b.id"),
+    @NamedQuery(name = "Bookmark.findDuplicatesByUserId",
+            query = "SELECT b.id, b.url FROM Bookmark b "
+            + "WHERE b.user.id = :id AND b.urlHash IN ("
+            + "SELECT d.urlHash FROM Bookmark d WHERE d.user.id = :id "
+            + "GROUP BY d.urlHash HAVING COUNT(d.id) > 1) ORDER BY b.id"),
     @NamedQuery(name = "Bookmark.findByIdAndUserId",
-            query = "SELECT b FROM Bookmark b WHERE b.id = :id AND "
-            + "b.user.id = :userId")})
+            query = "SELECT b FROM Bookmark b LEFT JOIN FETCH b.tags "
+            + "WHERE b.id = :id AND b.user.id = :userId",
+            hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true"))})
 public class Bookmark implements Serializable {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * Maximum length of a tag.
+     */
+    public static final int MAX_TAG_LENGTH = 64;
+    /**
+     * Query parameters which only track where a link came from and are
+     * removed from URLs; parameters starting with utm_ are removed too.
+     */
+    private static final Set<String> TRACKING_PARAMETERS = ImmutableSet.of(
+            "fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid",
+            "mc_cid", "mc_eid", "_ga");
+    /**
+     * Ports which are omitted from URLs keyed by scheme.
+     */
+    private static final Map<String, Integer> DEFAULT_PORTS
+            = ImmutableMap.of("http", 80, "https", 443);
+    /**
+     * Function to hash normalized URLs; Thread-safe.
+     */
+    private static final HashFunction URL_HASH_FUNCTION
+            = Hashing.murmur3_128();
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Basic(optional = false)
@@ -80,6 +176,12 @@ public class Bookmark implements Serializable {
     @Size(min = 1, max = 255)
     @Column(name = "url")
     private String url;
+    /**
+     * A 64-bit hash of the normalized URL used to look up duplicates.
+     */
+    @JsonIgnore
+    @Column(name = "url_hash")
+    private Long urlHash;
     /**
      * Bookmark description.
      */
@@ -87,12 +189,37 @@ public class Bookmark implements Serializable {
     @Column(name = "description")
     private String description;
     /**
-     * The owner of the bookmark.
+     * The owner of the bookmark. Only the id of the owner is needed when
+     * bookmarks are read, so the user is not loaded unless asked for.
      */
-    @Basic(optional = false)
     @JsonIgnore
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id")
     private User user;
+    /**
+     * Lower case tags of the bookmark.
+     */
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "tags",
+            joinColumns = @JoinColumn(name = "bookmark_id"))
+    @Column(name = "name")
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    private Set<String> tags = new HashSet<>();
+    /**
+     * The version of the bookmark incremented on each modification.
+     */
+    @JsonIgnore
+    @Version
+    @Column(name = "version")
+    private int version;
+    /**
+     * The time of the last modification of the bookmark.
+     */
+    @JsonIgnore
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at")
+    private Date updatedAt;
 
     /**
      * A no-argument constructor.
@@ -107,7 +234,7 @@ public class Bookmark implements Serializable {
      * @param description bookmark description.
      */
     public Bookmark(String url, String description) {
-        this.url = url;
+        setUrl(url);
         this.description = description;
     }
 
@@ -123,8 +250,19 @@ public class Bookmark implements Serializable {
         return url;
     }
 
+    /**
+     * Method sets the URL of the bookmark normalized by
+     * {@link #normalizeUrl(String)} and its hash.
+     *
+     * @param url the URL as entered by a user, may be null.
+     */
     public void setUrl(String url) {
-        this.url = url;
+        this.url = normalizeUrl(url);
+        this.urlHash = this.url == null ? null : hash(this.url);
+    }
+
+    public Long getUrlHash() {
+        return urlHash;
     }
 
     public String getDescription() {
@@ -143,12 +281,145 @@ public class Bookmark implements Serializable {
         this.user = user;
     }
 
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Method replaces the tags of the bookmark. Tags are trimmed and
+     * converted to lower case, empty ones are skipped.
+     *
+     * @param tags new tags, may be null.
+     */
+    public void setTags(Collection<String> tags) {
+        this.tags.clear();
+        if (tags != null) {
+            this.tags.addAll(normalizeTags(tags));
+        }
+    }
+
+    /**
+     * Method checks the length of tags.
+     *
+     * @return true if no tag is longer than allowed.
+     */
+    @JsonIgnore
+    @AssertTrue(message = "must not contain tags longer than "
+            + MAX_TAG_LENGTH + " characters")
+    public boolean isTagsValid() {
+        return tags.stream().allMatch(tag -> tag.length() <= MAX_TAG_LENGTH);
+    }
+
+    /**
+     * Method trims tags, converts them to lower case and skips empty ones.
+     *
+     * @param tags tags as entered by a user, may contain nulls.
+     * @return distinct normalized tags.
+     */
+    public static Set<String> normalizeTags(Collection<String> tags) {
+        Set<String> normalized = new HashSet<>();
+        for (String tag : tags) {
+            if (tag != null && !tag.trim().isEmpty()) {
+                normalized.add(tag.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Method brings a URL to a canonical form, so that trivial variations of
+     * the same address are equal: the scheme and the host are converted to
+     * lower case, default ports, dot segments, trailing slashes of the path,
+     * empty fragments and tracking query parameters are removed. Strings
+     * which are not absolute hierarchical URIs are only trimmed.
+     *
+     * @param url the URL as entered by a user, may be null.
+     * @return the normalized URL or null if the URL is null.
+     */
+    public static String normalizeUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        final String trimmed = url.trim();
+        final URI uri;
+        try {
+            uri = new URI(trimmed).normalize();
+        } catch (URISyntaxException ex) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.isOpaque()
+                || uri.getHost() == null) {
+            return trimmed;
+        }
+        final String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        final StringBuilder normalized = new StringBuilder(scheme)
+                .append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (uri.getPort() != -1
+                && uri.getPort() != DEFAULT_PORTS.getOrDefault(scheme, -1)) {
+            normalized.append(':').append(uri.getPort());
+        }
+        String path = uri.getRawPath();
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        normalized.append(path);
+        if (uri.getRawQuery() != null) {
+            final StringJoiner query = new StringJoiner("&");
+            for (String parameter : uri.getRawQuery().split("&")) {
+                final String name = parameter.split("=", 2)[0]
+                        .toLowerCase(Locale.ROOT);
+                if (!name.isEmpty() && !name.startsWith("utm_")
+                        && !TRACKING_PARAMETERS.contains(name)) {
+                    query.add(parameter);
+                }
+            }
+            if (query.length() > 0) {
+                normalized.append('?').append(query);
+            }
+        }
+        if (uri.getRawFragment() != null && !uri.getRawFragment().isEmpty()) {
+            normalized.append('#').append(uri.getRawFragment());
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Method computes the hash of the normalized URL, so that trivial
+     * variations of the same address have the same hash.
+     *
+     * @param url the URL as entered by a user.
+     * @return a 64-bit hash.
+     */
+    public static long hashUrl(String url) {
+        return hash(normalizeUrl(url));
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(this.id,
                 this.url,
                 this.description,
-                this.user);
+                getUserId());
     }
 
     @Override
@@ -163,7 +434,7 @@ public class Bookmark implements Serializable {
             return false;
         }
         final Bookmark other = (Bookmark) obj;
-        return Objects.equals(this.user, other.user)
+        return Objects.equals(getUserId(), other.getUserId())
                 && Objects.equals(this.url, other.url)
                 && Objects.equals(this.description, other.description)
                 && Objects.equals(this.id, other.id);
@@ -173,7 +444,29 @@ public class Bookmark implements Serializable {
     public String toString() {
         return "Bookmark{" + "id=" + id + ", url=" + url
                 + ", description=" + description
-                + ", user=" + Objects.toString(user) + '}';
+                + ", tags=" + tags
+                + ", userId=" + getUserId() + '}';
+    }
+
+    /**
+     * Method hashes a normalized URL.
+     *
+     * @param normalizedUrl the normalized URL.
+     * @return the lower 64 bits of its Murmur3 hash.
+     */
+    private static long hash(String normalizedUrl) {
+        return URL_HASH_FUNCTION
+                .hashString(normalizedUrl, StandardCharsets.UTF_8)
+                .asLong();
+    }
+
+    /**
+     * Method returns the id of the owner without loading the owner.
+     *
+     * @return the id of the owner or null if there is no owner.
+     */
+    private Integer getUserId() {
+        return user == null ? null : user.getId();
     }
 
 }
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.core;
+
+import java.util.Objects;
+
+/**
+ * The latest change of a bookmark as recorded in the change log: the bookmark
+ * was either created or modified, in which case its current state is known,
+ * or deleted.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkChange {
+
+    /**
+     * The position of the change in the sequence of changes of the owner.
+     */
+    private final long sequence;
+    /**
+     * The id of the changed bookmark.
+     */
+    private final int bookmarkId;
+    /**
+     * The current state of the bookmark or null if it was deleted.
+     */
+    private final Bookmark bookmark;
+
+    /**
+     * A constructor to create changes.
+     *
+     * @param sequence the position of the change in the sequence of changes
+     * of the owner.
+     * @param bookmarkId the id of the changed bookmark.
+     * @param bookmark the current state of the bookmark or null if it was
+     * deleted.
+     */
+    public BookmarkChange(long sequence, int bookmarkId, Bookmark bookmark) {
+        this.sequence = sequence;
+        this.bookmarkId = bookmarkId;
+        this.bookmark = bookmark;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getBookmarkId() {
+        return bookmarkId;
+    }
+
+    public Bookmark getBookmark() {
+        return bookmark;
+    }
+
+    /**
+     * Method tells whether the bookmark was deleted.
+     *
+     * @return true if the bookmark was deleted.
+     */
+    public boolean isDeleted() {
+        return bookmark == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.sequence, this.bookmarkId, this.bookmark);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final BookmarkChange other = (BookmarkChange) obj;
+        return this.sequence == other.sequence
+                && this.bookmarkId == other.bookmarkId
+                && Objects.equals(this.bookmark, other.bookmark);
+    }
+
+    @Override
+    public String toString() {
+        return "BookmarkChange{" + "sequence=" + sequence
+                + ", bookmarkId=" + bookmarkId
+                + ", bookmark=" + bookmark + '}';
+    }
+
+}
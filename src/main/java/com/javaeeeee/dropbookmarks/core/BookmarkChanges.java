@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bookmarks of a user created, modified or deleted since the client last
+ * synchronized them.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkChanges {
+
+    /**
+     * Current state of created and modified bookmarks.
+     */
+    private final List<Bookmark> bookmarks;
+    /**
+     * The ids of deleted bookmarks.
+     */
+    private final List<Integer> deleted;
+    /**
+     * The token to pass to obtain subsequent changes.
+     */
+    private final String watermark;
+
+    /**
+     * A constructor to create changes.
+     *
+     * @param bookmarks current state of created and modified bookmarks.
+     * @param deleted the ids of deleted bookmarks.
+     * @param watermark the token to pass to obtain subsequent changes.
+     */
+    @JsonCreator
+    public BookmarkChanges(@JsonProperty("bookmarks") List<Bookmark> bookmarks,
+            @JsonProperty("deleted") List<Integer> deleted,
+            @JsonProperty("watermark") String watermark) {
+        this.bookmarks = bookmarks == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(bookmarks);
+        this.deleted = deleted == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(deleted);
+        this.watermark = watermark;
+    }
+
+    @JsonProperty
+    public List<Bookmark> getBookmarks() {
+        return bookmarks;
+    }
+
+    @JsonProperty
+    public List<Integer> getDeleted() {
+        return deleted;
+    }
+
+    @JsonProperty
+    public String getWatermark() {
+        return watermark;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.bookmarks, this.deleted, this.watermark);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final BookmarkChanges other = (BookmarkChanges) obj;
+        return Objects.equals(this.bookmarks, other.bookmarks)
+                && Objects.equals(this.deleted, other.deleted)
+                && Objects.equals(this.watermark, other.watermark);
+    }
+
+    @Override
+    public String toString() {
+        return "BookmarkChanges{" + "bookmarks=" + bookmarks
+                + ", deleted=" + deleted + ", watermark=" + watermark + '}';
+    }
+
+}
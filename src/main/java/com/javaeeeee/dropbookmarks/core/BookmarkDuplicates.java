@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bookmarks of a user which point to the same normalized URL.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkDuplicates {
+
+    /**
+     * The normalized URL.
+     */
+    private final String url;
+    /**
+     * The ids of bookmarks with the URL in ascending order.
+     */
+    private final List<Integer> ids;
+
+    /**
+     * A constructor to create a group of duplicates.
+     *
+     * @param url the normalized URL.
+     * @param ids the ids of bookmarks with the URL.
+     */
+    @JsonCreator
+    public BookmarkDuplicates(@JsonProperty("url") String url,
+            @JsonProperty("ids") List<Integer> ids) {
+        this.url = url;
+        this.ids = Collections.unmodifiableList(ids);
+    }
+
+    @JsonProperty
+    public String getUrl() {
+        return url;
+    }
+
+    @JsonProperty
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.url, this.ids);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final BookmarkDuplicates other = (BookmarkDuplicates) obj;
+        return Objects.equals(this.url, other.url)
+                && Objects.equals(this.ids, other.ids);
+    }
+
+    @Override
+    public String toString() {
+        return "BookmarkDuplicates{" + "url=" + url + ", ids=" + ids + '}';
+    }
+}
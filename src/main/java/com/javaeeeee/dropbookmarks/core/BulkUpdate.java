@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * The same modification of several bookmarks of a user: a new description
+ * and tags to add and to remove. Properties which are not set are left as
+ * they are.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class BulkUpdate {
+
+    /**
+     * The ids of bookmarks to modify.
+     */
+    @NotNull
+    @Size(min = 1)
+    private final List<Integer> ids;
+    /**
+     * The new description or null to keep descriptions.
+     */
+    @Size(max = 2048)
+    private final String description;
+    /**
+     * Tags to add.
+     */
+    private final List<String> addTags;
+    /**
+     * Tags to remove.
+     */
+    private final List<String> removeTags;
+
+    /**
+     * A constructor to create modifications.
+     *
+     * @param ids the ids of bookmarks to modify.
+     * @param description the new description or null.
+     * @param addTags tags to add or null.
+     * @param removeTags tags to remove or null.
+     */
+    @JsonCreator
+    public BulkUpdate(@JsonProperty("ids") List<Integer> ids,
+            @JsonProperty("description") String description,
+            @JsonProperty("addTags") List<String> addTags,
+            @JsonProperty("removeTags") List<String> removeTags) {
+        this.ids = ids;
+        this.description = description;
+        this.addTags = addTags == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(addTags);
+        this.removeTags = removeTags == null
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(removeTags);
+    }
+
+    @JsonProperty
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    @JsonProperty
+    public String getDescription() {
+        return description;
+    }
+
+    @JsonProperty
+    public List<String> getAddTags() {
+        return addTags;
+    }
+
+    @JsonProperty
+    public List<String> getRemoveTags() {
+        return removeTags;
+    }
+
+    /**
+     * Method checks that there are no null ids.
+     *
+     * @return true if all the ids are set.
+     */
+    @JsonIgnore
+    @AssertTrue(message = "must not contain nulls")
+    public boolean isIdsValid() {
+        return ids == null || ids.stream().allMatch(Objects::nonNull);
+    }
+
+    /**
+     * Method checks the length of tags to add.
+     *
+     * @return true if no tag is longer than allowed.
+     */
+    @JsonIgnore
+    @AssertTrue(message = "must not contain tags longer than "
+            + Bookmark.MAX_TAG_LENGTH + " characters")
+    public boolean isAddTagsValid() {
+        return Bookmark.normalizeTags(addTags).stream()
+                .allMatch(tag -> tag.length() <= Bookmark.MAX_TAG_LENGTH);
+    }
+
+    /**
+     * Method returns normalized tags to add.
+     *
+     * @return distinct normalized tags.
+     */
+    @JsonIgnore
+    public Set<String> getNormalizedAddTags() {
+        return Bookmark.normalizeTags(addTags);
+    }
+
+    /**
+     * Method returns normalized tags to remove.
+     *
+     * @return distinct normalized tags.
+     */
+    @JsonIgnore
+    public Set<String> getNormalizedRemoveTags() {
+        return Bookmark.normalizeTags(removeTags);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.ids,
+                this.description,
+                this.addTags,
+                this.removeTags);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final BulkUpdate other = (BulkUpdate) obj;
+        return Objects.equals(this.ids, other.ids)
+                && Objects.equals(this.description, other.description)
+                && Objects.equals(this.addTags, other.addTags)
+                && Objects.equals(this.removeTags, other.removeTags);
+    }
+}
@@ -29,28 +29,38 @@ import java.security.Principal;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import javax.persistence.Access;
+import javax.persistence.AccessType;
 import javax.persistence.Basic;
-import javax.persistence.CascadeType;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import javax.xml.bind.annotation.XmlRootElement;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.QueryHints;
 
 /**
  *
  * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
  */
 @Entity
+@Access(AccessType.FIELD)
 @Table(name = "users")
 @XmlRootElement
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @NamedQueries({
     @NamedQuery(name = "User.findAll", query = "SELECT u FROM User u"),
     @NamedQuery(name = "User.findById",
@@ -59,14 +69,18 @@ import javax.xml.bind.annotation.XmlRootElement;
             query = "SELECT u FROM User u WHERE u.username = :username "
             + "and u.password = :password"),
     @NamedQuery(name = "User.findByUsername",
-            query = "SELECT u FROM User u WHERE u.username = :username")})
+            query = "SELECT u FROM User u WHERE u.username = :username",
+            hints = @QueryHint(name = QueryHints.CACHEABLE, value = "true")),
+    @NamedQuery(name = "User.updatePassword",
+            query = "UPDATE User u SET u.password = :newPassword "
+            + "WHERE u.id = :id AND u.password = :password")})
 public class User implements Principal, Serializable {
 
     private static final long serialVersionUID = 1L;
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    @Basic(optional = false)
-    @Column(name = "id")
+    /**
+     * The id of the user. It is mapped through its getter, so a reference to
+     * a user which has not been loaded yet returns the id without a query.
+     */
     private Integer id;
     /**
      * Username for the login operation.
@@ -86,9 +100,12 @@ public class User implements Principal, Serializable {
     @Column(name = "password")
     private String password;
     /**
-     * List of user's bookmarks.
+     * List of user's bookmarks. Bookmarks are read and written by
+     * BookmarkDAO, so the collection is never loaded along with the user and
+     * operations on the user are not cascaded to it.
      */
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "user", fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private final Set<Bookmark> bookmarks = new HashSet<>();
 
     /**
@@ -108,6 +125,11 @@ public class User implements Principal, Serializable {
         this.password = password;
     }
 
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Basic(optional = false)
+    @Column(name = "id")
+    @Access(AccessType.PROPERTY)
     public Integer getId() {
         return id;
     }
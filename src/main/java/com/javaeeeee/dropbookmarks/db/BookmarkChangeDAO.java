@@ -0,0 +1,298 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import io.dropwizard.hibernate.AbstractDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.hibernate.SessionFactory;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Data Access Object to record and query changes of bookmarks. The log keeps
+ * only the latest change of each bookmark, deleted bookmarks are represented
+ * by tombstones, so its size is bounded by the number of bookmarks ever
+ * stored. Changes of each user are numbered by a sequence which grows by one
+ * with every change; concurrent transactions of the same user compete for the
+ * same number and all but one of them fail, so a client which has seen a
+ * number never misses a change committed later with a smaller one.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkChangeDAO extends AbstractDAO<Bookmark> {
+
+    /**
+     * Timer of the query for changes.
+     */
+    private final Timer findSinceTimer;
+    /**
+     * Timer of recording a change.
+     */
+    private final Timer recordTimer;
+    /**
+     * Timer of recording changes of imported bookmarks.
+     */
+    private final Timer recordAllTimer;
+
+    /**
+     * Constructor that initializes changes DAO.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     */
+    public BookmarkChangeDAO(SessionFactory sessionFactory) {
+        this(sessionFactory, new MetricRegistry());
+    }
+
+    /**
+     * Constructor that initializes changes DAO which reports the duration of
+     * its queries.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     */
+    public BookmarkChangeDAO(SessionFactory sessionFactory,
+            MetricRegistry metrics) {
+        super(sessionFactory);
+        this.findSinceTimer = metrics.timer(
+                MetricRegistry.name(BookmarkChangeDAO.class, "findSince"));
+        this.recordTimer = metrics.timer(
+                MetricRegistry.name(BookmarkChangeDAO.class, "record"));
+        this.recordAllTimer = metrics.timer(
+                MetricRegistry.name(BookmarkChangeDAO.class, "recordAll"));
+    }
+
+    /**
+     * Method looks for changes of bookmarks of a user made after the change
+     * with the given sequence number.
+     *
+     * @param userId the id of the user.
+     * @param since the sequence number of the last change known to the
+     * client or 0 to obtain all the bookmarks.
+     * @param limit maximum number of changes to return.
+     * @return rows of sequence number, bookmark id and deletion flag ordered
+     * by sequence number.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findSince(int userId, long since, int limit) {
+        try (Timer.Context context = findSinceTimer.time()) {
+            return currentSession().createSQLQuery(
+                    "SELECT seq, bookmark_id, deleted FROM bookmark_changes "
+                    + "WHERE user_id = :userId AND seq > :since "
+                    + "ORDER BY seq")
+                    .addScalar("seq", StandardBasicTypes.LONG)
+                    .addScalar("bookmark_id", StandardBasicTypes.INTEGER)
+                    .addScalar("deleted", StandardBasicTypes.BOOLEAN)
+                    .setParameter("userId", userId)
+                    .setParameter("since", since)
+                    .setMaxResults(limit)
+                    .list();
+        }
+    }
+
+    /**
+     * Method records that a bookmark was saved or is about to be deleted
+     * within the current transaction. The bookmark must be in the database,
+     * so changes should be flushed and the bookmark should not be deleted
+     * yet.
+     *
+     * @param bookmarkId the id of the bookmark.
+     * @param deleted true if the bookmark is going to be deleted.
+     */
+    public void record(int bookmarkId, boolean deleted) {
+        try (Timer.Context context = recordTimer.time()) {
+            currentSession().doWork(connection -> {
+                long userId;
+                long sequence;
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "SELECT b.user_id, (SELECT MAX(c.seq) "
+                        + "FROM bookmark_changes c "
+                        + "WHERE c.user_id = b.user_id) "
+                        + "FROM bookmarks b WHERE b.id = ?")) {
+                    statement.setInt(1, bookmarkId);
+                    try (ResultSet row = statement.executeQuery()) {
+                        if (!row.next()) {
+                            return;
+                        }
+                        userId = row.getLong(1);
+                        sequence = row.getLong(2) + 1;
+                    }
+                }
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "UPDATE bookmark_changes SET seq = ?, deleted = ? "
+                        + "WHERE bookmark_id = ?")) {
+                    statement.setLong(1, sequence);
+                    statement.setBoolean(2, deleted);
+                    statement.setInt(3, bookmarkId);
+                    if (statement.executeUpdate() > 0) {
+                        return;
+                    }
+                }
+                try (PreparedStatement statement = prepareInsert(connection)) {
+                    statement.setLong(1, userId);
+                    statement.setLong(2, sequence);
+                    statement.setInt(3, bookmarkId);
+                    statement.setBoolean(4, deleted);
+                    statement.executeUpdate();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method records creation of new bookmarks using a single JDBC batch
+     * within the current transaction.
+     *
+     * @param bookmarks bookmarks with ids generated by the database, each with
+     * the owner set.
+     */
+    public void recordAll(List<Bookmark> bookmarks) {
+        if (bookmarks.isEmpty()) {
+            return;
+        }
+        try (Timer.Context context = recordAllTimer.time()) {
+            currentSession().doWork(connection -> {
+                Map<Integer, Long> sequences = new HashMap<>();
+                try (PreparedStatement statement = prepareInsert(connection);
+                        PreparedStatement query = connection.prepareStatement(
+                                "SELECT MAX(seq) FROM bookmark_changes "
+                                + "WHERE user_id = ?")) {
+                    for (Bookmark bookmark : bookmarks) {
+                        int userId = bookmark.getUser().getId();
+                        Long last = sequences.get(userId);
+                        if (last == null) {
+                            query.setInt(1, userId);
+                            try (ResultSet row = query.executeQuery()) {
+                                row.next();
+                                last = row.getLong(1);
+                            }
+                        }
+                        sequences.put(userId, last + 1);
+                        statement.setLong(1, userId);
+                        statement.setLong(2, last + 1);
+                        statement.setInt(3, bookmark.getId());
+                        statement.setBoolean(4, false);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method records that bookmarks of a user were modified or are about to
+     * be deleted within the current transaction. Existing entries of the log
+     * are found by one query, then they are updated and missing ones are
+     * inserted using a JDBC batch each.
+     *
+     * @param userId the id of the owner of the bookmarks.
+     * @param bookmarkIds the ids of the bookmarks.
+     * @param deleted true if the bookmarks are going to be deleted.
+     */
+    public void recordAll(int userId, List<Integer> bookmarkIds,
+            boolean deleted) {
+        if (bookmarkIds.isEmpty()) {
+            return;
+        }
+        try (Timer.Context context = recordAllTimer.time()) {
+            currentSession().doWork(connection -> {
+                long last;
+                try (PreparedStatement query = connection.prepareStatement(
+                        "SELECT MAX(seq) FROM bookmark_changes "
+                        + "WHERE user_id = ?")) {
+                    query.setInt(1, userId);
+                    try (ResultSet row = query.executeQuery()) {
+                        row.next();
+                        last = row.getLong(1);
+                    }
+                }
+                final Set<Integer> logged = new HashSet<>();
+                try (PreparedStatement query = connection.prepareStatement(
+                        "SELECT bookmark_id FROM bookmark_changes "
+                        + "WHERE bookmark_id IN ("
+                        + TagDAO.placeholders(bookmarkIds.size()) + ")")) {
+                    for (int i = 0; i < bookmarkIds.size(); i++) {
+                        query.setInt(i + 1, bookmarkIds.get(i));
+                    }
+                    try (ResultSet rows = query.executeQuery()) {
+                        while (rows.next()) {
+                            logged.add(rows.getInt(1));
+                        }
+                    }
+                }
+                try (PreparedStatement update = connection.prepareStatement(
+                        "UPDATE bookmark_changes SET seq = ?, deleted = ? "
+                        + "WHERE bookmark_id = ?");
+                        PreparedStatement insert
+                        = prepareInsert(connection)) {
+                    for (Integer bookmarkId : bookmarkIds) {
+                        last++;
+                        if (logged.contains(bookmarkId)) {
+                            update.setLong(1, last);
+                            update.setBoolean(2, deleted);
+                            update.setInt(3, bookmarkId);
+                            update.addBatch();
+                        } else {
+                            insert.setLong(1, userId);
+                            insert.setLong(2, last);
+                            insert.setInt(3, bookmarkId);
+                            insert.setBoolean(4, deleted);
+                            insert.addBatch();
+                        }
+                    }
+                    update.executeBatch();
+                    insert.executeBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method prepares the statement to insert a change.
+     *
+     * @param connection JDBC connection.
+     * @return the statement with parameters user id, sequence number,
+     * bookmark id and deletion flag.
+     * @throws SQLException if the statement can't be prepared.
+     */
+    private static PreparedStatement prepareInsert(
+            Connection connection) throws SQLException {
+        return connection.prepareStatement(
+                "INSERT INTO bookmark_changes "
+                + "(user_id, seq, bookmark_id, deleted) "
+                + "VALUES (?, ?, ?, ?)");
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import io.dropwizard.hibernate.AbstractDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.hibernate.SessionFactory;
+
+/**
+ * Data Access Object to keep the number of bookmarks of every user, so that
+ * quotas are checked without counting bookmarks on every insert. The counter
+ * of a user is created from the bookmarks table the first time it is needed
+ * and lives on the same shard as the bookmarks.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkCountDAO extends AbstractDAO<Bookmark> {
+
+    /**
+     * SQLState class of integrity constraint violations.
+     */
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    /**
+     * Timer of changes of counters.
+     */
+    private final Timer addTimer;
+    /**
+     * Timer of reading and locking counters.
+     */
+    private final Timer lockTimer;
+
+    /**
+     * Constructor that initializes counters DAO.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     */
+    public BookmarkCountDAO(SessionFactory sessionFactory) {
+        this(sessionFactory, new MetricRegistry());
+    }
+
+    /**
+     * Constructor that initializes counters DAO which reports the duration
+     * of its queries.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     */
+    public BookmarkCountDAO(SessionFactory sessionFactory,
+            MetricRegistry metrics) {
+        super(sessionFactory);
+        this.addTimer = metrics.timer(
+                MetricRegistry.name(BookmarkCountDAO.class, "add"));
+        this.lockTimer = metrics.timer(
+                MetricRegistry.name(BookmarkCountDAO.class, "lock"));
+    }
+
+    /**
+     * Method changes the number of bookmarks of a user within the current
+     * transaction. It must be called after the bookmarks are inserted or
+     * deleted, because a missing counter is created from the bookmarks table.
+     *
+     * @param userId the id of the user.
+     * @param delta the number of inserted bookmarks or minus the number of
+     * deleted ones.
+     */
+    public void add(int userId, int delta) {
+        try (Timer.Context context = addTimer.time()) {
+            currentSession().doWork(connection -> {
+                if (update(connection, userId, delta) == 0
+                        && !create(connection, userId)) {
+                    // Created concurrently without this change.
+                    update(connection, userId, delta);
+                }
+            });
+        }
+    }
+
+    /**
+     * Method reads the number of bookmarks of a user and locks it until the
+     * end of the current transaction, so that concurrent inserts of the
+     * same user wait and see the number including bookmarks inserted by
+     * this transaction.
+     *
+     * @param userId the id of the user.
+     * @return the number of bookmarks of the user.
+     */
+    public int lock(int userId) {
+        try (Timer.Context context = lockTimer.time()) {
+            return currentSession().doReturningWork(connection -> {
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "SELECT bookmarks FROM bookmark_counts "
+                        + "WHERE user_id = ? FOR UPDATE")) {
+                    statement.setInt(1, userId);
+                    try (ResultSet row = statement.executeQuery()) {
+                        if (row.next()) {
+                            return row.getInt(1);
+                        }
+                    }
+                    create(connection, userId);
+                    try (ResultSet row = statement.executeQuery()) {
+                        row.next();
+                        return row.getInt(1);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Method changes an existing counter.
+     *
+     * @param connection the connection of the current transaction.
+     * @param userId the id of the user.
+     * @param delta the change.
+     * @return the number of changed counters.
+     * @throws SQLException if the counter can't be changed.
+     */
+    private static int update(Connection connection, int userId, int delta)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE bookmark_counts SET bookmarks = bookmarks + ? "
+                + "WHERE user_id = ?")) {
+            statement.setInt(1, delta);
+            statement.setInt(2, userId);
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Method creates the counter of a user from the bookmarks table.
+     *
+     * @param connection the connection of the current transaction.
+     * @param userId the id of the user.
+     * @return true if the counter was created, false if another transaction
+     * created it first.
+     * @throws SQLException if the counter can't be created.
+     */
+    private static boolean create(Connection connection, int userId)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bookmark_counts (user_id, bookmarks) "
+                + "SELECT ?, COUNT(*) FROM bookmarks WHERE user_id = ?")) {
+            statement.setInt(1, userId);
+            statement.setInt(2, userId);
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException ex) {
+            if (ex.getSQLState() != null && ex.getSQLState()
+                    .startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                return false;
+            }
+            throw ex;
+        }
+    }
+}
@@ -23,10 +23,42 @@
  */
 package com.javaeeeee.dropbookmarks.db;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
 import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.BookmarkChange;
+import com.javaeeeee.dropbookmarks.core.BookmarkDuplicates;
+import com.javaeeeee.dropbookmarks.core.BulkUpdate;
+import com.javaeeeee.dropbookmarks.core.User;
 import io.dropwizard.hibernate.AbstractDAO;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 
 /**
@@ -36,13 +68,232 @@ import org.hibernate.SessionFactory;
  */
 public class BookmarkDAO extends AbstractDAO<Bookmark> {
 
+    /**
+     * The number of rows the JDBC driver is asked to fetch at a time when
+     * bookmarks are scrolled. MySQL driver honors it only if useCursorFetch
+     * is set to true in the connection URL.
+     */
+    public static final int SCROLL_FETCH_SIZE = 1000;
+    /**
+     * Maximum number of ids in the IN list of one bulk statement; larger sets
+     * of ids are processed in chunks of this size.
+     */
+    public static final int IN_LIST_SIZE = 500;
+    /**
+     * The name of the cache region of users' bookmark collections.
+     */
+    private static final String USER_BOOKMARKS_REGION
+            = User.class.getName() + ".bookmarks";
+    /**
+     * The name of the cache region of bookmarks' tags.
+     */
+    private static final String BOOKMARK_TAGS_REGION
+            = Bookmark.class.getName() + ".tags";
+    /**
+     * Hibernate session factory; necessary to open separate sessions for long
+     * running reads which outlive a unit of work.
+     */
+    private final SessionFactory sessionFactory;
+    /**
+     * Full-text index of bookmarks.
+     */
+    private final BookmarkIndex index;
+    /**
+     * DAO to query and store tags of bookmarks.
+     */
+    private final TagDAO tagDAO;
+    /**
+     * DAO to record and query changes of bookmarks.
+     */
+    private final BookmarkChangeDAO changeDAO;
+    /**
+     * DAO to keep the number of bookmarks of every user.
+     */
+    private final BookmarkCountDAO countDAO;
+    /**
+     * Timer of the query for all bookmarks of a user.
+     */
+    private final Timer findByUserIdTimer;
+    /**
+     * Timer of the query for a page of bookmarks of a user.
+     */
+    private final Timer findByUserIdPageTimer;
+    /**
+     * Timer of scrolling through bookmarks of a user.
+     */
+    private final Timer scrollByUserIdTimer;
+    /**
+     * Timer of the query for a bookmark by id.
+     */
+    private final Timer findByIdTimer;
+    /**
+     * Timer of the query for a bookmark by id and owner.
+     */
+    private final Timer findByIdAndUserIdTimer;
+    /**
+     * Timer of saving a bookmark.
+     */
+    private final Timer saveTimer;
+    /**
+     * Timer of batch inserts.
+     */
+    private final Timer saveAllTimer;
+    /**
+     * Timer of removing a bookmark.
+     */
+    private final Timer deleteTimer;
+    /**
+     * Timer of bulk deletes.
+     */
+    private final Timer deleteAllTimer;
+    /**
+     * Timer of bulk modifications.
+     */
+    private final Timer updateAllTimer;
+    /**
+     * Timer of full-text search.
+     */
+    private final Timer searchTimer;
+    /**
+     * Timer of the query for a page of bookmarks of a user having tags.
+     */
+    private final Timer findByUserIdAndTagsTimer;
+    /**
+     * Timer of the query for the version of bookmarks of a user.
+     */
+    private final Timer findVersionByUserIdTimer;
+    /**
+     * Timer of the query for changes of bookmarks of a user.
+     */
+    private final Timer findChangesTimer;
+    /**
+     * Timer of the query for a bookmark of a user by URL.
+     */
+    private final Timer findByUserIdAndUrlTimer;
+    /**
+     * Timer of the query for duplicate bookmarks of a user.
+     */
+    private final Timer findDuplicatesTimer;
+
     /**
      * Constructor that initializes bookmarks DAO.
      *
      * @param sessionFactory Hibernate Session Factory.
      */
     public BookmarkDAO(SessionFactory sessionFactory) {
+        this(sessionFactory, new MetricRegistry());
+    }
+
+    /**
+     * Constructor that initializes bookmarks DAO which reports the duration
+     * of its queries.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     */
+    public BookmarkDAO(SessionFactory sessionFactory, MetricRegistry metrics) {
+        this(sessionFactory, metrics, new BookmarkIndex());
+    }
+
+    /**
+     * Constructor that initializes bookmarks DAO which reports the duration
+     * of its queries and keeps the full-text index up to date.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     * @param index full-text index of bookmarks.
+     */
+    public BookmarkDAO(SessionFactory sessionFactory, MetricRegistry metrics,
+            BookmarkIndex index) {
+        this(sessionFactory, metrics, index,
+                new TagDAO(sessionFactory, metrics));
+    }
+
+    /**
+     * Constructor that initializes bookmarks DAO which reports the duration
+     * of its queries and keeps the full-text and tag indexes up to date.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     * @param index full-text index of bookmarks.
+     * @param tagDAO DAO to query and store tags of bookmarks.
+     */
+    public BookmarkDAO(SessionFactory sessionFactory, MetricRegistry metrics,
+            BookmarkIndex index, TagDAO tagDAO) {
+        this(sessionFactory, metrics, index, tagDAO,
+                new BookmarkChangeDAO(sessionFactory, metrics));
+    }
+
+    /**
+     * Constructor that initializes bookmarks DAO which reports the duration
+     * of its queries, keeps the full-text and tag indexes up to date and
+     * records changes of bookmarks.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     * @param index full-text index of bookmarks.
+     * @param tagDAO DAO to query and store tags of bookmarks.
+     * @param changeDAO DAO to record and query changes of bookmarks.
+     */
+    public BookmarkDAO(SessionFactory sessionFactory, MetricRegistry metrics,
+            BookmarkIndex index, TagDAO tagDAO, BookmarkChangeDAO changeDAO) {
+        this(sessionFactory, metrics, index, tagDAO, changeDAO,
+                new BookmarkCountDAO(sessionFactory, metrics));
+    }
+
+    /**
+     * Constructor that initializes bookmarks DAO which reports the duration
+     * of its queries, keeps the full-text and tag indexes up to date, records
+     * changes of bookmarks and counts bookmarks of users.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     * @param index full-text index of bookmarks.
+     * @param tagDAO DAO to query and store tags of bookmarks.
+     * @param changeDAO DAO to record and query changes of bookmarks.
+     * @param countDAO DAO to keep the number of bookmarks of every user.
+     */
+    public BookmarkDAO(SessionFactory sessionFactory, MetricRegistry metrics,
+            BookmarkIndex index, TagDAO tagDAO, BookmarkChangeDAO changeDAO,
+            BookmarkCountDAO countDAO) {
         super(sessionFactory);
+        this.sessionFactory = sessionFactory;
+        this.index = index;
+        this.tagDAO = tagDAO;
+        this.changeDAO = changeDAO;
+        this.countDAO = countDAO;
+        this.findByUserIdTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findByUserId"));
+        this.findByUserIdPageTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findByUserIdPage"));
+        this.scrollByUserIdTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "scrollByUserId"));
+        this.findByIdTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findById"));
+        this.findByIdAndUserIdTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findByIdAndUserId"));
+        this.saveTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "save"));
+        this.saveAllTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "saveAll"));
+        this.deleteTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "delete"));
+        this.deleteAllTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "deleteAll"));
+        this.updateAllTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "updateAll"));
+        this.searchTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "search"));
+        this.findByUserIdAndTagsTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findByUserIdAndTags"));
+        this.findVersionByUserIdTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findVersionByUserId"));
+        this.findChangesTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findChanges"));
+        this.findByUserIdAndUrlTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findByUserIdAndUrl"));
+        this.findDuplicatesTimer = metrics.timer(
+                MetricRegistry.name(BookmarkDAO.class, "findDuplicates"));
     }
 
     /**
@@ -52,8 +303,269 @@ public class BookmarkDAO extends AbstractDAO<Bookmark> {
      * @return List of all bookmarks stored by the user identified by id.
      */
     public List<Bookmark> findByUserId(int id) {
-        return list(namedQuery("Bookmark.findByUserId")
-                .setParameter("id", id));
+        try (Timer.Context context = findByUserIdTimer.time()) {
+            return list(namedQuery("Bookmark.findByUserId")
+                    .setParameter("id", id));
+        }
+    }
+
+    /**
+     * Find one page of bookmarks for a particular user. Bookmarks are ordered
+     * by id and the page starts right after the bookmark with afterId, so the
+     * cost of the query does not depend on how deep the page is.
+     *
+     * @param userId the id of the user.
+     * @param afterId the id of the last bookmark on the previous page or 0 to
+     * obtain the first page.
+     * @param limit maximum number of bookmarks to return.
+     * @return List of at most limit bookmarks with ids greater than afterId.
+     */
+    public List<Bookmark> findByUserId(int userId, int afterId, int limit) {
+        try (Timer.Context context = findByUserIdPageTimer.time()) {
+            return list(namedQuery("Bookmark.findByUserIdAfterId")
+                    .setParameter("userId", userId)
+                    .setParameter("afterId", afterId)
+                    .setMaxResults(limit));
+        }
+    }
+
+    /**
+     * Find one page of bookmarks of a particular user having all the tags.
+     * Bookmarks are ordered by id and the page starts right after the
+     * bookmark with afterId. Candidates are found in the tag index and then
+     * read from the database.
+     *
+     * @param userId the id of the user.
+     * @param tags the tags; normalized the same way tags of bookmarks are,
+     * all the bookmarks are returned if there are none.
+     * @param afterId the id of the last bookmark on the previous page or 0 to
+     * obtain the first page.
+     * @param limit maximum number of bookmarks to return.
+     * @return List of at most limit bookmarks with ids greater than afterId.
+     */
+    public List<Bookmark> findByUserIdAndTags(int userId,
+            Collection<String> tags, int afterId, int limit) {
+        try (Timer.Context context = findByUserIdAndTagsTimer.time()) {
+            Set<String> normalized = Bookmark.normalizeTags(tags);
+            if (normalized.isEmpty()) {
+                return findByUserId(userId, afterId, limit);
+            }
+            return findCandidates(userId, afterId, limit,
+                    (after, count) -> tagDAO.findBookmarkIds(
+                            userId, normalized, after, count),
+                    bookmark -> bookmark.getTags().containsAll(normalized));
+        }
+    }
+
+    /**
+     * Method returns the version of the collection of bookmarks of a user,
+     * which changes whenever a bookmark of the user is added, modified or
+     * deleted. The version is computed by the database from the number of
+     * bookmarks, the greatest id, the sum of versions and the time of the
+     * last modification, so bookmarks themselves are not read.
+     *
+     * @param userId the id of the user.
+     * @return an opaque version string.
+     */
+    public String findVersionByUserId(int userId) {
+        try (Timer.Context context = findVersionByUserIdTimer.time()) {
+            Object[] row = (Object[]) namedQuery(
+                    "Bookmark.findVersionByUserId")
+                    .setParameter("id", userId)
+                    .uniqueResult();
+            Date updatedAt = (Date) row[3];
+            return row[0] + "-" + row[1] + "-" + row[2] + "-"
+                    + (updatedAt == null ? 0 : updatedAt.getTime());
+        }
+    }
+
+    /**
+     * Method looks for bookmarks of a user created, modified or deleted after
+     * the change with the given sequence number. Only the latest change of
+     * each bookmark is returned, so the cost depends on the number of
+     * changed bookmarks rather than on the number of bookmarks of the user.
+     *
+     * @param userId the id of the user.
+     * @param since the sequence number of the last change known to the
+     * client or 0 to obtain all the bookmarks.
+     * @param limit maximum number of changes to return.
+     * @return changes ordered by sequence number.
+     */
+    public List<BookmarkChange> findChanges(int userId, long since,
+            int limit) {
+        try (Timer.Context context = findChangesTimer.time()) {
+            List<Object[]> rows = changeDAO.findSince(userId, since, limit);
+            List<Integer> ids = rows.stream()
+                    .filter(row -> !(Boolean) row[2])
+                    .map(row -> (Integer) row[1])
+                    .collect(Collectors.toList());
+            Map<Integer, Bookmark> bookmarks = ids.isEmpty()
+                    ? Collections.emptyMap()
+                    : list(namedQuery("Bookmark.findByIdsAndUserId")
+                            .setParameterList("ids", ids)
+                            .setParameter("userId", userId))
+                    .stream()
+                    .collect(Collectors.toMap(Bookmark::getId,
+                            Function.identity()));
+            // A bookmark deleted by a transaction committed after the log
+            // was read is reported as deleted; its tombstone has a greater
+            // sequence number, so the client will see it anyway.
+            return rows.stream()
+                    .map(row -> new BookmarkChange((Long) row[0],
+                            (Integer) row[1],
+                            bookmarks.get((Integer) row[1])))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Method passes all bookmarks of a particular user to the consumer one by
+     * one. Bookmarks are read together with their tags by a single query
+     * using a forward-only cursor in a separate read-only session. Rows are
+     * not turned into managed entities, the consumer receives detached
+     * bookmarks built from consecutive rows of the same bookmark whose owner
+     * is an uninitialized reference to the user, so memory consumption does
+     * not depend on the number of bookmarks.
+     *
+     * @param id the id of the user.
+     * @param consumer the code to process each bookmark.
+     */
+    public void scrollByUserId(int id, Consumer<Bookmark> consumer) {
+        Timer.Context context = scrollByUserIdTimer.time();
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setCacheMode(CacheMode.IGNORE);
+            ScrollableResults results = session
+                    .getNamedQuery("Bookmark.findRowsByUserId")
+                    .setParameter("id", id)
+                    .setFetchSize(SCROLL_FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            try {
+                User owner = session.load(User.class, id);
+                Bookmark bookmark = null;
+                List<String> tags = new ArrayList<>();
+                while (results.next()) {
+                    Integer bookmarkId = (Integer) results.get(0);
+                    if (bookmark == null
+                            || !bookmark.getId().equals(bookmarkId)) {
+                        if (bookmark != null) {
+                            bookmark.setTags(tags);
+                            consumer.accept(bookmark);
+                            tags.clear();
+                        }
+                        bookmark = new Bookmark((String) results.get(1),
+                                (String) results.get(2));
+                        bookmark.setId(bookmarkId);
+                        bookmark.setUser(owner);
+                    }
+                    if (results.get(3) != null) {
+                        tags.add((String) results.get(3));
+                    }
+                }
+                if (bookmark != null) {
+                    bookmark.setTags(tags);
+                    consumer.accept(bookmark);
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            session.close();
+            context.stop();
+        }
+    }
+
+    /**
+     * Method looks for bookmarks of a user which contain words starting with
+     * each of the query terms in their URLs or descriptions. Candidates are
+     * found in the full-text index and then read from the database.
+     *
+     * @param userId the id of the user.
+     * @param query the text to search for.
+     * @param limit maximum number of bookmarks to return.
+     * @return matching bookmarks ordered by id.
+     */
+    public List<Bookmark> search(int userId, String query, int limit) {
+        try (Timer.Context context = searchTimer.time()) {
+            List<String> terms = BookmarkIndex.tokenize(query);
+            if (terms.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return findCandidates(userId, 0, limit,
+                    (after, count) -> index.search(userId, terms, after, count,
+                            () -> findTextOnPrimary(userId)),
+                    bookmark -> BookmarkIndex.matches(bookmark, terms));
+        }
+    }
+
+    /**
+     * Method reads the text of all bookmarks of a user to load the
+     * full-text index with. An index is kept for long, so it must not be
+     * loaded from a lagging replica; if the current session reads from one,
+     * the rows are read from the primary in a session of its own.
+     *
+     * @param userId the id of the user.
+     * @return ids, URLs and descriptions of bookmarks.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object[]> findTextOnPrimary(int userId) {
+        final String queryName = "Bookmark.findTextByUserId";
+        if (!RoutingDataSource.isReadingReplica()) {
+            return namedQuery(queryName).setParameter("id", userId).list();
+        }
+        return RoutingDataSource.primary(() -> {
+            final Session session = sessionFactory.openSession();
+            try {
+                session.setDefaultReadOnly(true);
+                return session.getNamedQuery(queryName)
+                        .setParameter("id", userId)
+                        .list();
+            } finally {
+                session.close();
+            }
+        });
+    }
+
+    /**
+     * Method reads bookmarks of a user found in an index. The index may lag
+     * behind the database, so candidates are checked against the stored
+     * data; if some of them are gone or don't match any more, the index is
+     * asked for candidates after the last one until the page is full or the
+     * index has no more of them.
+     *
+     * @param userId the id of the user.
+     * @param afterId the id of the last bookmark on the previous page or 0 to
+     * obtain the first page.
+     * @param limit maximum number of bookmarks to return.
+     * @param candidates supplies at most the given number of ids of
+     * candidates greater than the given id in ascending order.
+     * @param filter checks whether a stored bookmark still matches.
+     * @return List of at most limit matching bookmarks ordered by id.
+     */
+    private List<Bookmark> findCandidates(int userId, int afterId, int limit,
+            BiFunction<Integer, Integer, List<Integer>> candidates,
+            Predicate<Bookmark> filter) {
+        final List<Bookmark> page = new ArrayList<>();
+        int after = afterId;
+        while (page.size() < limit) {
+            final int count = limit - page.size();
+            final List<Integer> ids = candidates.apply(after, count);
+            if (ids.isEmpty()) {
+                break;
+            }
+            list(namedQuery("Bookmark.findByIdsAndUserId")
+                    .setParameterList("ids", ids)
+                    .setParameter("userId", userId))
+                    .stream()
+                    .filter(filter)
+                    .forEach(page::add);
+            if (ids.size() < count) {
+                break;
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        return page;
     }
 
     /**
@@ -64,7 +576,9 @@ public class BookmarkDAO extends AbstractDAO<Bookmark> {
      * otherwise.
      */
     public Optional<Bookmark> findById(int id) {
-        return Optional.ofNullable(get(id));
+        try (Timer.Context context = findByIdTimer.time()) {
+            return Optional.ofNullable(get(id));
+        }
     }
 
     /**
@@ -77,33 +591,407 @@ public class BookmarkDAO extends AbstractDAO<Bookmark> {
      * bookmark was not found.
      */
     public Optional<Bookmark> findByIdAndUserId(int id, int userId) {
-        return Optional.ofNullable(
-                uniqueResult(
-                        namedQuery("Bookmark.findByIdAndUserId")
-                        .setParameter("id", id)
-                        .setParameter("userId", userId)
-                )
-        );
+        try (Timer.Context context = findByIdAndUserIdTimer.time()) {
+            return Optional.ofNullable(
+                    uniqueResult(
+                            namedQuery("Bookmark.findByIdAndUserId")
+                            .setParameter("id", id)
+                            .setParameter("userId", userId)
+                    )
+            );
+        }
+    }
+
+    /**
+     * Method looks for a bookmark of a user with the same normalized URL.
+     * The lookup uses the index on the hash of the URL, so its cost doesn't
+     * depend on the number of bookmarks of the user.
+     *
+     * @param userId the id of the user.
+     * @param url the URL to look for.
+     * @return Optional containing the bookmark with the least id or an empty
+     * Optional if the user has no bookmark with the URL.
+     */
+    public Optional<Bookmark> findByUserIdAndUrl(int userId, String url) {
+        try (Timer.Context context = findByUserIdAndUrlTimer.time()) {
+            final String normalized = Bookmark.normalizeUrl(url);
+            // Different URLs may have the same hash.
+            return list(namedQuery("Bookmark.findByUserIdAndUrlHash")
+                    .setParameter("userId", userId)
+                    .setParameter("urlHash", Bookmark.hashUrl(url)))
+                    .stream()
+                    .filter(bookmark -> normalized.equals(
+                            Bookmark.normalizeUrl(bookmark.getUrl())))
+                    .findFirst();
+        }
+    }
+
+    /**
+     * Method looks for bookmarks of a user which point to the same
+     * normalized URL. The database only returns bookmarks whose URL hash
+     * occurs more than once.
+     *
+     * @param userId the id of the user.
+     * @return groups of duplicates ordered by the least id in a group.
+     */
+    @SuppressWarnings("unchecked")
+    public List<BookmarkDuplicates> findDuplicates(int userId) {
+        try (Timer.Context context = findDuplicatesTimer.time()) {
+            List<Object[]> rows = namedQuery("Bookmark.findDuplicatesByUserId")
+                    .setParameter("id", userId)
+                    .list();
+            // Bookmarks are grouped by URL, so that different URLs with the
+            // same hash are not reported.
+            Map<String, List<Integer>> groups = new LinkedHashMap<>();
+            for (Object[] row : rows) {
+                groups.computeIfAbsent(Bookmark.normalizeUrl((String) row[1]),
+                        url -> new ArrayList<>())
+                        .add((Integer) row[0]);
+            }
+            return groups.entrySet().stream()
+                    .filter(group -> group.getValue().size() > 1)
+                    .map(group -> new BookmarkDuplicates(group.getKey(),
+                            group.getValue()))
+                    .collect(Collectors.toList());
+        }
     }
 
     /**
      * Method saves a bookmark; either creates new or modifies an existent one.
+     * Changes are flushed at once, so that the bookmark gets its new version
+     * and concurrent modifications are detected, and recorded in the change
+     * log. Concurrent writes of the same user wait until the end of the
+     * current transaction.
      *
      * @param bookmark a bookmark to be saved.
      * @return the saved bookmark updated with data generated by the database.
+     * @throws org.hibernate.StaleStateException if the bookmark was
+     * modified by another transaction since it was read.
      */
     public Bookmark save(Bookmark bookmark) {
-        return persist(bookmark);
+        try (Timer.Context context = saveTimer.time()) {
+            final boolean created = bookmark.getId() == null;
+            lockChangeLog(bookmark.getUser().getId());
+            bookmark.setUpdatedAt(new Date());
+            Bookmark saved = persist(bookmark);
+            currentSession().flush();
+            changeDAO.record(saved.getId(), false);
+            if (created) {
+                countDAO.add(saved.getUser().getId(), 1);
+            }
+            final Set<String> tags = new HashSet<>(saved.getTags());
+            afterCommit(() -> {
+                index.put(saved.getUser().getId(),
+                        saved.getId(),
+                        saved.getUrl(),
+                        saved.getDescription());
+                tagDAO.put(saved.getUser().getId(), saved.getId(), tags);
+            });
+            return saved;
+        }
     }
 
     /**
-     * Method removes the bookmark from the database.
+     * Method inserts new bookmarks and their tags using JDBC batches within
+     * the current transaction and sets ids generated by the database. Bookmarks
+     * are not attached to the session, which keeps the persistence context
+     * empty however many bookmarks are imported. Hibernate itself can't batch
+     * these inserts because ids are generated by the database on insert.
+     *
+     * @param bookmarks new bookmarks, each with the owner set.
+     * @throws org.hibernate.JDBCException if the driver doesn't return a
+     * generated id for every bookmark.
+     */
+    public void saveAll(final List<Bookmark> bookmarks) {
+        if (bookmarks.isEmpty()) {
+            return;
+        }
+        try (Timer.Context context = saveAllTimer.time()) {
+            bookmarks.stream()
+                    .map(b -> b.getUser().getId())
+                    .distinct()
+                    .sorted()
+                    .forEach(this::lockChangeLog);
+            currentSession().doWork(connection -> {
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "INSERT INTO bookmarks "
+                        + "(url, url_hash, description, user_id, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    final Timestamp now
+                            = new Timestamp(System.currentTimeMillis());
+                    for (Bookmark bookmark : bookmarks) {
+                        bookmark.setVersion(0);
+                        bookmark.setUpdatedAt(now);
+                        statement.setString(1, bookmark.getUrl());
+                        statement.setLong(2,
+                                Bookmark.hashUrl(bookmark.getUrl()));
+                        statement.setString(3, bookmark.getDescription());
+                        statement.setInt(4, bookmark.getUser().getId());
+                        statement.setTimestamp(5, now);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    int generated = 0;
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        while (generated < bookmarks.size() && keys.next()) {
+                            bookmarks.get(generated++).setId(keys.getInt(1));
+                        }
+                    }
+                    // Tags, changes and indexes can't be written without
+                    // ids, so the whole import is rolled back.
+                    if (generated != bookmarks.size()) {
+                        throw new SQLException(String.format(
+                                "%d keys generated for %d bookmarks",
+                                generated, bookmarks.size()));
+                    }
+                }
+            });
+            tagDAO.saveAll(bookmarks);
+            changeDAO.recordAll(bookmarks);
+            bookmarks.stream()
+                    .collect(Collectors.groupingBy(b -> b.getUser().getId(),
+                            Collectors.counting()))
+                    .forEach((userId, count)
+                            -> countDAO.add(userId, count.intValue()));
+        }
+        // Hibernate doesn't know about the inserts made through JDBC, so
+        // cached data they affect is evicted now and after commit when no
+        // stale data can be cached by concurrent transactions.
+        final Set<Integer> owners = bookmarks.stream()
+                .map(b -> b.getUser().getId())
+                .collect(Collectors.toSet());
+        evictCachedBookmarks(owners);
+        // Callers may reuse the list once the method returns.
+        final List<Bookmark> saved = new ArrayList<>(bookmarks);
+        afterCommit(() -> {
+            evictCachedBookmarks(owners);
+            saved.forEach(b -> {
+                index.put(b.getUser().getId(),
+                        b.getId(),
+                        b.getUrl(),
+                        b.getDescription());
+                tagDAO.put(b.getUser().getId(), b.getId(), b.getTags());
+            });
+        });
+    }
+
+    /**
+     * Method runs an action after the current transaction is committed.
+     *
+     * @param action the action.
+     */
+    private void afterCommit(Runnable action) {
+        currentSession().getTransaction()
+                .registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            action.run();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Method evicts cached queries and bookmark collections of the given
+     * users from the second-level cache.
+     *
+     * @param userIds the ids of users whose bookmarks were changed.
+     */
+    private void evictCachedBookmarks(Set<Integer> userIds) {
+        final org.hibernate.Cache cache = sessionFactory.getCache();
+        cache.evictDefaultQueryRegion();
+        cache.evictQueryRegions();
+        userIds.forEach(id -> cache.evictCollection(USER_BOOKMARKS_REGION, id));
+    }
+
+    /**
+     * Method removes the bookmark from the database leaving a tombstone in
+     * the change log. Concurrent writes of the same user wait until the end
+     * of the current transaction. Nothing is done if there is no such
+     * bookmark.
      *
      * @param id the id of the bookmark to be deleted.
      */
     public void delete(Integer id) {
-        namedQuery("Bookmark.remove")
-                .setParameter("id", id)
-                .executeUpdate();
+        try (Timer.Context context = deleteTimer.time()) {
+            final Bookmark bookmark = get(id);
+            if (bookmark == null) {
+                return;
+            }
+            final int userId = bookmark.getUser().getId();
+            lockChangeLog(userId);
+            changeDAO.record(id, true);
+            namedQuery("Bookmark.remove")
+                    .setParameter("id", id)
+                    .executeUpdate();
+            countDAO.add(userId, -1);
+            afterCommit(() -> {
+                index.remove(userId, id);
+                tagDAO.remove(userId, id);
+            });
+        }
+    }
+
+    /**
+     * Method reads the number of bookmarks of a user to check a quota before
+     * adding bookmarks. Concurrent additions of the same user wait until the
+     * end of the current transaction.
+     *
+     * @param userId the id of the user.
+     * @return the number of bookmarks of the user.
+     */
+    public int lockBookmarkCount(int userId) {
+        return countDAO.lock(userId);
+    }
+
+    /**
+     * Method serializes writes of bookmarks of a user until the end of the
+     * current transaction. Sequence numbers of the change log are the
+     * successors of the last one of the user, so transactions which
+     * recorded changes concurrently would take the same numbers. The
+     * counter row of the user is locked, as additions lock it anyway to
+     * check the quota; it must be locked before the bookmarks, so that
+     * writers take locks in the same order.
+     *
+     * @param userId the id of the owner of the bookmarks.
+     */
+    private void lockChangeLog(int userId) {
+        countDAO.lock(userId);
+    }
+
+    /**
+     * Method deletes bookmarks of a user using set-based statements, leaving
+     * tombstones in the change log. Ids are processed in chunks, so that IN
+     * lists stay within the limits of databases.
+     *
+     * @param userId the id of the owner of the bookmarks.
+     * @param ids the ids of bookmarks to delete.
+     * @return the ids of deleted bookmarks; ids of bookmarks which don't
+     * exist or belong to other users are absent.
+     */
+    public Set<Integer> deleteAll(int userId, Collection<Integer> ids) {
+        final Set<Integer> deleted = new HashSet<>();
+        try (Timer.Context context = deleteAllTimer.time()) {
+            lockChangeLog(userId);
+            for (List<Integer> chunk : partition(ids)) {
+                final List<Integer> found = findIds(userId, chunk);
+                if (found.isEmpty()) {
+                    continue;
+                }
+                changeDAO.recordAll(userId, found, true);
+                namedQuery("Bookmark.removeAll")
+                        .setParameterList("ids", found)
+                        .setParameter("userId", userId)
+                        .executeUpdate();
+                countDAO.add(userId, -found.size());
+                deleted.addAll(found);
+            }
+        }
+        afterCommit(() -> deleted.forEach(id -> {
+            index.remove(userId, id);
+            tagDAO.remove(userId, id);
+        }));
+        return deleted;
+    }
+
+    /**
+     * Method applies the same modification to bookmarks of a user using
+     * set-based statements and records the changes. Ids are processed in
+     * chunks, so that IN lists stay within the limits of databases; modified
+     * bookmarks are read back by one query per chunk to update the indexes
+     * and are not kept in the session.
+     *
+     * @param userId the id of the owner of the bookmarks.
+     * @param update the modification.
+     * @return the ids of modified bookmarks; ids of bookmarks which don't
+     * exist or belong to other users are absent.
+     */
+    public Set<Integer> updateAll(int userId, BulkUpdate update) {
+        final Set<String> add = update.getNormalizedAddTags();
+        final Set<String> remove = update.getNormalizedRemoveTags();
+        final List<Bookmark> updated = new ArrayList<>();
+        try (Timer.Context context = updateAllTimer.time()) {
+            lockChangeLog(userId);
+            final Date now = new Date();
+            for (List<Integer> chunk : partition(update.getIds())) {
+                final List<Integer> found = findIds(userId, chunk);
+                if (found.isEmpty()) {
+                    continue;
+                }
+                (update.getDescription() == null
+                        ? namedQuery("Bookmark.touchAll")
+                        : namedQuery("Bookmark.describeAll")
+                        .setParameter("description", update.getDescription()))
+                        .setParameter("updatedAt", now)
+                        .setParameterList("ids", found)
+                        .setParameter("userId", userId)
+                        .executeUpdate();
+                tagDAO.updateAll(found, add, remove);
+                changeDAO.recordAll(userId, found, false);
+                // Tags are changed through JDBC behind Hibernate's back.
+                evictTags(found);
+                for (Bookmark bookmark : list(
+                        namedQuery("Bookmark.findByIdsAndUserId")
+                        .setParameterList("ids", found)
+                        .setParameter("userId", userId))) {
+                    currentSession().evict(bookmark);
+                    updated.add(bookmark);
+                }
+            }
+        }
+        final Set<Integer> ids = updated.stream()
+                .map(Bookmark::getId)
+                .collect(Collectors.toSet());
+        afterCommit(() -> {
+            evictTags(ids);
+            updated.forEach(b -> {
+                index.put(userId, b.getId(), b.getUrl(), b.getDescription());
+                tagDAO.put(userId, b.getId(), new HashSet<>(b.getTags()));
+            });
+        });
+        return ids;
+    }
+
+    /**
+     * Method looks for the ids of bookmarks of a user among the given ones.
+     *
+     * @param userId the id of the owner.
+     * @param ids the ids to look for.
+     * @return the ids of bookmarks which exist and belong to the user.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Integer> findIds(int userId, List<Integer> ids) {
+        return namedQuery("Bookmark.findIdsByIdsAndUserId")
+                .setParameterList("ids", ids)
+                .setParameter("userId", userId)
+                .list();
+    }
+
+    /**
+     * Method splits distinct ids into chunks for IN lists.
+     *
+     * @param ids the ids.
+     * @return chunks of at most IN_LIST_SIZE ids.
+     */
+    private static List<List<Integer>> partition(Collection<Integer> ids) {
+        return Lists.partition(new ArrayList<>(new LinkedHashSet<>(ids)),
+                IN_LIST_SIZE);
+    }
+
+    /**
+     * Method evicts cached tags of bookmarks from the second-level cache.
+     *
+     * @param ids the ids of the bookmarks.
+     */
+    private void evictTags(Collection<Integer> ids) {
+        final org.hibernate.Cache cache = sessionFactory.getCache();
+        ids.forEach(id -> cache.evictCollection(BOOKMARK_TAGS_REGION, id));
     }
 }
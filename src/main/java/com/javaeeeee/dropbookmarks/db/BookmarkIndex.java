@@ -0,0 +1,297 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory inverted index of words found in bookmark URLs and
+ * descriptions. The index of a user is loaded from the database when the
+ * user searches for the first time and is kept up to date as bookmarks are
+ * saved and deleted. Each query term matches words it is a prefix of and a
+ * bookmark matches a query if all the terms match. Indexes of users are
+ * evicted according to the cache policy and loaded again when needed.
+ * Thread-safe.
+ * <p>
+ * Only changes made through this instance of the application are applied
+ * to the index, so when several instances share the database, bookmarks
+ * changed by the others are missed until the index of the user is evicted.
+ * Limit that with expireAfterWrite in the cache policy.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkIndex {
+
+    /**
+     * Characters which separate words.
+     */
+    private static final Pattern SEPARATORS
+            = Pattern.compile("[^\\p{L}\\p{N}]+");
+    /**
+     * The cache policy used unless another one is given.
+     */
+    public static final String DEFAULT_CACHE_POLICY
+            = "maximumSize=1000, expireAfterAccess=1h";
+    /**
+     * Indexes of users keyed by user ids.
+     */
+    private final ConcurrentMap<Integer, UserIndex> users;
+
+    /**
+     * Constructor to create the index with the default cache policy.
+     */
+    public BookmarkIndex() {
+        this(CacheBuilderSpec.parse(DEFAULT_CACHE_POLICY));
+    }
+
+    /**
+     * Constructor to create the index which keeps indexes of users according
+     * to the cache policy.
+     *
+     * @param cachePolicy the number of users whose indexes are kept and for
+     * how long.
+     */
+    public BookmarkIndex(CacheBuilderSpec cachePolicy) {
+        this.users = CacheBuilder.from(cachePolicy)
+                .<Integer, UserIndex>build()
+                .asMap();
+    }
+
+    /**
+     * Method splits a text into distinct lower case words.
+     *
+     * @param text the text, may be null.
+     * @return the words in the order they appear in the text.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : SEPARATORS.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Method checks whether a bookmark matches all query terms.
+     *
+     * @param bookmark the bookmark.
+     * @param terms query terms obtained by tokenize.
+     * @return true if each term is a prefix of a word of the bookmark.
+     */
+    public static boolean matches(Bookmark bookmark, List<String> terms) {
+        List<String> words = new ArrayList<>(tokenize(bookmark.getUrl()));
+        words.addAll(tokenize(bookmark.getDescription()));
+        return terms.stream().allMatch(term -> words.stream()
+                .anyMatch(word -> word.startsWith(term)));
+    }
+
+    /**
+     * Method looks for bookmarks of a user matching all query terms.
+     *
+     * @param userId the id of the user.
+     * @param terms query terms obtained by tokenize.
+     * @param afterId ids up to this one are skipped; 0 to skip none.
+     * @param limit maximum number of ids to return.
+     * @param loader supplies rows of id, URL and description of all the
+     * bookmarks of the user if the index of the user is not loaded yet.
+     * @return ids of matching bookmarks greater than afterId in ascending
+     * order.
+     */
+    public List<Integer> search(int userId, List<String> terms, int afterId,
+            int limit, Supplier<List<Object[]>> loader) {
+        UserIndex index = users.computeIfAbsent(userId, id -> new UserIndex());
+        synchronized (index) {
+            if (!index.loaded) {
+                for (Object[] row : loader.get()) {
+                    index.add((Integer) row[0], (String) row[1],
+                            (String) row[2]);
+                }
+                index.loaded = true;
+            }
+            return index.search(terms, afterId, limit);
+        }
+    }
+
+    /**
+     * Method adds or replaces a bookmark in the index. Nothing is done if the
+     * index of the owner is not loaded, as the bookmark will be read from the
+     * database when it is.
+     *
+     * @param userId the id of the owner.
+     * @param id the id of the bookmark.
+     * @param url the URL of the bookmark.
+     * @param description the description of the bookmark.
+     */
+    public void put(int userId, int id, String url, String description) {
+        UserIndex index = users.get(userId);
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (index.loaded) {
+                index.remove(id);
+                index.add(id, url, description);
+            }
+        }
+    }
+
+    /**
+     * Method removes a bookmark from the index.
+     *
+     * @param userId the id of the owner.
+     * @param id the id of the bookmark.
+     */
+    public void remove(int userId, int id) {
+        UserIndex index = users.get(userId);
+        if (index != null) {
+            synchronized (index) {
+                index.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Method empties the index, so that indexes of users are read from the
+     * database again when they search next time.
+     */
+    public void clear() {
+        users.clear();
+    }
+
+    /**
+     * Index of the bookmarks of one user. Not thread-safe.
+     */
+    private static class UserIndex {
+
+        /**
+         * Whether the bookmarks of the user were read from the database.
+         */
+        private boolean loaded;
+        /**
+         * Sorted ids of bookmarks keyed by the words they contain; sorted to
+         * find words by prefix.
+         */
+        private final TreeMap<String, SortedSet<Integer>> postings
+                = new TreeMap<>();
+        /**
+         * Words of each bookmark keyed by bookmark ids.
+         */
+        private final Map<Integer, Collection<String>> words
+                = new HashMap<>();
+
+        /**
+         * Method adds a bookmark to the index.
+         *
+         * @param id the id of the bookmark.
+         * @param url the URL of the bookmark.
+         * @param description the description of the bookmark.
+         */
+        void add(int id, String url, String description) {
+            Set<String> bookmarkWords = new LinkedHashSet<>(tokenize(url));
+            bookmarkWords.addAll(tokenize(description));
+            for (String word : bookmarkWords) {
+                postings.computeIfAbsent(word, w -> new TreeSet<>()).add(id);
+            }
+            words.put(id, bookmarkWords);
+        }
+
+        /**
+         * Method removes a bookmark from the index.
+         *
+         * @param id the id of the bookmark.
+         */
+        void remove(int id) {
+            Collection<String> bookmarkWords = words.remove(id);
+            if (bookmarkWords == null) {
+                return;
+            }
+            for (String word : bookmarkWords) {
+                SortedSet<Integer> ids = postings.get(word);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+
+        /**
+         * Method looks for bookmarks matching all query terms.
+         *
+         * @param terms query terms.
+         * @param afterId ids up to this one are skipped.
+         * @param limit maximum number of ids to return.
+         * @return ids of matching bookmarks greater than afterId in
+         * ascending order.
+         */
+        List<Integer> search(List<String> terms, int afterId, int limit) {
+            SortedSet<Integer> result = null;
+            for (String term : terms) {
+                SortedSet<Integer> ids = new TreeSet<>();
+                postings.subMap(term, term + Character.MAX_VALUE)
+                        .values()
+                        .forEach(ids::addAll);
+                if (result == null) {
+                    result = ids;
+                } else {
+                    result.retainAll(ids);
+                }
+                if (result.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+            List<Integer> page = new ArrayList<>(limit);
+            if (result != null) {
+                for (Integer id : result.tailSet(afterId + 1)) {
+                    if (page.size() == limit) {
+                        break;
+                    }
+                    page.add(id);
+                }
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import java.util.function.LongSupplier;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * A class to report Hibernate second-level and query cache statistics as
+ * metrics. Hibernate collects statistics only if hibernate.generate_statistics
+ * is set to true.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public final class CacheMetrics {
+
+    /**
+     * The prefix of the names of metrics.
+     */
+    public static final String PREFIX = "hibernate";
+
+    /**
+     * Utility class.
+     */
+    private CacheMetrics() {
+    }
+
+    /**
+     * Method registers gauges for cache hits, misses, puts and hit ratio.
+     *
+     * @param metrics registry to report metrics to.
+     * @param sessionFactory Hibernate session factory.
+     */
+    public static void register(final MetricRegistry metrics,
+            final SessionFactory sessionFactory) {
+        final Statistics statistics = sessionFactory.getStatistics();
+        register(metrics, "second-level-cache",
+                statistics::getSecondLevelCacheHitCount,
+                statistics::getSecondLevelCacheMissCount,
+                statistics::getSecondLevelCachePutCount);
+        register(metrics, "query-cache",
+                statistics::getQueryCacheHitCount,
+                statistics::getQueryCacheMissCount,
+                statistics::getQueryCachePutCount);
+    }
+
+    /**
+     * Method registers gauges for one kind of cache.
+     *
+     * @param metrics registry to report metrics to.
+     * @param cache the name of the cache.
+     * @param hits the source of the number of hits.
+     * @param misses the source of the number of misses.
+     * @param puts the source of the number of puts.
+     */
+    private static void register(final MetricRegistry metrics,
+            final String cache,
+            final LongSupplier hits,
+            final LongSupplier misses,
+            final LongSupplier puts) {
+        metrics.register(MetricRegistry.name(PREFIX, cache, "hits"),
+                (Gauge<Long>) hits::getAsLong);
+        metrics.register(MetricRegistry.name(PREFIX, cache, "misses"),
+                (Gauge<Long>) misses::getAsLong);
+        metrics.register(MetricRegistry.name(PREFIX, cache, "puts"),
+                (Gauge<Long>) puts::getAsLong);
+        metrics.register(MetricRegistry.name(PREFIX, cache, "hit-ratio"),
+                new RatioGauge() {
+            @Override
+            protected RatioGauge.Ratio getRatio() {
+                final long hitCount = hits.getAsLong();
+                return RatioGauge.Ratio.of(hitCount,
+                        hitCount + misses.getAsLong());
+            }
+        });
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.health.HealthCheck;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health check which reports the connection pool unhealthy while units of
+ * work wait too long for connections, even though the database itself
+ * answers. The 99th percentile of the waits of the recent window of the data
+ * source is compared with the threshold, however often the check is run.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ConnectionPoolHealthCheck extends HealthCheck {
+
+    /**
+     * The measured data source.
+     */
+    private final InstrumentedDataSource dataSource;
+    /**
+     * The greatest healthy 99th percentile of waits in milliseconds.
+     */
+    private final long thresholdMillis;
+
+    /**
+     * Constructor to create the health check.
+     *
+     * @param dataSource the measured data source.
+     * @param thresholdMillis the greatest healthy 99th percentile of waits
+     * for a connection in milliseconds.
+     */
+    public ConnectionPoolHealthCheck(InstrumentedDataSource dataSource,
+            long thresholdMillis) {
+        this.dataSource = dataSource;
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * Method compares recent waits for connections with the threshold.
+     *
+     * @return the result of the check.
+     */
+    @Override
+    protected Result check() {
+        final Snapshot waits = dataSource.getRecentWaits();
+        if (waits.size() == 0) {
+            return Result.healthy("No connections acquired recently");
+        }
+        final double p99Millis = waits.get99thPercentile()
+                / TimeUnit.MILLISECONDS.toNanos(1);
+        final String message = String.format(
+                "p99 wait for a connection %.1f ms of %d acquisitions, "
+                + "threshold %d ms", p99Millis, waits.size(), thresholdMillis);
+        return p99Millis > thresholdMillis
+                ? Result.unhealthy(message)
+                : Result.healthy(message);
+    }
+}
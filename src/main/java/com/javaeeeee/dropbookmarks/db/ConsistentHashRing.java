@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of user ids to shards. Every shard owns many points on
+ * the ring, so users are spread evenly and adding a shard moves only about
+ * 1/N of users, all of them to the new shard.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ConsistentHashRing {
+
+    /**
+     * Number of points of each shard on the ring.
+     */
+    public static final int POINTS_PER_SHARD = 128;
+    /**
+     * Hash function of points and user ids; stable across JVMs.
+     */
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    /**
+     * Shards by the points they own.
+     */
+    private final NavigableMap<Integer, Integer> ring = new TreeMap<>();
+
+    /**
+     * Constructor to create the ring.
+     *
+     * @param shards the number of shards.
+     */
+    public ConsistentHashRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException(
+                    "There should be at least one shard.");
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            for (int point = 0; point < POINTS_PER_SHARD; point++) {
+                ring.put(HASH.hashString("shard-" + shard + "-" + point,
+                        StandardCharsets.UTF_8).asInt(), shard);
+            }
+        }
+    }
+
+    /**
+     * Method finds the shard of a user, that is the shard owning the first
+     * point of the ring after the hash of the user id.
+     *
+     * @param userId the id of the user.
+     * @return the index of the shard.
+     */
+    public int shardOf(int userId) {
+        final Map.Entry<Integer, Integer> entry
+                = ring.ceilingEntry(HASH.hashInt(userId).asInt());
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.google.common.collect.ImmutableMap;
+import io.dropwizard.db.DataSourceFactory;
+import java.util.Map;
+
+/**
+ * Tuning of connections for a database driver. A profile adds connection
+ * properties to the configuration of a database unless they are set
+ * explicitly; sizes of the pool are left as configured.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public enum DatabaseProfile {
+
+    /**
+     * Connection properties are used as configured.
+     */
+    NONE(ImmutableMap.of()),
+    /**
+     * MySQL Connector/J keeps prepared statements on the server and caches
+     * them per connection, so that Hibernate's queries are parsed once, and
+     * rewrites batched inserts into multi-row statements.
+     */
+    MYSQL(ImmutableMap.<String, String>builder()
+            .put("cachePrepStmts", "true")
+            .put("useServerPrepStmts", "true")
+            .put("prepStmtCacheSize", "250")
+            .put("prepStmtCacheSqlLimit", "2048")
+            .put("rewriteBatchedStatements", "true")
+            .build());
+
+    /**
+     * Connection properties of the profile.
+     */
+    private final Map<String, String> properties;
+
+    /**
+     * Constructor to create a profile.
+     *
+     * @param properties connection properties of the profile.
+     */
+    DatabaseProfile(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Getter for connection properties of the profile.
+     *
+     * @return the properties.
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Method adds the connection properties of the profile which are not set
+     * to the configuration of a database.
+     *
+     * @param database the configuration of the database.
+     * @return the same configuration.
+     */
+    public DataSourceFactory applyTo(DataSourceFactory database) {
+        properties.forEach(database.getProperties()::putIfAbsent);
+        return database;
+    }
+}
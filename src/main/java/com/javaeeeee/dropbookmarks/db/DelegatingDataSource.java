@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import io.dropwizard.db.ManagedDataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+/**
+ * Base class of data sources which choose among several databases. Everything
+ * but the choice of the connection and the life cycle is delegated to the
+ * main database.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public abstract class DelegatingDataSource implements ManagedDataSource {
+
+    /**
+     * The main database.
+     */
+    protected final ManagedDataSource delegate;
+
+    /**
+     * Constructor to create the data source.
+     *
+     * @param delegate the main database.
+     */
+    protected DelegatingDataSource(ManagedDataSource delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Connections with other credentials are given by the main database
+     * only.
+     *
+     * @param username the user name.
+     * @param password the password.
+     * @return the connection to the main database.
+     * @throws SQLException if the main database can't be connected to.
+     */
+    @Override
+    public Connection getConnection(String username, String password)
+            throws SQLException {
+        return delegate.getConnection(username, password);
+    }
+
+    /**
+     * Getter for the log writer of the main database.
+     *
+     * @return the log writer.
+     * @throws SQLException if the main database fails.
+     */
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    /**
+     * Setter for the log writer of the main database.
+     *
+     * @param out the log writer.
+     * @throws SQLException if the main database fails.
+     */
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    /**
+     * Setter for the login timeout of the main database.
+     *
+     * @param seconds the timeout.
+     * @throws SQLException if the main database fails.
+     */
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    /**
+     * Getter for the login timeout of the main database.
+     *
+     * @return the timeout.
+     * @throws SQLException if the main database fails.
+     */
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    /**
+     * Getter for the parent logger of the main database.
+     *
+     * @return the logger.
+     * @throws SQLFeatureNotSupportedException if the main database doesn't
+     * log with java.util.logging.
+     */
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    /**
+     * Method unwraps the main database.
+     *
+     * @param <T> the type to unwrap.
+     * @param iface the type to unwrap.
+     * @return the unwrapped main database.
+     * @throws SQLException if the main database can't be unwrapped.
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return delegate.unwrap(iface);
+    }
+
+    /**
+     * Method tells if the main database wraps the type.
+     *
+     * @param iface the type.
+     * @return true if the main database can be unwrapped to the type.
+     * @throws SQLException if the main database fails.
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return delegate.isWrapperFor(iface);
+    }
+}
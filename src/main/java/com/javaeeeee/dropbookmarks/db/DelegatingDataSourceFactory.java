@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.util.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Base class of factories of data sources which choose among several
+ * databases. Everything but the data source itself, such as Hibernate
+ * properties and validation queries, is taken from the main database.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public abstract class DelegatingDataSourceFactory
+        implements PooledDataSourceFactory {
+
+    /**
+     * Connection parameters of the main database.
+     */
+    protected final PooledDataSourceFactory delegate;
+
+    /**
+     * Constructor to create the factory.
+     *
+     * @param delegate connection parameters of the main database.
+     */
+    protected DelegatingDataSourceFactory(PooledDataSourceFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Whether comments are added to queries, as configured for the main
+     * database.
+     *
+     * @return true if comments are added.
+     */
+    @Override
+    public boolean isAutoCommentsEnabled() {
+        return delegate.isAutoCommentsEnabled();
+    }
+
+    /**
+     * Hibernate properties of the main database.
+     *
+     * @return the properties.
+     */
+    @Override
+    public Map<String, String> getProperties() {
+        return delegate.getProperties();
+    }
+
+    /**
+     * The validation query timeout of the main database.
+     *
+     * @return the timeout.
+     */
+    @Override
+    public Optional<Duration> getValidationQueryTimeout() {
+        return delegate.getValidationQueryTimeout();
+    }
+
+    /**
+     * The health check timeout of the main database.
+     *
+     * @return the timeout.
+     */
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public Optional<Duration> getHealthCheckValidationTimeout() {
+        return delegate.getHealthCheckValidationTimeout();
+    }
+
+    /**
+     * The validation query of the main database.
+     *
+     * @return the query.
+     */
+    @Override
+    public String getValidationQuery() {
+        return delegate.getValidationQuery();
+    }
+
+    /**
+     * The health check query of the main database.
+     *
+     * @return the query.
+     */
+    @Override
+    @Deprecated
+    @SuppressWarnings("deprecation")
+    public String getHealthCheckValidationQuery() {
+        return delegate.getHealthCheckValidationQuery();
+    }
+
+    /**
+     * The driver class of the main database.
+     *
+     * @return the driver class name.
+     */
+    @Override
+    public String getDriverClass() {
+        return delegate.getDriverClass();
+    }
+
+    /**
+     * The JDBC URL of the main database.
+     *
+     * @return the URL.
+     */
+    @Override
+    public String getUrl() {
+        return delegate.getUrl();
+    }
+
+    /**
+     * Method makes the main database a single connection pool.
+     */
+    @Override
+    public void asSingleConnectionPool() {
+        delegate.asSingleConnectionPool();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.javaeeeee.dropbookmarks.metrics.HdrHistogramMetricRegistry;
+import com.javaeeeee.dropbookmarks.metrics.SlidingWindowHdrHistogramReservoir;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A data source which measures how long units of work wait for a connection.
+ * Besides the timer, which is reported, the waits of a short sliding window
+ * are kept apart to tell how the pool copes with the load right now; reading
+ * them doesn't disturb what reporters or other readers see.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    /**
+     * Timer of waits for a connection.
+     */
+    private final Timer acquireTimer;
+    /**
+     * Meter of connections which could not be acquired, e.g. because the
+     * pool was exhausted for longer than maxWaitForConnection.
+     */
+    private final Meter failureMeter;
+    /**
+     * The duration of the window of recent waits in nanoseconds.
+     */
+    private final long windowNanos;
+    /**
+     * Source of time of the window.
+     */
+    private final Clock clock;
+    /**
+     * Waits for a connection in nanoseconds during the window.
+     */
+    private volatile Histogram recent;
+
+    /**
+     * Constructor to create the data source whose recent waits are the ones
+     * of the last minute.
+     *
+     * @param delegate the data source to measure.
+     * @param name the name of the pool.
+     * @param metrics the registry to report to.
+     */
+    public InstrumentedDataSource(ManagedDataSource delegate, String name,
+            MetricRegistry metrics) {
+        this(delegate, name, metrics,
+                HdrHistogramMetricRegistry.DEFAULT_WINDOW_SECONDS,
+                TimeUnit.SECONDS, Clock.defaultClock());
+    }
+
+    /**
+     * Constructor to create the data source whose recent waits are the ones
+     * of the window provided.
+     *
+     * @param delegate the data source to measure.
+     * @param name the name of the pool.
+     * @param metrics the registry to report to.
+     * @param window the duration of the window of recent waits.
+     * @param unit the unit of the duration.
+     * @param clock source of time of the window.
+     */
+    public InstrumentedDataSource(ManagedDataSource delegate, String name,
+            MetricRegistry metrics, long window, TimeUnit unit,
+            Clock clock) {
+        super(delegate);
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+        this.recent = newRecent();
+        this.acquireTimer = metrics.timer(MetricRegistry
+                .name(InstrumentedDataSource.class, name, "acquire"));
+        this.failureMeter = metrics.meter(MetricRegistry
+                .name(InstrumentedDataSource.class, name, "failures"));
+    }
+
+    /**
+     * Method gives a connection of the measured data source and records how
+     * long it took.
+     *
+     * @return the connection.
+     * @throws SQLException if no connection could be acquired.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        final long start = System.nanoTime();
+        try {
+            return delegate.getConnection();
+        } catch (SQLException | RuntimeException ex) {
+            failureMeter.mark();
+            throw ex;
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            acquireTimer.update(elapsed, TimeUnit.NANOSECONDS);
+            recent.update(elapsed);
+        }
+    }
+
+    /**
+     * Method returns waits for a connection in nanoseconds recorded during
+     * the window.
+     *
+     * @return the snapshot of recent waits.
+     */
+    public Snapshot getRecentWaits() {
+        return recent.getSnapshot();
+    }
+
+    /**
+     * Method creates an empty histogram of recent waits.
+     *
+     * @return the histogram.
+     */
+    private Histogram newRecent() {
+        return new Histogram(new SlidingWindowHdrHistogramReservoir(
+                windowNanos, TimeUnit.NANOSECONDS, clock));
+    }
+
+    /**
+     * Method unwraps this data source or the measured one.
+     *
+     * @param <T> the type to unwrap.
+     * @param iface the type to unwrap.
+     * @return the unwrapped data source.
+     * @throws SQLException if the data source can't be unwrapped.
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this)
+                : super.unwrap(iface);
+    }
+
+    /**
+     * Method tells if this data source is or wraps the type.
+     *
+     * @param iface the type.
+     * @return true if the data source can be unwrapped to the type.
+     * @throws SQLException if the measured data source fails.
+     */
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || super.isWrapperFor(iface);
+    }
+
+    /**
+     * Method starts the measured data source. Waits before the start, such
+     * as the one of Hibernate reading metadata while the pool is filled,
+     * are not recent.
+     *
+     * @throws Exception if the data source can't be started.
+     */
+    @Override
+    public void start() throws Exception {
+        delegate.start();
+        recent = newRecent();
+    }
+
+    /**
+     * Method stops the measured data source.
+     *
+     * @throws Exception if the data source can't be stopped.
+     */
+    @Override
+    public void stop() throws Exception {
+        delegate.stop();
+    }
+}
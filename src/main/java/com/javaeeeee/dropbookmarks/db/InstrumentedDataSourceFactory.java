@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+
+/**
+ * Factory of a data source which measures waits for connections of the data
+ * source built by another factory.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class InstrumentedDataSourceFactory
+        extends DelegatingDataSourceFactory {
+
+    /**
+     * Constructor to create the factory.
+     *
+     * @param delegate the factory of the data source to measure.
+     */
+    public InstrumentedDataSourceFactory(PooledDataSourceFactory delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Method creates the data source and wraps it to measure waits.
+     *
+     * @param metricRegistry the registry to report to.
+     * @param name the name of the pool.
+     * @return the measuring data source.
+     */
+    @Override
+    public ManagedDataSource build(MetricRegistry metricRegistry,
+            String name) {
+        return new InstrumentedDataSource(
+                delegate.build(metricRegistry, name), name, metricRegistry);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+import io.dropwizard.util.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory of a data source routing reads to replicas of the primary
+ * database.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ReplicatedDataSourceFactory extends DelegatingDataSourceFactory {
+
+    /**
+     * Connection parameters of read replicas.
+     */
+    private final List<DataSourceFactory> replicas;
+    /**
+     * The greatest lag of a replica which may be read from.
+     */
+    private final Duration maxLag;
+    /**
+     * How often the lag is measured.
+     */
+    private final Duration lagCheckInterval;
+
+    /**
+     * Constructor to create the factory.
+     *
+     * @param primary connection parameters of the primary database.
+     * @param replicas connection parameters of read replicas.
+     * @param maxLag the greatest lag of a replica which may be read from.
+     * @param lagCheckInterval how often the lag is measured.
+     */
+    public ReplicatedDataSourceFactory(PooledDataSourceFactory primary,
+            List<DataSourceFactory> replicas, Duration maxLag,
+            Duration lagCheckInterval) {
+        super(primary);
+        this.replicas = replicas;
+        this.maxLag = maxLag;
+        this.lagCheckInterval = lagCheckInterval;
+    }
+
+    /**
+     * Method creates pools for the primary and every replica, named after
+     * the primary with the suffix replica-N.
+     *
+     * @param metricRegistry the registry to report to.
+     * @param name the name of the primary pool.
+     * @return the routing data source.
+     */
+    @Override
+    public ManagedDataSource build(MetricRegistry metricRegistry,
+            String name) {
+        final Map<String, ManagedDataSource> replicaDataSources
+                = new LinkedHashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            final String replicaName = name + "-replica-" + i;
+            replicaDataSources.put(replicaName,
+                    replicas.get(i).build(metricRegistry, replicaName));
+        }
+        return new RoutingDataSource(delegate.build(metricRegistry, name),
+                replicaDataSources,
+                maxLag.toMilliseconds(),
+                lagCheckInterval.toMilliseconds(),
+                TimeUnit.MILLISECONDS,
+                metricRegistry);
+    }
+
+    /**
+     * Method makes the primary and every replica a single connection pool.
+     */
+    @Override
+    public void asSingleConnectionPool() {
+        super.asSingleConnectionPool();
+        replicas.forEach(DataSourceFactory::asSingleConnectionPool);
+    }
+}
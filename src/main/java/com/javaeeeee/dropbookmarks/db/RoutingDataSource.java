@@ -0,0 +1,354 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Data source which gives connections to the primary database, or to one of
+ * its read replicas for work done in {@link #readOnly(Supplier)}. Replicas
+ * are used in turn while they lag behind the primary by no more than the
+ * allowed time; otherwise reads fall back to the primary.
+ *
+ * The lag is measured by a heartbeat: the current time is written to the
+ * replication_heartbeat table of the primary and read back from every
+ * replica, so the clocks of all application instances writing the
+ * heartbeat should be in sync.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class RoutingDataSource extends DelegatingDataSource {
+
+    /**
+     * Statement which writes the heartbeat to the primary.
+     */
+    static final String WRITE_HEARTBEAT
+            = "UPDATE replication_heartbeat SET beat = ? WHERE id = 1";
+    /**
+     * Statement which reads the heartbeat from a replica.
+     */
+    static final String READ_HEARTBEAT
+            = "SELECT beat FROM replication_heartbeat WHERE id = 1";
+    /**
+     * The lag of a replica which can't be measured.
+     */
+    private static final long UNKNOWN_LAG = Long.MAX_VALUE;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER
+            = LoggerFactory.getLogger(RoutingDataSource.class);
+    /**
+     * Whether work on the current thread may read from a replica; true once
+     * a connection to a replica has been given to it.
+     */
+    private static final ThreadLocal<Boolean> READ_ONLY
+            = new ThreadLocal<>();
+
+    /**
+     * Read replicas of the primary database.
+     */
+    private final List<Replica> replicas;
+    /**
+     * The greatest lag of a replica, in milliseconds, which may be read
+     * from.
+     */
+    private final long maxLagMillis;
+    /**
+     * How often the lag is measured, in milliseconds.
+     */
+    private final long checkIntervalMillis;
+    /**
+     * The replica to try first for the next read.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+    /**
+     * Meter of reads which went to the primary as no replica was usable.
+     */
+    private final Meter fallbackMeter;
+    /**
+     * Thread which measures the lag of replicas.
+     */
+    private ScheduledExecutorService lagChecker;
+
+    /**
+     * Constructor to create the data source.
+     *
+     * @param primary the primary database.
+     * @param replicas read replicas by their names.
+     * @param maxLag the greatest lag of a replica which may be read from.
+     * @param checkInterval how often the lag is measured.
+     * @param unit the unit of the lag and the interval.
+     * @param metrics the registry to report reads and lags of replicas to.
+     */
+    public RoutingDataSource(ManagedDataSource primary,
+            Map<String, ManagedDataSource> replicas,
+            long maxLag, long checkInterval, TimeUnit unit,
+            MetricRegistry metrics) {
+        super(primary);
+        this.maxLagMillis = unit.toMillis(maxLag);
+        this.checkIntervalMillis = unit.toMillis(checkInterval);
+        final List<Replica> list = new ArrayList<>();
+        replicas.forEach((name, dataSource)
+                -> list.add(new Replica(name, dataSource, metrics)));
+        this.replicas = Collections.unmodifiableList(list);
+        this.fallbackMeter = metrics.meter(
+                MetricRegistry.name(RoutingDataSource.class, "fallbacks"));
+    }
+
+    /**
+     * Method does work which only reads, so it may use a replica. Work which
+     * writes must not be done here as replicas are read-only.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    public static <T> T readOnly(Supplier<T> work) {
+        if (READ_ONLY.get() != null) {
+            return work.get();
+        }
+        READ_ONLY.set(Boolean.FALSE);
+        try {
+            return work.get();
+        } finally {
+            READ_ONLY.remove();
+        }
+    }
+
+    /**
+     * Method does work which must read from the primary, even inside
+     * {@link #readOnly(Supplier)}.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    public static <T> T primary(Supplier<T> work) {
+        final Boolean readOnly = READ_ONLY.get();
+        READ_ONLY.remove();
+        try {
+            return work.get();
+        } finally {
+            if (readOnly != null) {
+                READ_ONLY.set(readOnly);
+            }
+        }
+    }
+
+    /**
+     * Method tells whether work on the current thread has been given a
+     * connection to a replica, so what it reads may be stale.
+     *
+     * @return true inside {@link #readOnly(Supplier)} after a connection to
+     * a replica was given, false otherwise.
+     */
+    public static boolean isReadingReplica() {
+        return Boolean.TRUE.equals(READ_ONLY.get());
+    }
+
+    /**
+     * Method gives a connection to a replica inside
+     * {@link #readOnly(Supplier)} and to the primary otherwise.
+     *
+     * @return the connection.
+     * @throws SQLException if the primary can't be connected to.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (READ_ONLY.get() == null || replicas.isEmpty()) {
+            return delegate.getConnection();
+        }
+        final int first = Math.floorMod(next.getAndIncrement(),
+                replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            final Replica replica
+                    = replicas.get((first + i) % replicas.size());
+            if (replica.lagMillis > maxLagMillis) {
+                continue;
+            }
+            try {
+                final Connection connection
+                        = replica.dataSource.getConnection();
+                replica.readMeter.mark();
+                READ_ONLY.set(Boolean.TRUE);
+                return connection;
+            } catch (SQLException ex) {
+                replica.failureMeter.mark();
+                replica.lagMillis = UNKNOWN_LAG;
+                LOGGER.warn("Can't connect to replica {}.", replica.name, ex);
+            }
+        }
+        fallbackMeter.mark();
+        return delegate.getConnection();
+    }
+
+    /**
+     * Method writes a heartbeat to the primary and measures how far behind
+     * it every replica is. A replica whose heartbeat can't be read isn't
+     * used until the next check.
+     */
+    public void checkLag() {
+        try (Connection connection = delegate.getConnection();
+                PreparedStatement statement
+                = connection.prepareStatement(WRITE_HEARTBEAT)) {
+            statement.setLong(1, System.currentTimeMillis());
+            statement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            LOGGER.warn("Can't write the replication heartbeat.", ex);
+        }
+        for (Replica replica : replicas) {
+            replica.lagMillis = measureLag(replica);
+        }
+    }
+
+    /**
+     * Method measures how far behind the primary a replica is.
+     *
+     * @param replica the replica.
+     * @return the lag in milliseconds or UNKNOWN_LAG.
+     */
+    private long measureLag(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+                PreparedStatement statement
+                = connection.prepareStatement(READ_HEARTBEAT);
+                ResultSet resultSet = statement.executeQuery()) {
+            if (resultSet.next()) {
+                return Math.max(0,
+                        System.currentTimeMillis() - resultSet.getLong(1));
+            }
+        } catch (SQLException ex) {
+            LOGGER.warn("Can't read the replication heartbeat of {}.",
+                    replica.name, ex);
+        }
+        return UNKNOWN_LAG;
+    }
+
+    /**
+     * Method starts the pools and the measuring of lags.
+     *
+     * @throws Exception if a pool can't be started.
+     */
+    @Override
+    public void start() throws Exception {
+        delegate.start();
+        for (Replica replica : replicas) {
+            replica.dataSource.start();
+        }
+        if (!replicas.isEmpty()) {
+            lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "replica-lag");
+                thread.setDaemon(true);
+                return thread;
+            });
+            lagChecker.scheduleWithFixedDelay(this::checkLag, 0,
+                    checkIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Method stops the measuring of lags and the pools.
+     *
+     * @throws Exception if a pool can't be stopped.
+     */
+    @Override
+    public void stop() throws Exception {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.dataSource.stop();
+        }
+        delegate.stop();
+    }
+
+    /**
+     * A read replica with its metrics.
+     */
+    private static final class Replica {
+
+        /**
+         * The name of the replica in metrics and logs.
+         */
+        private final String name;
+        /**
+         * The pool of connections to the replica.
+         */
+        private final ManagedDataSource dataSource;
+        /**
+         * Meter of connections given for reads.
+         */
+        private final Meter readMeter;
+        /**
+         * Meter of failed attempts to connect.
+         */
+        private final Meter failureMeter;
+        /**
+         * The last measured lag in milliseconds.
+         */
+        private volatile long lagMillis = UNKNOWN_LAG;
+
+        /**
+         * Constructor to create the replica.
+         *
+         * @param name the name of the replica.
+         * @param dataSource the pool of connections to the replica.
+         * @param metrics the registry to report to.
+         */
+        private Replica(String name, ManagedDataSource dataSource,
+                MetricRegistry metrics) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.readMeter = metrics.meter(MetricRegistry
+                    .name(RoutingDataSource.class, name, "reads"));
+            this.failureMeter = metrics.meter(MetricRegistry
+                    .name(RoutingDataSource.class, name, "failures"));
+            metrics.register(MetricRegistry
+                    .name(RoutingDataSource.class, name, "lag"),
+                    (Gauge<Long>) () -> lagMillis == UNKNOWN_LAG
+                    ? -1 : lagMillis);
+        }
+    }
+}
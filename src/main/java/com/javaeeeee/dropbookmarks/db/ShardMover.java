@@ -0,0 +1,376 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Class which moves bookmarks of users between shards while the application
+ * is stopped. A move copies the rows of a user to the target shard, points
+ * the directory to it and then deletes the rows from the source shard; a
+ * move interrupted at any step may be repeated.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ShardMover {
+
+    /**
+     * Statement which finds all users.
+     */
+    private static final String FIND_USERS
+            = "SELECT id FROM users ORDER BY id";
+    /**
+     * Statement which finds a user to be referenced by bookmarks on another
+     * shard. Users log in on the main shard, so the password hash is left
+     * there and the copy gets an empty one.
+     */
+    private static final String FIND_USER
+            = "SELECT id, username, '' AS password FROM users WHERE id = ?";
+    /**
+     * Statement which finds bookmarks of a user.
+     */
+    private static final String FIND_BOOKMARKS
+            = "SELECT * FROM bookmarks WHERE user_id = ?";
+    /**
+     * Statement which finds tags of bookmarks of a user.
+     */
+    private static final String FIND_TAGS = "SELECT t.* FROM tags t "
+            + "JOIN bookmarks b ON b.id = t.bookmark_id WHERE b.user_id = ?";
+    /**
+     * Statement which finds changes of bookmarks of a user.
+     */
+    private static final String FIND_CHANGES
+            = "SELECT * FROM bookmark_changes WHERE user_id = ?";
+    /**
+     * Statement which finds the number of bookmarks of a user.
+     */
+    private static final String FIND_COUNT
+            = "SELECT * FROM bookmark_counts WHERE user_id = ?";
+    /**
+     * Statements which delete everything of a user but the user, in order.
+     */
+    private static final String[] DELETE_BOOKMARKS = {
+        "DELETE FROM bookmark_counts WHERE user_id = ?",
+        "DELETE FROM bookmark_changes WHERE user_id = ?",
+        "DELETE FROM tags WHERE bookmark_id IN "
+        + "(SELECT id FROM bookmarks WHERE user_id = ?)",
+        "DELETE FROM bookmarks WHERE user_id = ?"
+    };
+    /**
+     * Statement which points the directory to another shard.
+     */
+    private static final String UPDATE_SHARD
+            = "UPDATE user_shards SET shard = ? WHERE user_id = ?";
+    /**
+     * Statement which adds a user to the directory.
+     */
+    private static final String INSERT_SHARD
+            = "INSERT INTO user_shards (shard, user_id) VALUES (?, ?)";
+
+    /**
+     * All shards; the main one, which keeps users and the directory, comes
+     * first.
+     */
+    private final List<? extends DataSource> shards;
+
+    /**
+     * Constructor to create the mover.
+     *
+     * @param shards all shards, the main one first.
+     */
+    public ShardMover(List<? extends DataSource> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Method finds ids of all users.
+     *
+     * @return ids of users.
+     * @throws SQLException if the main shard can't be read.
+     */
+    public List<Integer> findUserIds() throws SQLException {
+        final List<Integer> ids = new ArrayList<>();
+        try (Connection connection = shards.get(0).getConnection();
+                PreparedStatement statement
+                = connection.prepareStatement(FIND_USERS);
+                ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Method finds the shard of a user in the directory.
+     *
+     * @param userId the id of the user.
+     * @return the index of the shard, 0 if the user isn't in the directory.
+     * @throws SQLException if the directory can't be read.
+     */
+    public int findShard(int userId) throws SQLException {
+        try (Connection connection = shards.get(0).getConnection();
+                PreparedStatement statement = connection
+                .prepareStatement(ShardedDataSource.FIND_SHARD)) {
+            statement.setInt(1, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Method moves bookmarks of a user to another shard. If the move is
+     * interrupted after the directory is updated, what is left on the source
+     * shard is deleted by removeLeftovers.
+     *
+     * @param userId the id of the user.
+     * @param from the index of the shard the bookmarks are on.
+     * @param to the index of the shard to move the bookmarks to.
+     * @return the number of moved bookmarks.
+     * @throws SQLException if a shard can't be read or written.
+     */
+    public int move(int userId, int from, int to) throws SQLException {
+        final int moved;
+        try (Connection source = shards.get(from).getConnection();
+                Connection target = shards.get(to).getConnection()) {
+            target.setAutoCommit(false);
+            try {
+                // Remove what an interrupted move may have left.
+                delete(target, userId);
+                if (count(target, FIND_USER, userId) == 0) {
+                    copy(source, target, FIND_USER, "users", userId);
+                }
+                moved = copy(source, target, FIND_BOOKMARKS, "bookmarks",
+                        userId);
+                copy(source, target, FIND_TAGS, "tags", userId);
+                copy(source, target, FIND_CHANGES, "bookmark_changes",
+                        userId);
+                copy(source, target, FIND_COUNT, "bookmark_counts", userId);
+                target.commit();
+            } catch (SQLException ex) {
+                target.rollback();
+                throw ex;
+            }
+            updateDirectory(userId, to);
+            source.setAutoCommit(false);
+            try {
+                delete(source, userId);
+                source.commit();
+            } catch (SQLException ex) {
+                source.rollback();
+                throw ex;
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Method counts bookmarks of a user left on shards other than the given
+     * one, e.g. by a move interrupted after the directory was updated.
+     *
+     * @param userId the id of the user.
+     * @param shard the index of the shard the bookmarks belong to.
+     * @return the number of bookmarks on other shards.
+     * @throws SQLException if a shard can't be read.
+     */
+    public int countLeftovers(int userId, int shard) throws SQLException {
+        int leftovers = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            if (i == shard) {
+                continue;
+            }
+            try (Connection connection = shards.get(i).getConnection()) {
+                leftovers += count(connection, FIND_BOOKMARKS, userId);
+            }
+        }
+        return leftovers;
+    }
+
+    /**
+     * Method deletes everything of a user but the user itself from shards
+     * other than the given one, e.g. what a move interrupted after the
+     * directory was updated left on the source shard.
+     *
+     * @param userId the id of the user.
+     * @param shard the index of the shard the bookmarks belong to.
+     * @return the number of deleted bookmarks.
+     * @throws SQLException if a shard can't be read or written.
+     */
+    public int removeLeftovers(int userId, int shard) throws SQLException {
+        int removed = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            if (i == shard) {
+                continue;
+            }
+            try (Connection connection = shards.get(i).getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    removed += count(connection, FIND_BOOKMARKS, userId);
+                    delete(connection, userId);
+                    connection.commit();
+                } catch (SQLException ex) {
+                    connection.rollback();
+                    throw ex;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Method points the directory entry of a user to a shard.
+     *
+     * @param userId the id of the user.
+     * @param shard the index of the shard.
+     * @throws SQLException if the directory can't be written.
+     */
+    private void updateDirectory(int userId, int shard) throws SQLException {
+        try (Connection connection = shards.get(0).getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (update(connection, UPDATE_SHARD, shard, userId) == 0) {
+                    update(connection, INSERT_SHARD, shard, userId);
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Method deletes everything of a user but the user itself.
+     *
+     * @param connection the connection to a shard.
+     * @param userId the id of the user.
+     * @throws SQLException if the shard can't be written.
+     */
+    private static void delete(Connection connection, int userId)
+            throws SQLException {
+        for (String sql : DELETE_BOOKMARKS) {
+            try (PreparedStatement statement
+                    = connection.prepareStatement(sql)) {
+                statement.setInt(1, userId);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Method counts rows of a user.
+     *
+     * @param connection the connection to a shard.
+     * @param sql the query of the rows.
+     * @param userId the id of the user.
+     * @return the number of rows.
+     * @throws SQLException if the shard can't be read.
+     */
+    private static int count(Connection connection, String sql, int userId)
+            throws SQLException {
+        int count = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Method copies rows of a user to the same table of another shard
+     * column by column, so that ids and versions are kept.
+     *
+     * @param source the connection to the shard to copy from.
+     * @param target the connection to the shard to copy to.
+     * @param sql the query of the rows.
+     * @param table the table to copy to.
+     * @param userId the id of the user.
+     * @return the number of copied rows.
+     * @throws SQLException if a shard can't be read or written.
+     */
+    private static int copy(Connection source, Connection target,
+            String sql, String table, int userId) throws SQLException {
+        int count = 0;
+        try (PreparedStatement query = source.prepareStatement(sql)) {
+            query.setInt(1, userId);
+            try (ResultSet resultSet = query.executeQuery()) {
+                final ResultSetMetaData meta = resultSet.getMetaData();
+                final int columns = meta.getColumnCount();
+                final StringBuilder names = new StringBuilder();
+                final StringBuilder values = new StringBuilder();
+                for (int i = 1; i <= columns; i++) {
+                    names.append(i > 1 ? ", " : "")
+                            .append(meta.getColumnLabel(i));
+                    values.append(i > 1 ? ", ?" : "?");
+                }
+                try (PreparedStatement insert = target.prepareStatement(
+                        "INSERT INTO " + table + " (" + names
+                        + ") VALUES (" + values + ")")) {
+                    while (resultSet.next()) {
+                        for (int i = 1; i <= columns; i++) {
+                            insert.setObject(i, resultSet.getObject(i));
+                        }
+                        insert.addBatch();
+                        count++;
+                    }
+                    if (count > 0) {
+                        insert.executeBatch();
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Method runs an update with two integer parameters.
+     *
+     * @param connection the connection to a shard.
+     * @param sql the update.
+     * @param first the first parameter.
+     * @param second the second parameter.
+     * @return the number of updated rows.
+     * @throws SQLException if the shard can't be written.
+     */
+    private static int update(Connection connection, String sql,
+            int first, int second) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, first);
+            statement.setInt(2, second);
+            return statement.executeUpdate();
+        }
+    }
+}
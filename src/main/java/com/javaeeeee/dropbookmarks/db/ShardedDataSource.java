@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Data source which gives connections to the shard of the user whose work is
+ * done in {@link #forUser(Integer, Supplier)}, and to the main shard
+ * otherwise. The main shard keeps users and the user_shards directory; users
+ * absent from the directory have their bookmarks on the main shard.
+ *
+ * Shards are changed offline by the rebalance-shards command, so the
+ * directory is cached for as long as the application runs.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ShardedDataSource extends DelegatingDataSource {
+
+    /**
+     * Statement which finds the shard of a user in the directory.
+     */
+    static final String FIND_SHARD
+            = "SELECT shard FROM user_shards WHERE user_id = ?";
+    /**
+     * The user whose work is done on the current thread.
+     */
+    private static final ThreadLocal<Integer> USER = new ThreadLocal<>();
+
+    /**
+     * All shards; the main one comes first.
+     */
+    private final List<ManagedDataSource> shards;
+    /**
+     * Meters of connections given by every shard.
+     */
+    private final List<Meter> connectionMeters;
+    /**
+     * Shards of users by their ids.
+     */
+    private final LoadingCache<Integer, Integer> directory;
+
+    /**
+     * Constructor to create the data source.
+     *
+     * @param main the main shard which keeps users and the directory.
+     * @param others other shards in the order of their indexes, starting
+     * with 1.
+     * @param directoryCachePolicy the size of the cache of the directory.
+     * @param metrics the registry to report connections of shards to.
+     */
+    public ShardedDataSource(ManagedDataSource main,
+            List<ManagedDataSource> others,
+            CacheBuilderSpec directoryCachePolicy,
+            MetricRegistry metrics) {
+        super(main);
+        final List<ManagedDataSource> list = new ArrayList<>();
+        list.add(main);
+        list.addAll(others);
+        this.shards = Collections.unmodifiableList(list);
+        final List<Meter> meters = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            meters.add(metrics.meter(MetricRegistry.name(
+                    ShardedDataSource.class, "shard-" + i, "connections")));
+        }
+        this.connectionMeters = Collections.unmodifiableList(meters);
+        this.directory = CacheBuilder.from(directoryCachePolicy)
+                .build(new CacheLoader<Integer, Integer>() {
+                    @Override
+                    public Integer load(Integer userId) throws SQLException {
+                        return findShard(userId);
+                    }
+                });
+    }
+
+    /**
+     * Method does work of a user on the shard of the user.
+     *
+     * @param <T> the type of the result.
+     * @param userId the id of the user or null for the main shard.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    public static <T> T forUser(Integer userId, Supplier<T> work) {
+        final Integer previous = USER.get();
+        bind(userId);
+        try {
+            return work.get();
+        } finally {
+            bind(previous);
+        }
+    }
+
+    /**
+     * Getter for the user whose work is done on the current thread.
+     *
+     * @return the id of the user or null for the main shard.
+     */
+    public static Integer currentUser() {
+        return USER.get();
+    }
+
+    /**
+     * Method sets the user whose work is done on the current thread until
+     * the next call.
+     *
+     * @param userId the id of the user or null for the main shard.
+     */
+    public static void bind(Integer userId) {
+        if (userId == null) {
+            USER.remove();
+        } else {
+            USER.set(userId);
+        }
+    }
+
+    /**
+     * Method finds the index of the shard of a user.
+     *
+     * @param userId the id of the user.
+     * @return the index of the shard.
+     * @throws SQLException if the directory can't be read or the shard isn't
+     * configured.
+     */
+    public int shardOf(int userId) throws SQLException {
+        final int shard;
+        try {
+            shard = directory.get(userId);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        }
+        if (shard >= shards.size()) {
+            throw new SQLException(String.format(
+                    "User %d is on shard %d, but there are %d shards.",
+                    userId, shard, shards.size()));
+        }
+        return shard;
+    }
+
+    /**
+     * Method gives a connection to the shard of the current user.
+     *
+     * @return the connection.
+     * @throws SQLException if the shard can't be connected to.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Integer userId = USER.get();
+        final int shard = userId == null ? 0 : shardOf(userId);
+        final Connection connection = shards.get(shard).getConnection();
+        connectionMeters.get(shard).mark();
+        return connection;
+    }
+
+    /**
+     * Method starts the pools of all shards.
+     *
+     * @throws Exception if a pool can't be started.
+     */
+    @Override
+    public void start() throws Exception {
+        for (ManagedDataSource shard : shards) {
+            shard.start();
+        }
+    }
+
+    /**
+     * Method stops the pools of all shards.
+     *
+     * @throws Exception if a pool can't be stopped.
+     */
+    @Override
+    public void stop() throws Exception {
+        for (ManagedDataSource shard : shards) {
+            shard.stop();
+        }
+    }
+
+    /**
+     * Method reads the shard of a user from the directory.
+     *
+     * @param userId the id of the user.
+     * @return the index of the shard, 0 if the user isn't in the directory.
+     * @throws SQLException if the directory can't be read.
+     */
+    private int findShard(int userId) throws SQLException {
+        try (Connection connection = delegate.getConnection();
+                PreparedStatement statement
+                = connection.prepareStatement(FIND_SHARD)) {
+            statement.setInt(1, userId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        }
+    }
+}
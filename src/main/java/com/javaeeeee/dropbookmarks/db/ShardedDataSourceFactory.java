@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
+import io.dropwizard.db.PooledDataSourceFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Factory of a data source which keeps bookmarks of users on several
+ * databases.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ShardedDataSourceFactory extends DelegatingDataSourceFactory {
+
+    /**
+     * Connection parameters of shards other than the main one.
+     */
+    private final List<DataSourceFactory> shards;
+    /**
+     * The size of the cache of the directory of shards.
+     */
+    private final CacheBuilderSpec directoryCachePolicy;
+
+    /**
+     * Constructor to create the factory.
+     *
+     * @param main connection parameters of the main shard.
+     * @param shards connection parameters of other shards.
+     * @param directoryCachePolicy the size of the cache of the directory.
+     */
+    public ShardedDataSourceFactory(PooledDataSourceFactory main,
+            List<DataSourceFactory> shards,
+            CacheBuilderSpec directoryCachePolicy) {
+        super(main);
+        this.shards = shards;
+        this.directoryCachePolicy = directoryCachePolicy;
+    }
+
+    /**
+     * Method creates pools for every shard, named after the main one with
+     * the suffix shard-N.
+     *
+     * @param metricRegistry the registry to report to.
+     * @param name the name of the pool of the main shard.
+     * @return the sharded data source.
+     */
+    @Override
+    public ManagedDataSource build(MetricRegistry metricRegistry,
+            String name) {
+        final List<ManagedDataSource> others = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            others.add(shards.get(i)
+                    .build(metricRegistry, name + "-shard-" + (i + 1)));
+        }
+        return new ShardedDataSource(delegate.build(metricRegistry, name),
+                others, directoryCachePolicy, metricRegistry);
+    }
+
+    /**
+     * Method makes every shard a single connection pool.
+     */
+    @Override
+    public void asSingleConnectionPool() {
+        super.asSingleConnectionPool();
+        shards.forEach(DataSourceFactory::asSingleConnectionPool);
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import io.dropwizard.hibernate.AbstractDAO;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * Data Access Object to query and store tags of bookmarks. Queries are
+ * answered by the in-memory tag index which is loaded from the database.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TagDAO extends AbstractDAO<Bookmark> {
+
+    /**
+     * Hibernate session factory.
+     */
+    private final SessionFactory sessionFactory;
+    /**
+     * Tag index.
+     */
+    private final TagIndex index;
+    /**
+     * Timer of the query for bookmarks having tags.
+     */
+    private final Timer findBookmarkIdsTimer;
+    /**
+     * Timer of batch inserts.
+     */
+    private final Timer saveAllTimer;
+    /**
+     * Timer of bulk modifications.
+     */
+    private final Timer updateAllTimer;
+
+    /**
+     * Constructor that initializes tags DAO.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     */
+    public TagDAO(SessionFactory sessionFactory) {
+        this(sessionFactory, new MetricRegistry());
+    }
+
+    /**
+     * Constructor that initializes tags DAO which reports the duration of
+     * its queries.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     */
+    public TagDAO(SessionFactory sessionFactory, MetricRegistry metrics) {
+        this(sessionFactory, metrics, new TagIndex());
+    }
+
+    /**
+     * Constructor that initializes tags DAO which reports the duration of
+     * its queries and uses the given index.
+     *
+     * @param sessionFactory Hibernate Session Factory.
+     * @param metrics the registry to create query timers in.
+     * @param index tag index.
+     */
+    public TagDAO(SessionFactory sessionFactory, MetricRegistry metrics,
+            TagIndex index) {
+        super(sessionFactory);
+        this.sessionFactory = sessionFactory;
+        this.index = index;
+        this.findBookmarkIdsTimer = metrics.timer(
+                MetricRegistry.name(TagDAO.class, "findBookmarkIds"));
+        this.saveAllTimer = metrics.timer(
+                MetricRegistry.name(TagDAO.class, "saveAll"));
+        this.updateAllTimer = metrics.timer(
+                MetricRegistry.name(TagDAO.class, "updateAll"));
+    }
+
+    /**
+     * Method looks for one page of bookmarks of a user having all the tags.
+     *
+     * @param userId the id of the user.
+     * @param tags normalized tags.
+     * @param afterId the id of the last bookmark on the previous page or 0 to
+     * obtain the first page.
+     * @param limit maximum number of ids to return.
+     * @return ids of matching bookmarks in ascending order.
+     */
+    public List<Integer> findBookmarkIds(int userId, Collection<String> tags,
+            int afterId, int limit) {
+        if (tags.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try (Timer.Context context = findBookmarkIdsTimer.time()) {
+            return index.find(userId, tags, afterId, limit,
+                    () -> findTagsOnPrimary(userId));
+        }
+    }
+
+    /**
+     * Method reads the tags of all bookmarks of a user to load the index
+     * with. They are read from the primary, in a session of its own if the
+     * current one was given a replica, so the index never starts stale.
+     *
+     * @param userId the id of the user.
+     * @return pairs of bookmark ids and tags.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object[]> findTagsOnPrimary(int userId) {
+        final String queryName = "Bookmark.findTagsByUserId";
+        if (!RoutingDataSource.isReadingReplica()) {
+            return namedQuery(queryName).setParameter("id", userId).list();
+        }
+        return RoutingDataSource.primary(() -> {
+            final Session session = sessionFactory.openSession();
+            try {
+                session.setDefaultReadOnly(true);
+                return session.getNamedQuery(queryName)
+                        .setParameter("id", userId)
+                        .list();
+            } finally {
+                session.close();
+            }
+        });
+    }
+
+    /**
+     * Method inserts tags of new bookmarks using a single JDBC batch within
+     * the current transaction. The index is not updated, call put after the
+     * transaction is committed.
+     *
+     * @param bookmarks bookmarks with ids generated by the database.
+     */
+    public void saveAll(List<Bookmark> bookmarks) {
+        if (bookmarks.stream().allMatch(b -> b.getTags().isEmpty())) {
+            return;
+        }
+        try (Timer.Context context = saveAllTimer.time()) {
+            currentSession().doWork(connection -> {
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "INSERT INTO tags (bookmark_id, name) VALUES (?, ?)")) {
+                    for (Bookmark bookmark : bookmarks) {
+                        for (String tag : bookmark.getTags()) {
+                            statement.setInt(1, bookmark.getId());
+                            statement.setString(2, tag);
+                            statement.addBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method adds and removes the same tags of several bookmarks within the
+     * current transaction using one set-based delete and a single JDBC batch
+     * of inserts. Tags to add are deleted first, so that bookmarks which
+     * already have them are not duplicated. The index is not updated, call
+     * put after the transaction is committed.
+     *
+     * @param bookmarkIds the ids of the bookmarks.
+     * @param add normalized tags to add.
+     * @param remove normalized tags to remove.
+     */
+    public void updateAll(List<Integer> bookmarkIds, Set<String> add,
+            Set<String> remove) {
+        final Set<String> names = new HashSet<>(add);
+        names.addAll(remove);
+        if (bookmarkIds.isEmpty() || names.isEmpty()) {
+            return;
+        }
+        try (Timer.Context context = updateAllTimer.time()) {
+            currentSession().doWork(connection -> {
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "DELETE FROM tags WHERE bookmark_id IN ("
+                        + placeholders(bookmarkIds.size())
+                        + ") AND name IN ("
+                        + placeholders(names.size()) + ")")) {
+                    int parameter = 1;
+                    for (Integer id : bookmarkIds) {
+                        statement.setInt(parameter++, id);
+                    }
+                    for (String name : names) {
+                        statement.setString(parameter++, name);
+                    }
+                    statement.executeUpdate();
+                }
+                if (add.isEmpty()) {
+                    return;
+                }
+                try (PreparedStatement statement
+                        = connection.prepareStatement(
+                        "INSERT INTO tags (bookmark_id, name) VALUES (?, ?)")) {
+                    for (Integer id : bookmarkIds) {
+                        for (String tag : add) {
+                            statement.setInt(1, id);
+                            statement.setString(2, tag);
+                            statement.addBatch();
+                        }
+                    }
+                    statement.executeBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Method replaces the tags of a bookmark in the index; to be called once
+     * the changes are committed.
+     *
+     * @param userId the id of the owner.
+     * @param id the id of the bookmark.
+     * @param tags normalized tags of the bookmark.
+     */
+    public void put(int userId, int id, Set<String> tags) {
+        index.put(userId, id, tags);
+    }
+
+    /**
+     * Method removes a bookmark from the index; to be called once the
+     * bookmark is deleted.
+     *
+     * @param userId the id of the owner.
+     * @param id the id of the bookmark.
+     */
+    public void remove(int userId, int id) {
+        index.remove(userId, id);
+    }
+
+    /**
+     * Method creates the list of parameters of an IN clause.
+     *
+     * @param count the number of parameters.
+     * @return comma-separated question marks.
+     */
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
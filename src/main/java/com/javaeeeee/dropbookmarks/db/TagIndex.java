@@ -0,0 +1,233 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * An in-memory index of bookmark tags. For each user it keeps a compressed
+ * bitmap of bookmark ids per tag, so bookmarks having several tags at once
+ * are found by intersecting bitmaps rather than by joining the tags table
+ * to itself. The index of a user is loaded from the database on the first
+ * query and is kept up to date as bookmarks are saved and deleted. Indexes
+ * of users are evicted according to the cache policy and loaded again when
+ * needed. Thread-safe.
+ * <p>
+ * Only changes made through this instance of the application are applied
+ * to the index, so when several instances share the database, tags changed
+ * by the others are missed until the index of the user is evicted. Limit
+ * that with expireAfterWrite in the cache policy.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TagIndex {
+
+    /**
+     * Indexes of users keyed by user ids.
+     */
+    private final ConcurrentMap<Integer, UserTags> users;
+
+    /**
+     * Constructor to create the index with the default cache policy of the
+     * full-text index.
+     */
+    public TagIndex() {
+        this(CacheBuilderSpec.parse(BookmarkIndex.DEFAULT_CACHE_POLICY));
+    }
+
+    /**
+     * Constructor to create the index which keeps indexes of users according
+     * to the cache policy.
+     *
+     * @param cachePolicy the number of users whose indexes are kept and for
+     * how long.
+     */
+    public TagIndex(CacheBuilderSpec cachePolicy) {
+        this.users = CacheBuilder.from(cachePolicy)
+                .<Integer, UserTags>build()
+                .asMap();
+    }
+
+    /**
+     * Method looks for bookmarks of a user having all the tags.
+     *
+     * @param userId the id of the user.
+     * @param tags normalized tags.
+     * @param afterId only ids greater than this one are returned.
+     * @param limit maximum number of ids to return.
+     * @param loader supplies rows of bookmark id and tag of all the tagged
+     * bookmarks of the user if the index of the user is not loaded yet.
+     * @return ids of matching bookmarks in ascending order.
+     */
+    public List<Integer> find(int userId, Collection<String> tags,
+            int afterId, int limit, Supplier<List<Object[]>> loader) {
+        UserTags index = users.computeIfAbsent(userId, id -> new UserTags());
+        synchronized (index) {
+            if (!index.loaded) {
+                for (Object[] row : loader.get()) {
+                    index.add((Integer) row[0], (String) row[1]);
+                }
+                index.loaded = true;
+            }
+            return index.find(tags, afterId, limit);
+        }
+    }
+
+    /**
+     * Method replaces the tags of a bookmark in the index. Nothing is done if
+     * the index of the owner is not loaded, as the tags will be read from the
+     * database when it is.
+     *
+     * @param userId the id of the owner.
+     * @param id the id of the bookmark.
+     * @param tags normalized tags of the bookmark.
+     */
+    public void put(int userId, int id, Collection<String> tags) {
+        UserTags index = users.get(userId);
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (index.loaded) {
+                index.remove(id);
+                tags.forEach(tag -> index.add(id, tag));
+            }
+        }
+    }
+
+    /**
+     * Method removes a bookmark from the index.
+     *
+     * @param userId the id of the owner.
+     * @param id the id of the bookmark.
+     */
+    public void remove(int userId, int id) {
+        UserTags index = users.get(userId);
+        if (index != null) {
+            synchronized (index) {
+                index.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Method empties the index, so that indexes of users are read from the
+     * database again when they are queried next time.
+     */
+    public void clear() {
+        users.clear();
+    }
+
+    /**
+     * Tags of the bookmarks of one user. Not thread-safe.
+     */
+    private static class UserTags {
+
+        /**
+         * Whether the tags of the user were read from the database.
+         */
+        private boolean loaded;
+        /**
+         * Ids of bookmarks keyed by tags.
+         */
+        private final Map<String, RoaringBitmap> bitmaps = new HashMap<>();
+
+        /**
+         * Method tags a bookmark.
+         *
+         * @param id the id of the bookmark.
+         * @param tag the tag.
+         */
+        void add(int id, String tag) {
+            bitmaps.computeIfAbsent(tag, t -> new RoaringBitmap()).add(id);
+        }
+
+        /**
+         * Method removes all the tags of a bookmark. A user has far fewer
+         * tags than bookmarks, so all the bitmaps are checked instead of
+         * keeping tags of each bookmark.
+         *
+         * @param id the id of the bookmark.
+         */
+        void remove(int id) {
+            Iterator<RoaringBitmap> iterator = bitmaps.values().iterator();
+            while (iterator.hasNext()) {
+                RoaringBitmap bitmap = iterator.next();
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        /**
+         * Method looks for bookmarks having all the tags.
+         *
+         * @param tags the tags.
+         * @param afterId only ids greater than this one are returned.
+         * @param limit maximum number of ids to return.
+         * @return ids of matching bookmarks in ascending order.
+         */
+        List<Integer> find(Collection<String> tags, int afterId, int limit) {
+            List<RoaringBitmap> operands = new ArrayList<>(tags.size());
+            for (String tag : tags) {
+                RoaringBitmap bitmap = bitmaps.get(tag);
+                if (bitmap == null) {
+                    return Collections.emptyList();
+                }
+                operands.add(bitmap);
+            }
+            if (operands.isEmpty()) {
+                return Collections.emptyList();
+            }
+            // Starting with the rarest tag keeps intermediate results small.
+            operands.sort(Comparator.comparingLong(
+                    RoaringBitmap::getLongCardinality));
+            RoaringBitmap result = operands.get(0);
+            for (int i = 1; i < operands.size() && !result.isEmpty(); i++) {
+                result = RoaringBitmap.and(result, operands.get(i));
+            }
+            List<Integer> page = new ArrayList<>(limit);
+            PeekableIntIterator ids = result.getIntIterator();
+            ids.advanceIfNeeded(afterId + 1);
+            while (ids.hasNext() && page.size() < limit) {
+                page.add(ids.next());
+            }
+            return page;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.context.internal.ManagedSessionContext;
+
+/**
+ * Executor which runs database work off request threads. Each piece of work
+ * runs in its own session and transaction, the same way resource methods
+ * annotated with UnitOfWork do, on the shard of the user who submitted it;
+ * reads run in read-only sessions which may use a replica. The executor
+ * should have as many threads as there are database connections and a
+ * bounded queue, so a slow database makes requests wait in the queue or be
+ * rejected rather than occupy all the threads of the server. An executor
+ * which starts a cheap thread per task, such as virtual threads, is used
+ * with a limit of concurrent work instead, so that threads wait for a
+ * connection without holding one.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class UnitOfWorkExecutor {
+
+    /**
+     * Hibernate session factory.
+     */
+    private final SessionFactory sessionFactory;
+    /**
+     * Threads which do the work.
+     */
+    private final ExecutorService executor;
+    /**
+     * Permits to do work, one per database connection.
+     */
+    private final Semaphore permits;
+    /**
+     * For how long work may wait in the queue.
+     */
+    private final long timeoutNanos;
+    /**
+     * Timer of the time work spends in the queue.
+     */
+    private final Timer waitTimer;
+    /**
+     * Meter of work which waited in the queue for too long.
+     */
+    private final Meter expiredMeter;
+    /**
+     * Meter of work rejected because the queue was full.
+     */
+    private final Meter rejectedMeter;
+
+    /**
+     * Constructor to create the executor which does as much work at once as
+     * there are threads.
+     *
+     * @param sessionFactory Hibernate session factory.
+     * @param executor threads which do the work; queue depth and the number
+     * of active threads are reported for a ThreadPoolExecutor.
+     * @param timeout for how long work may wait in the queue.
+     * @param unit the unit of the timeout.
+     * @param metrics the registry to report metrics to.
+     */
+    public UnitOfWorkExecutor(SessionFactory sessionFactory,
+            ExecutorService executor, long timeout, TimeUnit unit,
+            MetricRegistry metrics) {
+        this(sessionFactory, executor, Integer.MAX_VALUE, timeout, unit,
+                metrics);
+    }
+
+    /**
+     * Constructor to create the executor which does at most the given
+     * amount of work at once.
+     *
+     * @param sessionFactory Hibernate session factory.
+     * @param executor threads which do the work; queue depth and the number
+     * of active threads are reported for a ThreadPoolExecutor.
+     * @param maxConcurrency how much work may be done at once.
+     * @param timeout for how long work may wait for a thread and a permit.
+     * @param unit the unit of the timeout.
+     * @param metrics the registry to report metrics to.
+     */
+    public UnitOfWorkExecutor(SessionFactory sessionFactory,
+            ExecutorService executor, int maxConcurrency, long timeout,
+            TimeUnit unit, MetricRegistry metrics) {
+        this.sessionFactory = sessionFactory;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrency);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.waitTimer = metrics.timer(
+                MetricRegistry.name(UnitOfWorkExecutor.class, "wait"));
+        this.expiredMeter = metrics.meter(
+                MetricRegistry.name(UnitOfWorkExecutor.class, "expired"));
+        this.rejectedMeter = metrics.meter(
+                MetricRegistry.name(UnitOfWorkExecutor.class, "rejected"));
+        if (executor instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.register(
+                    MetricRegistry.name(UnitOfWorkExecutor.class, "queued"),
+                    (Gauge<Integer>) () -> pool.getQueue().size()
+                    + permits.getQueueLength());
+            metrics.register(
+                    MetricRegistry.name(UnitOfWorkExecutor.class, "active"),
+                    (Gauge<Integer>) pool::getActiveCount);
+        } else {
+            metrics.register(
+                    MetricRegistry.name(UnitOfWorkExecutor.class, "queued"),
+                    (Gauge<Integer>) permits::getQueueLength);
+            metrics.register(
+                    MetricRegistry.name(UnitOfWorkExecutor.class, "active"),
+                    (Gauge<Integer>) () -> maxConcurrency
+                    - permits.availablePermits());
+        }
+    }
+
+    /**
+     * Getter for the timeout.
+     *
+     * @param unit the unit to express the timeout in.
+     * @return for how long work may wait in the queue.
+     */
+    public long getTimeout(TimeUnit unit) {
+        return unit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method schedules work to be done in a new read-only session and
+     * transaction. Work which waited for a thread and a permit longer than
+     * the timeout is not done and the result completes with
+     * TimeoutException.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     * @throws RejectedExecutionException if the queue is full.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) {
+        return submit(work, true);
+    }
+
+    /**
+     * Method schedules work which writes to be done in a new session and
+     * transaction on the primary; the transaction is committed if the work
+     * returns and rolled back if it throws. Work which waited for a thread
+     * and a permit longer than the timeout is not done, so nothing is
+     * written, and the result completes with TimeoutException.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     * @throws RejectedExecutionException if the queue is full.
+     */
+    public <T> CompletableFuture<T> supplyReadWrite(Supplier<T> work) {
+        return submit(work, false);
+    }
+
+    /**
+     * Method schedules work to be done in a new session and transaction.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @param readOnly whether the work only reads.
+     * @return the result of the work.
+     * @throws RejectedExecutionException if the queue is full.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> work,
+            boolean readOnly) {
+        final long submitted = System.nanoTime();
+        final Integer userId = ShardedDataSource.currentUser();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Runnable task = () -> {
+            final boolean acquired;
+            try {
+                acquired = acquire(submitted);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(ex);
+                return;
+            }
+            waitTimer.update(System.nanoTime() - submitted,
+                    TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                expiredMeter.mark();
+                result.completeExceptionally(new TimeoutException());
+                return;
+            }
+            final T value;
+            try {
+                value = ShardedDataSource.forUser(userId, readOnly
+                        ? () -> RoutingDataSource.readOnly(
+                                () -> inReadOnlyTransaction(work))
+                        : () -> inTransaction(work));
+            } catch (RuntimeException | Error ex) {
+                permits.release();
+                result.completeExceptionally(ex);
+                return;
+            }
+            // Let waiting work start before the result is handled.
+            permits.release();
+            result.complete(value);
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            rejectedMeter.mark();
+            throw ex;
+        }
+        return result;
+    }
+
+    /**
+     * Method waits for a permit to do work for what is left of the timeout.
+     *
+     * @param submitted when the work was submitted.
+     * @return true if the permit was acquired, false if the timeout expired.
+     * @throws InterruptedException if the thread was interrupted.
+     */
+    private boolean acquire(long submitted) throws InterruptedException {
+        final long left = timeoutNanos - (System.nanoTime() - submitted);
+        return left > 0 && permits.tryAcquire(left, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method does work in a new read-only session and transaction bound to
+     * the current thread; the work may read from a replica. If the
+     * transaction got a connection to a replica, the session only reads the
+     * second-level and query caches, so rows of a lagging replica don't
+     * replace fresher entries other sessions read from the primary.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    private <T> T inReadOnlyTransaction(Supplier<T> work) {
+        final Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            ManagedSessionContext.bind(session);
+            // Beginning the transaction takes the connection.
+            final Transaction tx = session.beginTransaction();
+            session.setCacheMode(RoutingDataSource.isReadingReplica()
+                    ? CacheMode.GET : CacheMode.NORMAL);
+            return complete(tx, work);
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    /**
+     * Method does work in a new session and transaction bound to the current
+     * thread with the defaults of UnitOfWork.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    private <T> T inTransaction(Supplier<T> work) {
+        final Session session = sessionFactory.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            return complete(session.beginTransaction(), work);
+        } finally {
+            ManagedSessionContext.unbind(sessionFactory);
+            session.close();
+        }
+    }
+
+    /**
+     * Method does work in a transaction, commits it if the work returns and
+     * rolls it back if the work throws.
+     *
+     * @param <T> the type of the result.
+     * @param tx the transaction.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    private static <T> T complete(Transaction tx, Supplier<T> work) {
+        try {
+            T value = work.get();
+            tx.commit();
+            return value;
+        } catch (RuntimeException | Error ex) {
+            tx.rollback();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Migration which fills in hashes of normalized URLs of existing bookmarks.
+ * The hash is computed by the application, so it can't be done in SQL.
+ * URLs themselves are left as they were entered.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class UrlHashChange implements CustomTaskChange {
+
+    /**
+     * Number of rows updated by one JDBC batch.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * The number of updated bookmarks.
+     */
+    private int updated;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        final JdbcConnection connection
+                = (JdbcConnection) database.getConnection();
+        try (Statement select = connection.createStatement();
+                ResultSet rows = select.executeQuery(
+                        "SELECT id, url FROM bookmarks");
+                PreparedStatement update = connection.prepareStatement(
+                        "UPDATE bookmarks SET url_hash = ? WHERE id = ?")) {
+            while (rows.next()) {
+                update.setLong(1, Bookmark.hashUrl(rows.getString(2)));
+                update.setLong(2, rows.getLong(1));
+                update.addBatch();
+                if (++updated % BATCH_SIZE == 0) {
+                    update.executeBatch();
+                }
+            }
+            update.executeBatch();
+        } catch (DatabaseException | SQLException ex) {
+            throw new CustomChangeException(ex);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Hashed URLs of " + updated + " bookmarks";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
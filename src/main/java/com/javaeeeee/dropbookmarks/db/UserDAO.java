@@ -23,6 +23,8 @@
  */
 package com.javaeeeee.dropbookmarks.db;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.javaeeeee.dropbookmarks.core.User;
 import io.dropwizard.hibernate.AbstractDAO;
 import java.util.List;
@@ -36,6 +38,27 @@ import org.hibernate.SessionFactory;
  */
 public class UserDAO extends AbstractDAO<User> {
 
+    /**
+     * Timer of the query for all users.
+     */
+    private final Timer findAllTimer;
+    /**
+     * Timer of the query for a user by credentials.
+     */
+    private final Timer findByUsernameAndPasswordTimer;
+    /**
+     * Timer of the query for a user by id.
+     */
+    private final Timer findByIdTimer;
+    /**
+     * Timer of the query for a user by username.
+     */
+    private final Timer findByUsernameTimer;
+    /**
+     * Timer of password updates.
+     */
+    private final Timer updatePasswordTimer;
+
     /**
      * The constructor of user DAO which initializes Hibernate session factory
      * defined by the superclass.
@@ -43,7 +66,28 @@ public class UserDAO extends AbstractDAO<User> {
      * @param sessionFactory Hibernate session factory
      */
     public UserDAO(SessionFactory sessionFactory) {
+        this(sessionFactory, new MetricRegistry());
+    }
+
+    /**
+     * The constructor of user DAO which reports the duration of its queries.
+     *
+     * @param sessionFactory Hibernate session factory
+     * @param metrics the registry to create query timers in.
+     */
+    public UserDAO(SessionFactory sessionFactory, MetricRegistry metrics) {
         super(sessionFactory);
+        this.findAllTimer = metrics.timer(
+                MetricRegistry.name(UserDAO.class, "findAll"));
+        this.findByUsernameAndPasswordTimer = metrics.timer(
+                MetricRegistry.name(UserDAO.class,
+                        "findByUsernameAndPassword"));
+        this.findByIdTimer = metrics.timer(
+                MetricRegistry.name(UserDAO.class, "findById"));
+        this.findByUsernameTimer = metrics.timer(
+                MetricRegistry.name(UserDAO.class, "findByUsername"));
+        this.updatePasswordTimer = metrics.timer(
+                MetricRegistry.name(UserDAO.class, "updatePassword"));
     }
 
     /**
@@ -52,7 +96,9 @@ public class UserDAO extends AbstractDAO<User> {
      * @return List of all registered users.
      */
     public List<User> findAll() {
-        return list(namedQuery("User.findAll"));
+        try (Timer.Context context = findAllTimer.time()) {
+            return list(namedQuery("User.findAll"));
+        }
     }
 
     /**
@@ -67,12 +113,14 @@ public class UserDAO extends AbstractDAO<User> {
             String username,
             String password
     ) {
-        return Optional.ofNullable(
-                uniqueResult(
-                        namedQuery("User.findByUsernameAndPassword")
-                        .setParameter("username", username)
-                        .setParameter("password", password)
-                ));
+        try (Timer.Context context = findByUsernameAndPasswordTimer.time()) {
+            return Optional.ofNullable(
+                    uniqueResult(
+                            namedQuery("User.findByUsernameAndPassword")
+                            .setParameter("username", username)
+                            .setParameter("password", password)
+                    ));
+        }
     }
 
     /**
@@ -82,7 +130,9 @@ public class UserDAO extends AbstractDAO<User> {
      * @return The user characterized by the id passed to the method.
      */
     public Optional<User> findById(Integer id) {
-        return Optional.ofNullable(get(id));
+        try (Timer.Context context = findByIdTimer.time()) {
+            return Optional.ofNullable(get(id));
+        }
     }
 
     /**
@@ -92,10 +142,32 @@ public class UserDAO extends AbstractDAO<User> {
      * @return An Optional containing the user if found or empty otherwise.
      */
     public Optional<User> findByUsername(String username) {
-        return Optional.ofNullable(
-                uniqueResult(
-                        namedQuery("User.findByUsername")
-                        .setParameter("username", username)
-                ));
+        try (Timer.Context context = findByUsernameTimer.time()) {
+            return Optional.ofNullable(
+                    uniqueResult(
+                            namedQuery("User.findByUsername")
+                            .setParameter("username", username)
+                    ));
+        }
+    }
+
+    /**
+     * Method replaces the stored password hash of a user unless it has been
+     * changed since it was read.
+     *
+     * @param id the id of the user.
+     * @param password the password hash read before.
+     * @param newPassword the new password hash.
+     * @return true if the password was replaced.
+     */
+    public boolean updatePassword(int id, String password,
+            String newPassword) {
+        try (Timer.Context context = updatePasswordTimer.time()) {
+            return namedQuery("User.updatePassword")
+                    .setParameter("id", id)
+                    .setParameter("password", password)
+                    .setParameter("newPassword", newPassword)
+                    .executeUpdate() == 1;
+        }
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads of the JDK 21 and newer. The project is built for
+ * Java 8, so virtual threads are looked up at run time and are absent on
+ * older JVMs.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public final class VirtualThreads {
+
+    /**
+     * The factory method of an executor which starts a virtual thread per
+     * task, null if the JVM has no virtual threads.
+     */
+    private static final Method NEW_EXECUTOR = findNewExecutor();
+
+    /**
+     * Utility class isn't instantiated.
+     */
+    private VirtualThreads() {
+    }
+
+    /**
+     * Method tells if the JVM has virtual threads.
+     *
+     * @return true if virtual threads are available.
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Method creates an executor which starts a virtual thread per task.
+     *
+     * @return the executor or an empty Optional if the JVM has no virtual
+     * threads.
+     */
+    public static Optional<ExecutorService> newThreadPerTaskExecutor() {
+        if (NEW_EXECUTOR == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of((ExecutorService) NEW_EXECUTOR.invoke(null));
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException(
+                    "Can't create an executor of virtual threads.", ex);
+        }
+    }
+
+    /**
+     * Method looks up the factory method of the executor of virtual threads.
+     *
+     * @return the method or null if the JVM has no virtual threads.
+     */
+    private static Method findNewExecutor() {
+        try {
+            return Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A metric registry which creates timers and histograms backed by HdrHistogram
+ * reservoirs. Unlike the default exponentially decaying reservoir, which keeps
+ * a sample of about a thousand values, HdrHistogram records every value, so
+ * that p99 and p999 are not lost to sampling. Quantiles are computed over a
+ * sliding window rather than since startup, so that a latency incident shows
+ * up in them however long the application has been running.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class HdrHistogramMetricRegistry extends MetricRegistry {
+
+    /**
+     * The window of quantiles in seconds if not set.
+     */
+    public static final long DEFAULT_WINDOW_SECONDS = 60;
+
+    /**
+     * The duration of the window in nanoseconds.
+     */
+    private final long windowNanos;
+    /**
+     * Source of time of reservoirs.
+     */
+    private final Clock clock;
+
+    /**
+     * Constructor of a registry whose quantiles cover the last minute.
+     */
+    public HdrHistogramMetricRegistry() {
+        this(DEFAULT_WINDOW_SECONDS, TimeUnit.SECONDS, Clock.defaultClock());
+    }
+
+    /**
+     * Constructor of a registry whose quantiles cover the window provided.
+     *
+     * @param window the duration of the window.
+     * @param unit the unit of the duration.
+     * @param clock source of time of reservoirs.
+     */
+    public HdrHistogramMetricRegistry(long window, TimeUnit unit,
+            Clock clock) {
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+    }
+
+    /**
+     * Method returns the timer with the name provided creating it if
+     * necessary.
+     *
+     * @param name the name of the timer.
+     * @return a timer backed by a sliding window HdrHistogram reservoir.
+     */
+    @Override
+    public Timer timer(String name) {
+        return getOrAdd(name, Timer.class,
+                () -> new Timer(newReservoir()));
+    }
+
+    /**
+     * Method returns the histogram with the name provided creating it if
+     * necessary.
+     *
+     * @param name the name of the histogram.
+     * @return a histogram backed by a sliding window HdrHistogram
+     * reservoir.
+     */
+    @Override
+    public Histogram histogram(String name) {
+        return getOrAdd(name, Histogram.class,
+                () -> new Histogram(newReservoir()));
+    }
+
+    /**
+     * Method creates a reservoir of the window of the registry.
+     *
+     * @return a new reservoir.
+     */
+    private Reservoir newReservoir() {
+        return new SlidingWindowHdrHistogramReservoir(windowNanos,
+                TimeUnit.NANOSECONDS, clock);
+    }
+
+    /**
+     * Method returns a registered metric or registers a new one.
+     *
+     * @param <T> the type of the metric.
+     * @param name the name of the metric.
+     * @param type the type of the metric.
+     * @param factory creates a new metric.
+     * @return the metric.
+     */
+    private <T extends Metric> T getOrAdd(String name, Class<T> type,
+            Supplier<T> factory) {
+        final Metric metric = getMetrics().get(name);
+        if (type.isInstance(metric)) {
+            return type.cast(metric);
+        }
+        if (metric == null) {
+            try {
+                return register(name, factory.get());
+            } catch (IllegalArgumentException ex) {
+                // Registered concurrently by another thread.
+                final Metric added = getMetrics().get(name);
+                if (type.isInstance(added)) {
+                    return type.cast(added);
+                }
+            }
+        }
+        throw new IllegalArgumentException(name
+                + " is already used for a different type of metric");
+    }
+}
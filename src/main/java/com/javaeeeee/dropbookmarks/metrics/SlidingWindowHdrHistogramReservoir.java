@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+/**
+ * A reservoir which records every value in HdrHistogram but reports only
+ * values recorded during the last window, so that quantiles follow recent
+ * traffic however long the application runs. The window is divided into
+ * chunks; the oldest chunk is dropped as a whole each time a new one starts.
+ * Values are recorded without locks; rotation and snapshots are
+ * synchronized.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class SlidingWindowHdrHistogramReservoir implements Reservoir {
+
+    /**
+     * The number of chunks the window is divided into.
+     */
+    public static final int CHUNKS = 6;
+    /**
+     * The number of significant decimal digits of recorded values.
+     */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    /**
+     * Recorder of values of the current chunk; Thread-safe.
+     */
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    /**
+     * Values of the chunks of the window, a ring.
+     */
+    private final Histogram[] chunks = new Histogram[CHUNKS];
+    /**
+     * The duration of a chunk in nanoseconds.
+     */
+    private final long chunkNanos;
+    /**
+     * Source of time.
+     */
+    private final Clock clock;
+    /**
+     * The index of the current chunk.
+     */
+    private int current;
+    /**
+     * The time when the current chunk started in nanoseconds.
+     */
+    private volatile long chunkStart;
+    /**
+     * The histogram last taken from the recorder, reused by the next one.
+     */
+    private Histogram interval;
+
+    /**
+     * Constructor of a reservoir reporting values of the window.
+     *
+     * @param window the duration of the window.
+     * @param unit the unit of the duration.
+     * @param clock source of time.
+     */
+    public SlidingWindowHdrHistogramReservoir(long window, TimeUnit unit,
+            Clock clock) {
+        this.chunkNanos = Math.max(1, unit.toNanos(window) / CHUNKS);
+        this.clock = clock;
+        for (int i = 0; i < CHUNKS; i++) {
+            chunks[i] = new Histogram(SIGNIFICANT_DIGITS);
+        }
+        this.chunkStart = clock.getTick();
+    }
+
+    @Override
+    public int size() {
+        return getSnapshot().size();
+    }
+
+    @Override
+    public void update(long value) {
+        if (clock.getTick() - chunkStart >= chunkNanos) {
+            rotate();
+        }
+        recorder.recordValue(value);
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        rotate();
+        drain();
+        final Histogram window = new Histogram(SIGNIFICANT_DIGITS);
+        for (Histogram chunk : chunks) {
+            window.add(chunk);
+        }
+        return new WindowSnapshot(window);
+    }
+
+    /**
+     * Method starts new chunks for the time elapsed since the current one
+     * started, dropping the oldest ones.
+     */
+    private synchronized void rotate() {
+        final long steps = (clock.getTick() - chunkStart) / chunkNanos;
+        if (steps <= 0) {
+            return;
+        }
+        drain();
+        for (long i = 0; i < Math.min(steps, CHUNKS); i++) {
+            current = (current + 1) % CHUNKS;
+            chunks[current].reset();
+        }
+        chunkStart += steps * chunkNanos;
+    }
+
+    /**
+     * Method moves values from the recorder to the current chunk.
+     */
+    private synchronized void drain() {
+        interval = recorder.getIntervalHistogram(interval);
+        chunks[current].add(interval);
+    }
+
+    /**
+     * A snapshot of the values of the window.
+     */
+    private static final class WindowSnapshot extends Snapshot {
+
+        /**
+         * Values of the window.
+         */
+        private final Histogram histogram;
+
+        /**
+         * Constructor of a snapshot.
+         *
+         * @param histogram values of the window not shared with anyone.
+         */
+        WindowSnapshot(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return histogram.getValueAtPercentile(quantile * 100);
+        }
+
+        @Override
+        public long[] getValues() {
+            final long[] values = new long[size()];
+            int i = 0;
+            for (HistogramIterationValue value
+                    : histogram.recordedValues()) {
+                for (long j = 0; j < value.getCountAddedInThisIterationStep()
+                        && i < values.length; j++) {
+                    values[i++] = value.getValueIteratedTo();
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return (int) histogram.getTotalCount();
+        }
+
+        @Override
+        public long getMax() {
+            return histogram.getMaxValue();
+        }
+
+        @Override
+        public double getMean() {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getMean();
+        }
+
+        @Override
+        public long getMin() {
+            return histogram.getTotalCount() == 0
+                    ? 0
+                    : histogram.getMinValue();
+        }
+
+        @Override
+        public double getStdDev() {
+            return histogram.getTotalCount() == 0
+                    ? 0
+                    : histogram.getStdDeviation();
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                    output, StandardCharsets.UTF_8))) {
+                for (long value : getValues()) {
+                    out.println(value);
+                }
+            }
+        }
+    }
+}
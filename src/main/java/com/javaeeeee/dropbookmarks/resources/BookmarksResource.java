@@ -23,22 +23,59 @@
  */
 package com.javaeeeee.dropbookmarks.resources;
 
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Strings;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.javaeeeee.dropbookmarks.core.BatchItemResult;
 import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.BookmarkChange;
+import com.javaeeeee.dropbookmarks.core.BookmarkChanges;
+import com.javaeeeee.dropbookmarks.core.BulkUpdate;
 import com.javaeeeee.dropbookmarks.core.User;
 import com.javaeeeee.dropbookmarks.db.BookmarkDAO;
+import com.javaeeeee.dropbookmarks.db.BookmarkIndex;
+import com.javaeeeee.dropbookmarks.db.UnitOfWorkExecutor;
 import io.dropwizard.auth.Auth;
-import io.dropwizard.hibernate.UnitOfWork;
+import io.dropwizard.jersey.PATCH;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
 import io.dropwizard.jersey.params.IntParam;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -49,15 +86,28 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
-import org.apache.commons.beanutils.BeanUtils;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
+import org.hibernate.StaleStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A class to serve bookmarks data to users.
+ * A class to serve bookmarks data to users. Bookmarks and lists of bookmarks
+ * are available in JSON and, for clients which prefer compact documents, in
+ * CBOR and Smile.
  *
  * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
  */
@@ -71,107 +121,775 @@ public class BookmarksResource {
      */
     public static final String WRONG_BODY_DATA_FORMAT
             = "Wrong body data format";
+    /**
+     * Error message returned if a search query contains no words.
+     */
+    public static final String EMPTY_QUERY
+            = "Query parameter q must contain at least one word";
+    /**
+     * Error message returned if ids of bookmarks to delete are missing or
+     * are not numbers.
+     */
+    public static final String WRONG_IDS
+            = "Query parameter ids must contain comma-separated numbers";
+    /**
+     * Error message returned if bookmarks can't be read because the database
+     * is overloaded.
+     */
+    public static final String SERVICE_OVERLOADED
+            = "Service is overloaded, try again later";
+    /**
+     * Maximum number of bookmarks returned on one page if not configured.
+     */
+    public static final int DEFAULT_MAX_PAGE_SIZE = 100;
+    /**
+     * The name of the query parameter which carries continuation token.
+     */
+    public static final String CURSOR_PARAM = "cursor";
+    /**
+     * The name of the query parameter which carries synchronization
+     * watermark.
+     */
+    public static final String SINCE_PARAM = "since";
+    /**
+     * Media type of newline-delimited JSON used to export bookmarks.
+     */
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    /**
+     * Number of bookmarks inserted at once during import if not configured.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    /**
+     * Media type of JSON Merge Patch documents used to modify bookmarks.
+     */
+    public static final String APPLICATION_MERGE_PATCH_JSON
+            = "application/merge-patch+json";
+    /**
+     * Error message returned if a user has as many bookmarks as the quota
+     * allows.
+     */
+    public static final String QUOTA_EXCEEDED
+            = "The quota of %d bookmarks is exceeded";
+    /**
+     * Error message returned if a bookmark with the same URL exists and
+     * duplicates are rejected.
+     */
+    public static final String DUPLICATE_URL
+            = "Bookmark %d has the same URL";
+    /**
+     * Error message returned if the policy for duplicates is unknown.
+     */
+    public static final String WRONG_ON_DUPLICATE
+            = "Query parameter onDuplicate must be reject, merge or allow";
+    /**
+     * What to do when a user adds a bookmark with the URL of an existing
+     * one.
+     */
+    public enum OnDuplicate {
+        /**
+         * Respond with 409 Conflict.
+         */
+        REJECT,
+        /**
+         * Add the tags to the existing bookmark and set its description if
+         * it has none.
+         */
+        MERGE,
+        /**
+         * Add another bookmark.
+         */
+        ALLOW
+    }
+
     /**
      * Logger.
      */
     private static final Logger LOGGER
             = LoggerFactory.getLogger(BookmarksResource.class);
+    /**
+     * Object mapper configured the same way as the one used by Jersey.
+     */
+    private static final ObjectMapper MAPPER = Jackson.newObjectMapper();
+    /**
+     * Writer to serialize exported bookmarks one by one; Thread-safe.
+     */
+    private static final ObjectWriter EXPORT_WRITER = MAPPER
+            .writerFor(Bookmark.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    /**
+     * Reader to parse imported bookmarks one by one; Thread-safe.
+     */
+    private static final ObjectReader BATCH_READER
+            = MAPPER.readerFor(Bookmark.class);
+    /**
+     * HTTP status returned if a modified bookmark is not valid.
+     */
+    public static final int UNPROCESSABLE_ENTITY = 422;
+    /**
+     * Error message returned if a bookmark was modified concurrently.
+     */
+    public static final String CONCURRENT_MODIFICATION
+            = "Bookmark was modified by another request";
+    /**
+     * Reader to parse modifications of bookmarks; Thread-safe.
+     */
+    private static final ObjectReader PATCH_READER
+            = MAPPER.readerFor(new TypeReference<Map<String, Object>>() {
+            });
+    /**
+     * Setters of the bookmark fields which can be modified keyed by the names
+     * of JSON properties.
+     */
+    private static final Map<String, BiConsumer<Bookmark, Object>> SETTERS
+            = ImmutableMap.<String, BiConsumer<Bookmark, Object>>of(
+                    "url", (bookmark, value) -> bookmark.setUrl(asText(value)),
+                    "description", (bookmark, value)
+                    -> bookmark.setDescription(asText(value)),
+                    "tags", (bookmark, value)
+                    -> bookmark.setTags(asTextList(value)));
+    /**
+     * Validator to check imported bookmarks; Thread-safe.
+     */
+    private static final Validator VALIDATOR = Validators.newValidator();
+    /**
+     * Media types a list of bookmarks may be represented with.
+     */
+    private static final List<Variant> BOOKMARKS_VARIANTS = Variant
+            .mediaTypes(MediaType.APPLICATION_JSON_TYPE,
+                    MediaType.valueOf(JacksonBinaryProvider.APPLICATION_CBOR),
+                    MediaType.valueOf(JacksonBinaryProvider.APPLICATION_SMILE))
+            .build();
     /**
      * DAO to manipulate bookmarks.
      */
     private final BookmarkDAO bookmarkDAO;
+    /**
+     * Executor of database work of requests.
+     */
+    private final UnitOfWorkExecutor executor;
+    /**
+     * Maximum number of bookmarks returned on one page.
+     */
+    private final int maxPageSize;
+    /**
+     * Number of bookmarks inserted at once during import.
+     */
+    private final int batchSize;
+    /**
+     * Maximum number of bookmarks of a user or null if there is no quota.
+     */
+    private final Integer maxBookmarks;
+
+    /**
+     * Constructor to initialize DAO and executor.
+     *
+     * @param bookmarkDAO DAO to manipulate bookmarks.
+     * @param executor executor of database work of requests.
+     */
+    public BookmarksResource(final BookmarkDAO bookmarkDAO,
+            final UnitOfWorkExecutor executor) {
+        this(bookmarkDAO, executor, DEFAULT_MAX_PAGE_SIZE, DEFAULT_BATCH_SIZE);
+    }
 
     /**
-     * Constructor to initialize DAO.
+     * Constructor to initialize DAO, executor, page size and import batch
+     * size.
      *
      * @param bookmarkDAO DAO to manipulate bookmarks.
+     * @param executor executor of database work of requests.
+     * @param maxPageSize maximum number of bookmarks returned on one page.
+     * @param batchSize number of bookmarks inserted at once during import.
      */
-    public BookmarksResource(final BookmarkDAO bookmarkDAO) {
+    public BookmarksResource(final BookmarkDAO bookmarkDAO,
+            final UnitOfWorkExecutor executor,
+            final int maxPageSize,
+            final int batchSize) {
+        this(bookmarkDAO, executor, maxPageSize, batchSize, null);
+    }
+
+    /**
+     * Constructor to initialize DAO, executor, page size, import batch size
+     * and the quota of bookmarks.
+     *
+     * @param bookmarkDAO DAO to manipulate bookmarks.
+     * @param executor executor of database work of requests.
+     * @param maxPageSize maximum number of bookmarks returned on one page.
+     * @param batchSize number of bookmarks inserted at once during import.
+     * @param maxBookmarks maximum number of bookmarks of a user or null if
+     * there is no quota.
+     */
+    public BookmarksResource(final BookmarkDAO bookmarkDAO,
+            final UnitOfWorkExecutor executor,
+            final int maxPageSize,
+            final int batchSize,
+            final Integer maxBookmarks) {
         this.bookmarkDAO = bookmarkDAO;
+        this.executor = executor;
+        this.maxPageSize = maxPageSize;
+        this.batchSize = batchSize;
+        this.maxBookmarks = maxBookmarks;
+    }
+
+    /**
+     * Method returns one page of bookmarks stored by a particular user. If
+     * there are more bookmarks, the response contains a Link header with
+     * rel="next" pointing to the next page. The response carries an ETag
+     * which changes whenever bookmarks of the user change and differs
+     * between pages, tag filters and media types; if it matches
+     * If-None-Match header, 304 is returned without reading bookmarks.
+     * Bookmarks are read asynchronously.
+     *
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param cursor continuation token from the previous page or null to
+     * obtain the first page.
+     * @param limit the number of bookmarks on a page; can't exceed the
+     * configured maximum.
+     * @param tags if present, only bookmarks having all the tags are
+     * returned.
+     * @param uriInfo information about the request URI used to build links.
+     * @param request the request to evaluate preconditions.
+     * @param response the response to resume with the list of bookmarks
+     * stored by a particular user.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Produces({MediaType.APPLICATION_JSON,
+        JacksonBinaryProvider.APPLICATION_CBOR,
+        JacksonBinaryProvider.APPLICATION_SMILE})
+    public void getBookmarks(@Auth User user,
+            @QueryParam(CURSOR_PARAM) CursorParam cursor,
+            @QueryParam("limit") IntParam limit,
+            @QueryParam("tag") List<String> tags,
+            @Context UriInfo uriInfo,
+            @Context Request request,
+            @Suspended AsyncResponse response) {
+        final int pageSize = getPageSize(limit);
+        final int afterId = cursor == null ? 0 : cursor.get();
+        final UriBuilder nextPage = uriInfo.getRequestUriBuilder();
+        final Variant variant = request.selectVariant(BOOKMARKS_VARIANTS);
+        final MediaType mediaType = variant == null
+                ? MediaType.APPLICATION_JSON_TYPE : variant.getMediaType();
+        resumeAsync(response, () -> getBookmarks(user, tags, afterId,
+                pageSize, mediaType, nextPage, request));
+    }
+
+    /**
+     * Method reads one page of bookmarks stored by a particular user.
+     *
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param tags if present, only bookmarks having all the tags are
+     * returned.
+     * @param afterId the id of the last bookmark on the previous page or 0 to
+     * obtain the first page.
+     * @param pageSize the number of bookmarks on a page.
+     * @param mediaType the media type of the response.
+     * @param nextPage the builder of the request URI used to build links.
+     * @param request the request to evaluate preconditions.
+     * @return the response with the list of bookmarks.
+     */
+    private Response getBookmarks(User user, List<String> tags, int afterId,
+            int pageSize, MediaType mediaType, UriBuilder nextPage,
+            Request request) {
+        final EntityTag entityTag = entityTag(
+                bookmarkDAO.findVersionByUserId(user.getId()),
+                tags, afterId, pageSize, mediaType);
+        final Response.ResponseBuilder notModified
+                = request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                    .build();
+        }
+
+        // Ask for one more bookmark to learn whether there is a next page.
+        List<Bookmark> page = tags == null || tags.isEmpty()
+                ? bookmarkDAO.findByUserId(
+                        user.getId(), afterId, pageSize + 1)
+                : bookmarkDAO.findByUserIdAndTags(
+                        user.getId(), tags, afterId, pageSize + 1);
+        Response.ResponseBuilder builder = Response.ok()
+                .type(mediaType)
+                .tag(entityTag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (page.size() > pageSize) {
+            page = page.subList(0, pageSize);
+            URI next = nextPage
+                    .replaceQueryParam(CURSOR_PARAM,
+                            CursorParam.encode(
+                                    page.get(pageSize - 1).getId()))
+                    .build();
+            builder.link(next, "next");
+        }
+        return builder.entity(page).build();
+    }
+
+    /**
+     * Method looks for bookmarks of a particular user which contain words
+     * starting with each of the words of the query in their URLs or
+     * descriptions.
+     *
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param query the text to search for.
+     * @param limit maximum number of bookmarks to return; can't exceed the
+     * configured maximum page size.
+     * @param response the response to resume with matching bookmarks ordered
+     * by id.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/search")
+    @Produces({MediaType.APPLICATION_JSON,
+        JacksonBinaryProvider.APPLICATION_CBOR,
+        JacksonBinaryProvider.APPLICATION_SMILE})
+    public void searchBookmarks(@Auth User user,
+            @QueryParam("q") String query,
+            @QueryParam("limit") IntParam limit,
+            @Suspended AsyncResponse response) {
+        if (BookmarkIndex.tokenize(query).isEmpty()) {
+            throw new WebApplicationException(EMPTY_QUERY,
+                    Response.Status.BAD_REQUEST);
+        }
+        final int pageSize = getPageSize(limit);
+        resumeAsync(response,
+                () -> bookmarkDAO.search(user.getId(), query, pageSize));
+    }
+
+    /**
+     * Method returns bookmarks of a particular user created, modified or
+     * deleted since the client last synchronized them. Without the watermark
+     * all the bookmarks are returned. The response contains the watermark to
+     * pass next time and, if there are more changes, a Link header with
+     * rel="next" pointing to them.
+     *
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param since the watermark from the previous response or null to
+     * obtain all the bookmarks.
+     * @param limit the number of changes in a response; can't exceed the
+     * configured maximum page size.
+     * @param uriInfo information about the request URI used to build links.
+     * @param response the response to resume with changed bookmarks and the
+     * ids of deleted ones.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/changes")
+    @Produces({MediaType.APPLICATION_JSON,
+        JacksonBinaryProvider.APPLICATION_CBOR,
+        JacksonBinaryProvider.APPLICATION_SMILE})
+    public void getChanges(@Auth User user,
+            @QueryParam(SINCE_PARAM) WatermarkParam since,
+            @QueryParam("limit") IntParam limit,
+            @Context UriInfo uriInfo,
+            @Suspended AsyncResponse response) {
+        final int pageSize = getPageSize(limit);
+        final long watermark = since == null ? 0 : since.get();
+        final UriBuilder nextPage = uriInfo.getRequestUriBuilder();
+        resumeAsync(response, () -> getChanges(user, watermark, pageSize,
+                nextPage));
+    }
+
+    /**
+     * Method reads changes of bookmarks of a particular user.
+     *
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param since the sequence number of the last change known to the
+     * client.
+     * @param pageSize the number of changes in a response.
+     * @param nextPage the builder of the request URI used to build links.
+     * @return the response with changed bookmarks and the ids of deleted
+     * ones.
+     */
+    private Response getChanges(User user, long since, int pageSize,
+            UriBuilder nextPage) {
+        long watermark = since;
+        // Ask for one more change to learn whether there are more.
+        List<BookmarkChange> changes = bookmarkDAO.findChanges(
+                user.getId(), watermark, pageSize + 1);
+        final boolean more = changes.size() > pageSize;
+        if (more) {
+            changes = changes.subList(0, pageSize);
+        }
+        final List<Bookmark> bookmarks = new ArrayList<>();
+        final List<Integer> deleted = new ArrayList<>();
+        for (BookmarkChange change : changes) {
+            if (change.isDeleted()) {
+                deleted.add(change.getBookmarkId());
+            } else {
+                bookmarks.add(change.getBookmark());
+            }
+            watermark = change.getSequence();
+        }
+        final String token = WatermarkParam.encode(watermark);
+        Response.ResponseBuilder builder = Response.ok(
+                new BookmarkChanges(bookmarks, deleted, token));
+        if (more) {
+            builder.link(nextPage
+                    .replaceQueryParam(SINCE_PARAM, token)
+                    .build(), "next");
+        }
+        return builder.build();
     }
 
     /**
-     * Method returns all bookmarks stored by a particular user.
+     * Method streams all bookmarks stored by a particular user as
+     * newline-delimited JSON, one bookmark per line. Bookmarks are written as
+     * soon as they are read from the database, so neither the list nor the
+     * whole JSON document is kept in memory.
      *
      * @param user Authenticated user with whose bookmarks we work.
-     * @return list of bookmarks stored by a particular user.
+     * @return the stream of bookmarks.
      */
     @GET
-    @UnitOfWork
-    public List<Bookmark> getBookmarks(@Auth User user) {
-        return bookmarkDAO.findByUserId(user.getId());
+    @Timed
+    @ExceptionMetered
+    @Path("/export")
+    @RateLimited(RateLimited.Kind.BULK)
+    @Produces(APPLICATION_NDJSON)
+    public StreamingOutput exportBookmarks(@Auth User user) {
+        final int userId = user.getId();
+        return output -> {
+            try (JsonGenerator generator = EXPORT_WRITER.getFactory()
+                    .createGenerator(output)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                bookmarkDAO.scrollByUserId(userId, bookmark -> {
+                    try {
+                        EXPORT_WRITER.writeValue(generator, bookmark);
+                        generator.writeRaw('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
     }
 
     /**
-     * Method returns single bookmark data.
+     * Method returns groups of bookmarks of a particular user which point to
+     * the same normalized URL. The report is built asynchronously.
+     *
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param response the response to resume with groups of duplicates.
+     */
+    @GET
+    @Timed
+    @ExceptionMetered
+    @Path("/duplicates")
+    @RateLimited(RateLimited.Kind.BULK)
+    @Produces({MediaType.APPLICATION_JSON,
+        JacksonBinaryProvider.APPLICATION_CBOR,
+        JacksonBinaryProvider.APPLICATION_SMILE})
+    public void getDuplicates(@Auth User user,
+            @Suspended AsyncResponse response) {
+        resumeAsync(response,
+                () -> bookmarkDAO.findDuplicates(user.getId()));
+    }
+
+    /**
+     * Method returns single bookmark data along with its ETag and
+     * Last-Modified headers; 304 is returned if the client has the current
+     * version of the bookmark. The bookmark is read asynchronously.
      *
      * @param id the id of a bookmark.
      * @param user Authenticated user with whose bookmarks we work.
-     * @return Optional containing a bookmark or empty Optional if the bookmark
-     * was not found.
+     * @param request the request to evaluate preconditions.
+     * @param response the response to resume with the bookmark or with an
+     * exception if the bookmark was not found.
      */
     @GET
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
-    @UnitOfWork
-    public Optional<Bookmark> getBookmark(@PathParam("id") IntParam id,
-            @Auth User user) {
-        return bookmarkDAO.findByIdAndUserId(id.get(), user.getId());
+    @Produces({MediaType.APPLICATION_JSON,
+        JacksonBinaryProvider.APPLICATION_CBOR,
+        JacksonBinaryProvider.APPLICATION_SMILE})
+    public void getBookmark(@PathParam("id") IntParam id,
+            @Auth User user,
+            @Context Request request,
+            @Suspended AsyncResponse response) {
+        resumeAsync(response, () -> {
+            Bookmark bookmark = findBookmarkOrTrowException(id, user);
+            Response.ResponseBuilder notModified
+                    = evaluatePreconditions(request, bookmark);
+            if (notModified != null) {
+                return notModified.build();
+            }
+            return withValidators(Response.ok(bookmark), bookmark).build();
+        });
     }
 
     /**
-     * Method to add new bookmarks.
+     * Method reads bookmarks on the executor and resumes the response with
+     * the result. The response is 503 with Retry-After header if the
+     * executor is overloaded, that is, the read can't be queued or doesn't
+     * get a thread and a connection permit within the timeout of the
+     * executor. The timeout doesn't limit the read itself: once started, it
+     * runs to completion, so no response is abandoned while its query keeps
+     * the connection busy.
+     *
+     * @param response the response to resume.
+     * @param read the read which returns an entity or a response.
+     */
+    private void resumeAsync(AsyncResponse response, Supplier<?> read) {
+        final CompletableFuture<?> result;
+        try {
+            result = executor.supply(read);
+        } catch (RejectedExecutionException ex) {
+            throw serviceUnavailable();
+        }
+        resume(response, result);
+    }
+
+    /**
+     * Method modifies bookmarks on the executor in a read-write unit of work
+     * and resumes the response with the result, the same way as reads. A
+     * write which doesn't start within the timeout is not done at all, so
+     * the client may safely retry it.
+     *
+     * @param response the response to resume.
+     * @param write the write which returns an entity or a response.
+     */
+    private void resumeAfterWrite(AsyncResponse response,
+            Supplier<?> write) {
+        final CompletableFuture<?> result;
+        try {
+            result = executor.supplyReadWrite(write);
+        } catch (RejectedExecutionException ex) {
+            throw serviceUnavailable();
+        }
+        resume(response, result);
+    }
+
+    /**
+     * Method resumes the response once work on the executor is done.
+     *
+     * @param response the response to resume.
+     * @param result the result of the work.
+     */
+    private void resume(AsyncResponse response, CompletableFuture<?> result) {
+        result.whenComplete((value, error) -> {
+            if (error == null) {
+                response.resume(value);
+            } else if (error instanceof TimeoutException) {
+                response.resume(serviceUnavailable());
+            } else {
+                response.resume(error);
+            }
+        });
+    }
+
+    /**
+     * Method creates the exception to tell a client to retry later when the
+     * database can't keep up with requests.
+     *
+     * @return the exception.
+     */
+    private WebApplicationException serviceUnavailable() {
+        final long retryAfter = Math.max(1,
+                executor.getTimeout(TimeUnit.SECONDS));
+        return new WebApplicationException(SERVICE_OVERLOADED,
+                Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfter)
+                .build());
+    }
+
+    /**
+     * Method to add new bookmarks. If the user has a bookmark with the same
+     * normalized URL, the bookmark is added anyway, rejected with 409 or
+     * merged into the existing one depending on onDuplicate. If the user has
+     * as many bookmarks as the quota allows, 403 is returned.
      *
      * @param bookmark A bookmark to add
+     * @param onDuplicate reject, merge or allow; allow if not set.
      * @param user Authenticated user with whose bookmarks we work.
-     * @return The saved bookmark containing the id generated by the database.
+     * @param response the response to resume with the saved bookmark
+     * containing the id generated by the database or the existing bookmark
+     * the new one was merged into.
      */
     @POST
-    @UnitOfWork
-    public Bookmark addBookmark(@Valid @NotNull Bookmark bookmark,
-            @Auth User user) {
+    @Timed
+    @ExceptionMetered
+    public void addBookmark(@Valid @NotNull Bookmark bookmark,
+            @QueryParam("onDuplicate") String onDuplicate,
+            @Auth User user,
+            @Suspended AsyncResponse response) {
+        final OnDuplicate policy = parseOnDuplicate(onDuplicate);
+        resumeAfterWrite(response, () -> addBookmark(bookmark, policy, user));
+    }
 
+    /**
+     * Method adds a new bookmark unless the duplicate policy or the quota
+     * forbid it.
+     *
+     * @param bookmark A bookmark to add
+     * @param policy what to do with a bookmark of a URL the user has.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @return The saved bookmark containing the id generated by the database
+     * or the existing bookmark the new one was merged into.
+     */
+    private Bookmark addBookmark(Bookmark bookmark, OnDuplicate policy,
+            User user) {
+        // Additions of the user wait for each other, so that the same URL
+        // can't be added twice and the quota can't be exceeded by concurrent
+        // requests. The count is locked once for both checks.
+        final int count = policy != OnDuplicate.ALLOW || maxBookmarks != null
+                ? bookmarkDAO.lockBookmarkCount(user.getId())
+                : 0;
+        if (policy != OnDuplicate.ALLOW) {
+            final Optional<Bookmark> duplicate = bookmarkDAO
+                    .findByUserIdAndUrl(user.getId(), bookmark.getUrl());
+            if (duplicate.isPresent() && policy == OnDuplicate.REJECT) {
+                throw new WebApplicationException(String.format(
+                        DUPLICATE_URL, duplicate.get().getId()),
+                        Response.Status.CONFLICT);
+            }
+            if (duplicate.isPresent()) {
+                return bookmarkDAO.save(merge(duplicate.get(), bookmark));
+            }
+        }
+        if (getRemainingQuota(count) == 0) {
+            throw new WebApplicationException(
+                    String.format(QUOTA_EXCEEDED, maxBookmarks),
+                    Response.Status.FORBIDDEN);
+        }
         bookmark.setUser(user);
         return bookmarkDAO.save(bookmark);
     }
 
     /**
-     * A method to modify an existing bookmark data.
+     * Method to import many bookmarks at once. The body is either a JSON array
+     * of bookmarks or newline-delimited JSON. Bookmarks are parsed one by one
+     * and valid ones are inserted in batches, invalid ones and ones over the
+     * quota are skipped. The body is streamed into the database by the
+     * executor, so the import takes a thread and a connection of the
+     * executor rather than a thread of the server.
      *
-     * @param id the id of the bookmark to be modified.
-     * @param jsonData Modifications in JSON format.
+     * @param body the stream of bookmarks to add.
      * @param user Authenticated user with whose bookmarks we work.
-     * @return Bookmark with modified fields or throws an exception if bookmark
-     * was not found.
+     * @param response the response to resume with the outcome for every
+     * bookmark in the order of the request.
      */
-    @PUT
-    @Path("/{id}")
-    @UnitOfWork
-    public Bookmark modifyBookmark(@PathParam("id") IntParam id,
-            String jsonData,
-            @Auth User user) {
+    @POST
+    @Timed
+    @ExceptionMetered
+    @Path("/batch")
+    @RateLimited(RateLimited.Kind.BULK)
+    @Consumes({MediaType.APPLICATION_JSON, APPLICATION_NDJSON})
+    public void addBookmarks(InputStream body,
+            @Auth User user,
+            @Suspended AsyncResponse response) {
+        resumeAfterWrite(response, () -> addBookmarks(body, user));
+    }
 
-        Bookmark bookmark = findBookmarkOrTrowException(id, user);
+    /**
+     * Method imports bookmarks from a stream in batches.
+     *
+     * @param body the stream of bookmarks to add.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @return The outcome for every bookmark in the order of the request.
+     */
+    private List<BatchItemResult> addBookmarks(InputStream body, User user) {
+        final List<BatchItemResult> results = new ArrayList<>();
+        final List<Bookmark> batch = new ArrayList<>(batchSize);
+        final List<Integer> batchIndexes = new ArrayList<>(batchSize);
+        int remaining = getRemainingQuota(user);
 
-        // Update bookmark data
-        ObjectMapper objectMapper = new ObjectMapper();
-        Map<String, String> changeMap = null;
-        try {
-            changeMap = objectMapper.readValue(jsonData, HashMap.class);
-            purgeMap(changeMap);
-            BeanUtils.populate(bookmark, changeMap);
-            return bookmarkDAO.save(bookmark);
-        } catch (IOException |
-                IllegalAccessException |
-                InvocationTargetException ex) {
+        try (MappingIterator<Bookmark> iterator
+                = BATCH_READER.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                final int index = results.size();
+                final Bookmark bookmark = iterator.nextValue();
+                final Set<ConstraintViolation<Bookmark>> violations
+                        = VALIDATOR.validate(bookmark);
+                if (!violations.isEmpty()) {
+                    results.add(BatchItemResult.invalid(index, violations
+                            .stream()
+                            .map(v -> v.getPropertyPath() + " "
+                                    + v.getMessage())
+                            .sorted()
+                            .collect(Collectors.toList())));
+                    continue;
+                }
+                if (remaining == 0) {
+                    results.add(BatchItemResult.invalid(index,
+                            Collections.singletonList(String.format(
+                                    QUOTA_EXCEEDED, maxBookmarks))));
+                    continue;
+                }
+                remaining--;
+                // Placeholder to be replaced after the batch is saved.
+                results.add(null);
+                bookmark.setId(null);
+                bookmark.setUser(user);
+                batch.add(bookmark);
+                batchIndexes.add(index);
+                if (batch.size() == batchSize) {
+                    saveBatch(batch, batchIndexes, results);
+                }
+            }
+        } catch (IOException ex) {
             LOGGER.warn(WRONG_BODY_DATA_FORMAT, ex);
             throw new WebApplicationException(WRONG_BODY_DATA_FORMAT,
                     ex,
                     Response.Status.BAD_REQUEST);
-        } finally {
-            if (changeMap != null) {
-                changeMap.clear();
-            }
         }
+        saveBatch(batch, batchIndexes, results);
+        return results;
+    }
+
+    /**
+     * A method to modify an existing bookmark data. If the request has
+     * If-Match header, the bookmark is modified only if the header matches
+     * its current ETag.
+     *
+     * @param id the id of the bookmark to be modified.
+     * @param jsonData Modifications in JSON format.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param request the request to evaluate preconditions.
+     * @param response the response to resume with the bookmark with modified
+     * fields or with an exception if the bookmark was not found.
+     */
+    @PUT
+    @Timed
+    @ExceptionMetered
+    @Path("/{id}")
+    public void modifyBookmark(@PathParam("id") IntParam id,
+            InputStream jsonData,
+            @Auth User user,
+            @Context Request request,
+            @Suspended AsyncResponse response) {
+        resumeAfterWrite(response,
+                () -> applyChanges(id, jsonData, user, request));
+    }
+
+    /**
+     * A method to modify an existing bookmark data using JSON Merge Patch
+     * (RFC 7396). Null and empty values are ignored, as well as the id. If
+     * the request has If-Match header, the bookmark is modified only if the
+     * header matches its current ETag.
+     *
+     * @param id the id of the bookmark to be modified.
+     * @param jsonData Modifications in JSON Merge Patch format.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param request the request to evaluate preconditions.
+     * @param response the response to resume with the bookmark with modified
+     * fields or with an exception if the bookmark was not found.
+     */
+    @PATCH
+    @Timed
+    @ExceptionMetered
+    @Path("/{id}")
+    @Consumes(APPLICATION_MERGE_PATCH_JSON)
+    public void patchBookmark(@PathParam("id") IntParam id,
+            InputStream jsonData,
+            @Auth User user,
+            @Context Request request,
+            @Suspended AsyncResponse response) {
+        resumeAfterWrite(response,
+                () -> applyChanges(id, jsonData, user, request));
     }
 
     /**
@@ -179,18 +897,155 @@ public class BookmarksResource {
      *
      * @param id the id of a bookmark to be deleted.
      * @param user Authenticated user with whose bookmarks we work.
-     * @return Removed bookmark data or throws an exception if the bookmark with
-     * the id provided was not found.
+     * @param response the response to resume with removed bookmark data or
+     * with an exception if the bookmark with the id provided was not found.
      */
     @DELETE
+    @Timed
+    @ExceptionMetered
     @Path("/{id}")
-    @UnitOfWork
-    public Bookmark deleteBookmark(@PathParam("id") IntParam id,
-            @Auth User user) {
-        Bookmark bookmark
-                = findBookmarkOrTrowException(id, user);
-        bookmarkDAO.delete(id.get());
-        return bookmark;
+    public void deleteBookmark(@PathParam("id") IntParam id,
+            @Auth User user,
+            @Suspended AsyncResponse response) {
+        resumeAfterWrite(response, () -> {
+            Bookmark bookmark
+                    = findBookmarkOrTrowException(id, user);
+            bookmarkDAO.delete(id.get());
+            return bookmark;
+        });
+    }
+
+    /**
+     * A method to remove many bookmarks at once using set-based statements.
+     * Ids are given either as repeated query parameters or comma-separated.
+     *
+     * @param ids the ids of bookmarks to be deleted.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param response the response to resume with the outcome for every id
+     * in the order of the request.
+     */
+    @DELETE
+    @Timed
+    @ExceptionMetered
+    @RateLimited(RateLimited.Kind.BULK)
+    public void deleteBookmarks(
+            @QueryParam("ids") List<String> ids,
+            @Auth User user,
+            @Suspended AsyncResponse response) {
+        final List<Integer> parsed = parseIds(ids);
+        resumeAfterWrite(response, () -> outcomes(parsed,
+                bookmarkDAO.deleteAll(user.getId(), parsed),
+                BatchItemResult::deleted));
+    }
+
+    /**
+     * A method to apply the same modification to many bookmarks at once
+     * using set-based statements: the description may be replaced and tags
+     * may be added or removed.
+     *
+     * @param update the ids of bookmarks and the modification.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param response the response to resume with the outcome for every id
+     * in the order of the request.
+     */
+    @POST
+    @Timed
+    @ExceptionMetered
+    @Path("/bulk-update")
+    @RateLimited(RateLimited.Kind.BULK)
+    public void updateBookmarks(
+            @Valid @NotNull BulkUpdate update,
+            @Auth User user,
+            @Suspended AsyncResponse response) {
+        resumeAfterWrite(response, () -> outcomes(update.getIds(),
+                bookmarkDAO.updateAll(user.getId(), update),
+                BatchItemResult::updated));
+    }
+
+    /**
+     * Method parses ids of bookmarks given as query parameters, each of which
+     * may hold several comma-separated ids.
+     *
+     * @param values the values of query parameters.
+     * @return the ids in the order of the request.
+     */
+    private static List<Integer> parseIds(List<String> values) {
+        final List<Integer> ids = new ArrayList<>();
+        try {
+            for (String value : values) {
+                for (String id : value.split(",")) {
+                    if (!id.trim().isEmpty()) {
+                        ids.add(Integer.valueOf(id.trim()));
+                    }
+                }
+            }
+        } catch (NumberFormatException ex) {
+            throw new WebApplicationException(WRONG_IDS, ex,
+                    Response.Status.BAD_REQUEST);
+        }
+        if (ids.isEmpty()) {
+            throw new WebApplicationException(WRONG_IDS,
+                    Response.Status.BAD_REQUEST);
+        }
+        return ids;
+    }
+
+    /**
+     * Method parses the policy for duplicates.
+     *
+     * @param value the value of the query parameter or null.
+     * @return the policy; ALLOW if the value is null.
+     */
+    private static OnDuplicate parseOnDuplicate(String value) {
+        if (value == null) {
+            return OnDuplicate.ALLOW;
+        }
+        try {
+            return OnDuplicate.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new WebApplicationException(WRONG_ON_DUPLICATE, ex,
+                    Response.Status.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Method merges a new bookmark into an existing one with the same URL:
+     * tags are added and the description is set if there is none.
+     *
+     * @param existing the existing bookmark.
+     * @param bookmark the new bookmark.
+     * @return the existing bookmark.
+     */
+    private static Bookmark merge(Bookmark existing, Bookmark bookmark) {
+        final Set<String> tags = new HashSet<>(existing.getTags());
+        tags.addAll(bookmark.getTags());
+        existing.setTags(tags);
+        if (existing.getDescription() == null
+                || existing.getDescription().isEmpty()) {
+            existing.setDescription(bookmark.getDescription());
+        }
+        return existing;
+    }
+
+    /**
+     * Method builds the outcome of a bulk operation for every requested id.
+     *
+     * @param ids the ids in the order of the request.
+     * @param done the ids of bookmarks which were processed.
+     * @param result the factory of outcomes of processed bookmarks.
+     * @return the outcomes in the order of the request.
+     */
+    private static List<BatchItemResult> outcomes(List<Integer> ids,
+            Set<Integer> done,
+            BiFunction<Integer, Integer, BatchItemResult> result) {
+        final List<BatchItemResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            final Integer id = ids.get(i);
+            results.add(done.contains(id)
+                    ? result.apply(i, id)
+                    : BatchItemResult.notFound(i, id));
+        }
+        return results;
     }
 
     /**
@@ -199,13 +1054,246 @@ public class BookmarksResource {
      *
      * @param changeMap map of object field values.
      */
-    protected void purgeMap(final Map<String, String> changeMap) {
+    protected void purgeMap(final Map<String, ?> changeMap) {
         changeMap.remove("id");
         changeMap.entrySet().removeIf(
-                entry -> Strings.isNullOrEmpty(entry.getValue())
+                entry -> entry.getValue() == null
+                || "".equals(entry.getValue())
         );
     }
 
+    /**
+     * Method applies changes from a request body to a stored bookmark and
+     * saves it if request preconditions are met.
+     *
+     * @param id the id of the bookmark to be modified.
+     * @param jsonData Modifications in JSON format.
+     * @param user Authenticated user with whose bookmarks we work.
+     * @param request the request to evaluate preconditions.
+     * @return Bookmark with modified fields or throws an exception if bookmark
+     * was not found.
+     */
+    private Response applyChanges(IntParam id, InputStream jsonData,
+            User user, Request request) {
+        Bookmark bookmark = findBookmarkOrTrowException(id, user);
+        Response.ResponseBuilder preconditionFailed
+                = evaluatePreconditions(request, bookmark);
+        if (preconditionFailed != null) {
+            return preconditionFailed.build();
+        }
+
+        Map<String, Object> changeMap;
+        try {
+            changeMap = PATCH_READER.readValue(jsonData);
+        } catch (IOException ex) {
+            LOGGER.warn(WRONG_BODY_DATA_FORMAT, ex);
+            throw new WebApplicationException(WRONG_BODY_DATA_FORMAT,
+                    ex,
+                    Response.Status.BAD_REQUEST);
+        }
+        if (changeMap == null) {
+            throw new WebApplicationException(WRONG_BODY_DATA_FORMAT,
+                    Response.Status.BAD_REQUEST);
+        }
+
+        // Update bookmark data
+        purgeMap(changeMap);
+        changeMap.forEach((name, value) -> {
+            BiConsumer<Bookmark, Object> setter = SETTERS.get(name);
+            if (setter != null) {
+                setter.accept(bookmark, value);
+            }
+        });
+        final Set<ConstraintViolation<Bookmark>> violations
+                = VALIDATOR.validate(bookmark);
+        if (!violations.isEmpty()) {
+            throw new WebApplicationException(violations
+                    .stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")),
+                    UNPROCESSABLE_ENTITY);
+        }
+        final Bookmark saved;
+        try {
+            saved = bookmarkDAO.save(bookmark);
+        } catch (StaleStateException ex) {
+            throw new WebApplicationException(CONCURRENT_MODIFICATION,
+                    ex,
+                    Response.Status.CONFLICT);
+        }
+        return withValidators(Response.ok(saved), saved).build();
+    }
+
+    /**
+     * Method evaluates conditional request headers against the current
+     * version of a bookmark.
+     *
+     * @param request the request.
+     * @param bookmark the bookmark.
+     * @return a builder of 304 or 412 response if preconditions are not met
+     * or null if the request should be processed.
+     */
+    private static Response.ResponseBuilder evaluatePreconditions(
+            Request request, Bookmark bookmark) {
+        if (bookmark.getUpdatedAt() == null) {
+            return request.evaluatePreconditions(entityTag(bookmark));
+        }
+        return request.evaluatePreconditions(bookmark.getUpdatedAt(),
+                entityTag(bookmark));
+    }
+
+    /**
+     * Method adds ETag and Last-Modified headers of a bookmark to a response.
+     *
+     * @param builder the response builder.
+     * @param bookmark the bookmark.
+     * @return the builder.
+     */
+    private static Response.ResponseBuilder withValidators(
+            Response.ResponseBuilder builder, Bookmark bookmark) {
+        return builder.tag(entityTag(bookmark))
+                .lastModified(bookmark.getUpdatedAt());
+    }
+
+    /**
+     * Method computes a strong entity tag of a bookmark.
+     *
+     * @param bookmark the bookmark.
+     * @return the entity tag which changes whenever the bookmark is modified.
+     */
+    private static EntityTag entityTag(Bookmark bookmark) {
+        return new EntityTag(bookmark.getId() + "-" + bookmark.getVersion());
+    }
+
+    /**
+     * Method computes a strong entity tag of a page of bookmarks of a user.
+     * The same version of the bookmarks yields different pages depending on
+     * the request, so the parameters of the request are hashed as well.
+     *
+     * @param version the version of the bookmarks of the user.
+     * @param tags tags bookmarks on the page are filtered by or null.
+     * @param afterId the id of the last bookmark on the previous page.
+     * @param pageSize the number of bookmarks on a page.
+     * @param mediaType the media type of the response.
+     * @return the entity tag.
+     */
+    private static EntityTag entityTag(String version, List<String> tags,
+            int afterId, int pageSize, MediaType mediaType) {
+        final Hasher hasher = Hashing.murmur3_128().newHasher()
+                .putString(version, StandardCharsets.UTF_8)
+                .putInt(afterId)
+                .putInt(pageSize)
+                .putString(mediaType.getType() + "/"
+                        + mediaType.getSubtype(), StandardCharsets.UTF_8);
+        if (tags != null) {
+            // Tags are separated, so that "ab" differs from "a" and "b".
+            new TreeSet<>(Bookmark.normalizeTags(tags)).forEach(tag -> hasher
+                    .putString(tag, StandardCharsets.UTF_8)
+                    .putByte((byte) 0));
+        }
+        return new EntityTag(hasher.hash().toString());
+    }
+
+    /**
+     * Method converts a scalar JSON value to text.
+     *
+     * @param value the value of a JSON property.
+     * @return the text.
+     */
+    private static String asText(Object value) {
+        if (value instanceof Map || value instanceof List) {
+            throw new WebApplicationException(WRONG_BODY_DATA_FORMAT,
+                    Response.Status.BAD_REQUEST);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Method converts a JSON array of scalar values to a list of texts.
+     *
+     * @param value the value of a JSON property; nulls in the array are
+     * skipped.
+     * @return the texts.
+     */
+    private static List<String> asTextList(Object value) {
+        if (!(value instanceof List)) {
+            throw new WebApplicationException(WRONG_BODY_DATA_FORMAT,
+                    Response.Status.BAD_REQUEST);
+        }
+        return ((List<?>) value).stream()
+                .filter(Objects::nonNull)
+                .map(BookmarksResource::asText)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Method saves a batch of bookmarks, records their outcomes and empties
+     * the batch.
+     *
+     * @param batch bookmarks to save.
+     * @param batchIndexes positions of the bookmarks in the request.
+     * @param results outcomes of all the bookmarks processed so far.
+     */
+    private void saveBatch(List<Bookmark> batch, List<Integer> batchIndexes,
+            List<BatchItemResult> results) {
+        bookmarkDAO.saveAll(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            final int index = batchIndexes.get(i);
+            results.set(index,
+                    BatchItemResult.created(index, batch.get(i).getId()));
+        }
+        batch.clear();
+        batchIndexes.clear();
+    }
+
+    /**
+     * Method calculates how many bookmarks a user may add. The number of
+     * bookmarks of the user stays locked until the end of the transaction,
+     * so that concurrent additions can't exceed the quota together.
+     *
+     * @param user the user.
+     * @return the number of bookmarks the user may add.
+     */
+    private int getRemainingQuota(User user) {
+        if (maxBookmarks == null) {
+            return Integer.MAX_VALUE;
+        }
+        return getRemainingQuota(bookmarkDAO.lockBookmarkCount(user.getId()));
+    }
+
+    /**
+     * Method calculates how many bookmarks a user may add given the locked
+     * number of bookmarks of the user.
+     *
+     * @param count the number of bookmarks of the user.
+     * @return the number of bookmarks the user may add.
+     */
+    private int getRemainingQuota(int count) {
+        if (maxBookmarks == null) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(0, maxBookmarks - count);
+    }
+
+    /**
+     * Method calculates the size of a page taking into account the configured
+     * maximum.
+     *
+     * @param limit page size requested by a client or null.
+     * @return the number of bookmarks on a page.
+     */
+    private int getPageSize(IntParam limit) {
+        if (limit == null) {
+            return maxPageSize;
+        }
+        if (limit.get() < 1) {
+            throw new WebApplicationException("Limit should be positive.",
+                    Response.Status.BAD_REQUEST);
+        }
+        return Math.min(limit.get(), maxPageSize);
+    }
+
     /**
      * Method looks for a bookmark by id and User id and returns the bookmark or
      * throws NotFoundException otherwise.
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import io.dropwizard.jersey.params.AbstractParam;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An opaque continuation token used to page through bookmark lists. The token
+ * wraps the id of the last bookmark returned on the previous page, so the next
+ * page starts right after it.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class CursorParam extends AbstractParam<Integer> {
+
+    /**
+     * Prefix of the encoded value; allows to reject random strings.
+     */
+    private static final String PREFIX = "id:";
+
+    /**
+     * Constructor to parse a token passed as a query parameter.
+     *
+     * @param input the token.
+     */
+    public CursorParam(String input) {
+        super(input);
+    }
+
+    /**
+     * Method produces a token that points right after the given bookmark id.
+     *
+     * @param lastId the id of the last bookmark on the current page.
+     * @return an opaque URL-safe token.
+     */
+    public static String encode(int lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((PREFIX + lastId)
+                        .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    protected String errorMessage(Exception e) {
+        return "Invalid cursor.";
+    }
+
+    @Override
+    protected Integer parse(String input) throws Exception {
+        String decoded = new String(
+                Base64.getUrlDecoder().decode(input),
+                StandardCharsets.US_ASCII);
+        if (!decoded.startsWith(PREFIX)) {
+            throw new IllegalArgumentException(decoded);
+        }
+        int lastId = Integer.parseInt(decoded.substring(PREFIX.length()));
+        if (lastId < 0) {
+            throw new IllegalArgumentException(decoded);
+        }
+        return lastId;
+    }
+
+}
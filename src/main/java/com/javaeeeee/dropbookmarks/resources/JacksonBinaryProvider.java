@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import io.dropwizard.jackson.Jackson;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * JAX-RS entity provider which reads and writes entities in a binary format
+ * supported by Jackson, such as CBOR or Smile. The object mapper is
+ * configured the same way as the one used for JSON, so all representations
+ * of resources contain the same properties.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public abstract class JacksonBinaryProvider extends JacksonJsonProvider {
+
+    /**
+     * Media type of CBOR documents.
+     */
+    public static final String APPLICATION_CBOR = "application/cbor";
+    /**
+     * Media type of Smile documents.
+     */
+    public static final String APPLICATION_SMILE
+            = "application/x-jackson-smile";
+    /**
+     * The media type of the format.
+     */
+    private final MediaType mediaType;
+
+    /**
+     * Constructor to create a provider.
+     *
+     * @param mapper object mapper which uses a factory of the format.
+     * @param mediaType the media type of the format.
+     */
+    protected JacksonBinaryProvider(ObjectMapper mapper, MediaType mediaType) {
+        super(mapper);
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Method creates a provider of CBOR documents.
+     *
+     * @return the provider.
+     */
+    public static JacksonBinaryProvider cbor() {
+        return new Cbor();
+    }
+
+    /**
+     * Method creates a provider of Smile documents.
+     *
+     * @return the provider.
+     */
+    public static JacksonBinaryProvider smile() {
+        return new Smile();
+    }
+
+    @Override
+    protected boolean hasMatchingMediaType(MediaType candidate) {
+        return candidate != null
+                && mediaType.getType().equalsIgnoreCase(candidate.getType())
+                && mediaType.getSubtype()
+                .equalsIgnoreCase(candidate.getSubtype());
+    }
+
+    /**
+     * Provider of CBOR documents. Each format has its own class as Jersey
+     * registers only one provider of a class.
+     */
+    private static final class Cbor extends JacksonBinaryProvider {
+
+        /**
+         * Constructor to create the provider.
+         */
+        Cbor() {
+            super(Jackson.newObjectMapper(new CBORFactory()),
+                    MediaType.valueOf(APPLICATION_CBOR));
+        }
+    }
+
+    /**
+     * Provider of Smile documents.
+     */
+    private static final class Smile extends JacksonBinaryProvider {
+
+        /**
+         * Constructor to create the provider.
+         */
+        Smile() {
+            super(Jackson.newObjectMapper(new SmileFactory()),
+                    MediaType.valueOf(APPLICATION_SMILE));
+        }
+    }
+}
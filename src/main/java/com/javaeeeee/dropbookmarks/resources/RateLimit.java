@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration of a rate limit: every user may make as many requests as
+ * the limit in a period, at once or spread over it.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class RateLimit {
+
+    /**
+     * Number of requests in a period.
+     */
+    @Min(1)
+    private int limit = 100;
+    /**
+     * The period in which the number of requests is limited.
+     */
+    @NotNull
+    private Duration period = Duration.seconds(1);
+
+    /**
+     * Constructor to create the default limit.
+     */
+    public RateLimit() {
+    }
+
+    /**
+     * Constructor to create a limit.
+     *
+     * @param limit number of requests in a period.
+     * @param period the period in which the number of requests is limited.
+     */
+    public RateLimit(int limit, Duration period) {
+        this.limit = limit;
+        this.period = period;
+    }
+
+    /**
+     * Obtain the number of requests in a period.
+     *
+     * @return the number of requests.
+     */
+    @JsonProperty
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the number of requests in a period.
+     *
+     * @param limit the number of requests.
+     */
+    @JsonProperty
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Obtain the period in which the number of requests is limited.
+     *
+     * @return the period.
+     */
+    @JsonProperty
+    public Duration getPeriod() {
+        return period;
+    }
+
+    /**
+     * Set the period in which the number of requests is limited.
+     *
+     * @param period the period.
+     */
+    @JsonProperty
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import java.lang.reflect.Method;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.container.DynamicFeature;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.FeatureContext;
+
+/**
+ * Feature which registers the rate limit filter of the class of requests of
+ * every resource method, as given by {@link RateLimited} or guessed from the
+ * HTTP method. Classes without a configured limit are not limited.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class RateLimitFeature implements DynamicFeature {
+
+    /**
+     * Filters of classes of requests.
+     */
+    private final Map<RateLimited.Kind, RateLimitFilter> filters
+            = new EnumMap<>(RateLimited.Kind.class);
+
+    /**
+     * Constructor to create the feature.
+     *
+     * @param rateLimits limits of classes of requests.
+     * @param metrics the registry to report to.
+     */
+    public RateLimitFeature(Map<RateLimited.Kind, RateLimit> rateLimits,
+            MetricRegistry metrics) {
+        rateLimits.forEach((kind, rateLimit) -> filters.put(kind,
+                new RateLimitFilter(new TokenBucketRateLimiter(
+                        kind.name().toLowerCase(Locale.ROOT), rateLimit,
+                        metrics))));
+    }
+
+    /**
+     * Method registers the filter of the class of requests of a resource
+     * method.
+     *
+     * @param resourceInfo the resource method.
+     * @param context the configuration of the method.
+     */
+    @Override
+    public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+        final RateLimitFilter filter
+                = filters.get(getKind(resourceInfo.getResourceMethod()));
+        if (filter != null) {
+            context.register(filter);
+        }
+    }
+
+    /**
+     * Method finds the class of requests of a resource method.
+     *
+     * @param method the resource method.
+     * @return the class of requests.
+     */
+    static RateLimited.Kind getKind(Method method) {
+        final RateLimited rateLimited
+                = method.getAnnotation(RateLimited.class);
+        if (rateLimited != null) {
+            return rateLimited.value();
+        }
+        return method.isAnnotationPresent(GET.class)
+                || method.isAnnotationPresent(HEAD.class)
+                ? RateLimited.Kind.READ
+                : RateLimited.Kind.WRITE;
+    }
+}
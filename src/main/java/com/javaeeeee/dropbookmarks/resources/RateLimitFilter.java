@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.javaeeeee.dropbookmarks.core.User;
+import java.security.Principal;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+/**
+ * Filter which limits the rate of requests of every authenticated user. It
+ * runs after authentication and rejects requests over the limit with
+ * 429 Too Many Requests and a Retry-After header; responses carry RateLimit
+ * headers telling the limit, the number of requests left and the seconds
+ * until the limit is restored. Anonymous requests are not limited.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@Priority(Priorities.AUTHORIZATION)
+public class RateLimitFilter
+        implements ContainerRequestFilter, ContainerResponseFilter {
+
+    /**
+     * HTTP status returned if the rate limit is exceeded.
+     */
+    public static final int TOO_MANY_REQUESTS = 429;
+    /**
+     * Error message returned if the rate limit is exceeded.
+     */
+    public static final String RATE_LIMIT_EXCEEDED
+            = "Rate limit exceeded, try again later";
+    /**
+     * Header with the number of requests in a period.
+     */
+    public static final String RATE_LIMIT_LIMIT = "RateLimit-Limit";
+    /**
+     * Header with the number of requests which may be made right away.
+     */
+    public static final String RATE_LIMIT_REMAINING = "RateLimit-Remaining";
+    /**
+     * Header with seconds until the limit is restored.
+     */
+    public static final String RATE_LIMIT_RESET = "RateLimit-Reset";
+    /**
+     * The request property which keeps the decision for the response.
+     */
+    private static final String DECISION
+            = RateLimitFilter.class.getName() + ".decision";
+
+    /**
+     * The rate limiter.
+     */
+    private final TokenBucketRateLimiter limiter;
+
+    /**
+     * Constructor to create the filter.
+     *
+     * @param limiter the rate limiter.
+     */
+    public RateLimitFilter(TokenBucketRateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Method takes a token of the authenticated user or rejects the request.
+     *
+     * @param requestContext the request.
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        final Principal principal = requestContext.getSecurityContext()
+                .getUserPrincipal();
+        if (!(principal instanceof User)
+                || ((User) principal).getId() == null) {
+            return;
+        }
+        final TokenBucketRateLimiter.Decision decision
+                = limiter.acquire(((User) principal).getId());
+        requestContext.setProperty(DECISION, decision);
+        if (!decision.isAllowed()) {
+            throw new WebApplicationException(RATE_LIMIT_EXCEEDED,
+                    Response.status(TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER,
+                            decision.getRetryAfter())
+                    .build());
+        }
+    }
+
+    /**
+     * Method adds RateLimit headers to responses of limited requests.
+     *
+     * @param requestContext the request.
+     * @param responseContext the response.
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext,
+            ContainerResponseContext responseContext) {
+        final TokenBucketRateLimiter.Decision decision
+                = (TokenBucketRateLimiter.Decision) requestContext
+                .getProperty(DECISION);
+        if (decision == null) {
+            return;
+        }
+        final MultivaluedMap<String, Object> headers
+                = responseContext.getHeaders();
+        headers.putSingle(RATE_LIMIT_LIMIT, decision.getLimit());
+        headers.putSingle(RATE_LIMIT_REMAINING, decision.getRemaining());
+        headers.putSingle(RATE_LIMIT_RESET, decision.getReset());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.javaeeeee.dropbookmarks.core.User;
+import com.javaeeeee.dropbookmarks.db.ShardedDataSource;
+import java.security.Principal;
+import javax.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Listener which binds the authenticated user to the request thread, so that
+ * the units of work of resource methods use the shard of the user. The user
+ * is bound after authentication, before the unit of work begins, and is
+ * unbound when the request is finished or, for asynchronous methods, as soon
+ * as the method returns.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@Provider
+public class ShardBindingListener implements ApplicationEventListener {
+
+    /**
+     * Application events are of no interest.
+     *
+     * @param event the event.
+     */
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    /**
+     * Method creates the listener of a request.
+     *
+     * @param requestEvent the start of the request.
+     * @return the listener.
+     */
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return event -> {
+            switch (event.getType()) {
+                case REQUEST_FILTERED:
+                    final Principal principal = event.getContainerRequest()
+                            .getSecurityContext().getUserPrincipal();
+                    ShardedDataSource.bind(principal instanceof User
+                            ? ((User) principal).getId() : null);
+                    break;
+                case RESOURCE_METHOD_FINISHED:
+                    final ResourceMethod method
+                            = event.getUriInfo().getMatchedResourceMethod();
+                    if (method != null && method.isSuspendDeclared()) {
+                        ShardedDataSource.bind(null);
+                    }
+                    break;
+                case FINISHED:
+                    ShardedDataSource.bind(null);
+                    break;
+                default:
+                    break;
+            }
+        };
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter which gives every user a bucket of tokens refilled at a
+ * constant rate. A bucket is kept as the single time when it will be full
+ * again, so a request takes a token with one compare-and-set and no lock;
+ * buckets of users who made no requests for a period are full and are
+ * dropped.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TokenBucketRateLimiter {
+
+    /**
+     * Number of requests in a period, which is also the size of a bucket.
+     */
+    private final int limit;
+    /**
+     * The period in nanoseconds.
+     */
+    private final long periodNanos;
+    /**
+     * Nanoseconds to refill one token.
+     */
+    private final long intervalNanos;
+    /**
+     * Source of time.
+     */
+    private final Ticker ticker;
+    /**
+     * Times when buckets will be full keyed by ids of users.
+     */
+    private final LoadingCache<Integer, AtomicLong> buckets;
+    /**
+     * Meter of allowed requests.
+     */
+    private final Meter allowedMeter;
+    /**
+     * Meter of rejected requests.
+     */
+    private final Meter rejectedMeter;
+
+    /**
+     * Constructor to create the rate limiter.
+     *
+     * @param name the name of the limit to report metrics under.
+     * @param rateLimit the limit.
+     * @param metrics the registry to report to.
+     */
+    public TokenBucketRateLimiter(String name, RateLimit rateLimit,
+            MetricRegistry metrics) {
+        this(name, rateLimit, metrics, Ticker.systemTicker());
+    }
+
+    /**
+     * Constructor to create the rate limiter with a source of time.
+     *
+     * @param name the name of the limit to report metrics under.
+     * @param rateLimit the limit.
+     * @param metrics the registry to report to.
+     * @param ticker the source of time.
+     */
+    public TokenBucketRateLimiter(String name, RateLimit rateLimit,
+            MetricRegistry metrics, Ticker ticker) {
+        this.limit = rateLimit.getLimit();
+        this.periodNanos = rateLimit.getPeriod().toNanoseconds();
+        this.intervalNanos = Math.max(1, periodNanos / limit);
+        this.ticker = ticker;
+        this.buckets = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .expireAfterAccess(periodNanos, TimeUnit.NANOSECONDS)
+                .build(new CacheLoader<Integer, AtomicLong>() {
+                    @Override
+                    public AtomicLong load(Integer userId) {
+                        return new AtomicLong(ticker.read());
+                    }
+                });
+        this.allowedMeter = metrics.meter(MetricRegistry
+                .name(TokenBucketRateLimiter.class, name, "allowed"));
+        this.rejectedMeter = metrics.meter(MetricRegistry
+                .name(TokenBucketRateLimiter.class, name, "rejected"));
+        metrics.register(MetricRegistry
+                .name(TokenBucketRateLimiter.class, name, "users"),
+                (Gauge<Long>) buckets::size);
+    }
+
+    /**
+     * Method takes a token from the bucket of a user if there is one.
+     *
+     * @param userId the id of the user.
+     * @return whether the request is allowed and the state of the bucket.
+     */
+    public Decision acquire(int userId) {
+        final AtomicLong bucket = buckets.getUnchecked(userId);
+        while (true) {
+            final long now = ticker.read();
+            final long full = bucket.get();
+            final long next = Math.max(full, now) + intervalNanos;
+            if (next - now > periodNanos) {
+                rejectedMeter.mark();
+                return new Decision(false, limit, 0,
+                        toSeconds(full - now),
+                        Math.max(1, toSeconds(next - now - periodNanos)));
+            }
+            if (bucket.compareAndSet(full, next)) {
+                allowedMeter.mark();
+                return new Decision(true, limit,
+                        (int) ((periodNanos - (next - now)) / intervalNanos),
+                        toSeconds(next - now), 0);
+            }
+        }
+    }
+
+    /**
+     * Method rounds nanoseconds up to whole seconds.
+     *
+     * @param nanos nanoseconds.
+     * @return seconds, not negative.
+     */
+    private static long toSeconds(long nanos) {
+        return Math.max(0, (nanos + TimeUnit.SECONDS.toNanos(1) - 1)
+                / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Outcome of taking a token.
+     */
+    public static final class Decision {
+
+        /**
+         * Whether the request is allowed.
+         */
+        private final boolean allowed;
+        /**
+         * Number of requests in a period.
+         */
+        private final int limit;
+        /**
+         * Number of requests which may be made right away.
+         */
+        private final int remaining;
+        /**
+         * Seconds until the bucket is full.
+         */
+        private final long reset;
+        /**
+         * Seconds until a rejected request may be repeated.
+         */
+        private final long retryAfter;
+
+        /**
+         * Constructor to create the outcome.
+         *
+         * @param allowed whether the request is allowed.
+         * @param limit number of requests in a period.
+         * @param remaining number of requests which may be made right away.
+         * @param reset seconds until the bucket is full.
+         * @param retryAfter seconds until a rejected request may be
+         * repeated.
+         */
+        Decision(boolean allowed, int limit, int remaining, long reset,
+                long retryAfter) {
+            this.allowed = allowed;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.reset = reset;
+            this.retryAfter = retryAfter;
+        }
+
+        /**
+         * Whether the request is allowed.
+         *
+         * @return true if the request is allowed.
+         */
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        /**
+         * Getter for the number of requests in a period.
+         *
+         * @return the limit.
+         */
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Getter for the number of requests which may be made right away.
+         *
+         * @return the remaining requests.
+         */
+        public int getRemaining() {
+            return remaining;
+        }
+
+        /**
+         * Getter for seconds until the bucket is full.
+         *
+         * @return the seconds.
+         */
+        public long getReset() {
+            return reset;
+        }
+
+        /**
+         * Getter for seconds until a rejected request may be repeated.
+         *
+         * @return the seconds, 0 if the request is allowed.
+         */
+        public long getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
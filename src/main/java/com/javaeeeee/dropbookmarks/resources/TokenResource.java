@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.javaeeeee.dropbookmarks.auth.TokenAuthenticator;
+import com.javaeeeee.dropbookmarks.core.AccessToken;
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.auth.Auth;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.NotAuthorizedException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * A class to exchange username and password for a bearer token.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@Path("/auth/token")
+@Produces(MediaType.APPLICATION_JSON)
+public class TokenResource {
+
+    /**
+     * Prefix of the Authorization header with Basic credentials.
+     */
+    private static final String BASIC_PREFIX = "Basic ";
+
+    /**
+     * Issues tokens.
+     */
+    private final TokenAuthenticator tokenAuthenticator;
+    /**
+     * Realm sent to clients which did not provide Basic credentials.
+     */
+    private final String realm;
+
+    /**
+     * Constructor to initialize token issuer.
+     *
+     * @param tokenAuthenticator issues tokens.
+     * @param realm realm sent to clients which did not provide Basic
+     * credentials.
+     */
+    public TokenResource(final TokenAuthenticator tokenAuthenticator,
+            final String realm) {
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.realm = realm;
+    }
+
+    /**
+     * Method issues a token to a user authenticated with username and
+     * password. Tokens can't be used to obtain new tokens, so the lifetime of
+     * a session is limited.
+     *
+     * @param authorization the Authorization header.
+     * @param user Authenticated user.
+     * @return a new token.
+     */
+    @POST
+    @Timed
+    @ExceptionMetered
+    public AccessToken issueToken(
+            @HeaderParam(HttpHeaders.AUTHORIZATION) String authorization,
+            @Auth User user) {
+        if (authorization == null
+                || !authorization.regionMatches(true, 0, BASIC_PREFIX, 0,
+                        BASIC_PREFIX.length())) {
+            throw new NotAuthorizedException(
+                    "Username and password are required.",
+                    String.format("Basic realm=\"%s\"", realm));
+        }
+        return new AccessToken(tokenAuthenticator.issue(user),
+                AccessToken.BEARER,
+                tokenAuthenticator.getTtl().getSeconds());
+    }
+
+}
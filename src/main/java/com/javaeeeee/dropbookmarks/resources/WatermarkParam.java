@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import io.dropwizard.jersey.params.AbstractParam;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An opaque token used to synchronize bookmarks. The token wraps the sequence
+ * number of the last change known to the client, so only later changes are
+ * returned.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class WatermarkParam extends AbstractParam<Long> {
+
+    /**
+     * Prefix of the encoded value; allows to reject random strings.
+     */
+    private static final String PREFIX = "seq:";
+
+    /**
+     * Constructor to parse a token passed as a query parameter.
+     *
+     * @param input the token.
+     */
+    public WatermarkParam(String input) {
+        super(input);
+    }
+
+    /**
+     * Method produces a token that points right after the given change.
+     *
+     * @param sequence the sequence number of the last change sent to the
+     * client.
+     * @return an opaque URL-safe token.
+     */
+    public static String encode(long sequence) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((PREFIX + sequence)
+                        .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    protected String errorMessage(Exception e) {
+        return "Invalid watermark.";
+    }
+
+    @Override
+    protected Long parse(String input) throws Exception {
+        String decoded = new String(
+                Base64.getUrlDecoder().decode(input),
+                StandardCharsets.US_ASCII);
+        if (!decoded.startsWith(PREFIX)) {
+            throw new IllegalArgumentException(decoded);
+        }
+        long sequence = Long.parseLong(decoded.substring(PREFIX.length()));
+        if (sequence < 0) {
+            throw new IllegalArgumentException(decoded);
+        }
+        return sequence;
+    }
+
+}
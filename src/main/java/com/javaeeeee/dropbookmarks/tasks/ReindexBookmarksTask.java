@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.javaeeeee.dropbookmarks.db.BookmarkIndex;
+import com.javaeeeee.dropbookmarks.db.TagIndex;
+import io.dropwizard.servlets.tasks.Task;
+import java.io.PrintWriter;
+
+/**
+ * An admin task to rebuild the full-text and tag indexes of bookmarks, for
+ * instance after tables were modified bypassing the application. Indexes of
+ * users are read from the database again when they are queried next time.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ReindexBookmarksTask extends Task {
+
+    /**
+     * The full-text index of bookmarks.
+     */
+    private final BookmarkIndex index;
+    /**
+     * The tag index of bookmarks.
+     */
+    private final TagIndex tagIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param index the full-text index of bookmarks.
+     * @param tagIndex the tag index of bookmarks.
+     */
+    public ReindexBookmarksTask(final BookmarkIndex index,
+            final TagIndex tagIndex) {
+        super("reindex-bookmarks");
+        this.index = index;
+        this.tagIndex = tagIndex;
+    }
+
+    /**
+     * Method empties the indexes.
+     *
+     * @param parameters query parameters; not used.
+     * @param output the response writer.
+     */
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters,
+            PrintWriter output) {
+        index.clear();
+        tagIndex.clear();
+        output.println("Bookmark indexes will be rebuilt on demand.");
+    }
+}
@@ -23,17 +23,41 @@
  */
 package com.javaeeeee.dropbookmarks;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.BookmarkChanges;
+import com.javaeeeee.dropbookmarks.core.BulkUpdate;
+import com.javaeeeee.dropbookmarks.db.InstrumentedDataSource;
+import com.javaeeeee.dropbookmarks.db.RoutingDataSource;
+import com.javaeeeee.dropbookmarks.resources.JacksonBinaryProvider;
+import com.javaeeeee.dropbookmarks.resources.RateLimitFilter;
+import com.javaeeeee.dropbookmarks.resources.TokenBucketRateLimiter;
+import io.dropwizard.jackson.Jackson;
 import io.dropwizard.testing.ResourceHelpers;
 import io.dropwizard.testing.junit.DropwizardAppRule;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import org.glassfish.jersey.SslConfigurator;
@@ -41,7 +65,9 @@ import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -64,6 +90,27 @@ public class IntegrationTest {
     private static final String CONFIG_PATH
             = ResourceHelpers.resourceFilePath("test-config.yml");
 
+    /**
+     * The path to the key store which is necessary for HTTPS support; the
+     * same path is given in the test configuration file.
+     */
+    private static final String TRUST_STORE_FILE_NAME
+            = "target/dropbookmarks-test.keystore";
+
+    /**
+     * The password of the key store.
+     */
+    private static final String TRUST_STORE_PASSWORD
+            = "p@ssw0rd";
+
+    static {
+        try {
+            createKeyStore();
+        } catch (IOException | InterruptedException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
     /**
      * Start the application before all test methods.
      */
@@ -91,18 +138,6 @@ public class IntegrationTest {
     private static final String BOOKMARK_PATH
             = "/bookmarks";
 
-    /**
-     * The path to the key store which is necessary for HTTPS support.
-     */
-    private static final String TRUST_STORE_FILE_NAME
-            = "dropbookmarks.keystore";
-
-    /**
-     * The password of the key store.
-     */
-    private static final String TRUST_STORE_PASSWORD
-            = "p@ssw0rd";
-
     /**
      * Jersey client to access resources.
      */
@@ -118,6 +153,33 @@ public class IntegrationTest {
 
     }
 
+    /**
+     * Method creates a fresh key store with a self-signed certificate of
+     * localhost, so that no key has to be kept with the sources.
+     *
+     * @throws IOException if keytool can't be run.
+     * @throws InterruptedException if the thread is interrupted.
+     */
+    private static void createKeyStore()
+            throws IOException, InterruptedException {
+        final File keyStore = new File(TRUST_STORE_FILE_NAME);
+        Files.deleteIfExists(keyStore.toPath());
+        keyStore.getParentFile().mkdirs();
+        final Process keytool = new ProcessBuilder(
+                System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "keytool",
+                "-genkeypair", "-keyalg", "RSA", "-dname", "CN=localhost",
+                "-keystore", TRUST_STORE_FILE_NAME,
+                "-keypass", TRUST_STORE_PASSWORD,
+                "-storepass", TRUST_STORE_PASSWORD)
+                .inheritIO()
+                .start();
+        if (keytool.waitFor() != 0) {
+            throw new IOException("keytool failed to create "
+                    + TRUST_STORE_FILE_NAME);
+        }
+    }
+
     /**
      * Configuration method run before each test method.
      *
@@ -183,6 +245,196 @@ public class IntegrationTest {
         assertEquals(2, response.size());
     }
 
+    /**
+     * Test getBookmarks() method producing compressed CBOR.
+     *
+     * @throws IOException if the response can't be parsed.
+     */
+    @Test
+    public void getBookmarksCompressedCbor() throws IOException {
+        client.register(FEATURE);
+        Response response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(JacksonBinaryProvider.APPLICATION_CBOR)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .get();
+
+        assertEquals("gzip",
+                response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        try (InputStream in = new GZIPInputStream(
+                response.readEntity(InputStream.class))) {
+            List<Bookmark> bookmarks = Jackson
+                    .newObjectMapper(new CBORFactory())
+                    .readValue(in, new TypeReference<List<Bookmark>>() {
+                    });
+            assertEquals(2, bookmarks.size());
+        }
+    }
+
+    /**
+     * Test getBookmarks() method answering a conditional request until
+     * bookmarks change.
+     */
+    @Test
+    public void getBookmarksNotModified() {
+        client.register(FEATURE);
+        Response first = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        EntityTag entityTag = first.getEntityTag();
+        Response second = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+                .get();
+        client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark("http://localhost", "")));
+        Response third = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+                .get();
+
+        assertNotNull(entityTag);
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(),
+                second.getStatus());
+        assertEquals(Response.Status.OK.getStatusCode(), third.getStatus());
+        assertEquals(3, third.readEntity(
+                new GenericType<List<Bookmark>>() {
+                }).size());
+    }
+
+    /**
+     * Test getChanges() method.
+     */
+    @Test
+    public void getChangesOK() {
+        client.register(FEATURE);
+        BookmarkChanges all = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("changes")
+                .request(MediaType.APPLICATION_JSON)
+                .get(BookmarkChanges.class);
+        client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("1")
+                .request(MediaType.APPLICATION_JSON)
+                .delete();
+        client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark("http://localhost", "")));
+        BookmarkChanges changes = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("changes")
+                .queryParam("since", all.getWatermark())
+                .request(MediaType.APPLICATION_JSON)
+                .get(BookmarkChanges.class);
+
+        assertEquals(2, all.getBookmarks().size());
+        assertTrue(all.getDeleted().isEmpty());
+        assertEquals(1, changes.getBookmarks().size());
+        assertEquals("http://localhost",
+                changes.getBookmarks().get(0).getUrl());
+        assertEquals(Collections.singletonList(1), changes.getDeleted());
+        assertNotEquals(all.getWatermark(), changes.getWatermark());
+    }
+
+    /**
+     * Test exportBookmarks() method.
+     */
+    @Test
+    public void exportBookmarksOK() {
+        client.register(FEATURE);
+        String response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("export")
+                .request("application/x-ndjson")
+                .get(String.class);
+
+        assertNotNull(response);
+        assertEquals(2, response.split("\n").length);
+    }
+
+    /**
+     * Test getBookmarks() method filtering bookmarks by tags.
+     */
+    @Test
+    public void getBookmarksByTagsOK() {
+        client.register(FEATURE);
+        List<Bookmark> response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .queryParam("tag", "Java", "dropwizard")
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<Bookmark>>() {
+                });
+
+        assertEquals(1, response.size());
+        assertEquals(1, response.get(0).getId().intValue());
+        assertTrue(response.get(0).getTags().contains("java"));
+    }
+
+    /**
+     * Test searchBookmarks() method.
+     */
+    @Test
+    public void searchBookmarksOK() {
+        client.register(FEATURE);
+        List<Bookmark> response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("search")
+                .queryParam("q", "hibernate docs")
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<Bookmark>>() {
+                });
+
+        assertEquals(1, response.size());
+        assertEquals("Hibernate Docs", response.get(0).getDescription());
+    }
+
+    /**
+     * Test getBookmarks() method with a bearer token.
+     */
+    @Test
+    public void getBookmarksWithToken() {
+        Map<String, Object> token = client.target(target)
+                .path("/auth/token")
+                .register(FEATURE)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""))
+                .readEntity(new GenericType<Map<String, Object>>() {
+                });
+        assertEquals("Bearer", token.get("tokenType"));
+
+        List<Bookmark> response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token.get("token"))
+                .get(new GenericType<List<Bookmark>>() {
+                });
+
+        assertNotNull(response);
+        assertEquals(2, response.size());
+    }
+
+    /**
+     * Test getBookmarks() method with a bearer token.
+     */
+    @Test
+    public void getBookmarksWithInvalidToken() {
+        Response response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer invalid.token")
+                .get();
+
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(),
+                response.getStatus());
+    }
+
     /**
      * Test getBookmark() method.
      */
@@ -288,6 +540,143 @@ public class IntegrationTest {
         assertEquals(expectedURL, response.getUrl());
     }
 
+    /**
+     * Test add bookmarks method.
+     */
+    @Test
+    public void addBookmarksOK() {
+        client.register(FEATURE);
+        String body = "{\"url\":\"http://localhost:8080\"}\n"
+                + "{\"description\":\"No URL\"}\n"
+                + "{\"url\":\"http://localhost:8443\"}\n";
+        List<Map<String, Object>> response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("batch")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(body, "application/x-ndjson"))
+                .readEntity(new GenericType<List<Map<String, Object>>>() {
+                });
+
+        assertNotNull(response);
+        assertEquals(3, response.size());
+        assertEquals("CREATED", response.get(0).get("status"));
+        assertNotNull(response.get(0).get("id"));
+        assertEquals("INVALID", response.get(1).get("status"));
+        assertEquals("CREATED", response.get(2).get("status"));
+    }
+
+    /**
+     * Test that URLs are normalized, duplicates are rejected or merged on
+     * request and reported.
+     */
+    @Test
+    public void duplicateBookmarksOK() {
+        client.register(FEATURE);
+        String url = "http://localhost/duplicates";
+        Bookmark first = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark(
+                        "HTTP://LocalHost/duplicates/?utm_source=test",
+                        "First")), Bookmark.class);
+        Response rejected = client.target(target)
+                .path(BOOKMARK_PATH)
+                .queryParam("onDuplicate", "reject")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark(url, null)));
+        rejected.close();
+        Bookmark second = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark(url, "Second")),
+                        Bookmark.class);
+        Bookmark tagged = new Bookmark(url, null);
+        tagged.setTags(Collections.singletonList("merged"));
+        Bookmark merged = client.target(target)
+                .path(BOOKMARK_PATH)
+                .queryParam("onDuplicate", "merge")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(tagged), Bookmark.class);
+        List<Map<String, Object>> duplicates = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("duplicates")
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<Map<String, Object>>>() {
+                });
+
+        assertEquals(url, first.getUrl());
+        assertEquals(Response.Status.CONFLICT.getStatusCode(),
+                rejected.getStatus());
+        assertEquals(first.getId(), merged.getId());
+        assertEquals("First", merged.getDescription());
+        assertEquals(Collections.singleton("merged"), merged.getTags());
+        assertTrue(duplicates.stream().anyMatch(d -> url.equals(d.get("url"))
+                && Arrays.asList(first.getId(), second.getId())
+                        .equals(d.get("ids"))));
+    }
+
+    /**
+     * Test bulk update and bulk delete methods; bookmarks of other users are
+     * not touched.
+     */
+    @Test
+    public void updateAndDeleteBookmarksOK() {
+        client.register(FEATURE);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ids.add(client.target(target)
+                    .path(BOOKMARK_PATH)
+                    .request(MediaType.APPLICATION_JSON)
+                    .post(Entity.entity(new Bookmark("http://localhost/" + i,
+                            "Bulk"), MediaType.APPLICATION_JSON))
+                    .readEntity(Bookmark.class)
+                    .getId());
+        }
+        // Bookmark 3 belongs to another user.
+        ids.add(3);
+
+        List<Map<String, Object>> updated = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path("bulk-update")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(new BulkUpdate(ids, "Updated",
+                        Collections.singletonList("bulk"), null),
+                        MediaType.APPLICATION_JSON))
+                .readEntity(new GenericType<List<Map<String, Object>>>() {
+                });
+        Bookmark bookmark = client.target(target)
+                .path(BOOKMARK_PATH)
+                .path(ids.get(0).toString())
+                .request(MediaType.APPLICATION_JSON)
+                .get(Bookmark.class);
+        List<Map<String, Object>> deleted = client.target(target)
+                .path(BOOKMARK_PATH)
+                .queryParam("ids", ids.stream()
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(",")))
+                .request(MediaType.APPLICATION_JSON)
+                .delete(new GenericType<List<Map<String, Object>>>() {
+                });
+
+        assertEquals(3, updated.size());
+        assertEquals("UPDATED", updated.get(0).get("status"));
+        assertEquals("UPDATED", updated.get(1).get("status"));
+        assertEquals("NOT_FOUND", updated.get(2).get("status"));
+        assertEquals("Updated", bookmark.getDescription());
+        assertEquals(Collections.singleton("bulk"), bookmark.getTags());
+        assertEquals(3, deleted.size());
+        assertEquals("DELETED", deleted.get(0).get("status"));
+        assertEquals(ids.get(1), deleted.get(1).get("id"));
+        assertEquals("NOT_FOUND", deleted.get(2).get("status"));
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(),
+                client.target(target)
+                .path(BOOKMARK_PATH)
+                .path(ids.get(0).toString())
+                .request(MediaType.APPLICATION_JSON)
+                .get()
+                .getStatus());
+    }
+
     /**
      * Test delete bookmark method.
      */
@@ -414,4 +803,100 @@ public class IntegrationTest {
         assertNotNull(response);
         assertEquals(expectedURL, response.getUrl());
     }
+
+    /**
+     * Test that metrics are exposed in Prometheus format on the admin port.
+     */
+    @Test
+    public void prometheusMetrics() {
+        client.register(FEATURE);
+        client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .get()
+                .close();
+
+        String response = client
+                .target(String.format("http://localhost:%d",
+                        RULE.getAdminPort()))
+                .path(DropBookmarksApplication.PROMETHEUS_PATH)
+                .request(MediaType.TEXT_PLAIN)
+                .get(String.class);
+
+        assertTrue(response.contains(
+                "BookmarksResource_getBookmarks{quantile=\"0.999\""));
+        assertTrue(response.contains(
+                "BookmarkDAO_findByUserIdPage{quantile=\"0.99\""));
+    }
+
+    /**
+     * Test that waits for connections are measured and the pool is healthy.
+     */
+    @Test
+    public void connectionPoolHealthy() {
+        client.register(FEATURE);
+        client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .get()
+                .close();
+
+        assertTrue(RULE.getEnvironment().metrics().timer(MetricRegistry
+                .name(InstrumentedDataSource.class, "hibernate", "acquire"))
+                .getCount() > 0);
+        assertTrue(RULE.getEnvironment().healthChecks()
+                .runHealthCheck("database-pool").isHealthy());
+    }
+
+    /**
+     * Test that requests of a user are counted against the limit of their
+     * class.
+     */
+    @Test
+    public void rateLimitHeaders() {
+        client.register(FEATURE);
+        Response response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        response.close();
+
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+        assertEquals("10000", response.getHeaderString(
+                RateLimitFilter.RATE_LIMIT_LIMIT));
+        assertNotNull(response.getHeaderString(
+                RateLimitFilter.RATE_LIMIT_REMAINING));
+        assertTrue(RULE.getEnvironment().metrics().meter(MetricRegistry
+                .name(TokenBucketRateLimiter.class, "read", "allowed"))
+                .getCount() > 0);
+    }
+
+    /**
+     * Test that reads of bookmarks go to the replica once its lag is known.
+     *
+     * @throws InterruptedException if the test is interrupted.
+     */
+    @Test
+    public void getBookmarksFromReplica() throws InterruptedException {
+        MetricRegistry metrics = RULE.getEnvironment().metrics();
+        Gauge<?> lag = metrics.getGauges().get(MetricRegistry
+                .name(RoutingDataSource.class, "hibernate-replica-0", "lag"));
+        for (int i = 0; i < 50 && ((Long) lag.getValue()) < 0; i++) {
+            Thread.sleep(100);
+        }
+        Meter reads = metrics.meter(MetricRegistry
+                .name(RoutingDataSource.class, "hibernate-replica-0", "reads"));
+        long before = reads.getCount();
+
+        client.register(FEATURE);
+        List<Bookmark> response = client.target(target)
+                .path(BOOKMARK_PATH)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<List<Bookmark>>() {
+                });
+
+        assertEquals(2, response.size());
+        assertTrue(reads.getCount() > before);
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.basic.BasicCredentials;
+import java.util.Optional;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * A class to test the cache of authentication results.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CachingBasicAuthenticatorTest {
+
+    /**
+     * Username for a test user.
+     */
+    private static final String USERNAME = "Coda";
+    /**
+     * Password for a test user.
+     */
+    private static final String PASSWORD = "HALE";
+    /**
+     * A test user.
+     */
+    private static final User USER = new User(USERNAME, PASSWORD);
+    /**
+     * Credentials of the test user.
+     */
+    private static final BasicCredentials CREDENTIALS
+            = new BasicCredentials(USERNAME, PASSWORD);
+    /**
+     * Authenticator which checks credentials.
+     */
+    @Mock
+    private Authenticator<BasicCredentials, User> underlying;
+    /**
+     * Registry of metrics.
+     */
+    private MetricRegistry metrics;
+    /**
+     * System under test.
+     */
+    private CachingBasicAuthenticator sut;
+
+    /**
+     * A method to initialize SUT before each test.
+     */
+    @Before
+    public void setUp() {
+        metrics = new MetricRegistry();
+        sut = new CachingBasicAuthenticator(metrics, underlying,
+                CacheBuilderSpec.parse("maximumSize=10"));
+    }
+
+    /**
+     * Test of authenticate method, of class CachingBasicAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateCached() throws Exception {
+        // given
+        when(underlying.authenticate(CREDENTIALS))
+                .thenReturn(Optional.of(USER));
+
+        // when
+        Optional<User> first = sut.authenticate(CREDENTIALS);
+        Optional<User> second = sut.authenticate(
+                new BasicCredentials(USERNAME, PASSWORD));
+
+        // then
+        verify(underlying, times(1)).authenticate(CREDENTIALS);
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertEquals(USER, second.get());
+        assertEquals(1L, gauge("cache-hits").getValue());
+        assertEquals(1L, gauge("cache-misses").getValue());
+    }
+
+    /**
+     * Test of authenticate method, of class CachingBasicAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateWrongPasswordNotCached() throws Exception {
+        // given
+        BasicCredentials wrong = new BasicCredentials(USERNAME, "p@ssw0rd");
+        when(underlying.authenticate(CREDENTIALS))
+                .thenReturn(Optional.of(USER));
+        when(underlying.authenticate(wrong))
+                .thenReturn(Optional.empty());
+
+        // when
+        sut.authenticate(CREDENTIALS);
+        Optional<User> first = sut.authenticate(wrong);
+        Optional<User> second = sut.authenticate(wrong);
+
+        // then
+        assertFalse(first.isPresent());
+        assertFalse(second.isPresent());
+        verify(underlying, times(2)).authenticate(wrong);
+    }
+
+    /**
+     * Test of invalidate method, of class CachingBasicAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testInvalidate() throws Exception {
+        // given
+        when(underlying.authenticate(any(BasicCredentials.class)))
+                .thenReturn(Optional.of(USER));
+
+        // when
+        sut.authenticate(CREDENTIALS);
+        sut.invalidate(USERNAME);
+        sut.authenticate(CREDENTIALS);
+
+        // then
+        verify(underlying, times(2)).authenticate(CREDENTIALS);
+    }
+
+    /**
+     * Test of HashedCredentials class.
+     */
+    @Test
+    public void testHashedCredentials() {
+        byte[] salt = {1, 2, 3};
+        HashedCredentials key = new HashedCredentials(CREDENTIALS, salt);
+
+        key.clearPassword();
+
+        assertEquals(key, new HashedCredentials(CREDENTIALS, salt));
+        assertFalse(key.equals(new HashedCredentials(CREDENTIALS,
+                new byte[]{3, 2, 1})));
+        assertFalse(key.equals(new HashedCredentials(
+                new BasicCredentials(USERNAME, "p@ssw0rd"), salt)));
+        assertFalse(key.toString().contains(PASSWORD));
+    }
+
+    /**
+     * Test of HashedCredentials class.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testHashedCredentialsCleared() {
+        HashedCredentials key = new HashedCredentials(CREDENTIALS,
+                new byte[]{1});
+
+        key.clearPassword();
+        key.toBasicCredentials();
+    }
+
+    /**
+     * Method obtains a cache gauge.
+     *
+     * @param name the name of the gauge.
+     * @return the gauge.
+     */
+    private Gauge gauge(String name) {
+        return metrics.getGauges().get(
+                MetricRegistry.name(CachingBasicAuthenticator.class, name));
+    }
+}
@@ -23,22 +23,36 @@
  */
 package com.javaeeeee.dropbookmarks.auth;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.javaeeeee.dropbookmarks.core.User;
 import com.javaeeeee.dropbookmarks.db.UserDAO;
 import io.dropwizard.auth.basic.BasicCredentials;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import org.mockito.runners.MockitoJUnitRunner;
 
 /**
@@ -81,6 +95,15 @@ public class DBAuthenticatorTest {
      */
     @Mock
     private Session session;
+    /**
+     * Hibernate transaction.
+     */
+    @Mock
+    private Transaction transaction;
+    /**
+     * Metric registry.
+     */
+    private MetricRegistry metrics;
     /**
      * System under test, an authenticator class in this case.
      */
@@ -91,7 +114,10 @@ public class DBAuthenticatorTest {
      */
     @Before
     public void setUp() {
-        sut = new DBAuthenticator(USER_DAO, sf);
+        USER.setId(1);
+        when(session.beginTransaction()).thenReturn(transaction);
+        metrics = new MetricRegistry();
+        sut = new DBAuthenticator(USER_DAO, sf, metrics);
     }
 
     /**
@@ -115,6 +141,8 @@ public class DBAuthenticatorTest {
         assertNotNull(optional);
         assertTrue(optional.isPresent());
         assertEquals(USERNAME, optional.get().getUsername());
+        assertEquals(1, metrics.timer(MetricRegistry.name(
+                DBAuthenticator.class, "checkPassword")).getCount());
     }
 
     /**
@@ -160,4 +188,69 @@ public class DBAuthenticatorTest {
         assertNotNull(optional);
         assertFalse(optional.isPresent());
     }
+
+    /**
+     * Test of authenticate method, of class DBAuthenticator. A digest weaker
+     * than configured is replaced by a new hash of the password.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateRehashes() throws Exception {
+        // given
+        when(USER_DAO.findByUsername(USERNAME))
+                .thenReturn(Optional.of(USER));
+        when(sf.openSession()).thenReturn(session);
+        sut = new DBAuthenticator(USER_DAO, sf, new PasswordHasher(1000),
+                new HashingExecutor(MoreExecutors.newDirectExecutorService(),
+                        1, 1, 5, TimeUnit.SECONDS, metrics),
+                metrics);
+
+        // when
+        Optional<User> optional
+                = sut.authenticate(new BasicCredentials(USERNAME, PASSWORD));
+
+        // then
+        assertTrue(optional.isPresent());
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        verify(USER_DAO).updatePassword(eq(1), eq(HASHED_PASSWORD),
+                hash.capture());
+        // One transaction looks the user up, the other one rehashes.
+        verify(transaction, times(2)).commit();
+        assertTrue(new PasswordHasher(1000).check(PASSWORD, hash.getValue()));
+        assertFalse(new PasswordHasher(1000).needsRehash(hash.getValue()));
+    }
+
+    /**
+     * Test of authenticate method, of class DBAuthenticator, when passwords
+     * can't be checked.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateOverloaded() throws Exception {
+        // given
+        when(USER_DAO.findByUsername(USERNAME))
+                .thenReturn(Optional.of(USER));
+        when(sf.openSession()).thenReturn(session);
+        ExecutorService executor = MoreExecutors.newDirectExecutorService();
+        executor.shutdown();
+        sut = new DBAuthenticator(USER_DAO, sf, new PasswordHasher(),
+                new HashingExecutor(executor, 1, 1, 5, TimeUnit.SECONDS,
+                        metrics),
+                metrics);
+
+        // when
+        try {
+            sut.authenticate(new BasicCredentials(USERNAME, PASSWORD));
+            fail();
+        } catch (WebApplicationException ex) {
+            // then
+            assertEquals(503, ex.getResponse().getStatus());
+            assertEquals("5", ex.getResponse()
+                    .getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+        verify(USER_DAO, never()).updatePassword(anyInt(), anyString(),
+                anyString());
+    }
 }
@@ -0,0 +1,265 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test HashingExecutor class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class HashingExecutorTest {
+
+    /**
+     * Metric registry.
+     */
+    private MetricRegistry metrics;
+    /**
+     * The pool of the executor with one thread and a queue of one task.
+     */
+    private ThreadPoolExecutor pool;
+    /**
+     * Threads of clients.
+     */
+    private ExecutorService clients;
+    /**
+     * Released to let blocked work finish.
+     */
+    private CountDownLatch release;
+    /**
+     * System under test.
+     */
+    private HashingExecutor sut;
+
+    /**
+     * Initializations before each test method.
+     */
+    @Before
+    public void setUp() {
+        metrics = new MetricRegistry();
+        pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1));
+        clients = Executors.newCachedThreadPool();
+        release = new CountDownLatch(1);
+        sut = new HashingExecutor(pool, 1, 2, 5, TimeUnit.SECONDS, metrics);
+    }
+
+    /**
+     * Cleanup after each test method.
+     */
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.shutdownNow();
+        clients.shutdownNow();
+    }
+
+    /**
+     * Test of call method, of class HashingExecutor.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCall() throws Exception {
+        assertEquals("hash", sut.call("Coda", () -> "hash"));
+        assertEquals(1, metrics.timer(MetricRegistry.name(
+                HashingExecutor.class, "hash")).getCount());
+        assertEquals(0, metrics.getGauges().get(MetricRegistry.name(
+                HashingExecutor.class, "queued")).getValue());
+    }
+
+    /**
+     * Test of call method, of class HashingExecutor, when the same user has
+     * a check in progress.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCallLimitedPerUsername() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> blocked = clients.submit(
+                () -> sut.call("Coda", block(started)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        try {
+            sut.call("Coda", () -> "hash");
+            fail();
+        } catch (RejectedExecutionException ex) {
+            assertEquals(1, metrics.meter(MetricRegistry.name(
+                    HashingExecutor.class, "limited")).getCount());
+        }
+        release.countDown();
+        assertEquals("blocked", blocked.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", sut.call("Coda", () -> "hash"));
+    }
+
+    /**
+     * Test of call method, of class HashingExecutor, when the same client
+     * has too many checks in progress.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCallLimitedPerAddress() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> blocked = clients.submit(
+                () -> fromAddress(() -> sut.call("Coda", block(started))));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = clients.submit(
+                () -> fromAddress(() -> sut.call("Hale", () -> "queued")));
+        while (pool.getQueue().isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        try {
+            fromAddress(() -> sut.call("Dropwizard", () -> "hash"));
+            fail();
+        } catch (RejectedExecutionException ex) {
+            assertEquals(1, metrics.meter(MetricRegistry.name(
+                    HashingExecutor.class, "limited")).getCount());
+        }
+        release.countDown();
+        assertEquals("blocked", blocked.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test of call method, of class HashingExecutor, when the queue is full.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCallRejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        clients.submit(() -> sut.call("Coda", block(started)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(sut.execute(() -> {
+        }));
+
+        try {
+            sut.call("Hale", () -> "hash");
+            fail();
+        } catch (RejectedExecutionException ex) {
+            assertEquals(1, metrics.meter(MetricRegistry.name(
+                    HashingExecutor.class, "rejected")).getCount());
+        }
+        assertFalse(sut.execute(() -> {
+        }));
+    }
+
+    /**
+     * Test of call method, of class HashingExecutor, when the check isn't
+     * done within the timeout.
+     *
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCallExpired() throws Exception {
+        metrics = new MetricRegistry();
+        sut = new HashingExecutor(pool, 1, 1, 50, TimeUnit.MILLISECONDS,
+                metrics);
+
+        try {
+            sut.call("Coda", block(new CountDownLatch(1)));
+            fail();
+        } catch (RejectedExecutionException ex) {
+            assertEquals(1, metrics.meter(MetricRegistry.name(
+                    HashingExecutor.class, "expired")).getCount());
+        }
+        // The slot of the user is returned.
+        release.countDown();
+        assertEquals("hash", sut.call("Coda", () -> "hash"));
+    }
+
+    /**
+     * Method creates work which waits until it is released.
+     *
+     * @param started counted down when the work starts.
+     * @return the work.
+     */
+    private Supplier<String> block(
+            CountDownLatch started) {
+        return () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "blocked";
+        };
+    }
+
+    /**
+     * Method runs a check as if it were done for a request from the same
+     * client address.
+     *
+     * @param check the check.
+     * @return the result of the check.
+     * @throws Exception if the check fails.
+     */
+    private static String fromAddress(
+            Callable<String> check) throws Exception {
+        ServletRequest request = mock(ServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+        String[] result = new String[1];
+        Exception[] error = new Exception[1];
+        FilterChain chain = (ServletRequest req, ServletResponse res) -> {
+            try {
+                result[0] = check.call();
+            } catch (Exception ex) {
+                error[0] = ex;
+            }
+        };
+        new ClientAddressFilter().doFilter(request,
+                mock(ServletResponse.class), chain);
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return result[0];
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A class to test PasswordHasher class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class PasswordHasherTest {
+
+    /**
+     * A password.
+     */
+    private static final String PASSWORD = "HALE";
+    /**
+     * The password digested by Jasypt's BasicPasswordEncryptor.
+     */
+    private static final String LEGACY_DIGEST
+            = "WR1sXzZRJFSBurV6itaZRrgN/m+sKedr";
+    /**
+     * System under test.
+     */
+    private final PasswordHasher sut = new PasswordHasher(1000);
+
+    /**
+     * Test of hash and check methods, of class PasswordHasher.
+     */
+    @Test
+    public void testHash() {
+        String hash = sut.hash(PASSWORD);
+
+        assertTrue(hash.startsWith("$pbkdf2-sha256$1000$"));
+        assertNotEquals(hash, sut.hash(PASSWORD));
+        assertTrue(sut.check(PASSWORD, hash));
+        assertFalse(sut.check("hale", hash));
+        assertFalse(sut.needsRehash(hash));
+    }
+
+    /**
+     * Test of check method, of class PasswordHasher, with a digest stored
+     * before PBKDF2 was used.
+     */
+    @Test
+    public void testCheckLegacy() {
+        assertTrue(sut.check(PASSWORD, LEGACY_DIGEST));
+        assertFalse(sut.check("hale", LEGACY_DIGEST));
+        assertTrue(sut.needsRehash(LEGACY_DIGEST));
+    }
+
+    /**
+     * Test of needsRehash method, of class PasswordHasher. Hashes with fewer
+     * iterations than configured are still accepted.
+     */
+    @Test
+    public void testNeedsRehash() {
+        String weak = new PasswordHasher(10).hash(PASSWORD);
+
+        assertTrue(sut.needsRehash(weak));
+        assertTrue(sut.check(PASSWORD, weak));
+        assertFalse(new PasswordHasher(10).needsRehash(sut.hash(PASSWORD)));
+        assertEquals(1000, sut.getIterations());
+    }
+
+    /**
+     * Test of check method, of class PasswordHasher, with malformed hashes.
+     */
+    @Test
+    public void testCheckMalformed() {
+        assertFalse(sut.check(PASSWORD, "$pbkdf2-sha256$1000$abc"));
+        assertFalse(sut.check(PASSWORD, "$pbkdf2-sha256$x$AAAA$AAAA"));
+        assertFalse(sut.check(PASSWORD, "$pbkdf2-sha256$0$AAAA$AAAA"));
+        assertTrue(sut.needsRehash("$pbkdf2-sha256$x$AAAA$AAAA"));
+    }
+
+    /**
+     * Test of the constructor, of class PasswordHasher.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoIterations() {
+        new PasswordHasher(0);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.auth;
+
+import com.javaeeeee.dropbookmarks.core.User;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A class to test bearer tokens.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TokenAuthenticatorTest {
+
+    /**
+     * The key used to sign tokens.
+     */
+    private static final byte[] SECRET
+            = "secret".getBytes(StandardCharsets.UTF_8);
+    /**
+     * Lifetime of tokens.
+     */
+    private static final Duration TTL = Duration.ofHours(1);
+    /**
+     * The moment tokens are issued.
+     */
+    private static final Instant NOW = Instant.parse("2016-12-01T10:00:00Z");
+    /**
+     * Test user id.
+     */
+    private static final int USER_ID = 1;
+    /**
+     * Test user name; contains the separator on purpose.
+     */
+    private static final String USERNAME = "Coda:Hale";
+    /**
+     * Test user.
+     */
+    private static final User USER = new User(USERNAME, "password");
+    /**
+     * System under test.
+     */
+    private TokenAuthenticator sut;
+
+    /**
+     * A method to initialize SUT before each test.
+     */
+    @Before
+    public void setUp() {
+        USER.setId(USER_ID);
+        sut = new TokenAuthenticator(SECRET, TTL,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    /**
+     * Test of authenticate method, of class TokenAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateOk() throws Exception {
+        Optional<User> optional = sut.authenticate(sut.issue(USER));
+
+        assertTrue(optional.isPresent());
+        assertEquals(USER_ID, optional.get().getId().intValue());
+        assertEquals(USERNAME, optional.get().getUsername());
+    }
+
+    /**
+     * Test of authenticate method, of class TokenAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateExpired() throws Exception {
+        String token = sut.issue(USER);
+        TokenAuthenticator later = new TokenAuthenticator(SECRET, TTL,
+                Clock.fixed(NOW.plus(TTL), ZoneOffset.UTC));
+
+        assertFalse(later.authenticate(token).isPresent());
+    }
+
+    /**
+     * Test of authenticate method, of class TokenAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateWrongKey() throws Exception {
+        String token = sut.issue(USER);
+        TokenAuthenticator other = new TokenAuthenticator(
+                "other".getBytes(StandardCharsets.UTF_8), TTL,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertFalse(other.authenticate(token).isPresent());
+    }
+
+    /**
+     * Test of authenticate method, of class TokenAuthenticator.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAuthenticateTampered() throws Exception {
+        String token = sut.issue(USER);
+        User other = new User("Phil", "password");
+        other.setId(2);
+        String otherToken = sut.issue(other);
+        String forged = otherToken.substring(0, otherToken.indexOf('.'))
+                + token.substring(token.indexOf('.'));
+
+        assertFalse(sut.authenticate(forged).isPresent());
+        assertFalse(sut.authenticate("garbage").isPresent());
+        assertFalse(sut.authenticate("!!!.???").isPresent());
+    }
+}
@@ -70,6 +70,56 @@ public class BookmarkTest extends EntityTest {
                 .getMessage());
     }
 
+    /**
+     * Test of setUrl method, of class Bookmark.
+     */
+    @Test
+    public void testSetUrlNormalized() {
+        Bookmark bookmark = new Bookmark();
+        bookmark.setUrl(" HTTPS://GitHub.com:443/javaeeeee/DropBookmarks/ ");
+
+        assertEquals("https://github.com/javaeeeee/DropBookmarks",
+                bookmark.getUrl());
+        assertEquals(Long.valueOf(Bookmark.hashUrl(bookmark.getUrl())),
+                bookmark.getUrlHash());
+
+        bookmark.setUrl(null);
+        assertNull(bookmark.getUrl());
+        assertNull(bookmark.getUrlHash());
+    }
+
+    /**
+     * Test of normalizeUrl method, of class Bookmark.
+     */
+    @Test
+    public void testNormalizeUrl() {
+        String expectedURL = "http://example.com/a/b?id=1&page=2#top";
+
+        assertEquals(expectedURL, Bookmark.normalizeUrl(expectedURL));
+        assertEquals(expectedURL, Bookmark.normalizeUrl(
+                "HTTP://Example.COM:80/a/./c/../b/?utm_source=x&id=1"
+                + "&fbclid=y&page=2&UTM_medium=z#top"));
+        assertEquals("http://example.com",
+                Bookmark.normalizeUrl("http://example.com/?utm_source=x#"));
+        assertEquals("http://example.com:8080/A",
+                Bookmark.normalizeUrl("http://example.com:8080/A"));
+        assertEquals("mailto:someone@example.com",
+                Bookmark.normalizeUrl(" mailto:someone@example.com"));
+        assertEquals("not a url", Bookmark.normalizeUrl("not a url "));
+        assertNull(Bookmark.normalizeUrl(null));
+    }
+
+    /**
+     * Test of hashUrl method, of class Bookmark.
+     */
+    @Test
+    public void testHashUrl() {
+        assertEquals(Bookmark.hashUrl("https://example.com/a"),
+                Bookmark.hashUrl("https://EXAMPLE.com/a/?gclid=1"));
+        assertNotEquals(Bookmark.hashUrl("https://example.com/a"),
+                Bookmark.hashUrl("https://example.com/b"));
+    }
+
     /**
      * Test of equals method, of class Bookmark.
      */
@@ -23,15 +23,35 @@
  */
 package com.javaeeeee.dropbookmarks.db;
 
+import com.codahale.metrics.MetricRegistry;
 import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.BookmarkChange;
+import com.javaeeeee.dropbookmarks.core.BookmarkDuplicates;
+import com.javaeeeee.dropbookmarks.core.BulkUpdate;
 import com.javaeeeee.dropbookmarks.core.User;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.LiquibaseException;
 import liquibase.exception.LockException;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+import org.hibernate.Transaction;
 import org.hibernate.context.internal.ManagedSessionContext;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import static com.javaeeeee.dropbookmarks.db.DAOTest.SESSION_FACTORY;
@@ -42,6 +62,10 @@ import static com.javaeeeee.dropbookmarks.db.DAOTest.SESSION_FACTORY;
  */
 public class BookmarkDAOTest extends DAOTest {
 
+    /**
+     * Metric registry.
+     */
+    private MetricRegistry metrics;
     /**
      * System under test.
      */
@@ -56,7 +80,8 @@ public class BookmarkDAOTest extends DAOTest {
     public void setUp() throws LiquibaseException {
         liquibase.update("TEST");
         session = SESSION_FACTORY.openSession();
-        sut = new BookmarkDAO(SESSION_FACTORY);
+        metrics = new MetricRegistry();
+        sut = new BookmarkDAO(SESSION_FACTORY, metrics);
         tx = null;
     }
 
@@ -97,6 +122,55 @@ public class BookmarkDAOTest extends DAOTest {
         }
         assertNotNull(bookmarks);
         assertFalse(bookmarks.isEmpty());
+        assertEquals(1, metrics.timer(MetricRegistry.name(
+                BookmarkDAO.class, "findByUserId")).getCount());
+    }
+
+    /**
+     * Test of findByUserId method with keyset pagination, of class
+     * BookmarkDAO.
+     */
+    @Test
+    public void testFindByUserIdPage() {
+        List<Bookmark> firstPage = null;
+        List<Bookmark> secondPage = null;
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+
+            firstPage = sut.findByUserId(1, 0, 1);
+            secondPage = sut.findByUserId(1,
+                    firstPage.get(0).getId(), 1);
+
+            tx.commit();
+        } catch (Exception e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+        assertEquals(1, firstPage.size());
+        assertEquals(1, firstPage.get(0).getId().intValue());
+        assertEquals(1, secondPage.size());
+        assertEquals(2, secondPage.get(0).getId().intValue());
+    }
+
+    /**
+     * Test of scrollByUserId method, of class BookmarkDAO.
+     */
+    @Test
+    public void testScrollByUserId() {
+        List<Bookmark> bookmarks = new ArrayList<>();
+
+        sut.scrollByUserId(1, bookmarks::add);
+
+        assertEquals(2, bookmarks.size());
+        for (Bookmark bookmark : bookmarks) {
+            assertEquals(1, bookmark.getUser().getId().intValue());
+        }
     }
 
     /**
@@ -121,7 +195,8 @@ public class BookmarkDAOTest extends DAOTest {
             session
                     .createSQLQuery(
                             "insert into bookmarks "
-                            + "values(null, :url, :description, :userId)"
+                            + "(url, description, user_id) "
+                            + "values(:url, :description, :userId)"
                     )
                     .setString("url", expectedUrl)
                     .setString("description", expectedDescription)
@@ -251,6 +326,443 @@ public class BookmarkDAOTest extends DAOTest {
         assertEquals(expectedUrl, actualUrl);
     }
 
+    /**
+     * Test of saveAll method, of class BookmarkDAO.
+     */
+    @Test
+    public void testSaveAll() {
+        int userId = 2;
+        List<Bookmark> bookmarks = new ArrayList<>();
+        List<Bookmark> saved;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+
+            User user = userDAO.findById(userId).get();
+            for (int i = 0; i < 3; i++) {
+                Bookmark bookmark = new Bookmark("http://localhost/" + i,
+                        "Bookmark " + i);
+                bookmark.setTags(Collections.singletonList("tag" + i));
+                bookmark.setUser(user);
+                bookmarks.add(bookmark);
+            }
+            sut.saveAll(bookmarks);
+            saved = sut.findByUserId(userId);
+
+            tx.commit();
+        } catch (Exception e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+
+        // One bookmark was added by migrations
+        assertEquals(4, saved.size());
+        for (Bookmark bookmark : bookmarks) {
+            assertNotNull(bookmark.getId());
+            assertTrue(saved.stream().anyMatch(b
+                    -> b.getId().equals(bookmark.getId())
+                    && b.getUrl().equals(bookmark.getUrl())
+                    && b.getTags().equals(bookmark.getTags())));
+        }
+    }
+
+    /**
+     * Test of saveAll method, of class BookmarkDAO; cached pages should not
+     * become stale.
+     */
+    @Test
+    public void testSaveAllEvictsQueryCache() {
+        List<Bookmark> before;
+        List<Bookmark> after;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+
+            before = sut.findByUserId(2, 0, 10);
+            Bookmark bookmark = new Bookmark("http://localhost", null);
+            bookmark.setUser(userDAO.findById(2).get());
+            sut.saveAll(Collections.singletonList(bookmark));
+
+            tx.commit();
+        } catch (Exception e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+
+        session = SESSION_FACTORY.openSession();
+        tx = null;
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+
+            after = sut.findByUserId(2, 0, 10);
+
+            tx.commit();
+        } catch (Exception e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+
+        assertEquals(1, before.size());
+        assertEquals(2, after.size());
+    }
+
+    /**
+     * Test of findByIdAndUserId method, of class BookmarkDAO; the second
+     * lookup should be served by the query cache.
+     */
+    @Test
+    public void testFindByIdAndUserIdCached() {
+        for (int i = 0; i < 2; i++) {
+            session = SESSION_FACTORY.openSession();
+            tx = null;
+            try {
+                ManagedSessionContext.bind(session);
+                tx = session.beginTransaction();
+
+                assertTrue(sut.findByIdAndUserId(1, 1).isPresent());
+
+                tx.commit();
+            } catch (Exception e) {
+                if (tx != null) {
+                    tx.rollback();
+                }
+                throw e;
+            } finally {
+                ManagedSessionContext.unbind(SESSION_FACTORY);
+                session.close();
+            }
+        }
+
+        Statistics statistics = SESSION_FACTORY.getStatistics();
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    /**
+     * Test of search method, of class BookmarkDAO. The index is loaded from
+     * the database and updated when bookmarks are saved and deleted.
+     */
+    @Test
+    public void testSearch() {
+        int userId = 1;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+
+        List<Bookmark> found = inTransaction(
+                () -> sut.search(userId, "HIBER doc", 10));
+        assertEquals(1, found.size());
+        assertEquals(2, found.get(0).getId().intValue());
+        // Bookmarks of other users are not found.
+        assertTrue(inTransaction(
+                () -> sut.search(userId, "w3schools", 10)).isEmpty());
+
+        Integer id = inTransaction(() -> {
+            Bookmark bookmark = new Bookmark(
+                    "https://github.com/javaeeeee/DropBookmarks",
+                    "Dropwizard bookmarks");
+            bookmark.setUser(userDAO.findById(userId).get());
+            return sut.save(bookmark).getId();
+        });
+        found = inTransaction(() -> sut.search(userId, "dropwizard", 1));
+        assertEquals(1, found.size());
+        assertEquals(1, found.get(0).getId().intValue());
+        found = inTransaction(() -> sut.search(userId, "dropwizard", 10));
+        assertEquals(2, found.size());
+        assertEquals(id, found.get(1).getId());
+
+        inTransaction(() -> {
+            sut.delete(id);
+            return null;
+        });
+        assertTrue(inTransaction(
+                () -> sut.search(userId, "javaeeeee", 10)).isEmpty());
+    }
+
+    /**
+     * Test of search method, of class BookmarkDAO; if candidates found in
+     * the index don't match stored bookmarks any more, the page is filled
+     * with the next candidates.
+     */
+    @Test
+    public void testSearchStaleIndex() {
+        int userId = 1;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+        Integer id = inTransaction(() -> {
+            Bookmark bookmark = new Bookmark(
+                    "https://github.com/javaeeeee/DropBookmarks",
+                    "Dropwizard bookmarks");
+            bookmark.setUser(userDAO.findById(userId).get());
+            return sut.save(bookmark).getId();
+        });
+        assertEquals(2, inTransaction(
+                () -> sut.search(userId, "dropwizard", 10)).size());
+        // The bookmark is changed behind the index's back.
+        inTransaction(() -> SESSION_FACTORY.getCurrentSession()
+                .createSQLQuery("UPDATE bookmarks "
+                        + "SET url = 'http://localhost', description = NULL "
+                        + "WHERE id = 1")
+                .executeUpdate());
+
+        List<Bookmark> found = inTransaction(
+                () -> sut.search(userId, "dropwizard", 1));
+
+        assertEquals(1, found.size());
+        assertEquals(id, found.get(0).getId());
+    }
+
+    /**
+     * Test of findByUserIdAndTags method, of class BookmarkDAO; if
+     * candidates found in the index don't match stored bookmarks any more,
+     * the page is filled with the next candidates.
+     */
+    @Test
+    public void testFindByUserIdAndTagsStaleIndex() {
+        int userId = 1;
+        session.close();
+        assertEquals(2, inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("java"), 0, 10)).size());
+        // The tag is removed behind the index's back.
+        inTransaction(() -> SESSION_FACTORY.getCurrentSession()
+                .createSQLQuery("DELETE FROM tags "
+                        + "WHERE bookmark_id = 1 AND name = 'java'")
+                .executeUpdate());
+
+        List<Bookmark> found = inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("java"), 0, 1));
+
+        assertEquals(1, found.size());
+        assertEquals(2, found.get(0).getId().intValue());
+    }
+
+    /**
+     * Test of findByUserIdAndTags method, of class BookmarkDAO. The tag index
+     * is loaded from the database and updated when bookmarks are saved and
+     * deleted.
+     */
+    @Test
+    public void testFindByUserIdAndTags() {
+        int userId = 1;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+
+        List<Bookmark> found = inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList(" Java "), 0, 10));
+        assertEquals(2, found.size());
+        assertEquals(1, found.get(0).getId().intValue());
+        found = inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Arrays.asList("java", "dropwizard"), 0, 10));
+        assertEquals(1, found.size());
+        assertEquals(new HashSet<>(Arrays.asList("java", "dropwizard")),
+                found.get(0).getTags());
+        // The page starts after the given bookmark.
+        found = inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("java"), 1, 10));
+        assertEquals(1, found.size());
+        assertEquals(2, found.get(0).getId().intValue());
+
+        Integer id = inTransaction(() -> {
+            Bookmark bookmark = new Bookmark(
+                    "https://github.com/javaeeeee/DropBookmarks",
+                    "Dropwizard bookmarks");
+            bookmark.setTags(Arrays.asList("Dropwizard", "github"));
+            bookmark.setUser(userDAO.findById(userId).get());
+            return sut.save(bookmark).getId();
+        });
+        found = inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("dropwizard"), 0, 10));
+        assertEquals(2, found.size());
+        assertEquals(id, found.get(1).getId());
+
+        inTransaction(() -> {
+            Bookmark bookmark = sut.findById(id).get();
+            bookmark.setTags(Collections.singletonList("gitlab"));
+            return sut.save(bookmark);
+        });
+        assertTrue(inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("github"), 0, 10))
+                .isEmpty());
+
+        inTransaction(() -> {
+            sut.delete(id);
+            return null;
+        });
+        assertTrue(inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("gitlab"), 0, 10))
+                .isEmpty());
+        assertEquals(6, metrics.timer(MetricRegistry.name(
+                TagDAO.class, "findBookmarkIds")).getCount());
+    }
+
+    /**
+     * Test of findVersionByUserId method, of class BookmarkDAO. The version
+     * changes whenever a bookmark of the user is added, modified or deleted.
+     */
+    @Test
+    public void testFindVersionByUserId() {
+        int userId = 2;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+
+        String initial = inTransaction(() -> sut.findVersionByUserId(userId));
+        assertEquals(initial,
+                inTransaction(() -> sut.findVersionByUserId(userId)));
+
+        Bookmark added = inTransaction(() -> {
+            Bookmark bookmark = new Bookmark("http://localhost", "Local");
+            bookmark.setUser(userDAO.findById(userId).get());
+            return sut.save(bookmark);
+        });
+        assertEquals(0, added.getVersion());
+        assertNotNull(added.getUpdatedAt());
+        String afterSave = inTransaction(
+                () -> sut.findVersionByUserId(userId));
+        assertNotEquals(initial, afterSave);
+
+        Bookmark modified = inTransaction(() -> {
+            Bookmark bookmark = sut.findById(added.getId()).get();
+            bookmark.setTags(Collections.singletonList("local"));
+            return sut.save(bookmark);
+        });
+        assertEquals(1, modified.getVersion());
+        String afterModify = inTransaction(
+                () -> sut.findVersionByUserId(userId));
+        assertNotEquals(afterSave, afterModify);
+
+        inTransaction(() -> {
+            sut.delete(added.getId());
+            return null;
+        });
+        String afterDelete = inTransaction(
+                () -> sut.findVersionByUserId(userId));
+        assertNotEquals(afterModify, afterDelete);
+    }
+
+    /**
+     * Test of findChanges method, of class BookmarkDAO. Only the latest change
+     * of each bookmark made after the watermark is returned.
+     */
+    @Test
+    public void testFindChanges() {
+        int userId = 2;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+
+        List<BookmarkChange> all = inTransaction(
+                () -> sut.findChanges(userId, 0, 10));
+        assertEquals(1, all.size());
+        assertEquals(3, all.get(0).getBookmarkId());
+        assertFalse(all.get(0).isDeleted());
+        assertEquals("SQL Tutorial",
+                all.get(0).getBookmark().getDescription());
+        long since = all.get(0).getSequence();
+        assertTrue(inTransaction(() -> sut.findChanges(userId, since, 10))
+                .isEmpty());
+
+        Bookmark added = inTransaction(() -> {
+            Bookmark bookmark = new Bookmark("http://localhost", "Local");
+            bookmark.setUser(userDAO.findById(userId).get());
+            return sut.save(bookmark);
+        });
+        inTransaction(() -> {
+            Bookmark bookmark = sut.findById(3).get();
+            bookmark.setDescription("SQL IN");
+            return sut.save(bookmark);
+        });
+        List<BookmarkChange> changes = inTransaction(
+                () -> sut.findChanges(userId, since, 10));
+        assertEquals(2, changes.size());
+        assertEquals((int) added.getId(), changes.get(0).getBookmarkId());
+        assertEquals("SQL IN", changes.get(1).getBookmark().getDescription());
+        assertEquals(since + 2, changes.get(1).getSequence());
+
+        inTransaction(() -> {
+            sut.delete(added.getId());
+            return null;
+        });
+        changes = inTransaction(() -> sut.findChanges(userId, since, 10));
+        assertEquals(2, changes.size());
+        assertEquals(3, changes.get(0).getBookmarkId());
+        assertEquals((int) added.getId(), changes.get(1).getBookmarkId());
+        assertTrue(changes.get(1).isDeleted());
+        assertEquals(since + 3, changes.get(1).getSequence());
+
+        inTransaction(() -> {
+            User user = userDAO.findById(userId).get();
+            List<Bookmark> bookmarks = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Bookmark bookmark = new Bookmark("http://localhost/" + i,
+                        "Imported");
+                bookmark.setUser(user);
+                bookmarks.add(bookmark);
+            }
+            sut.saveAll(bookmarks);
+            return null;
+        });
+        changes = inTransaction(() -> sut.findChanges(userId, since + 3, 1));
+        assertEquals(1, changes.size());
+        assertEquals(since + 4, changes.get(0).getSequence());
+        assertEquals("Imported", changes.get(0).getBookmark().getDescription());
+        assertEquals(1, metrics.timer(MetricRegistry.name(
+                BookmarkChangeDAO.class, "recordAll")).getCount());
+    }
+
+    /**
+     * Test of save method, of class BookmarkDAO; a bookmark modified by
+     * another transaction since it was read can't be saved.
+     */
+    @Test(expected = StaleStateException.class)
+    public void testSaveStale() {
+        int bookmarkId = 1;
+        Bookmark stale;
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+            stale = sut.findById(bookmarkId).get();
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+        }
+        final Session first = session;
+        final Transaction firstTx = tx;
+
+        inTransaction(() -> {
+            Bookmark bookmark = sut.findById(bookmarkId).get();
+            bookmark.setDescription("Modified");
+            return sut.save(bookmark);
+        });
+
+        session = first;
+        try {
+            ManagedSessionContext.bind(session);
+            stale.setDescription("Stale");
+            sut.save(stale);
+        } finally {
+            firstTx.rollback();
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+    }
+
     /**
      * Test of delete method, of class BookmarkDAO.
      */
@@ -272,7 +784,8 @@ public class BookmarkDAOTest extends DAOTest {
             session
                     .createSQLQuery(
                             "insert into bookmarks "
-                            + "values(null, :url, :description, :userId)"
+                            + "(url, description, user_id) "
+                            + "values(:url, :description, :userId)"
                     )
                     .setString("url", expectedUrl)
                     .setString("description", expectedDescription)
@@ -448,4 +961,358 @@ public class BookmarkDAOTest extends DAOTest {
         assertNotNull(optional);
         assertFalse(optional.isPresent());
     }
+
+    /**
+     * Test of deleteAll method, of class BookmarkDAO. Bookmarks of other
+     * users are left intact and tombstones are recorded.
+     */
+    @Test
+    public void testDeleteAll() {
+        int userId = 1;
+        session.close();
+
+        Set<Integer> deleted = inTransaction(
+                () -> sut.deleteAll(userId, Arrays.asList(1, 3, 99, 1)));
+
+        assertEquals(Collections.singleton(1), deleted);
+        assertFalse(inTransaction(() -> sut.findById(1)).isPresent());
+        assertTrue(inTransaction(() -> sut.findById(3)).isPresent());
+        assertTrue(inTransaction(() -> sut.search(userId, "dropwizard", 10))
+                .isEmpty());
+        assertTrue(inTransaction(() -> sut.findByUserIdAndTags(userId,
+                Collections.singletonList("dropwizard"), 0, 10)).isEmpty());
+        List<BookmarkChange> changes = inTransaction(
+                () -> sut.findChanges(userId, 0, 10));
+        assertTrue(changes.stream().anyMatch(
+                c -> c.getBookmarkId() == 1 && c.isDeleted()));
+        assertEquals(1, metrics.timer(MetricRegistry.name(
+                BookmarkDAO.class, "deleteAll")).getCount());
+    }
+
+    /**
+     * Test of updateAll method, of class BookmarkDAO.
+     */
+    @Test
+    public void testUpdateAll() {
+        int userId = 1;
+        session.close();
+        int version = inTransaction(() -> sut.findById(2).get())
+                .getVersion();
+
+        Set<Integer> updated = inTransaction(() -> sut.updateAll(userId,
+                new BulkUpdate(Arrays.asList(1, 2, 3), "Bulk",
+                        Collections.singletonList(" Docs "),
+                        Collections.singletonList("java"))));
+
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), updated);
+        Bookmark first = inTransaction(() -> sut.findById(1).get());
+        assertEquals("Bulk", first.getDescription());
+        assertEquals(new HashSet<>(Arrays.asList("dropwizard", "docs")),
+                first.getTags());
+        Bookmark second = inTransaction(() -> sut.findById(2).get());
+        assertEquals(Collections.singleton("docs"), second.getTags());
+        assertEquals(version + 1, second.getVersion());
+        assertEquals("SQL Tutorial",
+                inTransaction(() -> sut.findById(3).get()).getDescription());
+        assertEquals(2, inTransaction(() -> sut.search(userId, "bulk", 10))
+                .size());
+        assertTrue(inTransaction(() -> sut.findByUserIdAndTags(userId,
+                Collections.singletonList("java"), 0, 10)).isEmpty());
+        assertEquals(2, inTransaction(() -> sut.findChanges(userId, 0, 10))
+                .size());
+    }
+
+    /**
+     * Test of updateAll and deleteAll methods, of class BookmarkDAO; sets of
+     * ids larger than an IN list are processed in chunks.
+     */
+    @Test
+    public void testUpdateAllChunks() {
+        int userId = 2;
+        int count = BookmarkDAO.IN_LIST_SIZE + 2;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+
+        List<Integer> ids = inTransaction(() -> {
+            User user = userDAO.findById(userId).get();
+            List<Bookmark> bookmarks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Bookmark bookmark = new Bookmark("http://localhost/" + i,
+                        "Bookmark " + i);
+                bookmark.setUser(user);
+                bookmarks.add(bookmark);
+            }
+            sut.saveAll(bookmarks);
+            List<Integer> saved = new ArrayList<>();
+            bookmarks.forEach(b -> saved.add(b.getId()));
+            return saved;
+        });
+
+        Set<Integer> updated = inTransaction(() -> sut.updateAll(userId,
+                new BulkUpdate(ids, null, Collections.singletonList("bulk"),
+                        null)));
+        assertEquals(count, updated.size());
+        assertEquals(count, inTransaction(() -> sut.findByUserIdAndTags(
+                userId, Collections.singletonList("bulk"), 0, count + 1))
+                .size());
+
+        Set<Integer> deleted = inTransaction(() -> sut.deleteAll(userId, ids));
+        assertEquals(count, deleted.size());
+        assertEquals(1, inTransaction(() -> sut.findByUserId(userId)).size());
+    }
+
+    /**
+     * Test of lockBookmarkCount method, of class BookmarkDAO; the count
+     * follows inserts and deletes.
+     */
+    @Test
+    public void testLockBookmarkCount() {
+        int userId = 1;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+        // Two bookmarks were added by migrations
+        assertEquals(2, (int) inTransaction(
+                () -> sut.lockBookmarkCount(userId)));
+
+        Bookmark bookmark = inTransaction(() -> {
+            Bookmark b = new Bookmark("http://localhost/", "Bookmark");
+            b.setUser(userDAO.findById(userId).get());
+            return sut.save(b);
+        });
+        inTransaction(() -> {
+            List<Bookmark> bookmarks = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Bookmark b = new Bookmark("http://localhost/" + i, null);
+                b.setUser(userDAO.findById(userId).get());
+                bookmarks.add(b);
+            }
+            sut.saveAll(bookmarks);
+            return null;
+        });
+        assertEquals(5, (int) inTransaction(
+                () -> sut.lockBookmarkCount(userId)));
+
+        inTransaction(() -> {
+            sut.delete(bookmark.getId());
+            return sut.deleteAll(userId, Arrays.asList(1, 2, 3));
+        });
+        assertEquals(2, (int) inTransaction(
+                () -> sut.lockBookmarkCount(userId)));
+        assertEquals(1, (int) inTransaction(
+                () -> sut.lockBookmarkCount(2)));
+    }
+
+    /**
+     * Test of save method, of class BookmarkDAO; bookmarks of the same user
+     * saved concurrently get distinct sequence numbers in the change log.
+     *
+     * @throws Exception if the bookmarks aren't saved.
+     */
+    @Test
+    public void testSaveConcurrently() throws Exception {
+        int userId = 1;
+        session.close();
+        long since = inTransaction(() -> sut.findChanges(userId, 0, 10))
+                .stream()
+                .mapToLong(BookmarkChange::getSequence)
+                .max()
+                .getAsLong();
+        CountDownLatch saved = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Bookmark> first = executor.submit(
+                    () -> saveBookmark(userId, "http://localhost/1", () -> {
+                        saved.countDown();
+                        return release.await(5, TimeUnit.SECONDS);
+                    }));
+            saved.await();
+            Future<Bookmark> second = executor.submit(
+                    () -> saveBookmark(userId, "http://localhost/2",
+                            () -> null));
+            // Let the second transaction reach the log before the first one
+            // commits.
+            Thread.sleep(200);
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        List<BookmarkChange> changes = inTransaction(
+                () -> sut.findChanges(userId, since, 10));
+        assertEquals(2, changes.size());
+        assertEquals(since + 1, changes.get(0).getSequence());
+        assertEquals(since + 2, changes.get(1).getSequence());
+    }
+
+    /**
+     * Test of lockBookmarkCount method, of class BookmarkDAO; a missing
+     * count is created from the bookmarks of the user.
+     */
+    @Test
+    public void testLockBookmarkCountMissing() {
+        int userId = 1;
+        session.close();
+        inTransaction(() -> SESSION_FACTORY.getCurrentSession()
+                .createSQLQuery("DELETE FROM bookmark_counts")
+                .executeUpdate());
+
+        assertEquals(2, (int) inTransaction(
+                () -> sut.lockBookmarkCount(userId)));
+        assertEquals(1, metrics.timer(MetricRegistry.name(
+                BookmarkCountDAO.class, "lock")).getCount());
+    }
+
+    /**
+     * Test of delete method, of class BookmarkDAO; a missing count is
+     * created from the bookmarks left after the delete.
+     */
+    @Test
+    public void testDeleteBookmarkCountMissing() {
+        int userId = 1;
+        session.close();
+        inTransaction(() -> SESSION_FACTORY.getCurrentSession()
+                .createSQLQuery("DELETE FROM bookmark_counts")
+                .executeUpdate());
+
+        inTransaction(() -> {
+            sut.delete(1);
+            return null;
+        });
+        assertEquals(1, (int) inTransaction(
+                () -> sut.lockBookmarkCount(userId)));
+    }
+
+    /**
+     * Test of findByUserIdAndUrl method, of class BookmarkDAO; hashes of
+     * bookmarks added by migrations are computed by a migration.
+     */
+    @Test
+    public void testFindByUserIdAndUrl() {
+        int userId = 1;
+        String url = "https://dropwizard.github.io/dropwizard/"
+                + "getting-started.html";
+        session.close();
+
+        Optional<Bookmark> found = inTransaction(
+                () -> sut.findByUserIdAndUrl(userId,
+                        "HTTPS://Dropwizard.GitHub.io/dropwizard/"
+                        + "getting-started.html/?utm_source=test"));
+
+        assertTrue(found.isPresent());
+        assertEquals(1, (int) found.get().getId());
+        assertEquals(new HashSet<>(Arrays.asList("dropwizard", "java")),
+                found.get().getTags());
+        assertFalse(inTransaction(
+                () -> sut.findByUserIdAndUrl(2, url)).isPresent());
+        assertFalse(inTransaction(
+                () -> sut.findByUserIdAndUrl(userId, url + "#intro"))
+                .isPresent());
+        assertEquals(3, metrics.timer(MetricRegistry.name(
+                BookmarkDAO.class, "findByUserIdAndUrl")).getCount());
+    }
+
+    /**
+     * Test of findDuplicates method, of class BookmarkDAO.
+     */
+    @Test
+    public void testFindDuplicates() {
+        int userId = 1;
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+        session.close();
+        assertTrue(inTransaction(() -> sut.findDuplicates(userId))
+                .isEmpty());
+
+        Bookmark saved = inTransaction(() -> {
+            Bookmark b = new Bookmark("https://DROPWIZARD.github.io/"
+                    + "dropwizard/getting-started.html?fbclid=1", null);
+            b.setUser(userDAO.findById(userId).get());
+            return sut.save(b);
+        });
+        List<Bookmark> imported = inTransaction(() -> {
+            List<Bookmark> bookmarks = new ArrayList<>();
+            for (String url : Arrays.asList(
+                    "https://dropwizard.github.io/dropwizard/"
+                    + "getting-started.html/",
+                    "http://localhost/a", "http://localhost/a/")) {
+                Bookmark b = new Bookmark(url, null);
+                b.setUser(userDAO.findById(userId).get());
+                bookmarks.add(b);
+            }
+            sut.saveAll(bookmarks);
+            return bookmarks;
+        });
+
+        assertEquals(Arrays.asList(
+                new BookmarkDuplicates("https://dropwizard.github.io/"
+                        + "dropwizard/getting-started.html",
+                        Arrays.asList(1, saved.getId(),
+                                imported.get(0).getId())),
+                new BookmarkDuplicates("http://localhost/a",
+                        Arrays.asList(imported.get(1).getId(),
+                                imported.get(2).getId()))),
+                inTransaction(() -> sut.findDuplicates(userId)));
+        assertTrue(inTransaction(() -> sut.findDuplicates(2)).isEmpty());
+    }
+
+    /**
+     * Method saves a new bookmark of a user in a session and transaction of
+     * its own, so that it may run concurrently with other tests' work.
+     *
+     * @param userId the id of the owner of the bookmark.
+     * @param url the URL of the bookmark.
+     * @param beforeCommit what to do after the bookmark is saved and before
+     * the transaction is committed.
+     * @return the saved bookmark.
+     * @throws Exception if the bookmark isn't saved.
+     */
+    private Bookmark saveBookmark(int userId, String url,
+            Callable<?> beforeCommit) throws Exception {
+        final Session own = SESSION_FACTORY.openSession();
+        final Transaction ownTx = own.beginTransaction();
+        try {
+            ManagedSessionContext.bind(own);
+            Bookmark bookmark = new Bookmark(url, null);
+            bookmark.setUser(own.get(User.class, userId));
+            Bookmark result = sut.save(bookmark);
+            beforeCommit.call();
+            ownTx.commit();
+            return result;
+        } catch (Exception e) {
+            ownTx.rollback();
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            own.close();
+        }
+    }
+
+    /**
+     * Method runs a piece of work in a new session and transaction.
+     *
+     * @param <T> the type of the result.
+     * @param work the work to do.
+     * @return the result of the work.
+     */
+    private <T> T inTransaction(Supplier<T> work) {
+        session = SESSION_FACTORY.openSession();
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+            T result = work.get();
+            tx.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+    }
 }
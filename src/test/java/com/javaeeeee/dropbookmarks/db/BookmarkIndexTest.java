@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.google.common.cache.CacheBuilderSpec;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A class to test the full-text index of bookmarks.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class BookmarkIndexTest {
+
+    /**
+     * The id of a test user.
+     */
+    private static final int USER_ID = 1;
+    /**
+     * Bookmarks of the test user as read from the database.
+     */
+    private List<Object[]> rows;
+    /**
+     * The number of times bookmarks were read from the database.
+     */
+    private int loads;
+    /**
+     * System under test.
+     */
+    private BookmarkIndex sut;
+
+    /**
+     * Initialization before each method.
+     */
+    @Before
+    public void setUp() {
+        rows = new ArrayList<>();
+        rows.add(new Object[]{1,
+            "https://dropwizard.github.io/dropwizard/getting-started.html",
+            "Dropwizard Getting Started"});
+        rows.add(new Object[]{2,
+            "http://hibernate.org/orm/documentation/5.1/",
+            "Hibernate Docs"});
+        loads = 0;
+        sut = new BookmarkIndex();
+    }
+
+    /**
+     * Test of tokenize method, of class BookmarkIndex.
+     */
+    @Test
+    public void testTokenize() {
+        assertEquals(
+                Arrays.asList("https", "example", "com", "ünïcode", "42"),
+                BookmarkIndex.tokenize("https://Example.com/ÜNÏCODE?42=42"));
+        assertTrue(BookmarkIndex.tokenize(" ,./ ").isEmpty());
+        assertTrue(BookmarkIndex.tokenize(null).isEmpty());
+    }
+
+    /**
+     * Test of matches method, of class BookmarkIndex.
+     */
+    @Test
+    public void testMatches() {
+        Bookmark bookmark = new Bookmark("http://hibernate.org", "Docs");
+
+        assertTrue(BookmarkIndex.matches(bookmark,
+                Arrays.asList("hiber", "doc")));
+        assertFalse(BookmarkIndex.matches(bookmark,
+                Arrays.asList("hiber", "started")));
+    }
+
+    /**
+     * Test of search method, of class BookmarkIndex.
+     */
+    @Test
+    public void testSearch() {
+        assertEquals(Arrays.asList(1, 2), search("d", 10));
+        assertEquals(Arrays.asList(1, 2), search("http", 10));
+        assertEquals(Collections.singletonList(1), search("http", 1));
+        assertEquals(Collections.singletonList(2), search("hiber doc", 10));
+        assertTrue(search("hibernate started", 10).isEmpty());
+        assertEquals(1, loads);
+    }
+
+    /**
+     * Test of put and remove methods, of class BookmarkIndex.
+     */
+    @Test
+    public void testPutAndRemove() {
+        // Changes are ignored until the index of the user is loaded.
+        sut.put(USER_ID, 3, "https://bitbucket.org", "Bitbucket");
+        assertEquals(0, loads);
+        assertTrue(search("bitbucket", 10).isEmpty());
+
+        sut.put(USER_ID, 3, "https://bitbucket.org", "Bitbucket");
+        assertEquals(Collections.singletonList(3), search("bitbucket", 10));
+
+        sut.put(USER_ID, 3, "https://gitlab.com", "GitLab");
+        assertTrue(search("bitbucket", 10).isEmpty());
+        assertEquals(Collections.singletonList(3), search("gitlab", 10));
+
+        sut.remove(USER_ID, 3);
+        sut.remove(USER_ID, 2);
+        assertTrue(search("gitlab", 10).isEmpty());
+        assertTrue(search("hibernate", 10).isEmpty());
+        assertEquals(1, loads);
+    }
+
+    /**
+     * Test that indexes of users are evicted according to the cache policy.
+     */
+    @Test
+    public void testEviction() {
+        sut = new BookmarkIndex(CacheBuilderSpec.parse("maximumSize=1"));
+        search("docs", 10);
+        sut.search(USER_ID + 1, BookmarkIndex.tokenize("docs"), 0, 10,
+                Collections::emptyList);
+        rows.remove(1);
+
+        assertTrue(search("docs", 10).isEmpty());
+        assertEquals(2, loads);
+    }
+
+    /**
+     * Test of clear method, of class BookmarkIndex.
+     */
+    @Test
+    public void testClear() {
+        search("docs", 10);
+        sut.clear();
+        rows.remove(1);
+
+        assertTrue(search("docs", 10).isEmpty());
+        assertEquals(2, loads);
+    }
+
+    /**
+     * Method searches the index for bookmarks of the test user.
+     *
+     * @param query the text to search for.
+     * @param limit maximum number of ids to return.
+     * @return ids of matching bookmarks.
+     */
+    private List<Integer> search(String query, int limit) {
+        return sut.search(USER_ID, BookmarkIndex.tokenize(query), 0, limit,
+                () -> {
+                    loads++;
+                    return rows;
+                });
+    }
+}
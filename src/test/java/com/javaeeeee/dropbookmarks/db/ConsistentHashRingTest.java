@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class to test ConsistentHashRing class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ConsistentHashRingTest {
+
+    /**
+     * Number of user ids to spread over shards.
+     */
+    private static final int USERS = 10000;
+
+    /**
+     * Test that all users are on the only shard.
+     */
+    @Test
+    public void testShardOfSingleShard() {
+        ConsistentHashRing sut = new ConsistentHashRing(1);
+
+        for (int userId = 1; userId <= USERS; userId++) {
+            assertEquals(0, sut.shardOf(userId));
+        }
+    }
+
+    /**
+     * Test that users are spread evenly.
+     */
+    @Test
+    public void testShardOfBalanced() {
+        ConsistentHashRing sut = new ConsistentHashRing(4);
+        int[] users = new int[4];
+
+        for (int userId = 1; userId <= USERS; userId++) {
+            users[sut.shardOf(userId)]++;
+        }
+
+        for (int count : users) {
+            assertTrue(count > USERS / 4 * 0.8);
+            assertTrue(count < USERS / 4 * 1.2);
+        }
+    }
+
+    /**
+     * Test that a new shard takes its share of users from other shards
+     * and other users stay where they were.
+     */
+    @Test
+    public void testShardOfAddedShard() {
+        ConsistentHashRing before = new ConsistentHashRing(4);
+        ConsistentHashRing sut = new ConsistentHashRing(5);
+        int moved = 0;
+
+        for (int userId = 1; userId <= USERS; userId++) {
+            int shard = sut.shardOf(userId);
+            if (shard != before.shardOf(userId)) {
+                assertEquals(4, shard);
+                moved++;
+            }
+        }
+
+        assertTrue(moved > USERS / 5 * 0.8);
+        assertTrue(moved < USERS / 5 * 1.2);
+    }
+
+    /**
+     * Test that there is at least one shard.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoShards() {
+        new ConsistentHashRing(0);
+    }
+}
@@ -119,4 +119,14 @@ public abstract class DAOTest {
     @After
     public abstract void tearDown() throws DatabaseException, LockException;
 
+    /**
+     * Empty the second-level cache after each test method as migrations
+     * recreate data behind Hibernate's back.
+     */
+    @After
+    public void evictCache() {
+        SESSION_FACTORY.getCache().evictAllRegions();
+        SESSION_FACTORY.getStatistics().clear();
+    }
+
 }
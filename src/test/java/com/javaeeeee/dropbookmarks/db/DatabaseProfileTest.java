@@ -0,0 +1,67 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import io.dropwizard.db.DataSourceFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class to test DatabaseProfile enum.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class DatabaseProfileTest {
+
+    /**
+     * Properties of a profile don't override configured ones.
+     */
+    @Test
+    public void testApplyTo() {
+        DataSourceFactory database = new DataSourceFactory();
+        database.getProperties().put("prepStmtCacheSize", "500");
+
+        DatabaseProfile.MYSQL.applyTo(database);
+
+        assertEquals("500", database.getProperties().get("prepStmtCacheSize"));
+        assertEquals("true", database.getProperties().get("cachePrepStmts"));
+        assertEquals("true",
+                database.getProperties().get("useServerPrepStmts"));
+        assertEquals("true",
+                database.getProperties().get("rewriteBatchedStatements"));
+    }
+
+    /**
+     * The default profile leaves properties as configured.
+     */
+    @Test
+    public void testApplyToNone() {
+        DataSourceFactory database = new DataSourceFactory();
+
+        DatabaseProfile.NONE.applyTo(database);
+
+        assertTrue(database.getProperties().isEmpty());
+    }
+}
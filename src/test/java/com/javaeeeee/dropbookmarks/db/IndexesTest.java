@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.exception.LockException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * A class to check that queries use indexes created by migrations. Query
+ * plans are compared before and after indexes are created.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class IndexesTest extends DAOTest {
+
+    /**
+     * The number of TEST changesets applied before indexes are created.
+     */
+    private static final int CHANGESETS_BEFORE_INDEXES = 5;
+    /**
+     * Query issued to authenticate users.
+     */
+    private static final String FIND_USER_BY_USERNAME
+            = "SELECT * FROM users WHERE username = 'javaeeeee'";
+    /**
+     * Query to list columns of an index.
+     */
+    private static final String BOOKMARKS_INDEX_COLUMNS
+            = "SELECT column_name FROM information_schema.indexes "
+            + "WHERE index_name = :name ORDER BY ordinal_position";
+
+    /**
+     * Initializations before each test method.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Override
+    public void setUp() throws LiquibaseException {
+        liquibase.update(CHANGESETS_BEFORE_INDEXES, "TEST");
+    }
+
+    /**
+     * Cleanup after each test method.
+     *
+     * @throws DatabaseException if there is an error with database access.
+     * @throws LockException if two clients try to apply migrations
+     * simultaneously.
+     */
+    @Override
+    public void tearDown() throws DatabaseException, LockException {
+        liquibase.dropAll();
+    }
+
+    /**
+     * Test of the unique constraint on users.username.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Test
+    public void testUsernameIndex() throws LiquibaseException {
+        String before = explain(FIND_USER_BY_USERNAME);
+        liquibase.update("TEST");
+        String after = explain(FIND_USER_BY_USERNAME);
+
+        assertTrue(before, before.contains("tableScan"));
+        assertFalse(after, after.contains("tableScan"));
+        assertTrue(after, after.contains("UQ_USERS_USERNAME"));
+    }
+
+    /**
+     * Test of the index on bookmarks(user_id, id). H2 estimates the same cost
+     * for this index and the foreign key index on the tiny test data set, so
+     * the column order of the index is checked instead of the query plan.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Test
+    public void testUserIdIdIndex() throws LiquibaseException {
+        assertEquals(Collections.emptyList(),
+                indexColumns("IDX_BOOKMARKS_USER_ID_ID"));
+        liquibase.update("TEST");
+        assertEquals(Arrays.asList("USER_ID", "ID"),
+                indexColumns("IDX_BOOKMARKS_USER_ID_ID"));
+    }
+
+    /**
+     * Test of the index on bookmarks(user_id, url_hash) which is used to
+     * look up duplicates.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Test
+    public void testUserIdUrlHashIndex() throws LiquibaseException {
+        assertEquals(Collections.emptyList(),
+                indexColumns("IDX_BOOKMARKS_USER_ID_URL_HASH"));
+        liquibase.update("TEST");
+        assertEquals(Arrays.asList("USER_ID", "URL_HASH"),
+                indexColumns("IDX_BOOKMARKS_USER_ID_URL_HASH"));
+    }
+
+    /**
+     * Method obtains columns of an index.
+     *
+     * @param name the name of the index in upper case.
+     * @return the list of column names in the order of the index.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> indexColumns(String name) {
+        session = SESSION_FACTORY.openSession();
+        try {
+            return session.createSQLQuery(BOOKMARKS_INDEX_COLUMNS)
+                    .setString("name", name)
+                    .list();
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Method obtains the plan of an SQL query from H2.
+     *
+     * @param sql the query.
+     * @return the plan.
+     */
+    private String explain(String sql) {
+        session = SESSION_FACTORY.openSession();
+        try {
+            return (String) session.createSQLQuery("EXPLAIN " + sql)
+                    .uniqueResult();
+        } finally {
+            session.close();
+        }
+    }
+}
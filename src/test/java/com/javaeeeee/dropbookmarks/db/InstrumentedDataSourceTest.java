@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformSnapshot;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test InstrumentedDataSource and ConnectionPoolHealthCheck
+ * classes.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class InstrumentedDataSourceTest {
+
+    /**
+     * The name of the pool.
+     */
+    private static final String POOL = "hibernate";
+
+    /**
+     * The current time of the fake clock in nanoseconds.
+     */
+    private final AtomicLong now = new AtomicLong();
+    /**
+     * The measured data source.
+     */
+    private ManagedDataSource delegate;
+    /**
+     * The registry of metrics of the data source.
+     */
+    private MetricRegistry metrics;
+    /**
+     * Data source under test.
+     */
+    private InstrumentedDataSource sut;
+
+    /**
+     * Initializations before each test method.
+     */
+    @Before
+    public void setUp() {
+        delegate = mock(ManagedDataSource.class);
+        metrics = new MetricRegistry();
+        sut = new InstrumentedDataSource(delegate, POOL, metrics,
+                1, TimeUnit.MINUTES, new Clock() {
+            @Override
+            public long getTick() {
+                return now.get();
+            }
+        });
+    }
+
+    /**
+     * Waits for connections are recorded and recent ones are kept for the
+     * window, however often they are looked at.
+     *
+     * @throws SQLException if something goes wrong.
+     */
+    @Test
+    public void testGetConnection() throws SQLException {
+        final Connection connection = mock(Connection.class);
+        when(delegate.getConnection()).thenReturn(connection);
+
+        assertSame(connection, sut.getConnection());
+        assertSame(connection, sut.getConnection());
+
+        assertEquals(2, metrics.timer(MetricRegistry.name(
+                InstrumentedDataSource.class, POOL, "acquire")).getCount());
+        assertEquals(2, sut.getRecentWaits().size());
+        assertEquals(2, sut.getRecentWaits().size());
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+
+        assertEquals(0, sut.getRecentWaits().size());
+    }
+
+    /**
+     * Connections which can't be acquired are counted as failures.
+     *
+     * @throws SQLException if something goes wrong.
+     */
+    @Test
+    public void testGetConnectionFailure() throws SQLException {
+        when(delegate.getConnection()).thenThrow(
+                new SQLException("Pool exhausted"));
+
+        try {
+            sut.getConnection();
+            fail("Exception expected");
+        } catch (SQLException ex) {
+            assertEquals("Pool exhausted", ex.getMessage());
+        }
+
+        assertEquals(1, metrics.meter(MetricRegistry.name(
+                InstrumentedDataSource.class, POOL, "failures")).getCount());
+        final Timer timer = metrics.timer(MetricRegistry.name(
+                InstrumentedDataSource.class, POOL, "acquire"));
+        assertEquals(1, timer.getCount());
+    }
+
+    /**
+     * Waits before the start of the pool are not recent.
+     *
+     * @throws Exception if something goes wrong.
+     */
+    @Test
+    public void testStart() throws Exception {
+        sut.getConnection();
+
+        sut.start();
+
+        verify(delegate).start();
+        assertEquals(0, sut.getRecentWaits().size());
+    }
+
+    /**
+     * The data source can be unwrapped to itself.
+     *
+     * @throws SQLException if something goes wrong.
+     */
+    @Test
+    public void testUnwrap() throws SQLException {
+        assertTrue(sut.isWrapperFor(InstrumentedDataSource.class));
+        assertSame(sut, sut.unwrap(InstrumentedDataSource.class));
+    }
+
+    /**
+     * The pool is healthy while recent waits are short or absent.
+     */
+    @Test
+    public void testHealthCheck() {
+        final InstrumentedDataSource dataSource
+                = mock(InstrumentedDataSource.class);
+        final ConnectionPoolHealthCheck healthCheck
+                = new ConnectionPoolHealthCheck(dataSource, 100);
+
+        when(dataSource.getRecentWaits()).thenReturn(waits());
+        assertTrue(healthCheck.execute().isHealthy());
+
+        when(dataSource.getRecentWaits()).thenReturn(waits(1, 2, 5));
+        assertTrue(healthCheck.execute().isHealthy());
+
+        long[] slow = new long[100];
+        slow[99] = 500;
+        slow[98] = 500;
+        when(dataSource.getRecentWaits()).thenReturn(waits(slow));
+        assertFalse(healthCheck.execute().isHealthy());
+    }
+
+    /**
+     * Method creates a snapshot of waits.
+     *
+     * @param millis waits in milliseconds.
+     * @return the snapshot of waits in nanoseconds.
+     */
+    private static Snapshot waits(long... millis) {
+        final long[] nanos = new long[millis.length];
+        for (int i = 0; i < millis.length; i++) {
+            nanos[i] = TimeUnit.MILLISECONDS.toNanos(millis[i]);
+        }
+        return new UniformSnapshot(nanos);
+    }
+}
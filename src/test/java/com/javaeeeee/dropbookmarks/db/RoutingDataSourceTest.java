@@ -0,0 +1,324 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test RoutingDataSource class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class RoutingDataSourceTest {
+
+    /**
+     * JDBC URL of the primary database.
+     */
+    private static final String PRIMARY_URL
+            = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    /**
+     * JDBC URL of the replica.
+     */
+    private static final String REPLICA_URL
+            = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    /**
+     * The name of the replica.
+     */
+    private static final String REPLICA = "replica-0";
+
+    /**
+     * The primary database.
+     */
+    private ManagedDataSource primary;
+    /**
+     * The replica.
+     */
+    private ManagedDataSource replica;
+    /**
+     * The registry of metrics of the data source.
+     */
+    private MetricRegistry metrics;
+    /**
+     * Data source under test.
+     */
+    private RoutingDataSource sut;
+
+    /**
+     * Initializations before each test method.
+     *
+     * @throws SQLException if the databases can't be created.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        createHeartbeat(PRIMARY_URL);
+        createHeartbeat(REPLICA_URL);
+        primary = mock(ManagedDataSource.class);
+        when(primary.getConnection())
+                .thenAnswer(invocation -> connect(PRIMARY_URL));
+        replica = mock(ManagedDataSource.class);
+        when(replica.getConnection())
+                .thenAnswer(invocation -> connect(REPLICA_URL));
+        metrics = new MetricRegistry();
+        sut = new RoutingDataSource(primary,
+                Collections.singletonMap(REPLICA, replica),
+                1, 1, TimeUnit.MINUTES, metrics);
+    }
+
+    /**
+     * Cleanup after each test method.
+     *
+     * @throws SQLException if the databases can't be dropped.
+     */
+    @After
+    public void tearDown() throws SQLException {
+        execute(PRIMARY_URL, "DROP ALL OBJECTS");
+        execute(REPLICA_URL, "DROP ALL OBJECTS");
+    }
+
+    /**
+     * Test that work outside readOnly uses the primary.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionPrimary() throws SQLException {
+        sut.checkLag();
+
+        sut.getConnection().close();
+
+        verify(primary, times(2)).getConnection();
+        assertEquals(0, readsOfReplica());
+    }
+
+    /**
+     * Test that read-only work uses a replica which is up to date.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionReplica() throws SQLException {
+        replicate();
+        sut.checkLag();
+
+        RoutingDataSource.readOnly(this::connectAndClose);
+
+        assertEquals(1, readsOfReplica());
+        assertEquals(0, fallbacks());
+        assertTrue((Long) metrics.getGauges().get(MetricRegistry
+                .name(RoutingDataSource.class, REPLICA, "lag"))
+                .getValue() >= 0);
+    }
+
+    /**
+     * Test that read-only work is told whether it was given a connection to
+     * a replica.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testIsReadingReplica() throws SQLException {
+        assertFalse(RoutingDataSource.readOnly(() -> {
+            connectAndClose();
+            return RoutingDataSource.isReadingReplica();
+        }));
+        replicate();
+        sut.checkLag();
+
+        assertTrue(RoutingDataSource.readOnly(() -> {
+            connectAndClose();
+            return RoutingDataSource.isReadingReplica();
+        }));
+        assertFalse(RoutingDataSource.isReadingReplica());
+    }
+
+    /**
+     * Test that work which must read from the primary does so inside
+     * read-only work.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testPrimary() throws SQLException {
+        replicate();
+        sut.checkLag();
+
+        RoutingDataSource.readOnly(
+                () -> RoutingDataSource.primary(this::connectAndClose));
+
+        verify(primary, times(2)).getConnection();
+        assertEquals(0, readsOfReplica());
+    }
+
+    /**
+     * Test that read-only work uses the primary until the lag of replicas
+     * is known.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionUnknownLag() throws SQLException {
+        RoutingDataSource.readOnly(this::connectAndClose);
+
+        verify(replica, never()).getConnection();
+        assertEquals(1, fallbacks());
+    }
+
+    /**
+     * Test that read-only work uses the primary if a replica lags behind.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionLaggingReplica() throws SQLException {
+        execute(REPLICA_URL, "UPDATE replication_heartbeat SET beat = "
+                + (System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(2)));
+        sut.checkLag();
+
+        RoutingDataSource.readOnly(this::connectAndClose);
+
+        assertEquals(0, readsOfReplica());
+        assertEquals(1, fallbacks());
+    }
+
+    /**
+     * Test that read-only work uses the primary if a replica can't be
+     * connected to.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionUnreachableReplica() throws SQLException {
+        replicate();
+        sut.checkLag();
+        when(replica.getConnection()).thenThrow(new SQLException());
+
+        RoutingDataSource.readOnly(this::connectAndClose);
+
+        assertEquals(1, metrics.meter(MetricRegistry
+                .name(RoutingDataSource.class, REPLICA, "failures"))
+                .getCount());
+        assertEquals(1, fallbacks());
+    }
+
+    /**
+     * Method connects to the routing data source and closes the connection.
+     *
+     * @return nothing.
+     */
+    private Void connectAndClose() {
+        try {
+            sut.getConnection().close();
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return null;
+    }
+
+    /**
+     * Method copies the heartbeat of the primary to the replica.
+     *
+     * @throws SQLException if the replica can't be updated.
+     */
+    private void replicate() throws SQLException {
+        execute(PRIMARY_URL, "UPDATE replication_heartbeat SET beat = "
+                + System.currentTimeMillis());
+        execute(REPLICA_URL, "UPDATE replication_heartbeat SET beat = "
+                + System.currentTimeMillis());
+    }
+
+    /**
+     * Method obtains the number of reads from the replica.
+     *
+     * @return the number of reads.
+     */
+    private long readsOfReplica() {
+        return metrics.meter(MetricRegistry
+                .name(RoutingDataSource.class, REPLICA, "reads")).getCount();
+    }
+
+    /**
+     * Method obtains the number of reads which fell back to the primary.
+     *
+     * @return the number of reads.
+     */
+    private long fallbacks() {
+        return metrics.meter(MetricRegistry
+                .name(RoutingDataSource.class, "fallbacks")).getCount();
+    }
+
+    /**
+     * Method creates the heartbeat table.
+     *
+     * @param url JDBC URL of the database.
+     * @throws SQLException if the table can't be created.
+     */
+    private static void createHeartbeat(String url) throws SQLException {
+        execute(url, "CREATE TABLE replication_heartbeat "
+                + "(id INT PRIMARY KEY, beat BIGINT NOT NULL)");
+        execute(url, "INSERT INTO replication_heartbeat VALUES (1, 0)");
+    }
+
+    /**
+     * Method executes a statement.
+     *
+     * @param url JDBC URL of the database.
+     * @param sql the statement.
+     * @throws SQLException if the statement fails.
+     */
+    private static void execute(String url, String sql) throws SQLException {
+        try (Connection connection = connect(url);
+                Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Method connects to a database.
+     *
+     * @param url JDBC URL of the database.
+     * @return the connection.
+     * @throws SQLException if the database can't be connected to.
+     */
+    private static Connection connect(String url) throws SQLException {
+        return DriverManager.getConnection(url, "sa", "sa");
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.LiquibaseException;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class to test ShardMover class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ShardMoverTest {
+
+    /**
+     * The user whose bookmarks are moved.
+     */
+    private static final int USER_ID = 1;
+    /**
+     * Query which counts bookmarks of the user.
+     */
+    private static final String COUNT_BOOKMARKS
+            = "SELECT COUNT(*) FROM bookmarks WHERE user_id = " + USER_ID;
+    /**
+     * Query which counts tags of bookmarks of the user.
+     */
+    private static final String COUNT_TAGS = "SELECT COUNT(*) FROM tags t "
+            + "JOIN bookmarks b ON b.id = t.bookmark_id "
+            + "WHERE b.user_id = " + USER_ID;
+    /**
+     * Query which counts changes of bookmarks of the user.
+     */
+    private static final String COUNT_CHANGES
+            = "SELECT COUNT(*) FROM bookmark_changes WHERE user_id = "
+            + USER_ID;
+    /**
+     * Query which reads the number of bookmarks kept for the quota.
+     */
+    private static final String FIND_COUNT
+            = "SELECT COALESCE(SUM(bookmarks), 0) FROM bookmark_counts "
+            + "WHERE user_id = " + USER_ID;
+
+    /**
+     * The main shard.
+     */
+    private JdbcDataSource main;
+    /**
+     * The second shard.
+     */
+    private JdbcDataSource shard;
+    /**
+     * Mover under test.
+     */
+    private ShardMover sut;
+
+    /**
+     * Initializations before each test method.
+     *
+     * @throws Exception if the shards can't be migrated.
+     */
+    @Before
+    public void setUp() throws Exception {
+        main = dataSource("jdbc:h2:mem:mover-main;DB_CLOSE_DELAY=-1");
+        shard = dataSource("jdbc:h2:mem:mover-shard;DB_CLOSE_DELAY=-1");
+        migrate(main, "TEST");
+        migrate(shard, "SHARD");
+        sut = new ShardMover(Arrays.asList(main, shard));
+    }
+
+    /**
+     * Cleanup after each test method.
+     *
+     * @throws SQLException if the shards can't be dropped.
+     */
+    @After
+    public void tearDown() throws SQLException {
+        execute(main, "DROP ALL OBJECTS");
+        execute(shard, "DROP ALL OBJECTS");
+    }
+
+    /**
+     * Test of findUserIds method, of class ShardMover.
+     *
+     * @throws SQLException if the main shard can't be read.
+     */
+    @Test
+    public void testFindUserIds() throws SQLException {
+        List<Integer> ids = sut.findUserIds();
+
+        assertEquals(Arrays.asList(1, 2), ids);
+    }
+
+    /**
+     * Test of move method, of class ShardMover.
+     *
+     * @throws SQLException if a shard can't be read or written.
+     */
+    @Test
+    public void testMove() throws SQLException {
+        long bookmarks = count(main, COUNT_BOOKMARKS);
+        long tags = count(main, COUNT_TAGS);
+        long changes = count(main, COUNT_CHANGES);
+
+        int moved = sut.move(USER_ID, 0, 1);
+
+        assertEquals(bookmarks, moved);
+        assertEquals(1, sut.findShard(USER_ID));
+        assertEquals(0, count(main, COUNT_BOOKMARKS));
+        assertEquals(0, count(main, COUNT_TAGS));
+        assertEquals(0, count(main, COUNT_CHANGES));
+        assertEquals(bookmarks, count(shard, COUNT_BOOKMARKS));
+        assertEquals(tags, count(shard, COUNT_TAGS));
+        assertEquals(changes, count(shard, COUNT_CHANGES));
+        assertEquals(0, count(main, FIND_COUNT));
+        assertEquals(bookmarks, count(shard, FIND_COUNT));
+        assertEquals(1, count(shard,
+                "SELECT COUNT(*) FROM users WHERE id = " + USER_ID));
+        assertEquals(1, count(shard, "SELECT COUNT(*) FROM users WHERE id = "
+                + USER_ID + " AND username = 'javaeeeee' AND password = ''"));
+        assertEquals(0, sut.findShard(2));
+    }
+
+    /**
+     * Test that bookmarks can be moved back to the main shard.
+     *
+     * @throws SQLException if a shard can't be read or written.
+     */
+    @Test
+    public void testMoveBack() throws SQLException {
+        long bookmarks = count(main, COUNT_BOOKMARKS);
+        sut.move(USER_ID, 0, 1);
+
+        sut.move(USER_ID, 1, 0);
+
+        assertEquals(0, sut.findShard(USER_ID));
+        assertEquals(bookmarks, count(main, COUNT_BOOKMARKS));
+        assertEquals(0, count(shard, COUNT_BOOKMARKS));
+    }
+
+    /**
+     * Test that a move interrupted after copying can be repeated.
+     *
+     * @throws SQLException if a shard can't be read or written.
+     */
+    @Test
+    public void testMoveRepeated() throws SQLException {
+        long bookmarks = count(main, COUNT_BOOKMARKS);
+        execute(shard, "INSERT INTO users VALUES (" + USER_ID
+                + ", 'javaeeeee', 'p@ssw0rd')");
+        execute(shard, "INSERT INTO bookmarks (id, url, user_id) "
+                + "VALUES (1, 'https://github.com', " + USER_ID + ")");
+
+        int moved = sut.move(USER_ID, 0, 1);
+
+        assertEquals(bookmarks, moved);
+        assertEquals(bookmarks, count(shard, COUNT_BOOKMARKS));
+    }
+
+    /**
+     * Test that bookmarks left on the source shard by a move interrupted
+     * after the directory was updated are removed.
+     *
+     * @throws SQLException if a shard can't be read or written.
+     */
+    @Test
+    public void testRemoveLeftovers() throws SQLException {
+        long bookmarks = count(main, COUNT_BOOKMARKS);
+        sut.move(USER_ID, 0, 1);
+        execute(main, "INSERT INTO bookmarks (id, url, user_id) "
+                + "VALUES (100, 'https://github.com', " + USER_ID + ")");
+
+        assertEquals(1, sut.countLeftovers(USER_ID, 1));
+        int removed = sut.removeLeftovers(USER_ID, 1);
+
+        assertEquals(1, removed);
+        assertEquals(0, sut.countLeftovers(USER_ID, 1));
+        assertEquals(0, count(main, COUNT_BOOKMARKS));
+        assertEquals(bookmarks, count(shard, COUNT_BOOKMARKS));
+        assertEquals(1, count(main,
+                "SELECT COUNT(*) FROM users WHERE id = " + USER_ID));
+    }
+
+    /**
+     * Method creates a data source of an in-memory database.
+     *
+     * @param url the JDBC URL.
+     * @return the data source.
+     */
+    private static JdbcDataSource dataSource(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        dataSource.setPassword("sa");
+        return dataSource;
+    }
+
+    /**
+     * Method applies migrations.
+     *
+     * @param dataSource the database.
+     * @param contexts the contexts of migrations.
+     * @throws SQLException if the database can't be connected to.
+     * @throws LiquibaseException if migrations fail.
+     */
+    private static void migrate(JdbcDataSource dataSource, String contexts)
+            throws SQLException, LiquibaseException {
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(
+                            new JdbcConnection(connection));
+            new Liquibase("migrations.xml",
+                    new ClassLoaderResourceAccessor(), database)
+                    .update(contexts);
+        }
+    }
+
+    /**
+     * Method counts rows.
+     *
+     * @param dataSource the database.
+     * @param sql the query which counts rows.
+     * @return the number of rows.
+     * @throws SQLException if the query fails.
+     */
+    private static long count(JdbcDataSource dataSource, String sql)
+            throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Method executes a statement.
+     *
+     * @param dataSource the database.
+     * @param sql the statement.
+     * @throws SQLException if the statement fails.
+     */
+    private static void execute(JdbcDataSource dataSource, String sql)
+            throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+                Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
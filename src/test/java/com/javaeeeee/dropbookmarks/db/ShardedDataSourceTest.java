@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test ShardedDataSource class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class ShardedDataSourceTest {
+
+    /**
+     * JDBC URL of the main shard.
+     */
+    private static final String MAIN_URL
+            = "jdbc:h2:mem:sharding-main;DB_CLOSE_DELAY=-1";
+    /**
+     * A user on the second shard.
+     */
+    private static final int MOVED_USER = 2;
+    /**
+     * A user on the main shard.
+     */
+    private static final int USER = 1;
+
+    /**
+     * The main shard.
+     */
+    private ManagedDataSource main;
+    /**
+     * The second shard.
+     */
+    private ManagedDataSource shard;
+    /**
+     * The registry of metrics of the data source.
+     */
+    private MetricRegistry metrics;
+    /**
+     * Data source under test.
+     */
+    private ShardedDataSource sut;
+
+    /**
+     * Initializations before each test method.
+     *
+     * @throws SQLException if the directory can't be created.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        execute("CREATE TABLE user_shards "
+                + "(user_id BIGINT PRIMARY KEY, shard INT NOT NULL)");
+        execute("INSERT INTO user_shards VALUES (" + MOVED_USER + ", 1)");
+        main = mock(ManagedDataSource.class);
+        when(main.getConnection()).thenAnswer(
+                invocation -> DriverManager.getConnection(MAIN_URL));
+        shard = mock(ManagedDataSource.class);
+        when(shard.getConnection()).thenReturn(mock(Connection.class));
+        metrics = new MetricRegistry();
+        sut = new ShardedDataSource(main, Collections.singletonList(shard),
+                CacheBuilderSpec.parse("maximumSize=10"), metrics);
+    }
+
+    /**
+     * Cleanup after each test method.
+     *
+     * @throws SQLException if the directory can't be dropped.
+     */
+    @After
+    public void tearDown() throws SQLException {
+        ShardedDataSource.bind(null);
+        execute("DROP ALL OBJECTS");
+    }
+
+    /**
+     * Test that work of no user uses the main shard.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionNoUser() throws SQLException {
+        sut.getConnection().close();
+
+        verify(shard, never()).getConnection();
+        assertEquals(1, connections(0));
+    }
+
+    /**
+     * Test that work of a user absent from the directory uses the main
+     * shard.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionMainShard() throws SQLException {
+        ShardedDataSource.forUser(USER, this::connectAndClose);
+
+        verify(shard, never()).getConnection();
+        assertEquals(1, connections(0));
+    }
+
+    /**
+     * Test that work of a user uses the shard of the user and the directory
+     * is read once.
+     *
+     * @throws SQLException if a connection fails.
+     */
+    @Test
+    public void testGetConnectionOtherShard() throws SQLException {
+        ShardedDataSource.forUser(MOVED_USER, this::connectAndClose);
+        ShardedDataSource.forUser(MOVED_USER, this::connectAndClose);
+
+        assertEquals(2, connections(1));
+        assertEquals(0, connections(0));
+        verify(main, times(1)).getConnection();
+        assertNull(ShardedDataSource.currentUser());
+    }
+
+    /**
+     * Test that a shard which isn't configured is reported.
+     *
+     * @throws SQLException if the directory can't be written.
+     */
+    @Test(expected = SQLException.class)
+    public void testShardOfMissingShard() throws SQLException {
+        execute("INSERT INTO user_shards VALUES (3, 2)");
+
+        sut.shardOf(3);
+    }
+
+    /**
+     * Test that the previous user is restored after nested work.
+     */
+    @Test
+    public void testForUserNested() {
+        ShardedDataSource.bind(USER);
+
+        Integer nested = ShardedDataSource.forUser(MOVED_USER,
+                ShardedDataSource::currentUser);
+
+        assertEquals(Integer.valueOf(MOVED_USER), nested);
+        assertEquals(Integer.valueOf(USER), ShardedDataSource.currentUser());
+    }
+
+    /**
+     * Method connects to the sharded data source and closes the connection.
+     *
+     * @return nothing.
+     */
+    private Void connectAndClose() {
+        try {
+            sut.getConnection().close();
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return null;
+    }
+
+    /**
+     * Method obtains the number of connections given by a shard.
+     *
+     * @param index the index of the shard.
+     * @return the number of connections.
+     */
+    private long connections(int index) {
+        return metrics.meter(MetricRegistry.name(ShardedDataSource.class,
+                "shard-" + index, "connections")).getCount();
+    }
+
+    /**
+     * Method executes a statement on the main shard.
+     *
+     * @param sql the statement.
+     * @throws SQLException if the statement fails.
+     */
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(MAIN_URL);
+                Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.exception.LockException;
+import org.hibernate.Hibernate;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests counting SQL statements issued by the queries behind each endpoint
+ * reading bookmarks, so that a mapping change making Hibernate load related
+ * data row by row fails the build. The second-level cache is empty at the
+ * start of each test.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class StatementCountTest extends DAOTest {
+
+    /**
+     * System under test.
+     */
+    private BookmarkDAO sut;
+
+    /**
+     * Initializations before each test method.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Override
+    public void setUp() throws LiquibaseException {
+        liquibase.update("TEST");
+        sut = new BookmarkDAO(SESSION_FACTORY, new MetricRegistry());
+        SESSION_FACTORY.getStatistics().clear();
+    }
+
+    /**
+     * Cleanup after each test method.
+     *
+     * @throws DatabaseException if there is an error with database access.
+     * @throws LockException if two clients try to apply migrations
+     * simultaneously.
+     */
+    @Override
+    public void tearDown() throws DatabaseException, LockException {
+        liquibase.dropAll();
+    }
+
+    /**
+     * GET /bookmarks reads the version of the collection, a page of
+     * bookmarks and the tags of the whole page in one batch.
+     */
+    @Test
+    public void testGetBookmarks() {
+        assertEquals(3, countStatements(() -> {
+            sut.findVersionByUserId(1);
+            List<Bookmark> page = sut.findByUserId(1, 0, 11);
+            assertEquals(2, page.size());
+            page.forEach(bookmark -> assertFalse(
+                    Hibernate.isInitialized(bookmark.getUser())));
+        }));
+    }
+
+    /**
+     * GET /bookmarks with tags looks up the tag index and then reads the
+     * candidates along with their tags by a single query.
+     */
+    @Test
+    public void testGetBookmarksByTags() {
+        assertEquals(3, countStatements(() -> {
+            sut.findVersionByUserId(1);
+            assertEquals(2, sut.findByUserIdAndTags(1,
+                    Arrays.asList("java"), 0, 11).size());
+        }));
+    }
+
+    /**
+     * GET /bookmarks/search builds the full-text index of the user and then
+     * reads the candidates along with their tags by a single query.
+     */
+    @Test
+    public void testSearchBookmarks() {
+        assertEquals(2, countStatements(() -> assertEquals(1,
+                sut.search(1, "dropwizard", 11).size())));
+    }
+
+    /**
+     * GET /bookmarks/changes reads the change log and then the changed
+     * bookmarks along with their tags by a single query.
+     */
+    @Test
+    public void testGetChanges() {
+        assertEquals(2, countStatements(() -> assertEquals(1,
+                sut.findChanges(2, 0, 11).size())));
+    }
+
+    /**
+     * GET /bookmarks/export reads bookmarks along with their tags by a
+     * single query however many bookmarks there are.
+     */
+    @Test
+    public void testExportBookmarks() {
+        List<Bookmark> bookmarks = new ArrayList<>();
+        assertEquals(1, countStatements(
+                () -> sut.scrollByUserId(1, bookmarks::add)));
+        assertEquals(2, bookmarks.size());
+        assertEquals(2, bookmarks.get(0).getTags().size());
+        assertEquals(1, bookmarks.get(0).getUser().getId().intValue());
+    }
+
+    /**
+     * GET /bookmarks/{id} reads the bookmark along with its tags by a single
+     * query; the owner is not loaded.
+     */
+    @Test
+    public void testGetBookmark() {
+        assertEquals(1, countStatements(() -> {
+            Bookmark bookmark = sut.findByIdAndUserId(1, 1).get();
+            assertEquals(2, bookmark.getTags().size());
+            assertEquals(1, bookmark.getUser().getId().intValue());
+            assertFalse(Hibernate.isInitialized(bookmark.getUser()));
+        }));
+    }
+
+    /**
+     * Method runs a piece of work in a new session and transaction.
+     *
+     * @param work the work to do.
+     * @return the number of SQL statements prepared by Hibernate.
+     */
+    private long countStatements(Runnable work) {
+        long before = SESSION_FACTORY.getStatistics()
+                .getPrepareStatementCount();
+        session = SESSION_FACTORY.openSession();
+        tx = null;
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+            work.run();
+            tx.commit();
+        } catch (RuntimeException e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+        return SESSION_FACTORY.getStatistics().getPrepareStatementCount()
+                - before;
+    }
+}
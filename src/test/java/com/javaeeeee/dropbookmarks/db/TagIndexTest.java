@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.google.common.cache.CacheBuilderSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A class to test the tag index of bookmarks.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TagIndexTest {
+
+    /**
+     * The id of a test user.
+     */
+    private static final int USER_ID = 1;
+    /**
+     * Tags of bookmarks of the test user as read from the database.
+     */
+    private List<Object[]> rows;
+    /**
+     * The number of times tags were read from the database.
+     */
+    private int loads;
+    /**
+     * System under test.
+     */
+    private TagIndex sut;
+
+    /**
+     * Initialization before each method.
+     */
+    @Before
+    public void setUp() {
+        rows = new ArrayList<>();
+        rows.add(new Object[]{1, "java"});
+        rows.add(new Object[]{1, "dropwizard"});
+        rows.add(new Object[]{2, "java"});
+        rows.add(new Object[]{2, "hibernate"});
+        rows.add(new Object[]{3, "java"});
+        rows.add(new Object[]{3, "dropwizard"});
+        loads = 0;
+        sut = new TagIndex();
+    }
+
+    /**
+     * Test of find method, of class TagIndex.
+     */
+    @Test
+    public void testFind() {
+        assertEquals(Arrays.asList(1, 2, 3), find(0, 10, "java"));
+        assertEquals(Arrays.asList(1, 3), find(0, 10, "java", "dropwizard"));
+        assertEquals(Collections.singletonList(2),
+                find(0, 10, "hibernate", "java"));
+        assertTrue(find(0, 10, "hibernate", "dropwizard").isEmpty());
+        assertTrue(find(0, 10, "java", "scala").isEmpty());
+        assertEquals(1, loads);
+    }
+
+    /**
+     * Test of find method with paging, of class TagIndex.
+     */
+    @Test
+    public void testFindPage() {
+        assertEquals(Arrays.asList(1, 2), find(0, 2, "java"));
+        assertEquals(Collections.singletonList(3), find(2, 2, "java"));
+        assertEquals(Collections.singletonList(3),
+                find(1, 10, "java", "dropwizard"));
+        assertTrue(find(3, 10, "java").isEmpty());
+    }
+
+    /**
+     * Test of put and remove methods, of class TagIndex.
+     */
+    @Test
+    public void testPutAndRemove() {
+        // Changes are ignored until the index of the user is loaded.
+        sut.put(USER_ID, 4, Collections.singleton("scala"));
+        assertEquals(0, loads);
+        assertTrue(find(0, 10, "scala").isEmpty());
+
+        sut.put(USER_ID, 4, Arrays.asList("scala", "java"));
+        assertEquals(Collections.singletonList(4), find(0, 10, "scala"));
+        assertEquals(Arrays.asList(1, 2, 3, 4), find(0, 10, "java"));
+
+        sut.put(USER_ID, 4, Collections.singleton("kotlin"));
+        assertTrue(find(0, 10, "scala").isEmpty());
+        assertEquals(Collections.singletonList(4), find(0, 10, "kotlin"));
+
+        sut.remove(USER_ID, 4);
+        sut.remove(USER_ID, 2);
+        assertTrue(find(0, 10, "kotlin").isEmpty());
+        assertTrue(find(0, 10, "hibernate").isEmpty());
+        assertEquals(Arrays.asList(1, 3), find(0, 10, "java"));
+        assertEquals(1, loads);
+    }
+
+    /**
+     * Test that indexes of users are evicted according to the cache policy.
+     */
+    @Test
+    public void testEviction() {
+        sut = new TagIndex(CacheBuilderSpec.parse("maximumSize=1"));
+        find(0, 10, "hibernate");
+        sut.find(USER_ID + 1, Collections.singleton("hibernate"), 0, 10,
+                Collections::emptyList);
+        rows.remove(3);
+
+        assertTrue(find(0, 10, "hibernate").isEmpty());
+        assertEquals(2, loads);
+    }
+
+    /**
+     * Test of clear method, of class TagIndex.
+     */
+    @Test
+    public void testClear() {
+        find(0, 10, "hibernate");
+        sut.clear();
+        rows.remove(3);
+
+        assertTrue(find(0, 10, "hibernate").isEmpty());
+        assertEquals(2, loads);
+    }
+
+    /**
+     * Method looks for bookmarks of the test user having all the tags.
+     *
+     * @param afterId only ids greater than this one are returned.
+     * @param limit maximum number of ids to return.
+     * @param tags the tags.
+     * @return ids of matching bookmarks.
+     */
+    private List<Integer> find(int afterId, int limit, String... tags) {
+        return sut.find(USER_ID, Arrays.asList(tags), afterId, limit,
+                () -> {
+                    loads++;
+                    return rows;
+                });
+    }
+}
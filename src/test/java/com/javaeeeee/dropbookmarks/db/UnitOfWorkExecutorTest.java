@@ -0,0 +1,554 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.db;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.db.ManagedDataSource;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import liquibase.exception.DatabaseException;
+import liquibase.exception.LiquibaseException;
+import liquibase.exception.LockException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.context.internal.ManagedSessionContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test UnitOfWorkExecutor class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class UnitOfWorkExecutorTest extends DAOTest {
+
+    /**
+     * The id of the user in the test data.
+     */
+    private static final int USER_ID = 1;
+    /**
+     * The username of the user in the test data.
+     */
+    private static final String USERNAME = "javaeeeee";
+    /**
+     * The id of a bookmark of the user in the test data.
+     */
+    private static final int BOOKMARK_ID = 1;
+    /**
+     * The number of bookmarks on a page.
+     */
+    private static final int PAGE_SIZE = 10;
+    /**
+     * JDBC URL of the test database.
+     */
+    private static final String TEST_URL = "jdbc:h2:mem:db1;DB_CLOSE_DELAY=-1";
+
+    /**
+     * The name of the replica.
+     */
+    private static final String REPLICA = "replica-0";
+    /**
+     * The registry the routing data source reports metrics to.
+     */
+    private static final MetricRegistry REPLICA_METRICS
+            = new MetricRegistry();
+    /**
+     * The number of connections given by the primary.
+     */
+    private static final AtomicInteger PRIMARY_CONNECTIONS
+            = new AtomicInteger();
+    /**
+     * Data source whose replica is the test database itself, which lags
+     * behind the primary as long as a test changes rows behind Hibernate's
+     * back.
+     */
+    private static final RoutingDataSource ROUTING_DATA_SOURCE;
+    /**
+     * Session factory which takes connections from the routing data source;
+     * like the one of the tests, it is never closed, as closing it would
+     * remove the cache regions the two share.
+     */
+    private static final SessionFactory ROUTING_SESSION_FACTORY;
+
+    static {
+        try {
+            ROUTING_DATA_SOURCE = new RoutingDataSource(
+                    connect(PRIMARY_CONNECTIONS),
+                    Collections.singletonMap(REPLICA,
+                            connect(new AtomicInteger())),
+                    1, 1, TimeUnit.MINUTES, REPLICA_METRICS);
+        } catch (SQLException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+        ROUTING_SESSION_FACTORY = buildSessionFactory(ROUTING_DATA_SOURCE);
+    }
+
+    /**
+     * The registry the executor reports metrics to.
+     */
+    private MetricRegistry metrics;
+    /**
+     * Threads which do the work.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Initializations before each test method.
+     *
+     * @throws LiquibaseException if something is wrong with Liquibase.
+     */
+    @Before
+    @Override
+    public void setUp() throws LiquibaseException {
+        liquibase.update("TEST");
+        metrics = new MetricRegistry();
+        executor = null;
+    }
+
+    /**
+     * Cleanup after each test method.
+     *
+     * @throws DatabaseException if there is an error with database access.
+     * @throws LockException if two clients try to apply migrations
+     * simultaneously.
+     */
+    @After
+    @Override
+    public void tearDown() throws DatabaseException, LockException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        liquibase.dropAll();
+    }
+
+    /**
+     * Test of supply method, of class UnitOfWorkExecutor.
+     *
+     * @throws Exception if the work fails.
+     */
+    @Test
+    public void testSupply() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.SECONDS, metrics);
+        UserDAO userDAO = new UserDAO(SESSION_FACTORY);
+
+        List<User> users = sut.supply(userDAO::findAll).get();
+
+        assertFalse(users.isEmpty());
+        assertFalse(ManagedSessionContext.hasBind(SESSION_FACTORY));
+        assertEquals(1, metrics.timer(MetricRegistry
+                .name(UnitOfWorkExecutor.class, "wait")).getCount());
+    }
+
+    /**
+     * Test of supplyReadWrite method, of class UnitOfWorkExecutor. What the
+     * work writes is committed.
+     *
+     * @throws Exception if the work fails.
+     */
+    @Test
+    public void testSupplyReadWrite() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.SECONDS, metrics);
+        BookmarkDAO bookmarkDAO = new BookmarkDAO(SESSION_FACTORY, metrics);
+
+        sut.supplyReadWrite(() -> {
+            bookmarkDAO.delete(BOOKMARK_ID);
+            return null;
+        }).get();
+
+        assertFalse(sut.supply(() -> bookmarkDAO.findById(BOOKMARK_ID))
+                .get().isPresent());
+        assertFalse(ManagedSessionContext.hasBind(SESSION_FACTORY));
+    }
+
+    /**
+     * Test of supplyReadWrite method, of class UnitOfWorkExecutor. What the
+     * work wrote before it failed is rolled back.
+     *
+     * @throws Exception if the work isn't done.
+     */
+    @Test
+    public void testSupplyReadWriteFailed() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.SECONDS, metrics);
+        BookmarkDAO bookmarkDAO = new BookmarkDAO(SESSION_FACTORY, metrics);
+        IllegalStateException expected = new IllegalStateException();
+
+        CompletableFuture<Object> result = sut.supplyReadWrite(() -> {
+            bookmarkDAO.delete(BOOKMARK_ID);
+            throw expected;
+        });
+
+        try {
+            result.get();
+            fail("The failure of the work should be passed to the result.");
+        } catch (ExecutionException ex) {
+            assertSame(expected, ex.getCause());
+        }
+        assertTrue(sut.supply(() -> bookmarkDAO.findById(BOOKMARK_ID))
+                .get().isPresent());
+    }
+
+    /**
+     * Test that failures of the work are passed to the result.
+     *
+     * @throws Exception if the work isn't done.
+     */
+    @Test
+    public void testSupplyFailed() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.SECONDS, metrics);
+        IllegalStateException expected = new IllegalStateException();
+
+        CompletableFuture<Object> result = sut.supply(() -> {
+            throw expected;
+        });
+
+        try {
+            result.get();
+            fail("The failure of the work should be passed to the result.");
+        } catch (ExecutionException ex) {
+            assertSame(expected, ex.getCause());
+        }
+        assertFalse(ManagedSessionContext.hasBind(SESSION_FACTORY));
+    }
+
+    /**
+     * Test that the work which waited for too long isn't done.
+     *
+     * @throws Exception if the work isn't done.
+     */
+    @Test
+    public void testSupplyExpired() throws Exception {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.MILLISECONDS, metrics);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            sleep(50);
+        });
+        started.await();
+
+        CompletableFuture<Object> result = sut.supply(() -> {
+            fail("Expired work shouldn't be done.");
+            return null;
+        });
+
+        try {
+            result.get(1, TimeUnit.SECONDS);
+            fail("Expired work should be reported.");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+        assertEquals(1, metrics.meter(MetricRegistry
+                .name(UnitOfWorkExecutor.class, "expired")).getCount());
+    }
+
+    /**
+     * Test that the work is rejected when all threads are busy and the
+     * queue is full.
+     *
+     * @throws Exception if the test is interrupted.
+     */
+    @Test
+    public void testSupplyRejected() throws Exception {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>());
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.SECONDS, metrics);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+
+        try {
+            sut.supply(() -> null);
+            fail("Work should be rejected.");
+        } catch (RejectedExecutionException ex) {
+            assertEquals(1, metrics.meter(MetricRegistry
+                    .name(UnitOfWorkExecutor.class, "rejected")).getCount());
+            assertEquals(1, metrics.getGauges().get(MetricRegistry
+                    .name(UnitOfWorkExecutor.class, "active")).getValue());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Test that no more work than allowed is done at once when every piece
+     * of work has its own thread.
+     *
+     * @throws Exception if the work isn't done.
+     */
+    @Test
+    public void testSupplyLimited() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, 100, TimeUnit.MILLISECONDS, metrics);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> first = sut.supply(() -> {
+            started.countDown();
+            try {
+                return release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        started.await();
+
+        CompletableFuture<Object> second = sut.supply(() -> {
+            fail("Work over the limit shouldn't be done.");
+            return null;
+        });
+
+        try {
+            second.get(1, TimeUnit.SECONDS);
+            fail("Work over the limit should expire.");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TimeoutException);
+        } finally {
+            release.countDown();
+        }
+        assertTrue(first.get(1, TimeUnit.SECONDS));
+        assertEquals(1, metrics.meter(MetricRegistry
+                .name(UnitOfWorkExecutor.class, "expired")).getCount());
+    }
+
+    /**
+     * Test that pages read from the primary are put into the query cache,
+     * so the second read of a page hits it.
+     *
+     * @throws Exception if the work fails.
+     */
+    @Test
+    public void testSupplyFillsQueryCache() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(SESSION_FACTORY,
+                executor, 1, TimeUnit.SECONDS, metrics);
+        BookmarkDAO bookmarkDAO = new BookmarkDAO(SESSION_FACTORY, metrics);
+
+        List<Bookmark> first = sut.supply(
+                () -> bookmarkDAO.findByUserId(USER_ID, 0, PAGE_SIZE)).get();
+        List<Bookmark> second = sut.supply(
+                () -> bookmarkDAO.findByUserId(USER_ID, 0, PAGE_SIZE)).get();
+
+        assertFalse(second.isEmpty());
+        assertEquals(first.size(), second.size());
+        assertEquals(1,
+                SESSION_FACTORY.getStatistics().getQueryCacheHitCount());
+    }
+
+    /**
+     * Test that what the work reads from a lagging replica isn't put into
+     * the second-level cache and then served to readers of the primary.
+     *
+     * @throws Exception if the work fails.
+     */
+    @Test
+    public void testSupplyLaggingReplica() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(
+                ROUTING_SESSION_FACTORY, executor, 1, TimeUnit.SECONDS,
+                metrics);
+        UserDAO userDAO = new UserDAO(ROUTING_SESSION_FACTORY);
+        Meter replicaReads = REPLICA_METRICS.meter(MetricRegistry
+                .name(RoutingDataSource.class, REPLICA, "reads"));
+        long readsBefore = replicaReads.getCount();
+        final String stale = "stale";
+        // The replica hasn't caught up with the username yet.
+        setUsername(USER_ID, stale);
+        ROUTING_DATA_SOURCE.checkLag();
+
+        User replicated = sut.supply(() -> userDAO.findById(USER_ID).get())
+                .get();
+        setUsername(USER_ID, USERNAME);
+
+        assertEquals(stale, replicated.getUsername());
+        assertEquals(readsBefore + 1, replicaReads.getCount());
+        session = ROUTING_SESSION_FACTORY.openSession();
+        try {
+            assertEquals(USERNAME,
+                    session.get(User.class, USER_ID).getUsername());
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Test that the indexes are loaded from the primary even if the work
+     * reads from a replica, and only once.
+     *
+     * @throws Exception if the work fails.
+     */
+    @Test
+    public void testSupplyLoadsIndexesFromPrimary() throws Exception {
+        executor = MoreExecutors.newDirectExecutorService();
+        UnitOfWorkExecutor sut = new UnitOfWorkExecutor(
+                ROUTING_SESSION_FACTORY, executor, 1, TimeUnit.SECONDS,
+                metrics);
+        BookmarkDAO bookmarkDAO = new BookmarkDAO(ROUTING_SESSION_FACTORY,
+                metrics);
+        TagDAO tagDAO = new TagDAO(ROUTING_SESSION_FACTORY, metrics);
+        ROUTING_DATA_SOURCE.checkLag();
+        PRIMARY_CONNECTIONS.set(0);
+
+        List<Bookmark> found = sut.supply(
+                () -> bookmarkDAO.search(USER_ID, "dropwizard", PAGE_SIZE))
+                .get();
+        List<Integer> tagged = sut.supply(() -> tagDAO.findBookmarkIds(
+                USER_ID, Collections.singleton("java"), 0, PAGE_SIZE)).get();
+
+        assertEquals(1, found.size());
+        assertEquals(2, tagged.size());
+        assertEquals(2, PRIMARY_CONNECTIONS.get());
+
+        sut.supply(() -> bookmarkDAO.search(USER_ID, "hibernate",
+                PAGE_SIZE)).get();
+
+        assertEquals(2, PRIMARY_CONNECTIONS.get());
+    }
+
+    /**
+     * Method creates a pool which connects to the test database.
+     *
+     * @param connections the number of connections given by the pool.
+     * @return the pool.
+     * @throws SQLException never, the pool is a mock.
+     */
+    private static ManagedDataSource connect(AtomicInteger connections)
+            throws SQLException {
+        final ManagedDataSource dataSource = mock(ManagedDataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            connections.incrementAndGet();
+            return DriverManager.getConnection(TEST_URL, "sa", "sa");
+        });
+        return dataSource;
+    }
+
+    /**
+     * Method creates a session factory like the one of the tests which
+     * takes connections from the given data source.
+     *
+     * @param dataSource the data source.
+     * @return the session factory.
+     */
+    private static SessionFactory buildSessionFactory(
+            DataSource dataSource) {
+        final StandardServiceRegistryBuilder builder
+                = new StandardServiceRegistryBuilder()
+                .configure("hibernate.cfg.xml")
+                .applySetting(AvailableSettings.DATASOURCE, dataSource);
+        // Connections are asked for without credentials, as the
+        // application does, so that they are routed.
+        builder.getSettings().remove(AvailableSettings.USER);
+        builder.getSettings().remove(AvailableSettings.PASS);
+        return new MetadataSources(builder.build()).buildMetadata()
+                .buildSessionFactory();
+    }
+
+    /**
+     * Method changes the username behind Hibernate's back, as replication
+     * does.
+     *
+     * @param id the id of the user.
+     * @param username the new username.
+     */
+    private static void setUsername(int id, String username) {
+        final Session session = SESSION_FACTORY.openSession();
+        try {
+            final Transaction tx = session.beginTransaction();
+            session.doWork(connection -> {
+                try (PreparedStatement statement = connection
+                        .prepareStatement(
+                                "UPDATE users SET username = ? WHERE id = ?")) {
+                    statement.setString(1, username);
+                    statement.setInt(2, id);
+                    statement.executeUpdate();
+                }
+            });
+            tx.commit();
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Method to keep a thread busy.
+     *
+     * @param millis for how long to sleep.
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
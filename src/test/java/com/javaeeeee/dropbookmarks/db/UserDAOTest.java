@@ -265,4 +265,41 @@ public class UserDAOTest extends DAOTest {
                 user.get().getUsername());
     }
 
+    /**
+     * Test of updatePassword method, of class UserDAO. A password hash which
+     * has been changed since it was read is not replaced.
+     */
+    @Test
+    public void testUpdatePassword() {
+        boolean updated;
+        boolean stale;
+        try {
+            ManagedSessionContext.bind(session);
+            tx = session.beginTransaction();
+
+            String password = sut.findById(1).get().getPassword();
+            updated = sut.updatePassword(1, password, "new");
+            stale = sut.updatePassword(1, password, "newer");
+
+            tx.commit();
+        } catch (Exception e) {
+            if (tx != null) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            ManagedSessionContext.unbind(SESSION_FACTORY);
+            session.close();
+        }
+
+        assertTrue(updated);
+        assertFalse(stale);
+        session = SESSION_FACTORY.openSession();
+        try {
+            assertEquals("new", session.get(User.class, 1).getPassword());
+        } finally {
+            session.close();
+        }
+    }
+
 }
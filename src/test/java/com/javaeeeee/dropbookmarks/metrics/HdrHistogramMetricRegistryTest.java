@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.metrics;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A class to test the registry of HdrHistogram-backed metrics.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class HdrHistogramMetricRegistryTest {
+
+    /**
+     * The name of a test metric.
+     */
+    private static final String NAME = "test";
+    /**
+     * The current time of the fake clock in nanoseconds.
+     */
+    private final AtomicLong now = new AtomicLong();
+    /**
+     * System under test.
+     */
+    private HdrHistogramMetricRegistry sut;
+
+    /**
+     * Initialization before each method.
+     */
+    @Before
+    public void setUp() {
+        sut = new HdrHistogramMetricRegistry(1, TimeUnit.MINUTES,
+                new Clock() {
+            @Override
+            public long getTick() {
+                return now.get();
+            }
+        });
+    }
+
+    /**
+     * Test of timer method, of class HdrHistogramMetricRegistry.
+     */
+    @Test
+    public void testTimerIsRegisteredOnce() {
+        Timer timer = sut.timer(NAME);
+
+        assertSame(timer, sut.timer(NAME));
+        assertSame(timer, sut.getTimers().get(NAME));
+    }
+
+    /**
+     * Test of timer method, of class HdrHistogramMetricRegistry. Rare slow
+     * calls should be visible in the tail percentiles.
+     */
+    @Test
+    public void testTimerRecordsTail() {
+        Timer timer = sut.timer(NAME);
+        for (int i = 0; i < 9980; i++) {
+            timer.update(1, TimeUnit.MILLISECONDS);
+        }
+        for (int i = 0; i < 20; i++) {
+            timer.update(1, TimeUnit.SECONDS);
+        }
+
+        Snapshot snapshot = timer.getSnapshot();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1),
+                snapshot.getMedian(), TimeUnit.MICROSECONDS.toNanos(10));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1),
+                snapshot.get99thPercentile(),
+                TimeUnit.MICROSECONDS.toNanos(10));
+        assertEquals(TimeUnit.SECONDS.toNanos(1),
+                snapshot.get999thPercentile(),
+                TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    /**
+     * Test of timer method, of class HdrHistogramMetricRegistry. Quantiles
+     * follow recent values rather than all values since startup.
+     */
+    @Test
+    public void testTimerForgetsOldValues() {
+        Timer timer = sut.timer(NAME);
+        for (int i = 0; i < 1000; i++) {
+            timer.update(1, TimeUnit.MILLISECONDS);
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        for (int i = 0; i < 100; i++) {
+            timer.update(1, TimeUnit.SECONDS);
+        }
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1),
+                timer.getSnapshot().get99thPercentile(),
+                TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(1100, timer.getSnapshot().size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(40));
+        Snapshot snapshot = timer.getSnapshot();
+        assertEquals(100, snapshot.size());
+        assertEquals(TimeUnit.SECONDS.toNanos(1), snapshot.getMedian(),
+                TimeUnit.MILLISECONDS.toNanos(10));
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertEquals(0, timer.getSnapshot().size());
+        assertEquals(0, timer.getSnapshot().getMax());
+        assertEquals(1100, timer.getCount());
+    }
+
+    /**
+     * Test of histogram method, of class HdrHistogramMetricRegistry.
+     */
+    @Test
+    public void testHistogram() {
+        Histogram histogram = sut.histogram(NAME);
+        histogram.update(42);
+
+        assertSame(histogram, sut.histogram(NAME));
+        assertEquals(42, histogram.getSnapshot().getMax());
+    }
+
+    /**
+     * Test of timer method, of class HdrHistogramMetricRegistry.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimerNameUsedByAnotherMetric() {
+        sut.counter(NAME);
+
+        sut.timer(NAME);
+    }
+}
@@ -23,41 +23,83 @@
  */
 package com.javaeeeee.dropbookmarks.resources;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.javaeeeee.dropbookmarks.core.BatchItemResult;
+import com.javaeeeee.dropbookmarks.core.BookmarkDuplicates;
 import com.javaeeeee.dropbookmarks.core.Bookmark;
+import com.javaeeeee.dropbookmarks.core.BookmarkChange;
+import com.javaeeeee.dropbookmarks.core.BookmarkChanges;
+import com.javaeeeee.dropbookmarks.core.BulkUpdate;
 import com.javaeeeee.dropbookmarks.core.User;
 import com.javaeeeee.dropbookmarks.db.BookmarkDAO;
+import com.javaeeeee.dropbookmarks.db.UnitOfWorkExecutor;
 import io.dropwizard.auth.AuthDynamicFeature;
 import io.dropwizard.auth.AuthValueFactoryProvider;
 import io.dropwizard.auth.basic.BasicCredentialAuthFilter;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.testing.junit.ResourceTestRule;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Link;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.NotFoundException;
 import javax.ws.rs.ProcessingException;
 import javax.ws.rs.core.Response;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
 import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.Transaction;
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.mockito.ArgumentCaptor;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -90,10 +132,18 @@ public class BookmarksResourceTest {
      */
     private static final String URL
             = "https://github.com/javaeeeee/DropBookmarks";
+    /**
+     * The version of the bookmarks of the test user.
+     */
+    private static final String COLLECTION_VERSION = "2-2-0-0";
     /**
      * Test user.
      */
     private static final User USER = new User(USERNAME, PASSWORD);
+    /**
+     * The quota of bookmarks of a user.
+     */
+    private static final int MAX_BOOKMARKS = 10;
 
     /**
      * Mocks bookmark DAO for resource testing purposes.
@@ -129,7 +179,14 @@ public class BookmarksResourceTest {
             .addProvider(RolesAllowedDynamicFeature.class)
             .addProvider(new AuthValueFactoryProvider.Binder<>(User.class))
             .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
-            .addResource(new BookmarksResource(BOOKMARK_DAO))
+            .addProvider(JacksonBinaryProvider.cbor())
+            .addProvider(JacksonBinaryProvider.smile())
+            .addResource(new BookmarksResource(BOOKMARK_DAO,
+                    unitOfWorkExecutor(
+                            MoreExecutors.newDirectExecutorService()),
+                    BookmarksResource.DEFAULT_MAX_PAGE_SIZE,
+                    BookmarksResource.DEFAULT_BATCH_SIZE,
+                    MAX_BOOKMARKS))
             .build();
 
     /**
@@ -166,6 +223,9 @@ public class BookmarksResourceTest {
         expectedBookmark = new Bookmark(URL, "The repository of this project");
         expectedBookmark.setId(BOOKMARK_ID);
         bookmarks.add(expectedBookmark);
+
+        when(BOOKMARK_DAO.findVersionByUserId(USER_ID))
+                .thenReturn(COLLECTION_VERSION);
     }
 
     /**
@@ -183,310 +243,1498 @@ public class BookmarksResourceTest {
     @Test
     public void testGetBookmarks() {
         // given
-        when(BOOKMARK_DAO.findByUserId(USER_ID))
+        when(BOOKMARK_DAO.findByUserId(USER_ID, 0,
+                BookmarksResource.DEFAULT_MAX_PAGE_SIZE + 1))
                 .thenReturn(Collections.unmodifiableList(bookmarks));
 
         // when
-        final List<Bookmark> response = RULE
+        final Response response = RULE
                 .getJerseyTest()
                 .target("/bookmarks")
                 .request(MediaType.APPLICATION_JSON)
-                .get(new GenericType<List<Bookmark>>() {
+                .get();
+        final List<Bookmark> page
+                = response.readEntity(new GenericType<List<Bookmark>>() {
                 });
 
         //then
-        verify(BOOKMARK_DAO).findByUserId(USER_ID);
-        assertNotNull(response);
-        assertFalse(response.isEmpty());
-        assertEquals(bookmarks.size(), response.size());
-        assertTrue(response.containsAll(bookmarks));
+        verify(BOOKMARK_DAO).findByUserId(USER_ID, 0,
+                BookmarksResource.DEFAULT_MAX_PAGE_SIZE + 1);
+        assertNotNull(page);
+        assertFalse(page.isEmpty());
+        assertEquals(bookmarks.size(), page.size());
+        assertTrue(page.containsAll(bookmarks));
+        assertNull(response.getLink("next"));
     }
 
     /**
-     * Test of getBookmark method, of class BookmarksResource.
+     * Test of getBookmarks method producing CBOR, of class BookmarksResource.
+     *
+     * @throws IOException if the response can't be parsed.
      */
     @Test
-    public void testGetBookmarkFound() {
+    public void testGetBookmarksCbor() throws IOException {
         // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.findByUserId(USER_ID, 0,
+                BookmarksResource.DEFAULT_MAX_PAGE_SIZE + 1))
+                .thenReturn(Collections.unmodifiableList(bookmarks));
 
         // when
-        final Optional<Bookmark> response
-                = RULE
+        final Response response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
-                .request(MediaType.APPLICATION_JSON)
-                .get(new GenericType<Optional<Bookmark>>() {
+                .target("/bookmarks")
+                .request(JacksonBinaryProvider.APPLICATION_CBOR)
+                .get();
+        final List<Bookmark> page = Jackson.newObjectMapper(new CBORFactory())
+                .readValue(response.readEntity(byte[].class),
+                        new TypeReference<List<Bookmark>>() {
                 });
 
         // then
-        verify(BOOKMARK_DAO).findByIdAndUserId(BOOKMARK_ID, USER_ID);
-        assertNotNull(response);
-        assertTrue(response.isPresent());
-        assertEquals(expectedBookmark, response.get());
+        assertEquals(JacksonBinaryProvider.APPLICATION_CBOR,
+                response.getMediaType().toString());
+        assertEquals(bookmarks, page);
     }
 
     /**
-     * Test of getBookmark method, of class BookmarksResource.
+     * Test of getBookmarks method, of class BookmarksResource; JSON is
+     * produced unless a client asks for another format.
      */
-    @Test(expected = NotFoundException.class)
-    public void testGetBookmarkNotFound() {
+    @Test
+    public void testGetBookmarksAnyMediaType() {
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.WILDCARD)
+                .get();
+
+        // then
+        assertEquals(MediaType.APPLICATION_JSON_TYPE,
+                response.getMediaType());
+    }
+
+    /**
+     * Test of getBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testGetBookmarksNextPage() {
+        final int limit = 1;
+        final int lastId = bookmarks.get(0).getId();
         // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.empty());
+        when(BOOKMARK_DAO.findByUserId(USER_ID, 0, limit + 1))
+                .thenReturn(Collections.unmodifiableList(bookmarks));
 
         // when
-        final Optional<Bookmark> response
-                = RULE
+        final Response response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks")
+                .queryParam("limit", limit)
                 .request(MediaType.APPLICATION_JSON)
-                .get(new GenericType<Optional<Bookmark>>() {
+                .get();
+        final List<Bookmark> page
+                = response.readEntity(new GenericType<List<Bookmark>>() {
                 });
+        final Link next = response.getLink("next");
 
         // then
-        verify(BOOKMARK_DAO).findByIdAndUserId(BOOKMARK_ID, USER_ID);
-        assertNotNull(response);
-        assertFalse(response.isPresent());
+        assertEquals(limit, page.size());
+        assertEquals(bookmarks.get(0), page.get(0));
+        assertNotNull(next);
+        assertTrue(next.getUri().getQuery()
+                .contains(BookmarksResource.CURSOR_PARAM + "="
+                        + CursorParam.encode(lastId)));
+        assertTrue(next.getUri().getQuery().contains("limit=" + limit));
+
+        // when
+        RULE.getJerseyTest()
+                .client()
+                .target(next.getUri())
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+
+        // then
+        verify(BOOKMARK_DAO).findByUserId(USER_ID, lastId, limit + 1);
     }
 
     /**
-     * Test of addBookmark method, of class BookmarksResource.
+     * Test of getBookmarks method filtering bookmarks by tags, of class
+     * BookmarksResource.
      */
     @Test
-    public void testAddBookmarkOK() {
-        ArgumentCaptor<Bookmark> argumentCaptor
-                = ArgumentCaptor.forClass(Bookmark.class);
-
+    public void testGetBookmarksByTags() {
+        final int limit = 1;
+        final List<String> tags = Arrays.asList("java", "dropwizard");
         // given
-        when(BOOKMARK_DAO.save(any(Bookmark.class
-        )))
-                .thenReturn(expectedBookmark);
+        when(BOOKMARK_DAO.findByUserIdAndTags(USER_ID, tags, 0, limit + 1))
+                .thenReturn(Collections.unmodifiableList(bookmarks));
 
         // when
-        final Bookmark response
-                = RULE
+        final Response response = RULE
                 .getJerseyTest()
                 .target("/bookmarks")
+                .queryParam("tag", tags.toArray())
+                .queryParam("limit", limit)
                 .request(MediaType.APPLICATION_JSON)
-                .post(
-                        Entity.entity(
-                                expectedBookmark,
-                                MediaType.APPLICATION_JSON),
-                        Bookmark.class);
+                .get();
+        final List<Bookmark> page
+                = response.readEntity(new GenericType<List<Bookmark>>() {
+                });
+        final Link next = response.getLink("next");
+
         // then
-        assertNotNull(response);
-        verify(BOOKMARK_DAO)
-                .save(argumentCaptor.capture());
+        verify(BOOKMARK_DAO).findByUserIdAndTags(USER_ID, tags, 0,
+                limit + 1);
+        verify(BOOKMARK_DAO, times(0))
+                .findByUserId(anyInt(), anyInt(), anyInt());
+        assertEquals(limit, page.size());
+        assertEquals(bookmarks.get(0), page.get(0));
+        assertNotNull(next);
+        assertTrue(next.getUri().getQuery().contains("tag=java"));
+        assertTrue(next.getUri().getQuery().contains("tag=dropwizard"));
+    }
 
-        Bookmark value = argumentCaptor.getValue();
-        assertNotNull(value);
-        assertNotNull(value.getUser());
-        assertEquals(value.getUser(), USER);
+    /**
+     * Test of getBookmarks method answering a conditional request, of class
+     * BookmarksResource.
+     */
+    @Test
+    public void testGetBookmarksNotModified() {
+        // given
+        final EntityTag entityTag = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.APPLICATION_JSON)
+                .get()
+                .getEntityTag();
 
-        assertEquals(expectedBookmark, response);
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+                .get();
+
+        // then
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(),
+                response.getStatus());
+        assertEquals(entityTag, response.getEntityTag());
+        assertEquals(HttpHeaders.ACCEPT,
+                response.getHeaderString(HttpHeaders.VARY));
+        verify(BOOKMARK_DAO, times(2)).findVersionByUserId(USER_ID);
+        verify(BOOKMARK_DAO, times(1))
+                .findByUserId(anyInt(), anyInt(), anyInt());
     }
 
     /**
-     * Test of addBookmark method, of class BookmarksResource.
+     * Test of getBookmarks method, of class BookmarksResource; the entity
+     * tag of a page doesn't match other pages or media types of the same
+     * version of bookmarks.
      */
     @Test
-    public void testAddBookmarkInvalid() {
-        final Response response
-                = RULE
+    public void testGetBookmarksEntityTagPerPage() {
+        final int limit = 1;
+        // given
+        when(BOOKMARK_DAO.findByUserId(USER_ID, 0, limit + 1))
+                .thenReturn(Collections.unmodifiableList(bookmarks));
+        final Response first = RULE
                 .getJerseyTest()
                 .target("/bookmarks")
+                .queryParam("limit", limit)
                 .request(MediaType.APPLICATION_JSON)
-                .post(
-                        Entity.json(
-                                new Bookmark(null, null)));
+                .get();
+        final EntityTag entityTag = first.getEntityTag();
 
-        assertEquals(422, response.getStatus());
+        // when
+        final Response second = RULE
+                .getJerseyTest()
+                .client()
+                .target(first.getLink("next").getUri())
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+                .get();
+        final Response smile = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("limit", limit)
+                .request(JacksonBinaryProvider.APPLICATION_SMILE)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+                .get();
+
+        // then
+        assertEquals(HttpHeaders.ACCEPT,
+                first.getHeaderString(HttpHeaders.VARY));
+        assertEquals(Response.Status.OK.getStatusCode(), second.getStatus());
+        assertNotEquals(entityTag, second.getEntityTag());
+        assertEquals(Response.Status.OK.getStatusCode(), smile.getStatus());
+        assertNotEquals(entityTag, smile.getEntityTag());
     }
 
     /**
-     * Test of modifyBookmark method, of class BookmarksResource.
+     * Test of getBookmarks method, of class BookmarksResource.
      */
     @Test
-    public void testModifyBookmarkOK() {
-        String expectedURL
-                = "https://github.com/javaeeeee/SpringBootBookmarks";
-        ArgumentCaptor<Bookmark> argumentCaptor
-                = ArgumentCaptor.forClass(Bookmark.class);
-
-        Bookmark bookmarkWithModifications
-                = new Bookmark(expectedURL, null);
-        bookmarkWithModifications.setId(109678);
+    public void testGetBookmarksLimitCapped() {
+        // when
+        RULE.getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("limit", Integer.MAX_VALUE)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
 
-        // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.of(expectedBookmark));
-        when(BOOKMARK_DAO.save(any(Bookmark.class)))
-                .thenReturn(expectedBookmark);
+        // then
+        verify(BOOKMARK_DAO).findByUserId(USER_ID, 0,
+                BookmarksResource.DEFAULT_MAX_PAGE_SIZE + 1);
+    }
 
+    /**
+     * Test of getBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testGetBookmarksInvalidCursor() {
         // when
-        Bookmark response = RULE
+        final Response response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks")
+                .queryParam(BookmarksResource.CURSOR_PARAM, "not-a-cursor")
                 .request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(
-                        bookmarkWithModifications,
-                        MediaType.APPLICATION_JSON),
-                        Bookmark.class);
+                .get();
 
         // then
-        assertNotNull(response);
-        assertEquals(expectedURL, response.getUrl());
-        assertEquals(expectedBookmark.getDescription(),
-                response.getDescription());
-        assertEquals(expectedBookmark.getUser(),
-                response.getUser());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO, times(0))
+                .findByUserId(anyInt(), anyInt(), anyInt());
+    }
 
-        verify(BOOKMARK_DAO).save(argumentCaptor.capture());
-        assertNotNull(argumentCaptor.getValue());
-        assertEquals(expectedURL, argumentCaptor.getValue().getUrl());
-        assertNotEquals(URL, argumentCaptor.getValue().getUrl());
-        assertEquals(expectedBookmark.getDescription(),
-                argumentCaptor.getValue().getDescription());
-        assertEquals(expectedBookmark.getUser(),
-                argumentCaptor.getValue().getUser());
-        // Check that purgeMap was called.
-        assertEquals(BOOKMARK_ID,
-                argumentCaptor.getValue().getId().intValue());
+    /**
+     * Test of getBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testGetBookmarksInvalidLimit() {
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("limit", 0)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+
+        // then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
     }
 
     /**
-     * Test of modifyBookmark method, of class BookmarksResource.
+     * Test of searchBookmarks method, of class BookmarksResource.
      */
-    @Test(expected = NotFoundException.class)
-    public void testModifyBookmarkNotFound() {
+    @Test
+    public void testSearchBookmarks() {
         // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.empty());
+        when(BOOKMARK_DAO.search(USER_ID, "repository",
+                BookmarksResource.DEFAULT_MAX_PAGE_SIZE))
+                .thenReturn(Collections.singletonList(expectedBookmark));
 
         // when
-        RULE
+        final List<Bookmark> response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks/search")
+                .queryParam("q", "repository")
                 .request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(
-                        expectedBookmark,
-                        MediaType.APPLICATION_JSON),
-                        Bookmark.class);
+                .get(new GenericType<List<Bookmark>>() {
+                });
 
         // then
+        assertEquals(1, response.size());
+        assertEquals(expectedBookmark.getId(), response.get(0).getId());
     }
 
     /**
-     * Test of modifyBookmark method, of class BookmarksResource.
+     * Test of searchBookmarks method, of class BookmarksResource.
      */
     @Test
-    public void testModifyBookmarkInvalid() {
-        String expectedKey = "wrongKey";
-
-        // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.of(expectedBookmark));
-
+    public void testSearchBookmarksEmptyQuery() {
         // when
-        Response response = RULE
+        final Response response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks/search")
+                .queryParam("q", " ,. ")
                 .request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(expectedKey,
-                        MediaType.APPLICATION_JSON));
+                .get();
 
         // then
-        assertNotNull(response);
         assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
                 response.getStatus());
-
-        verify(BOOKMARK_DAO, times(0)).save(any(Bookmark.class));
+        verify(BOOKMARK_DAO, times(0))
+                .search(anyInt(), anyString(), anyInt());
     }
 
     /**
-     * Test of modifyBookmark method, of class BookmarksResource.
+     * Test of getDuplicates method, of class BookmarksResource.
      */
-    @Test(expected = ProcessingException.class)
-    public void testModifyBookmarkInvalidException() {
-        String expectedKey = "wrongKey";
-
+    @Test
+    public void testGetDuplicates() {
         // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.of(expectedBookmark));
+        final List<BookmarkDuplicates> expected = Collections.singletonList(
+                new BookmarkDuplicates(URL, Arrays.asList(1, 5)));
+        when(BOOKMARK_DAO.findDuplicates(USER_ID)).thenReturn(expected);
 
         // when
-        Bookmark response = RULE
+        final List<BookmarkDuplicates> response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks/duplicates")
                 .request(MediaType.APPLICATION_JSON)
-                .put(Entity.entity(expectedKey,
-                        MediaType.APPLICATION_JSON))
-                .readEntity(Bookmark.class);
+                .get(new GenericType<List<BookmarkDuplicates>>() {
+                });
 
         // then
+        assertEquals(expected, response);
     }
 
     /**
-     * Test of deleteBookmark method, of class BookmarksResource.
+     * Test of getChanges method, of class BookmarksResource.
      */
     @Test
-    public void testDeleteBookmarkOK() {
+    public void testGetChanges() {
+        final int limit = 2;
+        final long since = 10;
+        final int deletedId = 5;
         // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.findChanges(USER_ID, since, limit + 1))
+                .thenReturn(Arrays.asList(
+                        new BookmarkChange(11, 2, bookmarks.get(0)),
+                        new BookmarkChange(12, deletedId, null),
+                        new BookmarkChange(13, BOOKMARK_ID, expectedBookmark)));
 
-        //when
-        Bookmark response = RULE
+        // when
+        final Response response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks/changes")
+                .queryParam(BookmarksResource.SINCE_PARAM,
+                        WatermarkParam.encode(since))
+                .queryParam("limit", limit)
                 .request(MediaType.APPLICATION_JSON)
-                .delete(Bookmark.class);
-
-        //then
-        assertNotNull(response);
-        assertEquals(expectedBookmark, response);
+                .get();
+        final BookmarkChanges changes
+                = response.readEntity(BookmarkChanges.class);
+        final Link next = response.getLink("next");
 
-        verify(BOOKMARK_DAO).delete(BOOKMARK_ID);
+        // then
+        assertEquals(Collections.singletonList(bookmarks.get(0)),
+                changes.getBookmarks());
+        assertEquals(Collections.singletonList(deletedId),
+                changes.getDeleted());
+        assertEquals(WatermarkParam.encode(12), changes.getWatermark());
+        assertNotNull(next);
+        assertTrue(next.getUri().getQuery()
+                .contains(BookmarksResource.SINCE_PARAM + "="
+                        + changes.getWatermark()));
     }
 
     /**
-     * Test of deleteBookmark method, of class BookmarksResource.
+     * Test of getChanges method without changes, of class BookmarksResource.
      */
-    @Test(expected = NotFoundException.class)
-    public void testDeleteBookmarkNotFound() {
+    @Test
+    public void testGetChangesNone() {
+        final long since = 10;
         // given
-        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
-                .thenReturn(Optional.empty());
+        when(BOOKMARK_DAO.findChanges(USER_ID, since,
+                BookmarksResource.DEFAULT_MAX_PAGE_SIZE + 1))
+                .thenReturn(Collections.emptyList());
 
         // when
-        RULE
+        final Response response = RULE
                 .getJerseyTest()
-                .target("/bookmarks/" + BOOKMARK_ID)
+                .target("/bookmarks/changes")
+                .queryParam(BookmarksResource.SINCE_PARAM,
+                        WatermarkParam.encode(since))
                 .request(MediaType.APPLICATION_JSON)
-                .delete(Bookmark.class);
+                .get();
+        final BookmarkChanges changes
+                = response.readEntity(BookmarkChanges.class);
 
         // then
+        assertTrue(changes.getBookmarks().isEmpty());
+        assertTrue(changes.getDeleted().isEmpty());
+        assertEquals(WatermarkParam.encode(since), changes.getWatermark());
+        assertNull(response.getLink("next"));
     }
 
     /**
-     * Test of purgeMap() method
+     * Test of getChanges method, of class BookmarksResource.
      */
     @Test
-    public void testPurgeMap() {
-        String expectedKey = "url";
-        BookmarksResource sut = new BookmarksResource(BOOKMARK_DAO);
-        Map<String, String> map = new HashMap<>();
-        map.put("id", "1");
-        map.put(expectedKey, "http://www.dropwizard.io/1.0.2/docs/");
-        map.put("description", null);
+    public void testGetChangesInvalidWatermark() {
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/changes")
+                .queryParam(BookmarksResource.SINCE_PARAM,
+                        CursorParam.encode(BOOKMARK_ID))
+                .request(MediaType.APPLICATION_JSON)
+                .get();
 
-        sut.purgeMap(map);
+        // then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO, times(0))
+                .findChanges(anyInt(), anyLong(), anyInt());
+    }
+
+    /**
+     * Test of exportBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testExportBookmarks() {
+        // given
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            Consumer<Bookmark> consumer
+                    = (Consumer<Bookmark>) invocation.getArguments()[1];
+            bookmarks.forEach(consumer);
+            return null;
+        }).when(BOOKMARK_DAO).scrollByUserId(eq(USER_ID), any());
+
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/export")
+                .request(BookmarksResource.APPLICATION_NDJSON)
+                .get();
+        final String body = response.readEntity(String.class);
+
+        // then
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+        assertEquals(BookmarksResource.APPLICATION_NDJSON,
+                response.getMediaType().toString());
+        final String[] lines = body.split("\n");
+        assertEquals(bookmarks.size(), lines.length);
+        assertTrue(lines[0].contains(bookmarks.get(0).getUrl()));
+        assertTrue(lines[1].contains(bookmarks.get(1).getUrl()));
+        assertTrue(body.endsWith("\n"));
+    }
+
+    /**
+     * Test of getBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testGetBookmarkFound() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        final Optional<Bookmark> response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<Optional<Bookmark>>() {
+                });
+
+        // then
+        verify(BOOKMARK_DAO).findByIdAndUserId(BOOKMARK_ID, USER_ID);
+        assertNotNull(response);
+        assertTrue(response.isPresent());
+        assertEquals(expectedBookmark, response.get());
+    }
+
+    /**
+     * Test of getBookmark method producing Smile, of class BookmarksResource.
+     *
+     * @throws IOException if the response can't be parsed.
+     */
+    @Test
+    public void testGetBookmarkSmile() throws IOException {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        final byte[] response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(JacksonBinaryProvider.APPLICATION_SMILE)
+                .get(byte[].class);
+
+        // then
+        assertEquals(expectedBookmark,
+                Jackson.newObjectMapper(new SmileFactory())
+                .readValue(response, Bookmark.class));
+    }
+
+    /**
+     * Test of getBookmark method, of class BookmarksResource.
+     */
+    @Test(expected = NotFoundException.class)
+    public void testGetBookmarkNotFound() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.empty());
+
+        // when
+        final Optional<Bookmark> response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .get(new GenericType<Optional<Bookmark>>() {
+                });
+
+        // then
+        verify(BOOKMARK_DAO).findByIdAndUserId(BOOKMARK_ID, USER_ID);
+        assertNotNull(response);
+        assertFalse(response.isPresent());
+    }
+
+    /**
+     * Test of getBookmark method returning validators, of class
+     * BookmarksResource.
+     */
+    @Test
+    public void testGetBookmarkValidators() {
+        final Date updatedAt = new Date(1476000000000L);
+        // given
+        expectedBookmark.setVersion(3);
+        expectedBookmark.setUpdatedAt(updatedAt);
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .get();
+        final Response notModified = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_NONE_MATCH,
+                        response.getEntityTag().toString())
+                .get();
+
+        // then
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+        assertEquals(new EntityTag(BOOKMARK_ID + "-3"),
+                response.getEntityTag());
+        assertEquals(updatedAt, response.getLastModified());
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(),
+                notModified.getStatus());
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarkOK() {
+        ArgumentCaptor<Bookmark> argumentCaptor
+                = ArgumentCaptor.forClass(Bookmark.class);
+
+        // given
+        when(BOOKMARK_DAO.save(any(Bookmark.class
+        )))
+                .thenReturn(expectedBookmark);
+
+        // when
+        final Bookmark response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.APPLICATION_JSON)
+                .post(
+                        Entity.entity(
+                                expectedBookmark,
+                                MediaType.APPLICATION_JSON),
+                        Bookmark.class);
+        // then
+        assertNotNull(response);
+        verify(BOOKMARK_DAO)
+                .save(argumentCaptor.capture());
+
+        Bookmark value = argumentCaptor.getValue();
+        assertNotNull(value);
+        assertNotNull(value.getUser());
+        assertEquals(value.getUser(), USER);
+
+        assertEquals(expectedBookmark, response);
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarkInvalid() {
+        final Response response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.APPLICATION_JSON)
+                .post(
+                        Entity.json(
+                                new Bookmark(null, null)));
+
+        assertEquals(422, response.getStatus());
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarkQuotaExceeded() {
+        when(BOOKMARK_DAO.lockBookmarkCount(USER_ID))
+                .thenReturn(MAX_BOOKMARKS);
+
+        final Response response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(expectedBookmark));
+
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO, never()).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource; a bookmark with
+     * the URL of an existing one is rejected.
+     */
+    @Test
+    public void testAddBookmarkRejectDuplicate() {
+        when(BOOKMARK_DAO.findByUserIdAndUrl(USER_ID, URL))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        final Response response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("onDuplicate", "reject")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark(URL, "Duplicate")));
+
+        assertEquals(Response.Status.CONFLICT.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO).lockBookmarkCount(USER_ID);
+        verify(BOOKMARK_DAO, never()).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource; the count of
+     * bookmarks is locked once to look up duplicates and check the quota.
+     */
+    @Test
+    public void testAddBookmarkRejectNoDuplicate() {
+        when(BOOKMARK_DAO.lockBookmarkCount(USER_ID))
+                .thenReturn(MAX_BOOKMARKS - 1);
+        when(BOOKMARK_DAO.findByUserIdAndUrl(USER_ID, URL))
+                .thenReturn(Optional.empty());
+        when(BOOKMARK_DAO.save(any(Bookmark.class)))
+                .thenReturn(expectedBookmark);
+
+        final Response response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("onDuplicate", "reject")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark(URL, "New")));
+
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO, times(1)).lockBookmarkCount(USER_ID);
+        verify(BOOKMARK_DAO).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource; a bookmark with
+     * the URL of an existing one is merged into it.
+     */
+    @Test
+    public void testAddBookmarkMergeDuplicate() {
+        expectedBookmark.setTags(Collections.singletonList("java"));
+        when(BOOKMARK_DAO.findByUserIdAndUrl(USER_ID, URL))
+                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.save(expectedBookmark)).thenReturn(expectedBookmark);
+        Bookmark duplicate = new Bookmark(URL, "Duplicate");
+        duplicate.setTags(Collections.singletonList("dropwizard"));
+
+        final Bookmark response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("onDuplicate", "merge")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(duplicate), Bookmark.class);
+
+        assertEquals(expectedBookmark.getId(), response.getId());
+        assertEquals(expectedBookmark.getDescription(),
+                response.getDescription());
+        assertEquals(new HashSet<>(Arrays.asList("java", "dropwizard")),
+                response.getTags());
+        verify(BOOKMARK_DAO).save(expectedBookmark);
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource; duplicates are
+     * not looked up unless asked for.
+     */
+    @Test
+    public void testAddBookmarkAllowDuplicate() {
+        when(BOOKMARK_DAO.save(any(Bookmark.class)))
+                .thenReturn(expectedBookmark);
+
+        final Response response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("onDuplicate", "allow")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Bookmark(URL, "Duplicate")));
+
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO, never()).findByUserIdAndUrl(anyInt(),
+                anyString());
+    }
+
+    /**
+     * Test of addBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarkWrongOnDuplicate() {
+        final Response response
+                = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("onDuplicate", "ignore")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(expectedBookmark));
+
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+        assertTrue(response.readEntity(String.class)
+                .contains(BookmarksResource.WRONG_ON_DUPLICATE));
+        verify(BOOKMARK_DAO, never()).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of addBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarksJsonArray() {
+        // given
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<Bookmark> batch
+                    = (List<Bookmark>) invocation.getArguments()[0];
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(USER, batch.get(i).getUser());
+                batch.get(i).setId(100 + i);
+            }
+            return null;
+        }).when(BOOKMARK_DAO).saveAll(any());
+        List<Bookmark> request = new ArrayList<>(bookmarks);
+        request.add(1, new Bookmark(null, "Invalid"));
+
+        // when
+        final List<BatchItemResult> response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/batch")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(request),
+                        new GenericType<List<BatchItemResult>>() {
+                });
+
+        // then
+        verify(BOOKMARK_DAO).saveAll(any());
+        assertEquals(3, response.size());
+        assertEquals(BatchItemResult.created(0, 100), response.get(0));
+        assertEquals(1, response.get(1).getIndex());
+        assertEquals(BatchItemResult.Status.INVALID,
+                response.get(1).getStatus());
+        assertFalse(response.get(1).getErrors().isEmpty());
+        assertEquals(BatchItemResult.created(2, 101), response.get(2));
+    }
+
+    /**
+     * Test of addBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarksQuotaExceeded() {
+        // given
+        when(BOOKMARK_DAO.lockBookmarkCount(USER_ID))
+                .thenReturn(MAX_BOOKMARKS - 1);
+        doAnswer(invocation -> {
+            @SuppressWarnings("unchecked")
+            List<Bookmark> batch
+                    = (List<Bookmark>) invocation.getArguments()[0];
+            assertEquals(1, batch.size());
+            batch.get(0).setId(100);
+            return null;
+        }).when(BOOKMARK_DAO).saveAll(any());
+
+        // when
+        final List<BatchItemResult> response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/batch")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(bookmarks),
+                        new GenericType<List<BatchItemResult>>() {
+                });
+
+        // then
+        assertEquals(2, response.size());
+        assertEquals(BatchItemResult.created(0, 100), response.get(0));
+        assertEquals(BatchItemResult.Status.INVALID,
+                response.get(1).getStatus());
+        assertEquals(Collections.singletonList(String.format(
+                BookmarksResource.QUOTA_EXCEEDED, MAX_BOOKMARKS)),
+                response.get(1).getErrors());
+    }
+
+    /**
+     * Test of addBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarksNdjson() {
+        String body = "{\"url\":\"" + URL + "\"}\n"
+                + "{\"url\":\"" + URL + "\",\"description\":\"Repo\"}\n";
+        List<Integer> batchSizes = new ArrayList<>();
+
+        // given
+        doAnswer(invocation -> {
+            batchSizes.add(((List) invocation.getArguments()[0]).size());
+            return null;
+        }).when(BOOKMARK_DAO).saveAll(any());
+
+        // when
+        final List<BatchItemResult> response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/batch")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(body,
+                        BookmarksResource.APPLICATION_NDJSON),
+                        new GenericType<List<BatchItemResult>>() {
+                });
+
+        // then
+        assertEquals(2, response.size());
+        assertEquals(BatchItemResult.Status.CREATED,
+                response.get(1).getStatus());
+        assertEquals(Collections.singletonList(2), batchSizes);
+    }
+
+    /**
+     * Test of addBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testAddBookmarksMalformed() {
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/batch")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json("[{\"url\":"));
+
+        // then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+        verify(BOOKMARK_DAO, times(0)).saveAll(any());
+    }
+
+    /**
+     * Test of modifyBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testModifyBookmarkOK() {
+        String expectedURL
+                = "https://github.com/javaeeeee/SpringBootBookmarks";
+        ArgumentCaptor<Bookmark> argumentCaptor
+                = ArgumentCaptor.forClass(Bookmark.class);
+
+        Bookmark bookmarkWithModifications
+                = new Bookmark(expectedURL, null);
+        bookmarkWithModifications.setId(109678);
+
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.save(any(Bookmark.class)))
+                .thenReturn(expectedBookmark);
+
+        // when
+        Bookmark response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(
+                        bookmarkWithModifications,
+                        MediaType.APPLICATION_JSON),
+                        Bookmark.class);
+
+        // then
+        assertNotNull(response);
+        assertEquals(expectedURL, response.getUrl());
+        assertEquals(expectedBookmark.getDescription(),
+                response.getDescription());
+        assertEquals(expectedBookmark.getUser(),
+                response.getUser());
+
+        verify(BOOKMARK_DAO).save(argumentCaptor.capture());
+        assertNotNull(argumentCaptor.getValue());
+        assertEquals(expectedURL, argumentCaptor.getValue().getUrl());
+        assertNotEquals(URL, argumentCaptor.getValue().getUrl());
+        assertEquals(expectedBookmark.getDescription(),
+                argumentCaptor.getValue().getDescription());
+        assertEquals(expectedBookmark.getUser(),
+                argumentCaptor.getValue().getUser());
+        // Check that purgeMap was called.
+        assertEquals(BOOKMARK_ID,
+                argumentCaptor.getValue().getId().intValue());
+    }
+
+    /**
+     * Test of modifyBookmark method with If-Match header, of class
+     * BookmarksResource.
+     */
+    @Test
+    public void testModifyBookmarkIfMatch() {
+        // given
+        expectedBookmark.setVersion(3);
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.save(any(Bookmark.class))).thenAnswer(
+                invocation -> {
+                    Bookmark saved = (Bookmark) invocation.getArguments()[0];
+                    saved.setVersion(saved.getVersion() + 1);
+                    return saved;
+                });
+
+        // when
+        Response stale = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"" + BOOKMARK_ID + "-2\"")
+                .put(Entity.json("{\"description\":\"Stale\"}"));
+
+        // then
+        assertEquals(Response.Status.PRECONDITION_FAILED.getStatusCode(),
+                stale.getStatus());
+        verify(BOOKMARK_DAO, times(0)).save(any(Bookmark.class));
+
+        // when
+        Response current = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"" + BOOKMARK_ID + "-3\"")
+                .put(Entity.json("{\"description\":\"Current\"}"));
+
+        // then
+        assertEquals(Response.Status.OK.getStatusCode(),
+                current.getStatus());
+        assertEquals(new EntityTag(BOOKMARK_ID + "-4"),
+                current.getEntityTag());
+        assertEquals("Current",
+                current.readEntity(Bookmark.class).getDescription());
+    }
+
+    /**
+     * Test of modifyBookmark method if the bookmark was modified
+     * concurrently, of class BookmarksResource.
+     */
+    @Test
+    public void testModifyBookmarkConflict() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.save(any(Bookmark.class))).thenThrow(
+                new StaleObjectStateException(
+                        Bookmark.class.getName(), BOOKMARK_ID));
+
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.json("{\"description\":\"Conflict\"}"));
+
+        // then
+        assertEquals(Response.Status.CONFLICT.getStatusCode(),
+                response.getStatus());
+    }
+
+    /**
+     * Test of modifyBookmark method, of class BookmarksResource.
+     */
+    @Test(expected = NotFoundException.class)
+    public void testModifyBookmarkNotFound() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.empty());
+
+        // when
+        RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(
+                        expectedBookmark,
+                        MediaType.APPLICATION_JSON),
+                        Bookmark.class);
+
+        // then
+    }
+
+    /**
+     * Test of modifyBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testModifyBookmarkInvalid() {
+        String expectedKey = "wrongKey";
+
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(expectedKey,
+                        MediaType.APPLICATION_JSON));
+
+        // then
+        assertNotNull(response);
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+
+        verify(BOOKMARK_DAO, times(0)).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of modifyBookmark method, of class BookmarksResource.
+     */
+    @Test(expected = ProcessingException.class)
+    public void testModifyBookmarkInvalidException() {
+        String expectedKey = "wrongKey";
+
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        Bookmark response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.entity(expectedKey,
+                        MediaType.APPLICATION_JSON))
+                .readEntity(Bookmark.class);
+
+        // then
+    }
+
+    /**
+     * Test of patchBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testPatchBookmarkOK() {
+        String expectedDescription = "Dropwizard documentation";
+        ArgumentCaptor<Bookmark> argumentCaptor
+                = ArgumentCaptor.forClass(Bookmark.class);
+
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.save(any(Bookmark.class)))
+                .thenReturn(expectedBookmark);
+
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .method("PATCH", Entity.entity(
+                        "{\"id\":1,\"url\":\"\",\"description\":\""
+                        + expectedDescription + "\",\"unknown\":\"x\"}",
+                        BookmarksResource.APPLICATION_MERGE_PATCH_JSON));
+
+        // then
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+
+        verify(BOOKMARK_DAO).save(argumentCaptor.capture());
+        assertEquals(BOOKMARK_ID,
+                argumentCaptor.getValue().getId().intValue());
+        assertEquals(URL, argumentCaptor.getValue().getUrl());
+        assertEquals(expectedDescription,
+                argumentCaptor.getValue().getDescription());
+    }
+
+    /**
+     * Test of patchBookmark method replacing tags, of class
+     * BookmarksResource.
+     */
+    @Test
+    public void testPatchBookmarkTags() {
+        ArgumentCaptor<Bookmark> argumentCaptor
+                = ArgumentCaptor.forClass(Bookmark.class);
+
+        // given
+        expectedBookmark.setTags(Collections.singletonList("scala"));
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+        when(BOOKMARK_DAO.save(any(Bookmark.class)))
+                .thenReturn(expectedBookmark);
+
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .method("PATCH", Entity.entity(
+                        "{\"tags\":[\" Java\",\"dropwizard\",null]}",
+                        BookmarksResource.APPLICATION_MERGE_PATCH_JSON));
+
+        // then
+        assertEquals(Response.Status.OK.getStatusCode(),
+                response.getStatus());
+
+        verify(BOOKMARK_DAO).save(argumentCaptor.capture());
+        assertEquals(new HashSet<>(Arrays.asList("java", "dropwizard")),
+                argumentCaptor.getValue().getTags());
+    }
+
+    /**
+     * Test of patchBookmark method with invalid tags, of class
+     * BookmarksResource.
+     */
+    @Test
+    public void testPatchBookmarkInvalidTags() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        Response notArray = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .method("PATCH", Entity.entity("{\"tags\":\"java\"}",
+                        BookmarksResource.APPLICATION_MERGE_PATCH_JSON));
+        Response tooLong = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .method("PATCH", Entity.entity("{\"tags\":[\""
+                        + Strings.repeat("a", Bookmark.MAX_TAG_LENGTH + 1)
+                        + "\"]}",
+                        BookmarksResource.APPLICATION_MERGE_PATCH_JSON));
+
+        // then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                notArray.getStatus());
+        assertEquals(BookmarksResource.UNPROCESSABLE_ENTITY,
+                tooLong.getStatus());
+
+        verify(BOOKMARK_DAO, times(0)).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of patchBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testPatchBookmarkInvalid() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .method("PATCH", Entity.entity("null",
+                        BookmarksResource.APPLICATION_MERGE_PATCH_JSON));
+
+        // then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+
+        verify(BOOKMARK_DAO, times(0)).save(any(Bookmark.class));
+    }
+
+    /**
+     * Test of deleteBookmark method, of class BookmarksResource.
+     */
+    @Test
+    public void testDeleteBookmarkOK() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        //when
+        Bookmark response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .delete(Bookmark.class);
+
+        //then
+        assertNotNull(response);
+        assertEquals(expectedBookmark, response);
+
+        verify(BOOKMARK_DAO).delete(BOOKMARK_ID);
+    }
+
+    /**
+     * Test of deleteBookmark method, of class BookmarksResource.
+     */
+    @Test(expected = NotFoundException.class)
+    public void testDeleteBookmarkNotFound() {
+        // given
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.empty());
+
+        // when
+        RULE
+                .getJerseyTest()
+                .target("/bookmarks/" + BOOKMARK_ID)
+                .request(MediaType.APPLICATION_JSON)
+                .delete(Bookmark.class);
+
+        // then
+    }
+
+    /**
+     * Test of deleteBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testDeleteBookmarks() {
+        // given
+        when(BOOKMARK_DAO.deleteAll(USER_ID, Arrays.asList(1, 2, 3)))
+                .thenReturn(new HashSet<>(Arrays.asList(1, 3)));
+
+        // when
+        final List<BatchItemResult> response = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("ids", "1,2")
+                .queryParam("ids", "3")
+                .request(MediaType.APPLICATION_JSON)
+                .delete(new GenericType<List<BatchItemResult>>() {
+                });
+
+        // then
+        assertEquals(Arrays.asList(BatchItemResult.deleted(0, 1),
+                BatchItemResult.notFound(1, 2),
+                BatchItemResult.deleted(2, 3)), response);
+    }
+
+    /**
+     * Test of deleteBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testDeleteBookmarksWrongIds() {
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .queryParam("ids", "1,two")
+                .request(MediaType.APPLICATION_JSON)
+                .delete();
+        final Response empty = RULE
+                .getJerseyTest()
+                .target("/bookmarks")
+                .request(MediaType.APPLICATION_JSON)
+                .delete();
+
+        // then
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                response.getStatus());
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(),
+                empty.getStatus());
+        verify(BOOKMARK_DAO, never()).deleteAll(anyInt(), any());
+    }
+
+    /**
+     * Test of updateBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testUpdateBookmarks() {
+        BulkUpdate update = new BulkUpdate(Arrays.asList(5, 6), "Read later",
+                Collections.singletonList("later"), null);
+
+        // given
+        when(BOOKMARK_DAO.updateAll(USER_ID, update))
+                .thenReturn(Collections.singleton(6));
+
+        // when
+        final List<BatchItemResult> response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/bulk-update")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(update),
+                        new GenericType<List<BatchItemResult>>() {
+                });
+
+        // then
+        assertEquals(Arrays.asList(BatchItemResult.notFound(0, 5),
+                BatchItemResult.updated(1, 6)), response);
+    }
+
+    /**
+     * Test of updateBookmarks method, of class BookmarksResource.
+     */
+    @Test
+    public void testUpdateBookmarksInvalid() {
+        // when
+        final Response response = RULE
+                .getJerseyTest()
+                .target("/bookmarks/bulk-update")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new BulkUpdate(Collections.emptyList(),
+                        null, null, null)));
+
+        // then
+        assertEquals(422, response.getStatus());
+        verify(BOOKMARK_DAO, never()).updateAll(anyInt(), any());
+    }
+
+    /**
+     * Test of purgeMap() method
+     */
+    @Test
+    public void testPurgeMap() {
+        String expectedKey = "url";
+        BookmarksResource sut = new BookmarksResource(BOOKMARK_DAO,
+                unitOfWorkExecutor(MoreExecutors.newDirectExecutorService()));
+        Map<String, String> map = new HashMap<>();
+        map.put("id", "1");
+        map.put(expectedKey, "http://www.dropwizard.io/1.0.2/docs/");
+        map.put("description", null);
+
+        sut.purgeMap(map);
 
         assertNotNull(map);
         assertFalse(map.isEmpty());
         assertEquals(1, map.size());
         assertTrue(map.containsKey(expectedKey));
     }
+
+    /**
+     * Test that reads are answered with 503 and Retry-After when the
+     * database executor is overloaded.
+     */
+    @Test
+    public void testGetBookmarkOverloaded() {
+        // given
+        ExecutorService overloaded = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException())
+                .when(overloaded).execute(any(Runnable.class));
+        BookmarksResource sut = new BookmarksResource(BOOKMARK_DAO,
+                unitOfWorkExecutor(overloaded));
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+
+        try {
+            // when
+            sut.getBookmark(new IntParam(Integer.toString(BOOKMARK_ID)),
+                    USER, null, asyncResponse);
+            fail("Overloaded executor should be reported.");
+        } catch (WebApplicationException ex) {
+            // then
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    ex.getResponse().getStatus());
+            assertEquals("5", ex.getResponse()
+                    .getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+        verify(asyncResponse, never()).resume(any(Object.class));
+        verify(BOOKMARK_DAO, never()).findByIdAndUserId(anyInt(), anyInt());
+    }
+
+    /**
+     * Test that writes are answered with 503 and Retry-After, and nothing is
+     * written, when the database executor is overloaded.
+     */
+    @Test
+    public void testDeleteBookmarkOverloaded() {
+        // given
+        ExecutorService overloaded = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException())
+                .when(overloaded).execute(any(Runnable.class));
+        BookmarksResource sut = new BookmarksResource(BOOKMARK_DAO,
+                unitOfWorkExecutor(overloaded));
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+
+        try {
+            // when
+            sut.deleteBookmark(new IntParam(Integer.toString(BOOKMARK_ID)),
+                    USER, asyncResponse);
+            fail("Overloaded executor should be reported.");
+        } catch (WebApplicationException ex) {
+            // then
+            assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    ex.getResponse().getStatus());
+            assertEquals("5", ex.getResponse()
+                    .getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+        verify(asyncResponse, never()).resume(any(Object.class));
+        verify(BOOKMARK_DAO, never()).delete(anyInt());
+    }
+
+    /**
+     * Test of getBookmark method, of class BookmarksResource. The timeout
+     * applies to waiting for a thread and a permit, so the response is not
+     * suspended with a timeout of its own which would abandon a running
+     * read.
+     */
+    @Test
+    public void testGetBookmarkNoResponseTimeout() {
+        // given
+        BookmarksResource sut = new BookmarksResource(BOOKMARK_DAO,
+                unitOfWorkExecutor(MoreExecutors.newDirectExecutorService()));
+        AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        when(BOOKMARK_DAO.findByIdAndUserId(BOOKMARK_ID, USER_ID))
+                .thenReturn(Optional.of(expectedBookmark));
+
+        // when
+        sut.getBookmark(new IntParam(Integer.toString(BOOKMARK_ID)),
+                USER, mock(Request.class), asyncResponse);
+
+        // then
+        verify(asyncResponse, never()).setTimeout(anyLong(),
+                any(TimeUnit.class));
+        verify(asyncResponse).resume(any(Response.class));
+    }
+
+    /**
+     * Method creates the executor of reads running work on the given
+     * threads in mock sessions.
+     *
+     * @param executor the threads which do the work.
+     * @return the executor of reads.
+     */
+    private static UnitOfWorkExecutor unitOfWorkExecutor(
+            ExecutorService executor) {
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        Session session = mock(Session.class);
+        when(sessionFactory.openSession()).thenReturn(session);
+        when(session.getSessionFactory()).thenReturn(sessionFactory);
+        when(session.beginTransaction()).thenReturn(mock(Transaction.class));
+        return new UnitOfWorkExecutor(sessionFactory, executor, 5,
+                TimeUnit.SECONDS, new MetricRegistry());
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.util.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A class to test RateLimitFilter and RateLimitFeature classes.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class RateLimitFilterTest {
+
+    /**
+     * The request.
+     */
+    private ContainerRequestContext request;
+    /**
+     * Properties of the request.
+     */
+    private Map<String, Object> properties;
+    /**
+     * Security context of the request.
+     */
+    private SecurityContext securityContext;
+    /**
+     * Filter under test.
+     */
+    private RateLimitFilter sut;
+
+    /**
+     * Initializations before each test method.
+     */
+    @Before
+    public void setUp() {
+        properties = new HashMap<>();
+        request = mock(ContainerRequestContext.class);
+        securityContext = mock(SecurityContext.class);
+        when(request.getSecurityContext()).thenReturn(securityContext);
+        doAnswer(invocation -> properties.put(
+                (String) invocation.getArguments()[0],
+                invocation.getArguments()[1]))
+                .when(request).setProperty(anyString(), any());
+        when(request.getProperty(anyString())).thenAnswer(
+                invocation -> properties.get(invocation.getArguments()[0]));
+        User user = new User("javaeeeee", null);
+        user.setId(1);
+        when(securityContext.getUserPrincipal()).thenReturn(user);
+        sut = new RateLimitFilter(new TokenBucketRateLimiter("write",
+                new RateLimit(1, Duration.minutes(1)),
+                new MetricRegistry()));
+    }
+
+    /**
+     * Responses to allowed requests carry RateLimit headers.
+     */
+    @Test
+    public void testFilterAllowed() {
+        ContainerResponseContext response
+                = mock(ContainerResponseContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        when(response.getHeaders()).thenReturn(headers);
+
+        sut.filter(request);
+        sut.filter(request, response);
+
+        assertEquals(1, headers.getFirst(RateLimitFilter.RATE_LIMIT_LIMIT));
+        assertEquals(0,
+                headers.getFirst(RateLimitFilter.RATE_LIMIT_REMAINING));
+        assertEquals(60L, headers.getFirst(RateLimitFilter.RATE_LIMIT_RESET));
+    }
+
+    /**
+     * Requests over the limit are rejected with 429 and Retry-After.
+     */
+    @Test
+    public void testFilterRejected() {
+        sut.filter(request);
+        try {
+            sut.filter(request);
+            fail("Exception expected");
+        } catch (WebApplicationException ex) {
+            assertEquals(RateLimitFilter.TOO_MANY_REQUESTS,
+                    ex.getResponse().getStatus());
+            assertEquals("60", ex.getResponse()
+                    .getHeaderString(HttpHeaders.RETRY_AFTER));
+        }
+    }
+
+    /**
+     * Anonymous requests are not limited.
+     */
+    @Test
+    public void testFilterAnonymous() {
+        ContainerResponseContext response
+                = mock(ContainerResponseContext.class);
+        when(securityContext.getUserPrincipal()).thenReturn(null);
+
+        sut.filter(request);
+        sut.filter(request);
+        sut.filter(request, response);
+
+        verify(response, never()).getHeaders();
+    }
+
+    /**
+     * Methods of the bookmarks resource are limited by their class of
+     * requests.
+     *
+     * @throws NoSuchMethodException if a method is renamed.
+     */
+    @Test
+    public void testGetKind() throws NoSuchMethodException {
+        assertEquals(RateLimited.Kind.READ, kind("getBookmark"));
+        assertEquals(RateLimited.Kind.WRITE, kind("addBookmark"));
+        assertEquals(RateLimited.Kind.WRITE, kind("deleteBookmark"));
+        assertEquals(RateLimited.Kind.BULK, kind("addBookmarks"));
+        assertEquals(RateLimited.Kind.BULK, kind("exportBookmarks"));
+        assertEquals(RateLimited.Kind.BULK, kind("getDuplicates"));
+        assertEquals(RateLimited.Kind.BULK, kind("updateBookmarks"));
+    }
+
+    /**
+     * Method finds the class of requests of a method of the bookmarks
+     * resource.
+     *
+     * @param name the name of the method.
+     * @return the class of requests.
+     */
+    private static RateLimited.Kind kind(String name) {
+        return java.util.Arrays.stream(
+                BookmarksResource.class.getMethods())
+                .filter(m -> m.getName().equals(name))
+                .findFirst()
+                .map(RateLimitFeature::getKind)
+                .get();
+    }
+}
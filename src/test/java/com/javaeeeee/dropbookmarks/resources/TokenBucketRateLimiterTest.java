@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import io.dropwizard.util.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * A class to test TokenBucketRateLimiter class.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TokenBucketRateLimiterTest {
+
+    /**
+     * The current time of the fake ticker in nanoseconds.
+     */
+    private final AtomicLong now = new AtomicLong(1);
+    /**
+     * The registry of metrics of the limiter.
+     */
+    private MetricRegistry metrics;
+    /**
+     * Rate limiter under test.
+     */
+    private TokenBucketRateLimiter sut;
+
+    /**
+     * Initializations before each test method.
+     */
+    @Before
+    public void setUp() {
+        metrics = new MetricRegistry();
+        sut = new TokenBucketRateLimiter("read",
+                new RateLimit(2, Duration.seconds(1)), metrics,
+                new Ticker() {
+            @Override
+            public long read() {
+                return now.get();
+            }
+        });
+    }
+
+    /**
+     * A full bucket allows a burst of the limit, then one request per
+     * interval.
+     */
+    @Test
+    public void testAcquire() {
+        TokenBucketRateLimiter.Decision first = sut.acquire(1);
+        assertTrue(first.isAllowed());
+        assertEquals(2, first.getLimit());
+        assertEquals(1, first.getRemaining());
+        assertEquals(1, first.getReset());
+
+        assertTrue(sut.acquire(1).isAllowed());
+        TokenBucketRateLimiter.Decision rejected = sut.acquire(1);
+        assertFalse(rejected.isAllowed());
+        assertEquals(0, rejected.getRemaining());
+        assertEquals(1, rejected.getRetryAfter());
+
+        advance(500);
+        TokenBucketRateLimiter.Decision refilled = sut.acquire(1);
+        assertTrue(refilled.isAllowed());
+        assertEquals(0, refilled.getRemaining());
+        assertFalse(sut.acquire(1).isAllowed());
+
+        assertEquals(3, metrics.meter(MetricRegistry.name(
+                TokenBucketRateLimiter.class, "read", "allowed")).getCount());
+        assertEquals(2, metrics.meter(MetricRegistry.name(
+                TokenBucketRateLimiter.class, "read", "rejected")).getCount());
+    }
+
+    /**
+     * Users have separate buckets which refill when idle.
+     */
+    @Test
+    public void testAcquireUsers() {
+        sut.acquire(1);
+        sut.acquire(1);
+
+        assertTrue(sut.acquire(2).isAllowed());
+        assertFalse(sut.acquire(1).isAllowed());
+        assertEquals(2L, metrics.getGauges().get(MetricRegistry.name(
+                TokenBucketRateLimiter.class, "read", "users")).getValue());
+
+        advance(2000);
+        assertEquals(1, sut.acquire(1).getRemaining());
+    }
+
+    /**
+     * Method moves the fake ticker forward.
+     *
+     * @param millis milliseconds to move by.
+     */
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
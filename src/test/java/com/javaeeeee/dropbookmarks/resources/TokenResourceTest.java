@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Dmitry Noranovich javaeeeee (at) gmail (dot) com.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.javaeeeee.dropbookmarks.resources;
+
+import com.javaeeeee.dropbookmarks.auth.TokenAuthenticator;
+import com.javaeeeee.dropbookmarks.core.AccessToken;
+import com.javaeeeee.dropbookmarks.core.User;
+import io.dropwizard.auth.AuthDynamicFeature;
+import io.dropwizard.auth.AuthFilter;
+import io.dropwizard.auth.AuthValueFactoryProvider;
+import io.dropwizard.auth.basic.BasicCredentialAuthFilter;
+import io.dropwizard.auth.chained.ChainedAuthFilter;
+import io.dropwizard.auth.oauth.OAuthCredentialAuthFilter;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
+import org.glassfish.jersey.test.grizzly.GrizzlyWebTestContainerFactory;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+/**
+ * A class to test the resource which issues tokens.
+ *
+ * @author Dmitry Noranovich javaeeeee (at) gmail (dot) com
+ */
+public class TokenResourceTest {
+
+    /**
+     * Test user id.
+     */
+    private static final int USER_ID = 1;
+    /**
+     * Test user name.
+     */
+    private static final String USERNAME = "Coda";
+    /**
+     * Test user password.
+     */
+    private static final String PASSWORD = "Hale";
+    /**
+     * Test user.
+     */
+    private static final User USER = new User(USERNAME, PASSWORD);
+    /**
+     * Authenticator which issues and checks tokens.
+     */
+    private static final TokenAuthenticator TOKEN_AUTHENTICATOR
+            = new TokenAuthenticator("secret".getBytes(StandardCharsets.UTF_8),
+                    Duration.ofMinutes(5));
+
+    /**
+     * Either Basic or bearer authentication filters based on fake
+     * authenticators.
+     */
+    private static final List<AuthFilter> FILTERS = Arrays.asList(
+            new BasicCredentialAuthFilter.Builder<User>()
+            .setAuthenticator(credentials -> Optional.of(USER))
+            .setAuthorizer((principal, role) -> true)
+            .setRealm("SECURITY REALM")
+            .buildAuthFilter(),
+            new OAuthCredentialAuthFilter.Builder<User>()
+            .setAuthenticator(TOKEN_AUTHENTICATOR)
+            .setAuthorizer((principal, role) -> true)
+            .setPrefix(AccessToken.BEARER)
+            .setRealm("SECURITY REALM")
+            .buildAuthFilter());
+
+    /**
+     * Instruction to spin up in-memory server to test resource classes.
+     */
+    @ClassRule
+    public static final ResourceTestRule RULE
+            = ResourceTestRule
+            .builder()
+            .addProvider(new AuthDynamicFeature(
+                    new ChainedAuthFilter<>(FILTERS)))
+            .addProvider(new AuthValueFactoryProvider.Binder<>(User.class))
+            .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
+            .addResource(new TokenResource(TOKEN_AUTHENTICATOR,
+                    "SECURITY REALM"))
+            .build();
+
+    /**
+     * Methods that provides class-level initialization.
+     */
+    @BeforeClass
+    public static void beforeClass() {
+        USER.setId(USER_ID);
+    }
+
+    /**
+     * Test of issueToken method, of class TokenResource.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testIssueTokenOK() throws Exception {
+        // when
+        AccessToken response = RULE
+                .getJerseyTest()
+                .target("/auth/token")
+                .register(HttpAuthenticationFeature.basic(USERNAME, PASSWORD))
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""), AccessToken.class);
+
+        // then
+        assertNotNull(response);
+        assertEquals(AccessToken.BEARER, response.getTokenType());
+        assertEquals(Duration.ofMinutes(5).getSeconds(),
+                response.getExpiresIn());
+        Optional<User> user
+                = TOKEN_AUTHENTICATOR.authenticate(response.getToken());
+        assertTrue(user.isPresent());
+        assertEquals(USER_ID, user.get().getId().intValue());
+    }
+
+    /**
+     * Test of issueToken method, of class TokenResource.
+     */
+    @Test
+    public void testIssueTokenWithToken() {
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/auth/token")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, AccessToken.BEARER + " "
+                        + TOKEN_AUTHENTICATOR.issue(USER))
+                .post(Entity.json(""));
+
+        // then
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(),
+                response.getStatus());
+    }
+
+    /**
+     * Test of issueToken method, of class TokenResource.
+     */
+    @Test
+    public void testIssueTokenUnauthorized() {
+        // when
+        Response response = RULE
+                .getJerseyTest()
+                .target("/auth/token")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(""));
+
+        // then
+        assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(),
+                response.getStatus());
+    }
+}